@@ -0,0 +1,256 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.atomtype;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.ISingleElectron;
+import org.openscience.cdk.ringsearch.RingSearch;
+
+/**
+ * The connections of a container as used by the {@link CDKAtomTypeMatcher}.
+ * The connected atoms and bonds, bond order sums and single electron counts
+ * of every atom are computed once on construction and the ring membership on
+ * first use, such that typing all atoms is linear in the size of the
+ * container. The methods mirror those of the {@link IAtomContainer} and
+ * return the same values, atoms which are not in the container are looked up
+ * in the container.
+ *
+ * The container should not be modified while the context is in use.
+ *
+ * @cdk.module core
+ * @cdk.githash
+ */
+final class AtomTypingContext {
+
+    private final IAtomContainer container;
+
+    /** Index of each atom in the container. */
+    private final Map<IAtom, Integer> index;
+
+    /** Connected atoms and bonds of each atom, in the order of the bonds. */
+    private final List<List<IAtom>> atoms;
+    private final List<List<IBond>> bonds;
+
+    /** Sum of the (set) bond orders of each atom. */
+    private final double[] bondOrderSum;
+
+    /** Number of single electrons on each atom. */
+    private final int[] singleElectrons;
+
+    /** Ring membership of each atom, perceived on first use. */
+    private boolean[] cyclic;
+
+    /**
+     * Compute the connections of the container.
+     *
+     * @param container the container of the atoms to type
+     */
+    AtomTypingContext(IAtomContainer container) {
+        this.container = container;
+
+        final int n = container.getAtomCount();
+        this.index = new IdentityHashMap<IAtom, Integer>(2 * n);
+        this.bondOrderSum = new double[n];
+        this.singleElectrons = new int[n];
+
+        List<List<IAtom>> atoms = new ArrayList<List<IAtom>>(n);
+        List<List<IBond>> bonds = new ArrayList<List<IBond>>(n);
+        for (int i = 0; i < n; i++) {
+            index.put(container.getAtom(i), i);
+            atoms.add(new ArrayList<IAtom>(4));
+            bonds.add(new ArrayList<IBond>(4));
+        }
+
+        for (IBond bond : container.bonds()) {
+            for (IAtom atom : bond.atoms()) {
+                Integer i = index.get(atom);
+                if (i == null)
+                    continue;
+                atoms.get(i).add(bond.getConnectedAtom(atom));
+                bonds.get(i).add(bond);
+                if (bond.getOrder() != null)
+                    bondOrderSum[i] += bond.getOrder().numeric();
+            }
+        }
+
+        for (ISingleElectron electron : container.singleElectrons()) {
+            Integer i = index.get(electron.getAtom());
+            if (i != null)
+                singleElectrons[i]++;
+        }
+
+        for (int i = 0; i < n; i++) {
+            atoms.set(i, Collections.unmodifiableList(atoms.get(i)));
+            bonds.set(i, Collections.unmodifiableList(bonds.get(i)));
+        }
+        this.atoms = atoms;
+        this.bonds = bonds;
+    }
+
+    /**
+     * The container of the atoms.
+     *
+     * @return the container
+     */
+    IAtomContainer container() {
+        return container;
+    }
+
+    /**
+     * Atoms connected to the provided atom.
+     *
+     * @param atom an atom
+     * @return the connected atoms (unmodifiable)
+     * @see IAtomContainer#getConnectedAtomsList(IAtom)
+     */
+    List<IAtom> getConnectedAtomsList(IAtom atom) {
+        Integer i = index.get(atom);
+        return i != null ? atoms.get(i) : container.getConnectedAtomsList(atom);
+    }
+
+    /**
+     * Bonds connected to the provided atom.
+     *
+     * @param atom an atom
+     * @return the connected bonds (unmodifiable)
+     * @see IAtomContainer#getConnectedBondsList(IAtom)
+     */
+    List<IBond> getConnectedBondsList(IAtom atom) {
+        Integer i = index.get(atom);
+        return i != null ? bonds.get(i) : container.getConnectedBondsList(atom);
+    }
+
+    /**
+     * Number of atoms connected to the provided atom.
+     *
+     * @param atom an atom
+     * @return the number of connected atoms
+     * @see IAtomContainer#getConnectedAtomsCount(IAtom)
+     */
+    int getConnectedAtomsCount(IAtom atom) {
+        Integer i = index.get(atom);
+        return i != null ? atoms.get(i).size() : container.getConnectedAtomsCount(atom);
+    }
+
+    /**
+     * Number of bonds connected to the provided atom.
+     *
+     * @param atom an atom
+     * @return the number of connected bonds
+     * @see IAtomContainer#getConnectedBondsCount(IAtom)
+     */
+    int getConnectedBondsCount(IAtom atom) {
+        Integer i = index.get(atom);
+        return i != null ? bonds.get(i).size() : container.getConnectedBondsCount(atom);
+    }
+
+    /**
+     * Number of single electrons on the provided atom.
+     *
+     * @param atom an atom
+     * @return the number of single electrons
+     * @see IAtomContainer#getConnectedSingleElectronsCount(IAtom)
+     */
+    int getConnectedSingleElectronsCount(IAtom atom) {
+        Integer i = index.get(atom);
+        return i != null ? singleElectrons[i] : container.getConnectedSingleElectronsCount(atom);
+    }
+
+    /**
+     * Sum of the bond orders of the provided atom.
+     *
+     * @param atom an atom
+     * @return the bond order sum
+     * @see IAtomContainer#getBondOrderSum(IAtom)
+     */
+    double getBondOrderSum(IAtom atom) {
+        Integer i = index.get(atom);
+        return i != null ? bondOrderSum[i] : container.getBondOrderSum(atom);
+    }
+
+    /**
+     * The maximum order of the bonds of the provided atom, at least single.
+     *
+     * @param atom an atom
+     * @return the maximum bond order
+     * @see IAtomContainer#getMaximumBondOrder(IAtom)
+     */
+    IBond.Order getMaximumBondOrder(IAtom atom) {
+        Integer i = index.get(atom);
+        if (i == null)
+            return container.getMaximumBondOrder(atom);
+        IBond.Order max = IBond.Order.SINGLE;
+        for (IBond bond : bonds.get(i)) {
+            if (bond.getOrder().numeric() > max.numeric())
+                max = bond.getOrder();
+        }
+        return max;
+    }
+
+    /**
+     * The bond between two atoms.
+     *
+     * @param atom1 an atom
+     * @param atom2 another atom
+     * @return the bond, or null if the atoms are not bonded
+     * @see IAtomContainer#getBond(IAtom, IAtom)
+     */
+    IBond getBond(IAtom atom1, IAtom atom2) {
+        Integer i = index.get(atom1);
+        if (i == null)
+            return container.getBond(atom1, atom2);
+        for (IBond bond : bonds.get(i)) {
+            if (bond.getConnectedAtom(atom1) == atom2)
+                return bond;
+        }
+        return null;
+    }
+
+    /**
+     * Whether the provided atom belongs to a ring.
+     *
+     * @param atom an atom
+     * @return the atom is in a ring
+     * @see RingSearch#cyclic(IAtom)
+     */
+    boolean isRingAtom(IAtom atom) {
+        Integer i = index.get(atom);
+        if (i == null)
+            return new RingSearch(container).cyclic(atom);
+        if (cyclic == null) {
+            RingSearch search = new RingSearch(container);
+            cyclic = new boolean[container.getAtomCount()];
+            for (int v : search.cyclic())
+                cyclic[v] = true;
+        }
+        return cyclic[i];
+    }
+}
@@ -21,6 +21,7 @@
 package org.openscience.cdk.atomtype;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
@@ -30,6 +31,7 @@ import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.config.AtomTypeFactory;
+import org.openscience.cdk.config.Elements;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
@@ -39,8 +41,6 @@ import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.interfaces.IBond.Order;
 import org.openscience.cdk.interfaces.IChemObjectBuilder;
 import org.openscience.cdk.interfaces.IPseudoAtom;
-import org.openscience.cdk.interfaces.ISingleElectron;
-import org.openscience.cdk.ringsearch.RingSearch;
 import org.openscience.cdk.tools.manipulator.BondManipulator;
 
 /**
@@ -64,6 +64,14 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
 	private AtomTypeFactory factory;
 	private int mode;
 	
+    /** The elements by (case sensitive) symbol. */
+    private static final Map<String, Elements> ELEMENTS = new HashMap<String, Elements>(200);
+
+    static {
+        for (Elements element : Elements.values())
+            ELEMENTS.put(element.symbol(), element);
+    }
+
     private static Map<Integer,Map<IChemObjectBuilder,CDKAtomTypeMatcher>> 
     	factories = new Hashtable<Integer,Map<IChemObjectBuilder,CDKAtomTypeMatcher>>(1); 
     
@@ -92,10 +100,12 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     /** {@inheritDoc} */ @Override
     @TestMethod("testFindMatchingAtomType_IAtomContainer")
     public IAtomType[] findMatchingAtomTypes(IAtomContainer atomContainer) throws CDKException {
+        // the connections and rings are perceived once for all atoms
+        AtomTypingContext context = new AtomTypingContext(atomContainer);
         IAtomType[] types = new IAtomType[atomContainer.getAtomCount()];
         int typeCounter = 0;
         for (IAtom atom : atomContainer.atoms()) {
-            types[typeCounter] = findMatchingAtomType(atomContainer, atom);
+            types[typeCounter] = findMatchingAtomType(context, atom);
             typeCounter++;
         }
         return types;
@@ -104,114 +114,169 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     /** {@inheritDoc} */ @Override
     @TestMethod("testFindMatchingAtomType_IAtomContainer_IAtom")
     public IAtomType findMatchingAtomType(IAtomContainer atomContainer, IAtom atom)
+        throws CDKException {
+        return findMatchingAtomType(new AtomTypingContext(atomContainer), atom);
+    }
+
+    private IAtomType findMatchingAtomType(AtomTypingContext context, IAtom atom)
         throws CDKException {
         IAtomType type = null;
         if (atom instanceof IPseudoAtom) {
         	return factory.getAtomType("X");
         }
-        if ("C".equals(atom.getSymbol())) {
-            type = perceiveCarbons(atomContainer, atom);
-        } else if ("Li".equals(atom.getSymbol())) {
-            type = perceiveLithium(atomContainer, atom);
-        } else if ("O".equals(atom.getSymbol())) {
-            type = perceiveOxygens(atomContainer, atom);
-        } else if ("N".equals(atom.getSymbol())) {
-            type = perceiveNitrogens(atomContainer, atom);
-        } else if ("H".equals(atom.getSymbol())) {
-            type = perceiveHydrogens(atomContainer, atom);
-        } else if ("S".equals(atom.getSymbol())) {
-            type = perceiveSulphurs(atomContainer, atom);
-        } else if ("P".equals(atom.getSymbol())) {
-            type = perceivePhosphors(atomContainer, atom);
-        } else if ("Si".equals(atom.getSymbol())) {
-            type = perceiveSilicon(atomContainer, atom);
-        } else if ("B".equals(atom.getSymbol())) {
-            type = perceiveBorons(atomContainer, atom);
-        } else if ("Be".equals(atom.getSymbol())) {
-            type = perceiveBeryllium(atomContainer, atom);
-        } else if ("Cr".equals(atom.getSymbol())) {
-            type = perceiveChromium(atomContainer, atom);
-        } else if ("Se".equals(atom.getSymbol())) {
-            type = perceiveSelenium(atomContainer, atom);
-        } else if ("Mo".equals(atom.getSymbol())) {
-            type = perceiveMolybdenum(atomContainer, atom);
-        } else if ("Rb".equals(atom.getSymbol())) {
-            type = perceiveRubidium(atomContainer, atom);
-        } else if ("Te".equals(atom.getSymbol())) {
-            type = perceiveTellurium(atomContainer, atom);
-        } else if ("Cu".equals(atom.getSymbol())) {
-            type = perceiveCopper(atomContainer, atom);
-        } else if ("Ba".equals(atom.getSymbol())) {
-            type = perceiveBarium(atomContainer, atom);
-        } else if ("Ga".equals(atom.getSymbol())) {
-            type = perceiveGallium(atomContainer, atom);
-        } else if ("Ru".equals(atom.getSymbol())) {
-            type = perceiveRuthenium(atomContainer, atom);
-        } else if ("Zn".equals(atom.getSymbol())) {
-            type = perceiveZinc(atomContainer, atom);
-        } else if ("Al".equals(atom.getSymbol())) {
-            type = perceiveAluminium(atomContainer, atom);
-        }  else if ("Ni".equals(atom.getSymbol())) {
-            type = perceiveNickel(atomContainer, atom);
-        } else if ("Gd".equals(atom.getSymbol())) {
-            type = perceiveGadolinum(atomContainer, atom);
-        } else if ("Ge".equals(atom.getSymbol())) {
-            type = perceiveGermanium(atomContainer, atom);
-        } else if ("Co".equals(atom.getSymbol())) {
-            type = perceiveCobalt(atomContainer, atom);
-        } else if ("Br".equals(atom.getSymbol())) {
-            type = perceiveBromine(atomContainer, atom);
-        } else if ("V".equals(atom.getSymbol())) {
-            type = perceiveVanadium(atomContainer, atom);
-        } else if ("Ti".equals(atom.getSymbol())) {
-            type = perceiveTitanium(atomContainer, atom);
-        } else if ("Sr".equals(atom.getSymbol())) {
-            type = perceiveStrontium(atomContainer, atom);
-        } else if ("Pb".equals(atom.getSymbol())) {
-            type = perceiveLead(atomContainer, atom);
-        } else if ("Tl".equals(atom.getSymbol())) {
-            type = perceiveThallium(atomContainer, atom);
-        } else if ("Sb".equals(atom.getSymbol())) {
-            type = perceiveAntimony(atomContainer, atom);
-        } else if ("Pt".equals(atom.getSymbol())) {
-            type = perceivePlatinum(atomContainer, atom);
-        } else if ("Hg".equals(atom.getSymbol())) {
-            type = perceiveMercury(atomContainer, atom);
-        } else if ("Fe".equals(atom.getSymbol())) {
-            type = perceiveIron(atomContainer, atom);
-        } else if ("Ra".equals(atom.getSymbol())) {
-            type = perceiveRadium(atomContainer, atom);
-        } else if ("Au".equals(atom.getSymbol())) {
-            type = perceiveGold(atomContainer, atom);
-        } else if ("Ag".equals(atom.getSymbol())) {
-            type = perceiveSilver(atomContainer, atom);
-        } else if ("Cl".equals(atom.getSymbol())) {
-            type = perceiveChlorine(atomContainer, atom);
-        } else if ("In".equals(atom.getSymbol())) {
-            type = perceiveIndium(atomContainer, atom);
-        } else if ("Pu".equals(atom.getSymbol())) {
-            type = perceivePlutonium(atomContainer, atom);
-        } else if ("Th".equals(atom.getSymbol())) {
-            type = perceiveThorium(atomContainer, atom);
-        } else if ("K".equals(atom.getSymbol())) {
-            type = perceivePotassium(atomContainer, atom);
-        } else if ("Mn".equals(atom.getSymbol())) {
-            type = perceiveManganese(atomContainer, atom);
-        } else if ("Mg".equals(atom.getSymbol())) {
-            type = perceiveMagnesium(atomContainer, atom);
-        } else if ("Na".equals(atom.getSymbol())) {
-            type = perceiveSodium(atomContainer, atom);
-        } else if ("As".equals(atom.getSymbol())) {
-            type = perceiveArsenic(atomContainer, atom);
-        } else if ("Cd".equals(atom.getSymbol())) {
-            type = perceiveCadmium(atomContainer, atom);
-        } else if ("Ca".equals(atom.getSymbol())) {
-            type = perceiveCalcium(atomContainer, atom);
-        } else {
-            if (type == null) type = perceiveHalogens(atomContainer, atom);
-            if (type == null) type = perceiveCommonSalts(atomContainer, atom);
-            if (type == null) type = perceiveOrganometallicCenters(atomContainer, atom);
-            if (type == null) type = perceiveNobelGases(atomContainer, atom);
+        switch (elementNumber(atom)) {
+            case 1: // H
+                type = perceiveHydrogens(context, atom);
+                break;
+            case 3: // Li
+                type = perceiveLithium(context, atom);
+                break;
+            case 4: // Be
+                type = perceiveBeryllium(context, atom);
+                break;
+            case 5: // B
+                type = perceiveBorons(context, atom);
+                break;
+            case 6: // C
+                type = perceiveCarbons(context, atom);
+                break;
+            case 7: // N
+                type = perceiveNitrogens(context, atom);
+                break;
+            case 8: // O
+                type = perceiveOxygens(context, atom);
+                break;
+            case 11: // Na
+                type = perceiveSodium(context, atom);
+                break;
+            case 12: // Mg
+                type = perceiveMagnesium(context, atom);
+                break;
+            case 13: // Al
+                type = perceiveAluminium(context, atom);
+                break;
+            case 14: // Si
+                type = perceiveSilicon(context, atom);
+                break;
+            case 15: // P
+                type = perceivePhosphors(context, atom);
+                break;
+            case 16: // S
+                type = perceiveSulphurs(context, atom);
+                break;
+            case 17: // Cl
+                type = perceiveChlorine(context, atom);
+                break;
+            case 19: // K
+                type = perceivePotassium(context, atom);
+                break;
+            case 20: // Ca
+                type = perceiveCalcium(context, atom);
+                break;
+            case 22: // Ti
+                type = perceiveTitanium(context, atom);
+                break;
+            case 23: // V
+                type = perceiveVanadium(context, atom);
+                break;
+            case 24: // Cr
+                type = perceiveChromium(context, atom);
+                break;
+            case 25: // Mn
+                type = perceiveManganese(context, atom);
+                break;
+            case 26: // Fe
+                type = perceiveIron(context, atom);
+                break;
+            case 27: // Co
+                type = perceiveCobalt(context, atom);
+                break;
+            case 28: // Ni
+                type = perceiveNickel(context, atom);
+                break;
+            case 29: // Cu
+                type = perceiveCopper(context, atom);
+                break;
+            case 30: // Zn
+                type = perceiveZinc(context, atom);
+                break;
+            case 31: // Ga
+                type = perceiveGallium(context, atom);
+                break;
+            case 32: // Ge
+                type = perceiveGermanium(context, atom);
+                break;
+            case 33: // As
+                type = perceiveArsenic(context, atom);
+                break;
+            case 34: // Se
+                type = perceiveSelenium(context, atom);
+                break;
+            case 35: // Br
+                type = perceiveBromine(context, atom);
+                break;
+            case 37: // Rb
+                type = perceiveRubidium(context, atom);
+                break;
+            case 38: // Sr
+                type = perceiveStrontium(context, atom);
+                break;
+            case 42: // Mo
+                type = perceiveMolybdenum(context, atom);
+                break;
+            case 44: // Ru
+                type = perceiveRuthenium(context, atom);
+                break;
+            case 47: // Ag
+                type = perceiveSilver(context, atom);
+                break;
+            case 48: // Cd
+                type = perceiveCadmium(context, atom);
+                break;
+            case 49: // In
+                type = perceiveIndium(context, atom);
+                break;
+            case 51: // Sb
+                type = perceiveAntimony(context, atom);
+                break;
+            case 52: // Te
+                type = perceiveTellurium(context, atom);
+                break;
+            case 56: // Ba
+                type = perceiveBarium(context, atom);
+                break;
+            case 64: // Gd
+                type = perceiveGadolinum(context, atom);
+                break;
+            case 78: // Pt
+                type = perceivePlatinum(context, atom);
+                break;
+            case 79: // Au
+                type = perceiveGold(context, atom);
+                break;
+            case 80: // Hg
+                type = perceiveMercury(context, atom);
+                break;
+            case 81: // Tl
+                type = perceiveThallium(context, atom);
+                break;
+            case 82: // Pb
+                type = perceiveLead(context, atom);
+                break;
+            case 88: // Ra
+                type = perceiveRadium(context, atom);
+                break;
+            case 90: // Th
+                type = perceiveThorium(context, atom);
+                break;
+            case 94: // Pu
+                type = perceivePlutonium(context, atom);
+                break;
+            default:
+                if (type == null) type = perceiveHalogens(context, atom);
+                if (type == null) type = perceiveCommonSalts(context, atom);
+                if (type == null) type = perceiveOrganometallicCenters(context, atom);
+                if (type == null) type = perceiveNobelGases(context, atom);
         }
         
         // if no atom type can be assigned we set the atom type to 'X', this flags
@@ -223,305 +288,309 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return type;
     }
     
-    private IAtomType perceiveGallium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+    /**
+     * The atomic number of the element symbol of an atom, 0 if the symbol is
+     * not that of an element. Unlike {@link Elements#ofString(String)} the
+     * symbol is case sensitive.
+     *
+     * @param atom an atom
+     * @return the atomic number
+     */
+    private static int elementNumber(IAtom atom) {
+        Elements element = ELEMENTS.get(atom.getSymbol());
+        return element != null ? element.number() : 0;
+    }
+
+    private IAtomType perceiveGallium(AtomTypingContext context, IAtom atom) throws CDKException {
+        IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
         if (!isCharged(atom) && maxBondOrder == IBond.Order.SINGLE &&
-            atomContainer.getConnectedAtomsCount(atom) <= 3) {
+            context.getConnectedAtomsCount(atom) <= 3) {
             IAtomType type = getAtomType("Ga");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else if (atom.getFormalCharge() == 3) {
             IAtomType type = getAtomType("Ga.3plus");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
         return null;
     }
 
-    private IAtomType perceiveGermanium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+    private IAtomType perceiveGermanium(AtomTypingContext context, IAtom atom) throws CDKException {
+        IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
         if (!isCharged(atom) && maxBondOrder == IBond.Order.SINGLE &&
-            atomContainer.getConnectedAtomsCount(atom) <= 4) {
+            context.getConnectedAtomsCount(atom) <= 4) {
             IAtomType type = getAtomType("Ge");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
-        if (atom.getFormalCharge() == 0 && atomContainer.getConnectedAtomsCount(atom) == 3) {
+        if (atom.getFormalCharge() == 0 && context.getConnectedAtomsCount(atom) == 3) {
             IAtomType type = getAtomType("Ge.3");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
         return null;
     }
 
-    private IAtomType perceiveSelenium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveSelenium(AtomTypingContext context, IAtom atom) throws CDKException {
         if ("Se".equals(atom.getSymbol())) {
-            int doublebondcount = countAttachedDoubleBonds(atomContainer, atom);
+            int doublebondcount = countAttachedDoubleBonds(context, atom);
             if (atom.getFormalCharge() != CDKConstants.UNSET
                     && atom.getFormalCharge() == 0) {
-                if (atomContainer.getConnectedAtomsCount(atom) == 0) {
+                if (context.getConnectedAtomsCount(atom) == 0) {
                 	if (atom.getImplicitHydrogenCount() != null && atom.getImplicitHydrogenCount() == 0 ) {
                 		IAtomType type = getAtomType("Se.2");
-                		if (isAcceptable(atom, atomContainer, type)) return type;
+                		if (isAcceptable(atom, context, type)) return type;
                 	} else {
                 		IAtomType type = getAtomType("Se.3");
-                		if (isAcceptable(atom, atomContainer, type)) return type;
+                		if (isAcceptable(atom, context, type)) return type;
                 	}
-                } else if (atomContainer.getConnectedAtomsCount(atom) == 1) {
+                } else if (context.getConnectedAtomsCount(atom) == 1) {
 
                     if (doublebondcount == 1) {
                         IAtomType type = getAtomType("Se.1");
-                        if (isAcceptable(atom, atomContainer, type)) return type;
+                        if (isAcceptable(atom, context, type)) return type;
                     } else if (doublebondcount == 0) {
                         IAtomType type = getAtomType("Se.3");
-                        if (isAcceptable(atom, atomContainer, type)) return type;
+                        if (isAcceptable(atom, context, type)) return type;
                     }
-                } else if (atomContainer.getConnectedAtomsCount(atom) == 2) {
+                } else if (context.getConnectedAtomsCount(atom) == 2) {
                     if (doublebondcount == 0) {
                         IAtomType type = getAtomType("Se.3");
-                        if (isAcceptable(atom, atomContainer, type)) return type;
+                        if (isAcceptable(atom, context, type)) return type;
                     } else if (doublebondcount == 2) {
                         IAtomType type = getAtomType("Se.sp2.2");
-                        if (isAcceptable(atom, atomContainer, type)) return type;
+                        if (isAcceptable(atom, context, type)) return type;
                     }
-                } else if (atomContainer.getConnectedAtomsCount(atom) == 3) {
+                } else if (context.getConnectedAtomsCount(atom) == 3) {
                     IAtomType type = getAtomType("Se.sp3.3");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
-                } else if (atomContainer.getConnectedAtomsCount(atom) == 4) {
+                    if (isAcceptable(atom, context, type)) return type;
+                } else if (context.getConnectedAtomsCount(atom) == 4) {
                     if (doublebondcount == 2) {
                         IAtomType type = getAtomType("Se.sp3.4");
-                        if (isAcceptable(atom, atomContainer, type)) return type;
+                        if (isAcceptable(atom, context, type)) return type;
                     } else if (doublebondcount == 0) {
                         IAtomType type = getAtomType("Se.sp3d1.4");
-                        if (isAcceptable(atom, atomContainer, type)) return type;
+                        if (isAcceptable(atom, context, type)) return type;
                     }
-                } else if (atomContainer.getConnectedAtomsCount(atom) == 5) {
+                } else if (context.getConnectedAtomsCount(atom) == 5) {
                     IAtomType type = getAtomType("Se.5");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 }
             } else if ((atom.getFormalCharge() != CDKConstants.UNSET && atom.getFormalCharge() == 4)
-                    && atomContainer.getConnectedAtomsCount(atom) == 0) {
+                    && context.getConnectedAtomsCount(atom) == 0) {
                 IAtomType type = getAtomType("Se.4plus");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if ((atom.getFormalCharge() != CDKConstants.UNSET && atom.getFormalCharge() == 1)
-                    && atomContainer.getConnectedAtomsCount(atom) == 3) {
+                    && context.getConnectedAtomsCount(atom) == 3) {
                 IAtomType type = getAtomType("Se.plus.3");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if ((atom.getFormalCharge() != CDKConstants.UNSET && atom.getFormalCharge() == -2)
-                    && atomContainer.getConnectedAtomsCount(atom) == 0) {
+                    && context.getConnectedAtomsCount(atom) == 0) {
                 IAtomType type = getAtomType("Se.2minus");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         }
         return null;
     }
 
-    private IAtomType perceiveTellurium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
-        if (!isCharged(atom) && maxBondOrder == IBond.Order.SINGLE && atomContainer.getConnectedAtomsCount(atom) <= 2) {
+    private IAtomType perceiveTellurium(AtomTypingContext context, IAtom atom) throws CDKException {
+        IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
+        if (!isCharged(atom) && maxBondOrder == IBond.Order.SINGLE && context.getConnectedAtomsCount(atom) <= 2) {
             IAtomType type = getAtomType("Te.3");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else if (atom.getFormalCharge() == 4) {
-            if (atomContainer.getConnectedAtomsCount(atom) == 0) {
+            if (context.getConnectedAtomsCount(atom) == 0) {
                 IAtomType type = getAtomType("Te.4plus");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         }
         return null;
     }
 
-	private IAtomType perceiveBorons(IAtomContainer atomContainer, IAtom atom)
+	private IAtomType perceiveBorons(AtomTypingContext context, IAtom atom)
 		throws CDKException {
-	    IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+	    IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
 	    if (atom.getFormalCharge() == -1 && 
 	        maxBondOrder == IBond.Order.SINGLE &&
-	        atomContainer.getConnectedAtomsCount(atom) <= 4) {
+	        context.getConnectedAtomsCount(atom) <= 4) {
 	        IAtomType type = getAtomType("B.minus");
-	        if (isAcceptable(atom, atomContainer, type)) return type;
+	        if (isAcceptable(atom, context, type)) return type;
 	    } else if (atom.getFormalCharge() == +3
-                && atomContainer.getConnectedAtomsCount(atom) == 4) {
+                && context.getConnectedAtomsCount(atom) == 4) {
             IAtomType type = getAtomType("B.3plus");
-            if (isAcceptable(atom, atomContainer, type)) return type;
-	    } else if (atomContainer.getConnectedAtomsCount(atom) <= 3) {
+            if (isAcceptable(atom, context, type)) return type;
+	    } else if (context.getConnectedAtomsCount(atom) <= 3) {
 	        IAtomType type = getAtomType("B");
-	        if (isAcceptable(atom, atomContainer, type)) return type;
+	        if (isAcceptable(atom, context, type)) return type;
 	    }
     	return null;
     }
 
-    private IAtomType perceiveBeryllium(IAtomContainer atomContainer, IAtom atom)
+    private IAtomType perceiveBeryllium(AtomTypingContext context, IAtom atom)
     	throws CDKException {
 		if (atom.getFormalCharge() == -2 &&
-		    atomContainer.getMaximumBondOrder(atom) == IBond.Order.SINGLE &&
-		    atomContainer.getConnectedAtomsCount(atom) <= 4) {
+		    context.getMaximumBondOrder(atom) == IBond.Order.SINGLE &&
+		    context.getConnectedAtomsCount(atom) <= 4) {
 		    IAtomType type = getAtomType("Be.2minus");
-		    if (isAcceptable(atom, atomContainer, type)) return type;
+		    if (isAcceptable(atom, context, type)) return type;
 		} else if (atom.getFormalCharge() == 0 &&
-                   atomContainer.getConnectedAtomsCount(atom) == 0) {
+                   context.getConnectedAtomsCount(atom) == 0) {
             IAtomType type = getAtomType("Be.neutral");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
 		return null;
     }
 
-    private IAtomType perceiveCarbonRadicals(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (atomContainer.getConnectedBondsCount(atom) == 0) {
+    private IAtomType perceiveCarbonRadicals(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (context.getConnectedBondsCount(atom) == 0) {
             IAtomType type = getAtomType("C.radical.planar");
-            if (isAcceptable(atom, atomContainer, type)) return type;
-        } else if (atomContainer.getConnectedBondsCount(atom) <= 3) {
-            IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+            if (isAcceptable(atom, context, type)) return type;
+        } else if (context.getConnectedBondsCount(atom) <= 3) {
+            IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
             if (maxBondOrder == IBond.Order.SINGLE) {
                 IAtomType type = getAtomType("C.radical.planar");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (maxBondOrder == IBond.Order.DOUBLE) {
                 IAtomType type = getAtomType("C.radical.sp2");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (maxBondOrder == IBond.Order.TRIPLE) {
                 IAtomType type = getAtomType("C.radical.sp1");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         }
         return null;
     }
     
-	private IAtomType perceiveCarbons(IAtomContainer atomContainer, IAtom atom)
+	private IAtomType perceiveCarbons(AtomTypingContext context, IAtom atom)
     	throws CDKException {
 	    // if hybridization is given, use that
-	    if (hasOneSingleElectron(atomContainer, atom)) {
-	        return perceiveCarbonRadicals(atomContainer, atom);
+	    if (hasOneSingleElectron(context, atom)) {
+	        return perceiveCarbonRadicals(context, atom);
 	    } else if (hasHybridization(atom) && !isCharged(atom)) {
 	        if (atom.getHybridization() == Hybridization.SP2) {
 	            IAtomType type = getAtomType("C.sp2");
-	            if (isAcceptable(atom, atomContainer, type)) return type;
+	            if (isAcceptable(atom, context, type)) return type;
 	        } else if (atom.getHybridization() == Hybridization.SP3) {
 	            IAtomType type = getAtomType("C.sp3");
-	            if (isAcceptable(atom, atomContainer, type)) return type;
+	            if (isAcceptable(atom, context, type)) return type;
 	        } else if (atom.getHybridization() == Hybridization.SP1) {
-	        	IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+	        	IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
 	        	if (maxBondOrder == Order.TRIPLE) {
 		            IAtomType type = getAtomType("C.sp");
-		            if (isAcceptable(atom, atomContainer, type)) return type;
+		            if (isAcceptable(atom, context, type)) return type;
 	        	} else {
 	        		IAtomType type = getAtomType("C.allene");
-	        		if (isAcceptable(atom, atomContainer, type)) return type;
+	        		if (isAcceptable(atom, context, type)) return type;
 	        	}
 	        }
 	    } else if (isCharged(atom)) {
 	        if (atom.getFormalCharge() == 1) {
-	            if (atomContainer.getConnectedBondsCount(atom) == 0) {
+	            if (context.getConnectedBondsCount(atom) == 0) {
 	                IAtomType type = getAtomType("C.plus.sp2");
-	                if (isAcceptable(atom, atomContainer, type)) return type;
+	                if (isAcceptable(atom, context, type)) return type;
 	            } else {
-	                IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+	                IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
 	                if (maxBondOrder == CDKConstants.BONDORDER_TRIPLE) {
 	                    IAtomType type = getAtomType("C.plus.sp1");
-	                    if (isAcceptable(atom, atomContainer, type)) return type;
+	                    if (isAcceptable(atom, context, type)) return type;
 	                } else if (maxBondOrder == CDKConstants.BONDORDER_DOUBLE) {
 	                    IAtomType type = getAtomType("C.plus.sp2");
-	                    if (isAcceptable(atom, atomContainer, type)) return type;
+	                    if (isAcceptable(atom, context, type)) return type;
 	                } else if (maxBondOrder == CDKConstants.BONDORDER_SINGLE) {
 	                    IAtomType type = getAtomType("C.plus.planar");
-	                    if (isAcceptable(atom, atomContainer, type)) return type;
+	                    if (isAcceptable(atom, context, type)) return type;
 	                } 
 	            }
 	        } else if (atom.getFormalCharge() == -1) {
-	            IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+	            IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
 	            if (maxBondOrder == CDKConstants.BONDORDER_SINGLE &&
-	                    atomContainer.getConnectedBondsCount(atom) <= 3) {
-	                if (isRingAtom(atom, atomContainer) && bothNeighborsAreSp2(atom, atomContainer)) {
+	                    context.getConnectedBondsCount(atom) <= 3) {
+	                if (isRingAtom(atom, context) && bothNeighborsAreSp2(atom, context)) {
 	                    IAtomType type = getAtomType("C.minus.planar");
-	                    if (isAcceptable(atom, atomContainer, type)) return type;
+	                    if (isAcceptable(atom, context, type)) return type;
 	                }
 	                IAtomType type = getAtomType("C.minus.sp3");
-	                if (isAcceptable(atom, atomContainer, type)) return type;
+	                if (isAcceptable(atom, context, type)) return type;
 	            } else if (maxBondOrder == CDKConstants.BONDORDER_DOUBLE &&
-	                    atomContainer.getConnectedBondsCount(atom) <= 3) {
+	                    context.getConnectedBondsCount(atom) <= 3) {
 	                IAtomType type = getAtomType("C.minus.sp2");
-	                if (isAcceptable(atom, atomContainer, type)) return type;
+	                if (isAcceptable(atom, context, type)) return type;
 	            } else if (maxBondOrder == CDKConstants.BONDORDER_TRIPLE &&
-	                    atomContainer.getConnectedBondsCount(atom) <= 1) {
+	                    context.getConnectedBondsCount(atom) <= 1) {
 	                IAtomType type = getAtomType("C.minus.sp1");
-	                if (isAcceptable(atom, atomContainer, type)) return type;
+	                if (isAcceptable(atom, context, type)) return type;
 	            }
 	        }
 	        return null;
 	    } else if (atom.getFlag(CDKConstants.ISAROMATIC)) {
             IAtomType type = getAtomType("C.sp2");
-            if (isAcceptable(atom, atomContainer, type)) return type;
-        } else if (hasOneOrMoreSingleOrDoubleBonds(atomContainer, atom)) {
+            if (isAcceptable(atom, context, type)) return type;
+        } else if (hasOneOrMoreSingleOrDoubleBonds(context, atom)) {
             IAtomType type = getAtomType("C.sp2");
-            if (isAcceptable(atom, atomContainer, type)) return type;
-        }  else if (atomContainer.getConnectedBondsCount(atom) > 4) {
+            if (isAcceptable(atom, context, type)) return type;
+        }  else if (context.getConnectedBondsCount(atom) > 4) {
 	        // FIXME: I don't perceive carbons with more than 4 connections yet
 	        return null;
 	    } else { // OK, use bond order info
-	        IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+	        IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
 	        if (maxBondOrder == IBond.Order.QUADRUPLE) {
 	            // WTF??
 	            return null;
 	        } else if (maxBondOrder == CDKConstants.BONDORDER_TRIPLE) {
 	            IAtomType type = getAtomType("C.sp");
-	            if (isAcceptable(atom, atomContainer, type)) return type;
+	            if (isAcceptable(atom, context, type)) return type;
 	        } else if (maxBondOrder == CDKConstants.BONDORDER_DOUBLE) {
 	            // OK, one or two double bonds?
-	            int doubleBondCount = countAttachedDoubleBonds(atomContainer, atom);
+	            int doubleBondCount = countAttachedDoubleBonds(context, atom);
 	            if (doubleBondCount == 2) {
 	                IAtomType type = getAtomType("C.allene");
-	                if (isAcceptable(atom, atomContainer, type)) return type;
+	                if (isAcceptable(atom, context, type)) return type;
 	            } else if (doubleBondCount == 1) {
 	                IAtomType type = getAtomType("C.sp2");
-	                if (isAcceptable(atom, atomContainer, type)) return type;
+	                if (isAcceptable(atom, context, type)) return type;
 	            }
 	        } else {
-	            if (hasAromaticBond(atomContainer, atom)) {
+	            if (hasAromaticBond(context, atom)) {
 	                IAtomType type = getAtomType("C.sp2");
-	                if (isAcceptable(atom, atomContainer, type)) return type;
+	                if (isAcceptable(atom, context, type)) return type;
 	            }
 	            IAtomType type = getAtomType("C.sp3");
-	            if (isAcceptable(atom, atomContainer, type)) return type;
+	            if (isAcceptable(atom, context, type)) return type;
 	        }
 	    }
     	return null;
     }
 
-    private boolean hasOneOrMoreSingleOrDoubleBonds(IAtomContainer atomContainer, IAtom atom) {
-    	for (IBond bond : atomContainer.getConnectedBondsList(atom)) {
+    private boolean hasOneOrMoreSingleOrDoubleBonds(AtomTypingContext context, IAtom atom) {
+    	for (IBond bond : context.getConnectedBondsList(atom)) {
     		if (bond.getFlag(CDKConstants.SINGLE_OR_DOUBLE)) return true;
     	}
 		return false;
 	}
 
-	private boolean hasOneSingleElectron(IAtomContainer atomContainer, IAtom atom) {
-	    Iterator<ISingleElectron> singleElectrons = atomContainer.singleElectrons().iterator();
-	    while (singleElectrons.hasNext()) {
-	    	if (singleElectrons.next().contains(atom)) return true;
-	    }
-	    return false;
+	private boolean hasOneSingleElectron(AtomTypingContext context, IAtom atom) {
+	    return context.getConnectedSingleElectronsCount(atom) > 0;
     }
 
-    private int countSingleElectrons(IAtomContainer atomContainer, IAtom atom) {
-	    Iterator<ISingleElectron> singleElectrons = atomContainer.singleElectrons().iterator();
-	    int count = 0;
-	    while (singleElectrons.hasNext()) {
-	    	if (singleElectrons.next().contains(atom)) count++;
-	    }
-	    return count;
+    private int countSingleElectrons(AtomTypingContext context, IAtom atom) {
+	    return context.getConnectedSingleElectronsCount(atom);
     }
 
-    private IAtomType perceiveOxygenRadicals(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveOxygenRadicals(AtomTypingContext context, IAtom atom) throws CDKException {
         if (atom.getFormalCharge() == 0) {
-            if (atomContainer.getConnectedBondsCount(atom) <= 1) {
+            if (context.getConnectedBondsCount(atom) <= 1) {
                 IAtomType type = getAtomType("O.sp3.radical");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if (atom.getFormalCharge() == +1) {
-            if (atomContainer.getConnectedBondsCount(atom) == 0) {
+            if (context.getConnectedBondsCount(atom) == 0) {
                 IAtomType type = getAtomType("O.plus.radical");
-                if (isAcceptable(atom, atomContainer, type)) return type;
-            } else if (atomContainer.getConnectedBondsCount(atom) <= 2) {
-                IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+                if (isAcceptable(atom, context, type)) return type;
+            } else if (context.getConnectedBondsCount(atom) <= 2) {
+                IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
                 if (maxBondOrder == IBond.Order.SINGLE) {
                     IAtomType type = getAtomType("O.plus.radical");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 } else if (maxBondOrder == IBond.Order.DOUBLE) {
                     IAtomType type = getAtomType("O.plus.sp2.radical");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 }
             }
         }
@@ -536,105 +605,105 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return atom.getHybridization() != CDKConstants.UNSET;
     }
     
-	private IAtomType perceiveOxygens(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-	    if (hasOneSingleElectron(atomContainer, atom)) {
-	        return perceiveOxygenRadicals(atomContainer, atom);
+	private IAtomType perceiveOxygens(AtomTypingContext context, IAtom atom) throws CDKException {
+	    if (hasOneSingleElectron(context, atom)) {
+	        return perceiveOxygenRadicals(context, atom);
 	    }
 	    
 	    // if hybridization is given, use that
 	    if (hasHybridization(atom) && !isCharged(atom)) {
 	        if (atom.getHybridization() == Hybridization.SP2) {
-	            int connectedAtomsCount = atomContainer.getConnectedAtomsCount(atom);
+	            int connectedAtomsCount = context.getConnectedAtomsCount(atom);
 	            if (connectedAtomsCount == 1) {
-	                if (isCarboxylate(atom, atomContainer)) {
+	                if (isCarboxylate(atom, context)) {
 	                    IAtomType type = getAtomType("O.sp2.co2");
-	                    if (isAcceptable(atom, atomContainer, type)) return type;    				        
+	                    if (isAcceptable(atom, context, type)) return type;    				        
 	                } else {
 	                    IAtomType type = getAtomType("O.sp2");
-	                    if (isAcceptable(atom, atomContainer, type)) return type;
+	                    if (isAcceptable(atom, context, type)) return type;
 	                }
 	            } else if (connectedAtomsCount == 2) {
 	                IAtomType type = getAtomType("O.planar3");
-	                if (isAcceptable(atom, atomContainer, type)) return type;
+	                if (isAcceptable(atom, context, type)) return type;
 	            }    				
 	        } else if (atom.getHybridization() == Hybridization.SP3) {
 	            IAtomType type = getAtomType("O.sp3");
-	            if (isAcceptable(atom, atomContainer, type)) return type;
+	            if (isAcceptable(atom, context, type)) return type;
 	        } else if (atom.getHybridization() == Hybridization.PLANAR3) {
 	            IAtomType type = getAtomType("O.planar3");
-	            if (isAcceptable(atom, atomContainer, type)) return type;
+	            if (isAcceptable(atom, context, type)) return type;
 	        }
 	    } else if (isCharged(atom)) {
 	        if (atom.getFormalCharge() == -1 &&
-	                atomContainer.getConnectedAtomsCount(atom) <= 1) {
-	            if (isCarboxylate(atom, atomContainer)) {
+	                context.getConnectedAtomsCount(atom) <= 1) {
+	            if (isCarboxylate(atom, context)) {
 	                IAtomType type = getAtomType("O.minus.co2");
-	                if (isAcceptable(atom, atomContainer, type)) return type;
+	                if (isAcceptable(atom, context, type)) return type;
 	            } else {
 	                IAtomType type = getAtomType("O.minus");
-	                if (isAcceptable(atom, atomContainer, type)) return type;
+	                if (isAcceptable(atom, context, type)) return type;
 	            }
 	        } else if (atom.getFormalCharge() == -2 &&
-	                atomContainer.getConnectedAtomsCount(atom) == 0) {
+	                context.getConnectedAtomsCount(atom) == 0) {
 	            IAtomType type = getAtomType("O.minus2");
-	            if (isAcceptable(atom, atomContainer, type)) return type;
+	            if (isAcceptable(atom, context, type)) return type;
 	        } else if (atom.getFormalCharge() == +1) {
-	            if (atomContainer.getConnectedBondsCount(atom) == 0) {
+	            if (context.getConnectedBondsCount(atom) == 0) {
 	                IAtomType type = getAtomType("O.plus");
-	                if (isAcceptable(atom, atomContainer, type)) return type;
+	                if (isAcceptable(atom, context, type)) return type;
 	            }
-	            IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+	            IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
 	            if (maxBondOrder == CDKConstants.BONDORDER_DOUBLE) {
 	                IAtomType type = getAtomType("O.plus.sp2");
-	                if (isAcceptable(atom, atomContainer, type)) return type;
+	                if (isAcceptable(atom, context, type)) return type;
 	            } else if (maxBondOrder == CDKConstants.BONDORDER_TRIPLE) {
 	                IAtomType type = getAtomType("O.plus.sp1");
-	                if (isAcceptable(atom, atomContainer, type)) return type;
+	                if (isAcceptable(atom, context, type)) return type;
 	            } else {
 	                IAtomType type = getAtomType("O.plus");
-	                if (isAcceptable(atom, atomContainer, type)) return type;
+	                if (isAcceptable(atom, context, type)) return type;
 	            }
 	        }
 	        return null;
-	    } else if (atomContainer.getConnectedBondsCount(atom) > 2) {
+	    } else if (context.getConnectedBondsCount(atom) > 2) {
 	        // FIXME: I don't perceive carbons with more than 4 connections yet
 	        return null;
-	    } else if (atomContainer.getConnectedBondsCount(atom) == 0) {
+	    } else if (context.getConnectedBondsCount(atom) == 0) {
 	        IAtomType type = getAtomType("O.sp3");
-	        if (isAcceptable(atom, atomContainer, type)) return type;
+	        if (isAcceptable(atom, context, type)) return type;
 	    } else { // OK, use bond order info
-	        IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+	        IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
 	        if (maxBondOrder == CDKConstants.BONDORDER_DOUBLE) {
-	            if (isCarboxylate(atom, atomContainer)) {
+	            if (isCarboxylate(atom, context)) {
 	                IAtomType type = getAtomType("O.sp2.co2");
-	                if (isAcceptable(atom, atomContainer, type)) return type;
+	                if (isAcceptable(atom, context, type)) return type;
 	            } else {
 	                IAtomType type = getAtomType("O.sp2");
-	                if (isAcceptable(atom, atomContainer, type)) return type;
+	                if (isAcceptable(atom, context, type)) return type;
 	            }
 	        } else if (maxBondOrder == CDKConstants.BONDORDER_SINGLE) {
-	            int explicitHydrogens = countExplicitHydrogens(atom, atomContainer);
-	            int connectedHeavyAtoms = atomContainer.getConnectedBondsCount(atom) - explicitHydrogens; 
+	            int explicitHydrogens = countExplicitHydrogens(atom, context);
+	            int connectedHeavyAtoms = context.getConnectedBondsCount(atom) - explicitHydrogens; 
 	            if (connectedHeavyAtoms == 2) {
 	                // a O.sp3 which is expected to take part in an aromatic system
-	                if (isRingAtom(atom, atomContainer) && bothNeighborsAreSp2(atom, atomContainer)) {
+	                if (isRingAtom(atom, context) && bothNeighborsAreSp2(atom, context)) {
 	                    IAtomType type = getAtomType("O.planar3");
-	                    if (isAcceptable(atom, atomContainer, type)) return type;
+	                    if (isAcceptable(atom, context, type)) return type;
 	                }
 	                IAtomType type = getAtomType("O.sp3");
-	                if (isAcceptable(atom, atomContainer, type)) return type;
+	                if (isAcceptable(atom, context, type)) return type;
 	            } else {
 	                IAtomType type = getAtomType("O.sp3");
-	                if (isAcceptable(atom, atomContainer, type)) return type;
+	                if (isAcceptable(atom, context, type)) return type;
 	            }
 	        }
 	    }
     	return null;
     }
 
-    private boolean isCarboxylate(IAtom atom, IAtomContainer container) {
+    private boolean isCarboxylate(IAtom atom, AtomTypingContext context) {
         // assumes that the oxygen only has one neighbor (C=O, or C-[O-])
-        List<IAtom> neighbors = container.getConnectedAtomsList(atom);
+        List<IAtom> neighbors = context.getConnectedAtomsList(atom);
         if (neighbors.size() != 1) return false;
         IAtom carbon = neighbors.get(0);
         if (!"C".equals(carbon.getSymbol())) return false;
@@ -642,7 +711,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         int oxygenCount = 0;
         int singleBondedNegativeOxygenCount = 0;
         int doubleBondedOxygenCount = 0;
-        for (IBond cBond : container.getConnectedBondsList(carbon)) {
+        for (IBond cBond : context.getConnectedBondsList(carbon)) {
             IAtom neighbor = cBond.getConnectedAtom(carbon);
             if ("O".equals(neighbor.getSymbol())) {
                 oxygenCount++;
@@ -658,9 +727,9 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return (oxygenCount == 2) && (singleBondedNegativeOxygenCount == 1) && (doubleBondedOxygenCount == 1);
     }
 
-    private boolean atLeastTwoNeighborsAreSp2(IAtom atom, IAtomContainer atomContainer) {
+    private boolean atLeastTwoNeighborsAreSp2(IAtom atom, AtomTypingContext context) {
     	int count = 0;
-    	Iterator<IAtom> atoms = atomContainer.getConnectedAtomsList(atom).iterator();
+    	Iterator<IAtom> atoms = context.getConnectedAtomsList(atom).iterator();
     	while (atoms.hasNext() && (count < 2)) {
     		IAtom nextAtom = atoms.next();
     		if (!nextAtom.getSymbol().equals("H")) {
@@ -668,10 +737,10 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     				nextAtom.getHybridization() == Hybridization.SP2) {
     				// OK, it's SP2
     				count++;
-    			} else if (countAttachedDoubleBonds(atomContainer, nextAtom) > 0) {
+    			} else if (countAttachedDoubleBonds(context, nextAtom) > 0) {
     				// OK, it's SP2
     				count++;
-    			} else if (atomContainer.getBond(atom, nextAtom).getFlag(CDKConstants.ISAROMATIC)) {
+    			} else if (context.getBond(atom, nextAtom).getFlag(CDKConstants.ISAROMATIC)) {
                     // two aromatic bonds indicate sp2
                     count++;
                 } // OK, not SP2
@@ -680,211 +749,211 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     	return count >= 2;
     }
 
-    private boolean bothNeighborsAreSp2(IAtom atom, IAtomContainer atomContainer) {       
-    	return atLeastTwoNeighborsAreSp2(atom, atomContainer);
+    private boolean bothNeighborsAreSp2(IAtom atom, AtomTypingContext context) {       
+    	return atLeastTwoNeighborsAreSp2(atom, context);
     }
 
-    private IAtomType perceiveNitrogenRadicals(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (atomContainer.getConnectedBondsCount(atom) >= 1 &&
-                atomContainer.getConnectedBondsCount(atom) <= 2) {
-            IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+    private IAtomType perceiveNitrogenRadicals(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (context.getConnectedBondsCount(atom) >= 1 &&
+                context.getConnectedBondsCount(atom) <= 2) {
+            IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
             if (atom.getFormalCharge() != CDKConstants.UNSET &&
                     atom.getFormalCharge() == +1) {
                 if (maxBondOrder == IBond.Order.DOUBLE) {
                     IAtomType type = getAtomType("N.plus.sp2.radical");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 } else if (maxBondOrder == IBond.Order.SINGLE) {
                     IAtomType type = getAtomType("N.plus.sp3.radical");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 }
             } else if (atom.getFormalCharge() == CDKConstants.UNSET ||
                     atom.getFormalCharge() == 0) {
                 if (maxBondOrder == IBond.Order.SINGLE) {
                     IAtomType type = getAtomType("N.sp3.radical");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 } else if (maxBondOrder == IBond.Order.DOUBLE) {
                     IAtomType type = getAtomType("N.sp2.radical");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 }
             }
         } else {
-            IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+            IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
             if (atom.getFormalCharge() != CDKConstants.UNSET &&
                     atom.getFormalCharge() == +1 && maxBondOrder == IBond.Order.SINGLE) {
                 IAtomType type = getAtomType("N.plus.sp3.radical");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         }
         return null;
     }
-    private IAtomType perceiveMolybdenum(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveMolybdenum(AtomTypingContext context, IAtom atom) throws CDKException {
         if (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0) {
-            int neighbors = atomContainer.getConnectedAtomsCount(atom);
+            int neighbors = context.getConnectedAtomsCount(atom);
             if (neighbors == 4) {
                 IAtomType type = getAtomType("Mo.4");
-                if (isAcceptable(atom, atomContainer, type)) {
+                if (isAcceptable(atom, context, type)) {
                     return type;
                 }
             }
             IAtomType type1 = getAtomType("Mo.metallic");
-            if (isAcceptable(atom, atomContainer, type1)) {
+            if (isAcceptable(atom, context, type1)) {
                 return type1;
             }
         }
         return null;
     }
-    private IAtomType perceiveNitrogens(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveNitrogens(AtomTypingContext context, IAtom atom) throws CDKException {
         // if hybridization is given, use that
-        if (hasOneSingleElectron(atomContainer, atom)) {
-            return perceiveNitrogenRadicals(atomContainer, atom);
+        if (hasOneSingleElectron(context, atom)) {
+            return perceiveNitrogenRadicals(context, atom);
         } else if (hasHybridization(atom) && !isCharged(atom)) {
             if (atom.getHybridization() == Hybridization.SP1) {
-                int neighborCount = atomContainer.getConnectedAtomsCount(atom);
+                int neighborCount = context.getConnectedAtomsCount(atom);
                 if (neighborCount > 1) {
                     IAtomType type = getAtomType("N.sp1.2");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 } else {
                     IAtomType type = getAtomType("N.sp1");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 }
             } else if (atom.getHybridization() == Hybridization.SP2) {
-            	if (isAmide(atom, atomContainer)) {
+            	if (isAmide(atom, context)) {
                     IAtomType type = getAtomType("N.amide");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
-                } else if (isThioAmide(atom, atomContainer)) {
+                    if (isAcceptable(atom, context, type)) return type;
+                } else if (isThioAmide(atom, context)) {
                     IAtomType type = getAtomType("N.thioamide");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 }
                 // but an sp2 hyb N might N.sp2 or N.planar3 (pyrrole), so check for the latter
-            	int neighborCount = atomContainer.getConnectedAtomsCount(atom);
+            	int neighborCount = context.getConnectedAtomsCount(atom);
             	if (neighborCount == 4 &&
-            	    IBond.Order.DOUBLE == atomContainer.getMaximumBondOrder(atom)) {
+            	    IBond.Order.DOUBLE == context.getMaximumBondOrder(atom)) {
             	    IAtomType type = getAtomType("N.oxide");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
             	} else
-            	if (neighborCount > 1 && bothNeighborsAreSp2(atom, atomContainer)) {
-            		if (isRingAtom(atom, atomContainer)) {
+            	if (neighborCount > 1 && bothNeighborsAreSp2(atom, context)) {
+            		if (isRingAtom(atom, context)) {
             			if (neighborCount == 3) {
-                            IBond.Order maxOrder = atomContainer.getMaximumBondOrder(atom);
+                            IBond.Order maxOrder = context.getMaximumBondOrder(atom);
                             if (maxOrder == IBond.Order.DOUBLE) {
                                 IAtomType type = getAtomType("N.sp2.3");
-                                if (isAcceptable(atom, atomContainer, type)) return type;
+                                if (isAcceptable(atom, context, type)) return type;
                             } else if (maxOrder == IBond.Order.SINGLE) {
                                 IAtomType type = getAtomType("N.planar3");
-                                if (isAcceptable(atom, atomContainer, type)) return type;
+                                if (isAcceptable(atom, context, type)) return type;
                             }
             			} else if (neighborCount == 2) {
-            				IBond.Order maxOrder = atomContainer.getMaximumBondOrder(atom);
+            				IBond.Order maxOrder = context.getMaximumBondOrder(atom);
             				if (maxOrder == IBond.Order.SINGLE) {
             				    if (atom.getImplicitHydrogenCount() != CDKConstants.UNSET && atom.getImplicitHydrogenCount() == 1) {
             						IAtomType type = getAtomType("N.planar3");
-            						if (isAcceptable(atom, atomContainer, type)) return type;
+            						if (isAcceptable(atom, context, type)) return type;
             					} else {
             						IAtomType type = getAtomType("N.sp2");
-            						if (isAcceptable(atom, atomContainer, type)) return type;
+            						if (isAcceptable(atom, context, type)) return type;
             					}
             				} else if (maxOrder == IBond.Order.DOUBLE) {
             					IAtomType type = getAtomType("N.sp2");
-            					if (isAcceptable(atom, atomContainer, type)) return type;
+            					if (isAcceptable(atom, context, type)) return type;
             				}
             			}
             		}
             	}
                 IAtomType type = getAtomType("N.sp2");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (atom.getHybridization() == Hybridization.SP3) {
                 IAtomType type = getAtomType("N.sp3");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (atom.getHybridization() == Hybridization.PLANAR3) {
-                IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
-                if (atomContainer.getConnectedAtomsCount(atom) == 3 &&
+                IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
+                if (context.getConnectedAtomsCount(atom) == 3 &&
                         maxBondOrder == CDKConstants.BONDORDER_DOUBLE &&
-                        countAttachedDoubleBonds(atomContainer, atom, "O") == 2) {
+                        countAttachedDoubleBonds(context, atom, "O") == 2) {
                     IAtomType type = getAtomType("N.nitro");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 }
                 IAtomType type = getAtomType("N.planar3");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if (isCharged(atom)) {
             if (atom.getFormalCharge() == 1) {
-                IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+                IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
                 if (maxBondOrder == CDKConstants.BONDORDER_SINGLE ||
-                        atomContainer.getConnectedBondsCount(atom) == 0) {
+                        context.getConnectedBondsCount(atom) == 0) {
                     if (atom.getHybridization() == IAtomType.Hybridization.SP2) {
                         IAtomType type = getAtomType("N.plus.sp2");
-                        if (isAcceptable(atom, atomContainer, type)) return type;
+                        if (isAcceptable(atom, context, type)) return type;
                     }
                     IAtomType type = getAtomType("N.plus");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 } else if (maxBondOrder == CDKConstants.BONDORDER_DOUBLE) {
-                    int doubleBonds= countAttachedDoubleBonds(atomContainer, atom);
+                    int doubleBonds= countAttachedDoubleBonds(context, atom);
                     if (doubleBonds == 1) {
                         IAtomType type = getAtomType("N.plus.sp2");
-                        if (isAcceptable(atom, atomContainer, type)) return type;
+                        if (isAcceptable(atom, context, type)) return type;
                     } else if (doubleBonds == 2) {
                         IAtomType type = getAtomType("N.plus.sp1");
-                        if (isAcceptable(atom, atomContainer, type)) return type;
+                        if (isAcceptable(atom, context, type)) return type;
                     }
                 } else if (maxBondOrder == CDKConstants.BONDORDER_TRIPLE) {
-                    if (atomContainer.getConnectedBondsCount(atom) == 2) {
+                    if (context.getConnectedBondsCount(atom) == 2) {
                         IAtomType type = getAtomType("N.plus.sp1");
-                        if (isAcceptable(atom, atomContainer, type)) return type;
+                        if (isAcceptable(atom, context, type)) return type;
                     }
                 }
             } else if (atom.getFormalCharge() == -1) {
-                IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+                IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
                 if (maxBondOrder == CDKConstants.BONDORDER_SINGLE) {
-                    if (atomContainer.getConnectedAtomsCount(atom) >= 2 &&
-                    		bothNeighborsAreSp2(atom,atomContainer) &&
-                    		isRingAtom(atom, atomContainer)) {
+                    if (context.getConnectedAtomsCount(atom) >= 2 &&
+                    		bothNeighborsAreSp2(atom,context) &&
+                    		isRingAtom(atom, context)) {
                         IAtomType type = getAtomType("N.minus.planar3");
-                        if (isAcceptable(atom, atomContainer, type)) return type;
-                    } else if (atomContainer.getConnectedBondsCount(atom) <= 2) {
+                        if (isAcceptable(atom, context, type)) return type;
+                    } else if (context.getConnectedBondsCount(atom) <= 2) {
                         IAtomType type = getAtomType("N.minus.sp3");
-                        if (isAcceptable(atom, atomContainer, type)) return type;
+                        if (isAcceptable(atom, context, type)) return type;
                     }
                 } else if (maxBondOrder == CDKConstants.BONDORDER_DOUBLE) {
-                    if (atomContainer.getConnectedBondsCount(atom) <= 1) {
+                    if (context.getConnectedBondsCount(atom) <= 1) {
                         IAtomType type = getAtomType("N.minus.sp2");
-                        if (isAcceptable(atom, atomContainer, type)) return type;
+                        if (isAcceptable(atom, context, type)) return type;
                     }
                 }
             }
-        } else if (atomContainer.getConnectedBondsCount(atom) > 3) {
-            if (atomContainer.getConnectedBondsCount(atom) == 4 &&
-                countAttachedDoubleBonds(atomContainer, atom) == 1) {
+        } else if (context.getConnectedBondsCount(atom) > 3) {
+            if (context.getConnectedBondsCount(atom) == 4 &&
+                countAttachedDoubleBonds(context, atom) == 1) {
                 IAtomType type = getAtomType("N.oxide");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
             return null;
-        } else if (atomContainer.getConnectedBondsCount(atom) == 0) {
+        } else if (context.getConnectedBondsCount(atom) == 0) {
             IAtomType type = getAtomType("N.sp3");
-            if (isAcceptable(atom, atomContainer, type)) return type;
-        } else if (hasOneOrMoreSingleOrDoubleBonds(atomContainer, atom)) {
-        	int connectedAtoms = atomContainer.getConnectedAtomsCount(atom) +
+            if (isAcceptable(atom, context, type)) return type;
+        } else if (hasOneOrMoreSingleOrDoubleBonds(context, atom)) {
+        	int connectedAtoms = context.getConnectedAtomsCount(atom) +
         		(atom.getImplicitHydrogenCount() == CDKConstants.UNSET
         		    ? 0
         			: atom.getImplicitHydrogenCount());
         	if (connectedAtoms == 3) {
             	IAtomType type = getAtomType("N.planar3");
-            	if (isAcceptable(atom, atomContainer, type)) return type;
+            	if (isAcceptable(atom, context, type)) return type;
         	}
         	IAtomType type = getAtomType("N.sp2");
-        	if (isAcceptable(atom, atomContainer, type)) return type;
+        	if (isAcceptable(atom, context, type)) return type;
         } else { // OK, use bond order info
-            IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+            IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
             if (maxBondOrder == CDKConstants.BONDORDER_SINGLE) {
-                if (isAmide(atom, atomContainer)) {
+                if (isAmide(atom, context)) {
                     IAtomType type = getAtomType("N.amide");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
-                } else if (isThioAmide(atom, atomContainer)) {
+                    if (isAcceptable(atom, context, type)) return type;
+                } else if (isThioAmide(atom, context)) {
                     IAtomType type = getAtomType("N.thioamide");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 }
                 
-                List<IBond> bonds = atomContainer.getConnectedBondsList(atom); 
+                List<IBond> bonds = context.getConnectedBondsList(atom); 
                 List<IBond> heavy = heavyBonds(bonds);
                 
                 int expHCount = heavy.size() - bonds.size();
@@ -897,61 +966,61 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
                         int hCount = atom.getImplicitHydrogenCount() != null ? atom.getImplicitHydrogenCount() + expHCount
                                                                              : expHCount;
                         if (hCount == 0) {
-                            if (atomContainer.getMaximumBondOrder(atom) == CDKConstants.BONDORDER_SINGLE &&
-                                    isSingleHeteroAtom(atom, atomContainer)) {
+                            if (context.getMaximumBondOrder(atom) == CDKConstants.BONDORDER_SINGLE &&
+                                    isSingleHeteroAtom(atom, context)) {
                                 IAtomType type = getAtomType("N.planar3");
-                                if (isAcceptable(atom, atomContainer, type)) return type;
+                                if (isAcceptable(atom, context, type)) return type;
                             } else {
                                 IAtomType type = getAtomType("N.sp2");
-                                if (isAcceptable(atom, atomContainer, type)) return type;
+                                if (isAcceptable(atom, context, type)) return type;
                             }
                         } else if (hCount == 1) {
                             IAtomType type = getAtomType("N.planar3");
-                            if (isAcceptable(atom, atomContainer, type))
+                            if (isAcceptable(atom, context, type))
                                 return type;
                         }
-                	} else if (bothNeighborsAreSp2(atom, atomContainer) && isRingAtom(atom, atomContainer)) {
+                	} else if (bothNeighborsAreSp2(atom, context) && isRingAtom(atom, context)) {
                 		// a N.sp3 which is expected to take part in an aromatic system
                 		IAtomType type = getAtomType("N.planar3");
-                		if (isAcceptable(atom, atomContainer, type)) return type;
+                		if (isAcceptable(atom, context, type)) return type;
                 	} else {
                 		IAtomType type = getAtomType("N.sp3");
-                		if (isAcceptable(atom, atomContainer, type)) return type;
+                		if (isAcceptable(atom, context, type)) return type;
                 	}
                 } else if (heavy.size() == 3) {
-                	if (bothNeighborsAreSp2(atom, atomContainer) && isRingAtom(atom, atomContainer)) {
+                	if (bothNeighborsAreSp2(atom, context) && isRingAtom(atom, context)) {
                 		IAtomType type = getAtomType("N.planar3");
-                		if (isAcceptable(atom, atomContainer, type)) return type;
+                		if (isAcceptable(atom, context, type)) return type;
                 	}
                 	IAtomType type = getAtomType("N.sp3");
-                	if (isAcceptable(atom, atomContainer, type)) return type;
+                	if (isAcceptable(atom, context, type)) return type;
                 } else if (heavy.size() == 1) {
                     IAtomType type = getAtomType("N.sp3");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 } else if (heavy.size() == 0) {
                     IAtomType type = getAtomType("N.sp3");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 }
             } else if (maxBondOrder == CDKConstants.BONDORDER_DOUBLE) {
-                if (atomContainer.getConnectedAtomsCount(atom) == 3 &&
-                        countAttachedDoubleBonds(atomContainer, atom, "O") == 2) {
+                if (context.getConnectedAtomsCount(atom) == 3 &&
+                        countAttachedDoubleBonds(context, atom, "O") == 2) {
                     IAtomType type = getAtomType("N.nitro");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
-                } else if (atomContainer.getConnectedAtomsCount(atom) == 3 &&
-                        countAttachedDoubleBonds(atomContainer, atom) > 0) {
+                    if (isAcceptable(atom, context, type)) return type;
+                } else if (context.getConnectedAtomsCount(atom) == 3 &&
+                        countAttachedDoubleBonds(context, atom) > 0) {
                     IAtomType type = getAtomType("N.sp2.3");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 }
                 IAtomType type = getAtomType("N.sp2");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (maxBondOrder == CDKConstants.BONDORDER_TRIPLE) {
-                int neighborCount = atomContainer.getConnectedAtomsCount(atom);
+                int neighborCount = context.getConnectedAtomsCount(atom);
                 if (neighborCount > 1) {
                     IAtomType type = getAtomType("N.sp1.2");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 } else {
                     IAtomType type = getAtomType("N.sp1");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 }
             }
         }
@@ -963,18 +1032,18 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
      * hetroatoms. Currently used in N.planar3 perception of (e.g. pyrrole).
      *
      * @param atom an atom to test
-     * @param container container of the atom
+     * @param context connections of the container of the atom
      *
      * @return whether the atom's only bonds are to hetroatoms
-     * @see #perceiveNitrogens(org.openscience.cdk.interfaces.IAtomContainer, org.openscience.cdk.interfaces.IAtom)
+     * @see #perceiveNitrogens(AtomTypingContext, org.openscience.cdk.interfaces.IAtom)
      */
-    private boolean isSingleHeteroAtom(IAtom atom, IAtomContainer container) {
+    private boolean isSingleHeteroAtom(IAtom atom, AtomTypingContext context) {
 
-        List<IAtom> connected = container.getConnectedAtomsList(atom);
+        List<IAtom> connected = context.getConnectedAtomsList(atom);
 
         for (IAtom atom1 : connected) {
 
-            boolean aromatic = container.getBond(atom, atom1).getFlag(CDKConstants.ISAROMATIC);
+            boolean aromatic = context.getBond(atom, atom1).getFlag(CDKConstants.ISAROMATIC);
 
             // ignoring non-aromatic bonds
             if(!aromatic)
@@ -985,10 +1054,10 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
                 return false;
 
             // check the second sphere
-            for (IAtom atom2 : container.getConnectedAtomsList(atom1)) {
+            for (IAtom atom2 : context.getConnectedAtomsList(atom1)) {
 
                 if (atom2 != atom
-                   && container.getBond(atom1, atom2).getFlag(CDKConstants.ISAROMATIC)
+                   && context.getBond(atom1, atom2).getFlag(CDKConstants.ISAROMATIC)
                    && !"C".equals(atom2.getSymbol())) {
                         return false;
                 }
@@ -1001,34 +1070,33 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
 
     }
 
-    private boolean isRingAtom(IAtom atom, IAtomContainer atomContainer) {
-    	RingSearch searcher = new RingSearch(atomContainer);
-        return searcher.cyclic(atom);
+    private boolean isRingAtom(IAtom atom, AtomTypingContext context) {
+        return context.isRingAtom(atom);
     }
 
-    private boolean isAmide(IAtom atom, IAtomContainer atomContainer) {
-    	List<IAtom> neighbors = atomContainer.getConnectedAtomsList(atom);
+    private boolean isAmide(IAtom atom, AtomTypingContext context) {
+    	List<IAtom> neighbors = context.getConnectedAtomsList(atom);
     	for (IAtom neighbor : neighbors) {
     		if (neighbor.getSymbol().equals("C")) {
-    			if (countAttachedDoubleBonds(atomContainer, neighbor, "O") == 1) return true;
+    			if (countAttachedDoubleBonds(context, neighbor, "O") == 1) return true;
     		}
     	}
     	return false;
     }
 
-    private boolean isThioAmide(IAtom atom, IAtomContainer atomContainer) {
-        List<IAtom> neighbors = atomContainer.getConnectedAtomsList(atom);
+    private boolean isThioAmide(IAtom atom, AtomTypingContext context) {
+        List<IAtom> neighbors = context.getConnectedAtomsList(atom);
         for (IAtom neighbor : neighbors) {
             if (neighbor.getSymbol().equals("C")) {
-                if (countAttachedDoubleBonds(atomContainer, neighbor, "S") == 1) return true;
+                if (countAttachedDoubleBonds(context, neighbor, "S") == 1) return true;
             }
         }
         return false;
     }
 
-    private int countExplicitHydrogens(IAtom atom, IAtomContainer atomContainer) {
+    private int countExplicitHydrogens(IAtom atom, AtomTypingContext context) {
     	int count = 0;
-        for (IAtom aAtom : atomContainer.getConnectedAtomsList(atom)) {
+        for (IAtom aAtom : context.getConnectedAtomsList(atom)) {
             if (aAtom.getSymbol().equals("H")) {
                 count++;
             }
@@ -1052,85 +1120,85 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     	return heavy;
     }
     
-    private IAtomType perceiveIron(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveIron(AtomTypingContext context, IAtom atom) throws CDKException {
         if ("Fe".equals(atom.getSymbol())) {
-            if (hasOneSingleElectron(atomContainer, atom)) {
+            if (hasOneSingleElectron(context, atom)) {
                 // no idea how to deal with this yet
                 return null;
             } else if ((atom.getFormalCharge() != null
                     && atom.getFormalCharge() == 0)) {
                 IAtomType type = getAtomType("Fe.metallic");
-                if (isAcceptable(atom, atomContainer, type)) {
+                if (isAcceptable(atom, context, type)) {
                     return type;
                 }
-                int neighbors = atomContainer.getConnectedAtomsCount(atom);
+                int neighbors = context.getConnectedAtomsCount(atom);
                 if (neighbors == 2) {
                     IAtomType type5 = getAtomType("Fe.2");
-                    if (isAcceptable(atom, atomContainer, type5)) {
+                    if (isAcceptable(atom, context, type5)) {
                         return type5;
                     }
                 } else if (neighbors == 3) {
                     IAtomType type6 = getAtomType("Fe.3");
-                    if (isAcceptable(atom, atomContainer, type6)) {
+                    if (isAcceptable(atom, context, type6)) {
                         return type6;
                     }
                 } else if (neighbors == 4) {
                     IAtomType type7 = getAtomType("Fe.4");
-                    if (isAcceptable(atom, atomContainer, type7)) {
+                    if (isAcceptable(atom, context, type7)) {
                         return type7;
                     }
                 } else if (neighbors == 5) {
                     IAtomType type8 = getAtomType("Fe.5");
-                    if (isAcceptable(atom, atomContainer, type8)) {
+                    if (isAcceptable(atom, context, type8)) {
                         return type8;
                     }
                 } else if (neighbors == 6) {
                     IAtomType type9 = getAtomType("Fe.6");
-                    if (isAcceptable(atom, atomContainer, type9)) {
+                    if (isAcceptable(atom, context, type9)) {
                         return type9;
                     }
                 }
             } else if ((atom.getFormalCharge() != null
                     && atom.getFormalCharge() == 2)) {
-                int neighbors = atomContainer.getConnectedAtomsCount(atom);
+                int neighbors = context.getConnectedAtomsCount(atom);
                 if (neighbors <= 1) {
                     IAtomType type = getAtomType("Fe.2plus");
-                    if (isAcceptable(atom, atomContainer, type)) {
+                    if (isAcceptable(atom, context, type)) {
                         return type;
                     }
                 }
             } else if ((atom.getFormalCharge() != null
                     && atom.getFormalCharge() == 1)) {
-                int neighbors = atomContainer.getConnectedAtomsCount(atom);
+                int neighbors = context.getConnectedAtomsCount(atom);
 
                 if (neighbors == 2) {
                     IAtomType type0 = getAtomType("Fe.plus");
-                    if (isAcceptable(atom, atomContainer, type0)) {
+                    if (isAcceptable(atom, context, type0)) {
                         return type0;
                     }
                 }
             } else if ((atom.getFormalCharge() != null
                     && atom.getFormalCharge() == 3)) {
                 IAtomType type1 = getAtomType("Fe.3plus");
-                if (isAcceptable(atom, atomContainer, type1)) {
+                if (isAcceptable(atom, context, type1)) {
                     return type1;
                 }
             } else if ((atom.getFormalCharge() != null
                     && atom.getFormalCharge() == -2)) {
                 IAtomType type2 = getAtomType("Fe.2minus");
-                if (isAcceptable(atom, atomContainer, type2)) {
+                if (isAcceptable(atom, context, type2)) {
                     return type2;
                 }
             } else if ((atom.getFormalCharge() != null
                     && atom.getFormalCharge() == -3)) {
                 IAtomType type3 = getAtomType("Fe.3minus");
-                if (isAcceptable(atom, atomContainer, type3)) {
+                if (isAcceptable(atom, context, type3)) {
                     return type3;
                 }
             } else if ((atom.getFormalCharge() != null
                     && atom.getFormalCharge() == -4)) {
                 IAtomType type4 = getAtomType("Fe.4minus");
-                if (isAcceptable(atom, atomContainer, type4)) {
+                if (isAcceptable(atom, context, type4)) {
                     return type4;
                 }
             }
@@ -1139,48 +1207,48 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     }
 
 
-    private IAtomType perceiveMercury(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveMercury(AtomTypingContext context, IAtom atom) throws CDKException {
         if ("Hg".equals(atom.getSymbol())) {
-            if (hasOneSingleElectron(atomContainer, atom)) {
+            if (hasOneSingleElectron(context, atom)) {
                 // no idea how to deal with this yet
                 return null;
             } else if ((atom.getFormalCharge() != null
                     && atom.getFormalCharge() == -1)) {
                 IAtomType type = getAtomType("Hg.minus");
-                if (isAcceptable(atom, atomContainer, type)) {
+                if (isAcceptable(atom, context, type)) {
                     return type;
                 }
             } else if ((atom.getFormalCharge() != null
                     && atom.getFormalCharge() == 2)) {
                 IAtomType type = getAtomType("Hg.2plus");
-                if (isAcceptable(atom, atomContainer, type)) {
+                if (isAcceptable(atom, context, type)) {
                     return type;
                 }
             } else if ((atom.getFormalCharge() != null
                     && atom.getFormalCharge() == +1)) {
-                int neighbors = atomContainer.getConnectedAtomsCount(atom);
+                int neighbors = context.getConnectedAtomsCount(atom);
                 if (neighbors <= 1) {  
                     IAtomType type = getAtomType("Hg.plus");
-                    if (isAcceptable(atom, atomContainer, type)) {
+                    if (isAcceptable(atom, context, type)) {
                         return type;
                     }
                 }
             } else if ((atom.getFormalCharge() != null
                     && atom.getFormalCharge() == 0)) {
-                int neighbors = atomContainer.getConnectedAtomsCount(atom);
+                int neighbors = context.getConnectedAtomsCount(atom);
                 if (neighbors == 2) {
                     IAtomType type = getAtomType("Hg.2");
-                    if (isAcceptable(atom, atomContainer, type)) {
+                    if (isAcceptable(atom, context, type)) {
                         return type;
                     }
                 } else if (neighbors == 1) {
                     IAtomType type = getAtomType("Hg.1");
-                    if (isAcceptable(atom, atomContainer, type)) {
+                    if (isAcceptable(atom, context, type)) {
                         return type;
                     }
                 } else if (neighbors == 0) {
                     IAtomType type = getAtomType("Hg.metallic");
-                    if (isAcceptable(atom, atomContainer, type)) {
+                    if (isAcceptable(atom, context, type)) {
                         return type;
                     }
                 }
@@ -1189,12 +1257,12 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
 
-    private IAtomType perceiveSulphurs(IAtomContainer atomContainer, IAtom atom)
+    private IAtomType perceiveSulphurs(AtomTypingContext context, IAtom atom)
     throws CDKException {
-        List<IBond> neighbors = atomContainer.getConnectedBondsList(atom);
-        IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+        List<IBond> neighbors = context.getConnectedBondsList(atom);
+        IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
         int neighborcount = neighbors.size();
-        if (hasOneSingleElectron(atomContainer, atom)) {
+        if (hasOneSingleElectron(context, atom)) {
             // no idea how to deal with this yet
             return null;
         } else if (atom.getHybridization() != CDKConstants.UNSET &&
@@ -1203,10 +1271,10 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
                    atom.getFormalCharge() == +1) {
             if (neighborcount == 3) {
                 IAtomType type = getAtomType("S.inyl.charged");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else {
                 IAtomType type = getAtomType("S.plus");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if (atom.getFormalCharge() != CDKConstants.UNSET &&
                    atom.getFormalCharge() != 0) {
@@ -1214,97 +1282,97 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
             if (atom.getFormalCharge() == -1 &&
                     neighborcount == 1) {
                 IAtomType type = getAtomType("S.minus");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (atom.getFormalCharge() == +1 &&
                     neighborcount == 2) {
                 IAtomType type = getAtomType("S.plus");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (atom.getFormalCharge() == +1 &&
                     neighborcount == 3) {
                 IAtomType type = getAtomType("S.inyl.charged");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (atom.getFormalCharge() == +2 &&
                     neighborcount == 4) {
                 IAtomType type = getAtomType("S.onyl.charged");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (atom.getFormalCharge() == -2 &&
                     neighborcount == 0) {
                 IAtomType type = getAtomType("S.2minus");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if (neighborcount == 0) {
             if (atom.getFormalCharge() != CDKConstants.UNSET &&
                 atom.getFormalCharge() == 0) {
                 IAtomType type = getAtomType("S.3");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if (neighborcount == 1) {
-            if (atomContainer.getConnectedBondsList(atom).get(0).getOrder() == CDKConstants.BONDORDER_DOUBLE) {
+            if (context.getConnectedBondsList(atom).get(0).getOrder() == CDKConstants.BONDORDER_DOUBLE) {
                 IAtomType type = getAtomType("S.2");
-                if (isAcceptable(atom, atomContainer, type)) return type;
-            } else if (atomContainer.getConnectedBondsList(atom).get(0).getOrder() == CDKConstants.BONDORDER_SINGLE) {
+                if (isAcceptable(atom, context, type)) return type;
+            } else if (context.getConnectedBondsList(atom).get(0).getOrder() == CDKConstants.BONDORDER_SINGLE) {
                 IAtomType type = getAtomType("S.3");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if (neighborcount == 2) {
-            if (isRingAtom(atom, atomContainer) && bothNeighborsAreSp2(atom, atomContainer)) {
-                if (countAttachedDoubleBonds(atomContainer, atom) == 2) {
+            if (isRingAtom(atom, context) && bothNeighborsAreSp2(atom, context)) {
+                if (countAttachedDoubleBonds(context, atom) == 2) {
                     IAtomType type = getAtomType("S.inyl.2");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 } else {
                     IAtomType type = getAtomType("S.planar3");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 }
-            } else if (countAttachedDoubleBonds(atomContainer, atom, "O") == 2) {
+            } else if (countAttachedDoubleBonds(context, atom, "O") == 2) {
                 IAtomType type = getAtomType("S.oxide");
-                if (isAcceptable(atom, atomContainer, type)) return type;
-            } else if (countAttachedDoubleBonds(atomContainer, atom) == 2) {
+                if (isAcceptable(atom, context, type)) return type;
+            } else if (countAttachedDoubleBonds(context, atom) == 2) {
                 IAtomType type = getAtomType("S.inyl.2");
-                if (isAcceptable(atom, atomContainer, type)) return type;
-            } else if (countAttachedDoubleBonds(atomContainer, atom) <= 1) {
+                if (isAcceptable(atom, context, type)) return type;
+            } else if (countAttachedDoubleBonds(context, atom) <= 1) {
                 IAtomType type = getAtomType("S.3");
-                if (isAcceptable(atom, atomContainer, type)) return type;
-            } else if (countAttachedDoubleBonds(atomContainer, atom) == 0
-                    && countAttachedSingleBonds(atomContainer, atom) == 2) {
+                if (isAcceptable(atom, context, type)) return type;
+            } else if (countAttachedDoubleBonds(context, atom) == 0
+                    && countAttachedSingleBonds(context, atom) == 2) {
                 IAtomType type = getAtomType("S.octahedral");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if (neighborcount == 3) {
-            int doubleBondedAtoms = countAttachedDoubleBonds(atomContainer, atom);
+            int doubleBondedAtoms = countAttachedDoubleBonds(context, atom);
             if (doubleBondedAtoms == 1) {
                 IAtomType type = getAtomType("S.inyl");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (doubleBondedAtoms == 3) {
                 IAtomType type = getAtomType("S.trioxide");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (doubleBondedAtoms == 0) {
                 IAtomType type = getAtomType("S.anyl");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if (neighborcount == 4) {
             // count the number of double bonded oxygens
-            int doubleBondedOxygens = countAttachedDoubleBonds(atomContainer, atom, "O");
-            int doubleBondedNitrogens = countAttachedDoubleBonds(atomContainer, atom, "N");
-            int doubleBondedSulphurs = countAttachedDoubleBonds(atomContainer, atom, "S");
-            int countAttachedDoubleBonds = countAttachedDoubleBonds(atomContainer, atom);
+            int doubleBondedOxygens = countAttachedDoubleBonds(context, atom, "O");
+            int doubleBondedNitrogens = countAttachedDoubleBonds(context, atom, "N");
+            int doubleBondedSulphurs = countAttachedDoubleBonds(context, atom, "S");
+            int countAttachedDoubleBonds = countAttachedDoubleBonds(context, atom);
 
             if (doubleBondedOxygens + doubleBondedNitrogens == 2) {
                 IAtomType type = getAtomType("S.onyl");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (doubleBondedSulphurs == 1
                     && doubleBondedOxygens == 1) {
                 IAtomType type = getAtomType("S.thionyl");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (maxBondOrder == CDKConstants.BONDORDER_SINGLE) {
                 IAtomType type = getAtomType("S.anyl");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (doubleBondedOxygens == 1) {
                 IAtomType type = getAtomType("S.sp3d1");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (countAttachedDoubleBonds == 2
                     && maxBondOrder == CDKConstants.BONDORDER_DOUBLE) {
                 IAtomType type = getAtomType("S.sp3.4");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
 
         } else if (neighborcount == 5) {
@@ -1312,98 +1380,98 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
             if (maxBondOrder == CDKConstants.BONDORDER_DOUBLE) {
 
                 IAtomType type = getAtomType("S.sp3d1");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (maxBondOrder == CDKConstants.BONDORDER_SINGLE) {
                 IAtomType type = getAtomType("S.octahedral");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if (neighborcount == 6) {
             if (maxBondOrder == CDKConstants.BONDORDER_SINGLE) {
                 IAtomType type = getAtomType("S.octahedral");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         }
         return null;
     }
 
-    private IAtomType perceivePhosphors(IAtomContainer atomContainer, IAtom atom)
+    private IAtomType perceivePhosphors(AtomTypingContext context, IAtom atom)
     throws CDKException {
-        List<IBond> neighbors = atomContainer.getConnectedBondsList(atom);
+        List<IBond> neighbors = context.getConnectedBondsList(atom);
         int neighborcount = neighbors.size();
-        IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
-        if (countSingleElectrons(atomContainer, atom) == 3) {
+        IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
+        if (countSingleElectrons(context, atom) == 3) {
         	IAtomType type = getAtomType("P.se.3");
-            if (isAcceptable(atom, atomContainer, type)) return type;
-        } else if (hasOneSingleElectron(atomContainer, atom)) {
+            if (isAcceptable(atom, context, type)) return type;
+        } else if (hasOneSingleElectron(context, atom)) {
             // no idea how to deal with this yet
             return null;
         } else if (neighborcount == 0) {
             if (atom.getFormalCharge() == null ||
                 atom.getFormalCharge().intValue() == 0) {
                 IAtomType type = getAtomType("P.ine");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if (neighborcount == 1) {
             if (atom.getFormalCharge() == null ||
                 atom.getFormalCharge().intValue() == 0) {
                 IAtomType type = getAtomType("P.ide");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if (neighborcount == 3) {
-        	int doubleBonds = countAttachedDoubleBonds(atomContainer, atom);
+        	int doubleBonds = countAttachedDoubleBonds(context, atom);
             if (atom.getFormalCharge() != null &&
                 atom.getFormalCharge().intValue() == 1) {
                 IAtomType type = getAtomType("P.anium");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (doubleBonds == 1) {
             	IAtomType type = getAtomType("P.ate");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else {
                 IAtomType type = getAtomType("P.ine");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if (neighborcount == 2) {
             if (maxBondOrder == CDKConstants.BONDORDER_DOUBLE) {
                 if (atom.getFormalCharge() != null &&
                     atom.getFormalCharge().intValue() == 1) {
                     IAtomType type = getAtomType("P.sp1.plus");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 } else {
                     IAtomType type = getAtomType("P.irane");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 }
             } else if (maxBondOrder == CDKConstants.BONDORDER_SINGLE) {
                 IAtomType type = getAtomType("P.ine");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if (neighborcount == 4) {
             // count the number of double bonded oxygens
-            int doubleBonds = countAttachedDoubleBonds(atomContainer, atom);
+            int doubleBonds = countAttachedDoubleBonds(context, atom);
             if (atom.getFormalCharge() == 1 && doubleBonds == 0) {
                 IAtomType type = getAtomType("P.ate.charged");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (doubleBonds == 1){
                 IAtomType type = getAtomType("P.ate");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if (neighborcount == 5) {
             if (atom.getFormalCharge() == null ||
                 atom.getFormalCharge().intValue() == 0) {
                 IAtomType type = getAtomType("P.ane");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         }
     	return null;
     }
     
-    private IAtomType perceiveHydrogens(IAtomContainer atomContainer, IAtom atom)
+    private IAtomType perceiveHydrogens(AtomTypingContext context, IAtom atom)
     throws CDKException {
-        int neighborcount = atomContainer.getConnectedBondsCount(atom);
-        if (hasOneSingleElectron(atomContainer, atom)) {
+        int neighborcount = context.getConnectedBondsCount(atom);
+        if (hasOneSingleElectron(context, atom)) {
             if ((atom.getFormalCharge() == CDKConstants.UNSET || atom.getFormalCharge() == 0) &&
                     neighborcount == 0) {
                 IAtomType type = getAtomType("H.radical");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
             return null;
         } else if (neighborcount == 2) {
@@ -1412,66 +1480,66 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         } else if (neighborcount == 1) {
             if (atom.getFormalCharge() == CDKConstants.UNSET || atom.getFormalCharge() == 0) {
                 IAtomType type = getAtomType("H");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if (neighborcount == 0) {
             if (atom.getFormalCharge() == CDKConstants.UNSET || atom.getFormalCharge() == 0) {
                 IAtomType type = getAtomType("H");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (atom.getFormalCharge() == 1){
                 IAtomType type = getAtomType("H.plus");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (atom.getFormalCharge() == -1){
                 IAtomType type = getAtomType("H.minus");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         }
     	return null;
     }
 
-    private IAtomType perceiveLithium(IAtomContainer atomContainer, IAtom atom)
+    private IAtomType perceiveLithium(AtomTypingContext context, IAtom atom)
     	throws CDKException {
-        int neighborcount = atomContainer.getConnectedBondsCount(atom);
+        int neighborcount = context.getConnectedBondsCount(atom);
         if (neighborcount == 1) {
             if (atom.getFormalCharge() == CDKConstants.UNSET ||
                     atom.getFormalCharge() == 0) {
                 IAtomType type = getAtomType("Li");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if (neighborcount == 0) {
             if (atom.getFormalCharge() == CDKConstants.UNSET
                     || atom.getFormalCharge() == 0) {
                 IAtomType type = getAtomType("Li.neutral");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
             if (atom.getFormalCharge() == CDKConstants.UNSET
                     || atom.getFormalCharge() == +1) {
                 IAtomType type = getAtomType("Li.plus");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         }
     	return null;
     }
 
-    private IAtomType perceiveHalogens(IAtomContainer atomContainer, IAtom atom)
+    private IAtomType perceiveHalogens(AtomTypingContext context, IAtom atom)
     throws CDKException {
     	if ("F".equals(atom.getSymbol())) {
-    		if (hasOneSingleElectron(atomContainer, atom)) {
-				if (atomContainer.getConnectedBondsCount(atom) == 0) {
+    		if (hasOneSingleElectron(context, atom)) {
+				if (context.getConnectedBondsCount(atom) == 0) {
 					if (atom.getFormalCharge() != CDKConstants.UNSET &&
 						atom.getFormalCharge() == +1) {
 						IAtomType type = getAtomType("F.plus.radical");
-						if (isAcceptable(atom, atomContainer, type)) return type;
+						if (isAcceptable(atom, context, type)) return type;
 					} else if (atom.getFormalCharge() == CDKConstants.UNSET ||
 							   atom.getFormalCharge() == 0) {
 						IAtomType type = getAtomType("F.radical");
-						if (isAcceptable(atom, atomContainer, type)) return type;
+						if (isAcceptable(atom, context, type)) return type;
 					}
-				} else if (atomContainer.getConnectedBondsCount(atom) <= 1) {
-					IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+				} else if (context.getConnectedBondsCount(atom) <= 1) {
+					IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
 					if (maxBondOrder == IBond.Order.SINGLE) {
 						IAtomType type = getAtomType("F.plus.radical");
-						if (isAcceptable(atom, atomContainer, type)) return type;
+						if (isAcceptable(atom, context, type)) return type;
 					}
 				}
 				return null;
@@ -1479,80 +1547,80 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     				atom.getFormalCharge() != 0) {
     			if (atom.getFormalCharge() == -1) {
     				IAtomType type = getAtomType("F.minus");
-    				if (isAcceptable(atom, atomContainer, type)) return type;
+    				if (isAcceptable(atom, context, type)) return type;
     			} else if (atom.getFormalCharge() == 1) {
-    				IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+    				IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
     				if (maxBondOrder == IBond.Order.DOUBLE) {
     					IAtomType type = getAtomType("F.plus.sp2");
-    					if (isAcceptable(atom, atomContainer, type)) return type;
+    					if (isAcceptable(atom, context, type)) return type;
     				}else if (maxBondOrder == IBond.Order.SINGLE){
     					IAtomType type = getAtomType("F.plus.sp3");
-    					if (isAcceptable(atom, atomContainer, type)) return type;
+    					if (isAcceptable(atom, context, type)) return type;
     				}
     			}
-    		} else if (atomContainer.getConnectedBondsCount(atom) == 1 ||
-    				atomContainer.getConnectedBondsCount(atom) == 0) {
+    		} else if (context.getConnectedBondsCount(atom) == 1 ||
+    				context.getConnectedBondsCount(atom) == 0) {
     			IAtomType type = getAtomType("F");
-    			if (isAcceptable(atom, atomContainer, type)) return type;
+    			if (isAcceptable(atom, context, type)) return type;
     		}
     	} else if ("I".equals(atom.getSymbol())) {
-    	    return perceiveIodine(atomContainer, atom);
+    	    return perceiveIodine(context, atom);
     	}
     		
     	return null;
     }
-    private IAtomType perceiveArsenic(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (hasOneSingleElectron(atomContainer, atom)) {
+    private IAtomType perceiveArsenic(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (hasOneSingleElectron(context, atom)) {
             // no idea how to deal with this yet
             return null;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == +1
-                && atomContainer.getConnectedBondsCount(atom) <= 4)) {
+                && context.getConnectedBondsCount(atom) <= 4)) {
             IAtomType type = getAtomType("As.plus");
-            if (isAcceptable(atom, atomContainer, type)) {
+            if (isAcceptable(atom, context, type)) {
                 return type;
             }
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0)) {
-            int neighbors = atomContainer.getConnectedAtomsCount(atom);
+            int neighbors = context.getConnectedAtomsCount(atom);
             if (neighbors == 4) {
                 IAtomType type = getAtomType("As.5");
-                if (isAcceptable(atom, atomContainer, type)) {
+                if (isAcceptable(atom, context, type)) {
                     return type;
                 }
             }
             if (neighbors == 2) {
                 IAtomType type = getAtomType("As.2");
-                if (isAcceptable(atom, atomContainer, type)) {
+                if (isAcceptable(atom, context, type)) {
                     return type;
                 }
             }
             IAtomType type = getAtomType("As");
-            if (isAcceptable(atom, atomContainer, type)) {
+            if (isAcceptable(atom, context, type)) {
                 return type;
             }
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == +3)) {
             IAtomType type = getAtomType("As.3plus");
-            if (isAcceptable(atom, atomContainer, type)) {
+            if (isAcceptable(atom, context, type)) {
                 return type;
             }
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == -1)) {
             IAtomType type = getAtomType("As.minus");
-            if (isAcceptable(atom, atomContainer, type)) {
+            if (isAcceptable(atom, context, type)) {
                 return type;
             }
         }
         return null;
     }   
      
-    private IAtomType perceiveThorium(IAtomContainer atomContainer, IAtom atom)
+    private IAtomType perceiveThorium(AtomTypingContext context, IAtom atom)
             throws CDKException {
         if ("Th".equals(atom.getSymbol())) {
-            if (atom.getFormalCharge() == 0 && atomContainer.getConnectedBondsCount(atom) == 0) {
+            if (atom.getFormalCharge() == 0 && context.getConnectedBondsCount(atom) == 0) {
                 IAtomType type = getAtomType("Th");
-                if (isAcceptable(atom, atomContainer, type)) {
+                if (isAcceptable(atom, context, type)) {
                     return type;
                 }
             }
@@ -1560,688 +1628,688 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
 
-    private IAtomType perceiveRubidium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (hasOneSingleElectron(atomContainer, atom)) {
+    private IAtomType perceiveRubidium(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (hasOneSingleElectron(context, atom)) {
             return null;
         } else if (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == +1) {
             IAtomType type = getAtomType("Rb.plus");
-            if (isAcceptable(atom, atomContainer, type)) {
+            if (isAcceptable(atom, context, type)) {
                 return type;
             }
         } else if (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0) {
             IAtomType type = getAtomType("Rb.neutral");
-            if (isAcceptable(atom, atomContainer, type)) {
+            if (isAcceptable(atom, context, type)) {
                 return type;
             }
         }
         return null;
     }
-    private IAtomType perceiveCommonSalts(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveCommonSalts(AtomTypingContext context, IAtom atom) throws CDKException {
         if ("Mg".equals(atom.getSymbol())) {
-    		if (hasOneSingleElectron(atomContainer, atom)) {
+    		if (hasOneSingleElectron(context, atom)) {
     			// no idea how to deal with this yet
     			return null;
     		} else if ((atom.getFormalCharge() != CDKConstants.UNSET &&
     				atom.getFormalCharge() == +2)) {
     			IAtomType type = getAtomType("Mg.2plus");
-    			if (isAcceptable(atom, atomContainer, type)) return type;
+    			if (isAcceptable(atom, context, type)) return type;
     		}
     	} else if ("Co".equals(atom.getSymbol())) {
-    		if (hasOneSingleElectron(atomContainer, atom)) {
+    		if (hasOneSingleElectron(context, atom)) {
     			// no idea how to deal with this yet
     			return null;
     		} else if ((atom.getFormalCharge() != CDKConstants.UNSET &&
     				atom.getFormalCharge() == +2)) {
     			IAtomType type = getAtomType("Co.2plus");
-    			if (isAcceptable(atom, atomContainer, type)) return type;
+    			if (isAcceptable(atom, context, type)) return type;
     		} else if ((atom.getFormalCharge() != CDKConstants.UNSET &&
     				atom.getFormalCharge() == +3)) {
     			IAtomType type = getAtomType("Co.3plus");
-    			if (isAcceptable(atom, atomContainer, type)) return type;
+    			if (isAcceptable(atom, context, type)) return type;
             } else if ((atom.getFormalCharge() == CDKConstants.UNSET ||
                     atom.getFormalCharge() == 0)) {
                 IAtomType type = getAtomType("Co.metallic");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
     		}
         } else if ("W".equals(atom.getSymbol())) {
-            if (hasOneSingleElectron(atomContainer, atom)) {
+            if (hasOneSingleElectron(context, atom)) {
                 // no idea how to deal with this yet
                 return null;
             } else if ((atom.getFormalCharge() == CDKConstants.UNSET ||
                     atom.getFormalCharge() == 0)) {
                 IAtomType type = getAtomType("W.metallic");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
     	}
     	return null;
     }
-    private IAtomType perceiveCopper(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (hasOneSingleElectron(atomContainer, atom)) {
+    private IAtomType perceiveCopper(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (hasOneSingleElectron(context, atom)) {
             // no idea how to deal with this yet
             return null;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == +2)) {
             IAtomType type = getAtomType("Cu.2plus");
-            if (isAcceptable(atom, atomContainer, type)) {
+            if (isAcceptable(atom, context, type)) {
                 return type;
             }
         } else if (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0) {
-            int neighbors = atomContainer.getConnectedAtomsCount(atom);
+            int neighbors = context.getConnectedAtomsCount(atom);
             if (neighbors == 1) {
                 IAtomType type = getAtomType("Cu.1");
-                if (isAcceptable(atom, atomContainer, type)) {
+                if (isAcceptable(atom, context, type)) {
                     return type;
                 }
             } else {
                 IAtomType type01 = getAtomType("Cu.metallic");
-                if (isAcceptable(atom, atomContainer, type01)) {
+                if (isAcceptable(atom, context, type01)) {
                     return type01;
                 }
             }
         } else if (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == +1) {
             IAtomType type02 = getAtomType("Cu.plus");
-            if (isAcceptable(atom, atomContainer, type02)) {
+            if (isAcceptable(atom, context, type02)) {
                 return type02;
             }
         }
         return null;
     }
-    private IAtomType perceiveBarium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (hasOneSingleElectron(atomContainer, atom)) {
+    private IAtomType perceiveBarium(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (hasOneSingleElectron(context, atom)) {
             return null;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 2)) {
             IAtomType type = getAtomType("Ba.2plus");
-            if (isAcceptable(atom, atomContainer, type)) {
+            if (isAcceptable(atom, context, type)) {
                 return type;
             }
         }
         return null;
     }
-    private IAtomType perceiveAluminium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveAluminium(AtomTypingContext context, IAtom atom) throws CDKException {
         if (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 3) {
-            int connectedBondsCount = atomContainer.getConnectedBondsCount(atom);
+            int connectedBondsCount = context.getConnectedBondsCount(atom);
             if (connectedBondsCount == 0) {
                 IAtomType type = getAtomType("Al.3plus");
-                if (isAcceptable(atom, atomContainer, type)) {
+                if (isAcceptable(atom, context, type)) {
                     return type;
                 }
             }
         } else if (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0
-                && atomContainer.getConnectedBondsCount(atom) == 3) {
+                && context.getConnectedBondsCount(atom) == 3) {
             IAtomType type = getAtomType("Al");
-            if (isAcceptable(atom, atomContainer, type)) {
+            if (isAcceptable(atom, context, type)) {
                 return type;
             }
         } else if (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == -3
-                && atomContainer.getConnectedBondsCount(atom) == 6) {
+                && context.getConnectedBondsCount(atom) == 6) {
             IAtomType type = getAtomType("Al.3minus");
-            if (isAcceptable(atom, atomContainer, type)) {
+            if (isAcceptable(atom, context, type)) {
                 return type;
             }
         }
         return null;
     }
-    private IAtomType perceiveZinc(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (hasOneSingleElectron(atomContainer, atom)) {
+    private IAtomType perceiveZinc(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (hasOneSingleElectron(context, atom)) {
             // no idea how to deal with this yet
             return null;
-        } else if (atomContainer.getConnectedBondsCount(atom) == 0
+        } else if (context.getConnectedBondsCount(atom) == 0
                 && (atom.getFormalCharge() != null
                 && atom.getFormalCharge() == 0)) {
             IAtomType type = getAtomType("Zn.metallic");
-            if (isAcceptable(atom, atomContainer, type)) return type;
-        } else if (atomContainer.getConnectedBondsCount(atom) == 0
+            if (isAcceptable(atom, context, type)) return type;
+        } else if (context.getConnectedBondsCount(atom) == 0
                 && (atom.getFormalCharge() != null
                 && atom.getFormalCharge() == 2)) {
             IAtomType type = getAtomType("Zn.2plus");
-            if (isAcceptable(atom, atomContainer, type)) return type;
-        } else if (atomContainer.getConnectedBondsCount(atom) == 1
+            if (isAcceptable(atom, context, type)) return type;
+        } else if (context.getConnectedBondsCount(atom) == 1
                 && (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0)) {
             IAtomType type = getAtomType("Zn.1");
-            if (isAcceptable(atom, atomContainer, type)) return type;
-        } else if (atomContainer.getConnectedBondsCount(atom) == 2
+            if (isAcceptable(atom, context, type)) return type;
+        } else if (context.getConnectedBondsCount(atom) == 2
                 && (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0)) {
             IAtomType type = getAtomType("Zn");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
         return null;
     }
-    private IAtomType perceiveChromium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveChromium(AtomTypingContext context, IAtom atom) throws CDKException {
         if (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0
-                && atomContainer.getConnectedBondsCount(atom) == 6) {
+                && context.getConnectedBondsCount(atom) == 6) {
             IAtomType type = getAtomType("Cr");
-            if (isAcceptable(atom, atomContainer, type)) {
+            if (isAcceptable(atom, context, type)) {
                 return type;
             }
         } else if (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0
-                && atomContainer.getConnectedBondsCount(atom) == 4) {
+                && context.getConnectedBondsCount(atom) == 4) {
             IAtomType type = getAtomType("Cr.4");
-            if (isAcceptable(atom, atomContainer, type)) {
+            if (isAcceptable(atom, context, type)) {
                 return type;
             }
         } else if (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 6
-                && atomContainer.getConnectedBondsCount(atom) == 0) {
+                && context.getConnectedBondsCount(atom) == 0) {
             IAtomType type = getAtomType("Cr.6plus");
-            if (isAcceptable(atom, atomContainer, type)) {
+            if (isAcceptable(atom, context, type)) {
                 return type;
             }
         } else if (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0
-                && atomContainer.getConnectedBondsCount(atom) == 0) {
+                && context.getConnectedBondsCount(atom) == 0) {
             IAtomType type = getAtomType("Cr.neutral");
-            if (isAcceptable(atom, atomContainer, type)) {
+            if (isAcceptable(atom, context, type)) {
                 return type;
             }
         } else if ("Cr".equals(atom.getSymbol())) {
             if (atom.getFormalCharge() != CDKConstants.UNSET
                     && atom.getFormalCharge() == 3
-                    && atomContainer.getConnectedBondsCount(atom) == 0) {
+                    && context.getConnectedBondsCount(atom) == 0) {
                 IAtomType type = getAtomType("Cr.3plus");
-                if (isAcceptable(atom, atomContainer, type)) {
+                if (isAcceptable(atom, context, type)) {
                     return type;
                 }
             }
         }
         return null;
     }
-    private IAtomType perceiveOrganometallicCenters(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveOrganometallicCenters(AtomTypingContext context, IAtom atom) throws CDKException {
     	if ("Po".equals(atom.getSymbol())) {
-    		if (hasOneSingleElectron(atomContainer, atom)) {
+    		if (hasOneSingleElectron(context, atom)) {
     			// no idea how to deal with this yet
     			return null;
-    		} else if (atomContainer.getConnectedBondsCount(atom) == 2) {
+    		} else if (context.getConnectedBondsCount(atom) == 2) {
     			IAtomType type = getAtomType("Po");
-    			if (isAcceptable(atom, atomContainer, type)) return type;
+    			if (isAcceptable(atom, context, type)) return type;
     		}
     	}  else if ("Sn".equals(atom.getSymbol())) {
-    		if (hasOneSingleElectron(atomContainer, atom)) {
+    		if (hasOneSingleElectron(context, atom)) {
     			// no idea how to deal with this yet
     			return null;
     		} else if ((atom.getFormalCharge() != CDKConstants.UNSET &&
     				atom.getFormalCharge() == 0 &&
-    				atomContainer.getConnectedBondsCount(atom) <= 4)) {
+    				context.getConnectedBondsCount(atom) <= 4)) {
     			IAtomType type = getAtomType("Sn.sp3");
-    			if (isAcceptable(atom, atomContainer, type)) return type;
+    			if (isAcceptable(atom, context, type)) return type;
     		}
     	} else if ("Sc".equals(atom.getSymbol())) {
     		if (atom.getFormalCharge() != CDKConstants.UNSET &&
     			atom.getFormalCharge() == -3 &&
-    			atomContainer.getConnectedBondsCount(atom) == 6) {
+    			context.getConnectedBondsCount(atom) == 6) {
     			IAtomType type = getAtomType("Sc.3minus");
-    			if (isAcceptable(atom, atomContainer, type)) return type;
+    			if (isAcceptable(atom, context, type)) return type;
     		}
     	} 
     	return null;
     }
-    private IAtomType perceiveNickel(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (hasOneSingleElectron(atomContainer, atom)) {
+    private IAtomType perceiveNickel(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (hasOneSingleElectron(context, atom)) {
             // no idea how to deal with this yet
             return null;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == +2)) {
             IAtomType type = getAtomType("Ni.2plus");
-            if (isAcceptable(atom, atomContainer, type)) {
+            if (isAcceptable(atom, context, type)) {
                 return type;
             }
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0)
-                && atomContainer.getConnectedAtomsCount(atom) == 2) {
+                && context.getConnectedAtomsCount(atom) == 2) {
             IAtomType type = getAtomType("Ni");
-            if (isAcceptable(atom, atomContainer, type)) {
+            if (isAcceptable(atom, context, type)) {
                 return type;
             }
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0)
-                && atomContainer.getConnectedAtomsCount(atom) == 0) {
+                && context.getConnectedAtomsCount(atom) == 0) {
             IAtomType type = getAtomType("Ni.metallic");
-            if (isAcceptable(atom, atomContainer, type)) {
+            if (isAcceptable(atom, context, type)) {
                 return type;
             }
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 1)
-                && atomContainer.getConnectedAtomsCount(atom) == 1) {
+                && context.getConnectedAtomsCount(atom) == 1) {
             IAtomType type = getAtomType("Ni.plus");
-            if (isAcceptable(atom, atomContainer, type)) {
+            if (isAcceptable(atom, context, type)) {
                 return type;
             }
         }
         return null;
     }
-    private IAtomType perceiveNobelGases(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveNobelGases(AtomTypingContext context, IAtom atom) throws CDKException {
     	if ("He".equals(atom.getSymbol())) {
-    		if (hasOneSingleElectron(atomContainer, atom)) {
+    		if (hasOneSingleElectron(context, atom)) {
     			// no idea how to deal with this yet
     			return null;
     		} else if ((atom.getFormalCharge() == CDKConstants.UNSET ||
     				atom.getFormalCharge() == 0)) {
     			IAtomType type = getAtomType("He");
-    			if (isAcceptable(atom, atomContainer, type)) return type;
+    			if (isAcceptable(atom, context, type)) return type;
     		}
     	} else if ("Ne".equals(atom.getSymbol())) {
-    		if (hasOneSingleElectron(atomContainer, atom)) {
+    		if (hasOneSingleElectron(context, atom)) {
     			// no idea how to deal with this yet
     			return null;
     		} else if ((atom.getFormalCharge() == CDKConstants.UNSET ||
     				atom.getFormalCharge() == 0)) {
     			IAtomType type = getAtomType("Ne");
-    			if (isAcceptable(atom, atomContainer, type)) return type;
+    			if (isAcceptable(atom, context, type)) return type;
     		}
     	} else if ("Ar".equals(atom.getSymbol())) {
-    		if (hasOneSingleElectron(atomContainer, atom)) {
+    		if (hasOneSingleElectron(context, atom)) {
     			// no idea how to deal with this yet
     			return null;
     		} else if ((atom.getFormalCharge() == CDKConstants.UNSET ||
     				atom.getFormalCharge() == 0)) {
     			IAtomType type = getAtomType("Ar");
-    			if (isAcceptable(atom, atomContainer, type)) return type;
+    			if (isAcceptable(atom, context, type)) return type;
     		}
     	} else if ("Kr".equals(atom.getSymbol())) {
-    		if (hasOneSingleElectron(atomContainer, atom)) {
+    		if (hasOneSingleElectron(context, atom)) {
     			// no idea how to deal with this yet
     			return null;
     		} else if ((atom.getFormalCharge() == CDKConstants.UNSET ||
     				atom.getFormalCharge() == 0)) {
     			IAtomType type = getAtomType("Kr");
-    			if (isAcceptable(atom, atomContainer, type)) return type;
+    			if (isAcceptable(atom, context, type)) return type;
     		}
     	} else if ("Xe".equals(atom.getSymbol())) {
-    		if (hasOneSingleElectron(atomContainer, atom)) {
+    		if (hasOneSingleElectron(context, atom)) {
     			// no idea how to deal with this yet
     			return null;
     		} else if ((atom.getFormalCharge() == CDKConstants.UNSET ||
     				atom.getFormalCharge() == 0)) {
-            if (atomContainer.getConnectedBondsCount(atom) == 0) {
+            if (context.getConnectedBondsCount(atom) == 0) {
                 IAtomType type = getAtomType("Xe");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else {
                 IAtomType type = getAtomType("Xe.3");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
     		}
     	} else if ("Rn".equals(atom.getSymbol())) {
-    		if (hasOneSingleElectron(atomContainer, atom)) {
+    		if (hasOneSingleElectron(context, atom)) {
     			// no idea how to deal with this yet
     			return null;
     		} else if ((atom.getFormalCharge() == CDKConstants.UNSET ||
     				atom.getFormalCharge() == 0)) {
     			IAtomType type = getAtomType("Rn");
-    			if (isAcceptable(atom, atomContainer, type)) return type;
+    			if (isAcceptable(atom, context, type)) return type;
     		}
     	}
     	return null;
     }
 
-    private IAtomType perceiveSilicon(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (hasOneSingleElectron(atomContainer, atom)) {
+    private IAtomType perceiveSilicon(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (hasOneSingleElectron(context, atom)) {
             // no idea how to deal with this yet
             return null;
         } else if (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0) {
-            if (atomContainer.getConnectedBondsCount(atom) == 2) {
+            if (context.getConnectedBondsCount(atom) == 2) {
                 IAtomType type = getAtomType("Si.2");
-                if (isAcceptable(atom, atomContainer, type)) return type;
-            } else if (atomContainer.getConnectedBondsCount(atom) == 3) {
+                if (isAcceptable(atom, context, type)) return type;
+            } else if (context.getConnectedBondsCount(atom) == 3) {
                 IAtomType type = getAtomType("Si.3");
-                if (isAcceptable(atom, atomContainer, type)) return type;
-            } else if (atomContainer.getConnectedBondsCount(atom) == 4) {
+                if (isAcceptable(atom, context, type)) return type;
+            } else if (context.getConnectedBondsCount(atom) == 4) {
                 IAtomType type = getAtomType("Si.sp3");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == -2) {
             IAtomType type = getAtomType("Si.2minus.6");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
         return null;
     }
     
-    private IAtomType perceiveManganese(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (hasOneSingleElectron(atomContainer, atom)) {
+    private IAtomType perceiveManganese(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (hasOneSingleElectron(context, atom)) {
             // no idea how to deal with this yet
             return null;
         } else if ((atom.getFormalCharge() != null
                 && atom.getFormalCharge() == 0)) {
-            int neighbors = atomContainer.getConnectedAtomsCount(atom);
+            int neighbors = context.getConnectedAtomsCount(atom);
             if (neighbors == 2) {
                 IAtomType type02 = getAtomType("Mn.2");
-                if (isAcceptable(atom, atomContainer, type02)) return type02;
+                if (isAcceptable(atom, context, type02)) return type02;
             } else if (neighbors == 0) {
                 IAtomType type03 = getAtomType("Mn.metallic");
-                if (isAcceptable(atom, atomContainer, type03)) return type03;
+                if (isAcceptable(atom, context, type03)) return type03;
             }
         } else if ((atom.getFormalCharge() != null
                 && atom.getFormalCharge() == +2)) {
             IAtomType type = getAtomType("Mn.2plus");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else if ((atom.getFormalCharge() != null
                 && atom.getFormalCharge() == +3)) {
             IAtomType type = getAtomType("Mn.3plus");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
         return null;
     }
     
-    private IAtomType perceiveSodium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (hasOneSingleElectron(atomContainer, atom)) {
+    private IAtomType perceiveSodium(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (hasOneSingleElectron(context, atom)) {
             // no idea how to deal with this yet
             return null;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 1)) {
             IAtomType type = getAtomType("Na.plus");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else if ((atom.getFormalCharge() == CDKConstants.UNSET
                 || atom.getFormalCharge() == 0)
-                && atomContainer.getConnectedAtomsCount(atom) == 1) {
+                && context.getConnectedAtomsCount(atom) == 1) {
             IAtomType type = getAtomType("Na");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0)
-                && atomContainer.getConnectedAtomsCount(atom) == 0) {
+                && context.getConnectedAtomsCount(atom) == 0) {
             IAtomType type = getAtomType("Na.neutral");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } 
         return null;
     }
     
-    private IAtomType perceiveIodine(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (hasOneSingleElectron(atomContainer, atom)) {
-            if (atomContainer.getConnectedBondsCount(atom) == 0) {
+    private IAtomType perceiveIodine(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (hasOneSingleElectron(context, atom)) {
+            if (context.getConnectedBondsCount(atom) == 0) {
                 if (atom.getFormalCharge() != CDKConstants.UNSET &&
                     atom.getFormalCharge() == +1) {
                     IAtomType type = getAtomType("I.plus.radical");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 } else if (atom.getFormalCharge() == CDKConstants.UNSET ||
                            atom.getFormalCharge() == 0) {
                     IAtomType type = getAtomType("I.radical");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 }
-            } else if (atomContainer.getConnectedBondsCount(atom) <= 1) {
-                IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+            } else if (context.getConnectedBondsCount(atom) <= 1) {
+                IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
                 if (maxBondOrder == IBond.Order.SINGLE) {
                     IAtomType type = getAtomType("I.plus.radical");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 }
             }
             return null;
         } else if (atom.getFormalCharge() != CDKConstants.UNSET && 
                atom.getFormalCharge() != 0) {
       if (atom.getFormalCharge() == -1) {
-          if (atomContainer.getConnectedAtomsCount(atom) == 0) {
+          if (context.getConnectedAtomsCount(atom) == 0) {
               IAtomType type = getAtomType("I.minus");
-              if (isAcceptable(atom, atomContainer, type)) return type;
+              if (isAcceptable(atom, context, type)) return type;
           } else {
               IAtomType type = getAtomType("I.minus.5");
-              if (isAcceptable(atom, atomContainer, type)) return type;
+              if (isAcceptable(atom, context, type)) return type;
           }
             } else if (atom.getFormalCharge() == 1) {
-                IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+                IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
                 if (maxBondOrder == IBond.Order.DOUBLE) {
                     IAtomType type = getAtomType("I.plus.sp2");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 } else if (maxBondOrder == IBond.Order.SINGLE){
                     IAtomType type = getAtomType("I.plus.sp3");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 }
             }
-        } else if (atomContainer.getConnectedBondsCount(atom) == 3) {
-            int doubleBondCount = countAttachedDoubleBonds(atomContainer, atom);
+        } else if (context.getConnectedBondsCount(atom) == 3) {
+            int doubleBondCount = countAttachedDoubleBonds(context, atom);
             if (doubleBondCount == 2) {
                 IAtomType type = getAtomType("I.5");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (atom.getFormalCharge() != CDKConstants.UNSET
                     && atom.getFormalCharge() == 0) {
                 IAtomType type = getAtomType("I.sp3d2.3");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
-        } else if (atomContainer.getConnectedBondsCount(atom) == 2) {
-            IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+        } else if (context.getConnectedBondsCount(atom) == 2) {
+            IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
             if (maxBondOrder == IBond.Order.DOUBLE) {
                 IAtomType type = getAtomType("I.3");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
-        } else if (atomContainer.getConnectedBondsCount(atom) == 1 ||
-                atomContainer.getConnectedBondsCount(atom) == 0) {
+        } else if (context.getConnectedBondsCount(atom) == 1 ||
+                context.getConnectedBondsCount(atom) == 0) {
             IAtomType type = getAtomType("I");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
         return null;
     }
     
-    private IAtomType perceiveRuthenium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveRuthenium(AtomTypingContext context, IAtom atom) throws CDKException {
         if (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0) {
             IAtomType type = getAtomType("Ru.6");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else if (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == -2) {
             IAtomType type = getAtomType("Ru.2minus.6");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else if (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == -3) {
             IAtomType type = getAtomType("Ru.3minus.6");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
         return null;
     }
     
-    private IAtomType perceivePotassium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (hasOneSingleElectron(atomContainer, atom)) {
+    private IAtomType perceivePotassium(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (hasOneSingleElectron(context, atom)) {
             // no idea how to deal with this yet
             return null;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET &&
                 atom.getFormalCharge() == +1)) {
             IAtomType type = getAtomType("K.plus");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else if (atom.getFormalCharge() == CDKConstants.UNSET
                 || atom.getFormalCharge() == 0) {
-            int neighbors = atomContainer.getConnectedAtomsCount(atom);
+            int neighbors = context.getConnectedAtomsCount(atom);
             if (neighbors == 1) {
                 IAtomType type = getAtomType("K.neutral");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
             IAtomType type = getAtomType("K.metallic");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
         return null;
     }
     
-    private IAtomType perceivePlutonium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (atom.getFormalCharge() == 0 && atomContainer.getConnectedBondsCount(atom) == 0) {
+    private IAtomType perceivePlutonium(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (atom.getFormalCharge() == 0 && context.getConnectedBondsCount(atom) == 0) {
             IAtomType type = getAtomType("Pu");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
         return null;
     }
     
-    private IAtomType perceiveCadmium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (hasOneSingleElectron(atomContainer, atom)) {
+    private IAtomType perceiveCadmium(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (hasOneSingleElectron(context, atom)) {
             // no idea how to deal with this yet
             return null;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == +2)) {
             IAtomType type = getAtomType("Cd.2plus");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0)) {
-            if (atomContainer.getConnectedAtomsCount(atom) == 0) {
+            if (context.getConnectedAtomsCount(atom) == 0) {
                 IAtomType type = getAtomType("Cd.metallic");
-                if (isAcceptable(atom, atomContainer, type)) return type;
-            } else if (atomContainer.getConnectedAtomsCount(atom) == 2) {
+                if (isAcceptable(atom, context, type)) return type;
+            } else if (context.getConnectedAtomsCount(atom) == 2) {
                 IAtomType type = getAtomType("Cd.2");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         }
         return null;
     }
     
-    private IAtomType perceiveIndium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (atom.getFormalCharge() == 0 && atomContainer.getConnectedBondsCount(atom) == 3) {
+    private IAtomType perceiveIndium(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (atom.getFormalCharge() == 0 && context.getConnectedBondsCount(atom) == 3) {
             IAtomType type = getAtomType("In.3");
-            if (isAcceptable(atom, atomContainer, type)) return type;
-        } else if (atom.getFormalCharge() == 3 && atomContainer.getConnectedBondsCount(atom) == 0) {
+            if (isAcceptable(atom, context, type)) return type;
+        } else if (atom.getFormalCharge() == 3 && context.getConnectedBondsCount(atom) == 0) {
             IAtomType type = getAtomType("In.3plus");
-            if (isAcceptable(atom, atomContainer, type)) return type;
-        } else if (atom.getFormalCharge() == 0 && atomContainer.getConnectedBondsCount(atom) == 1) {
+            if (isAcceptable(atom, context, type)) return type;
+        } else if (atom.getFormalCharge() == 0 && context.getConnectedBondsCount(atom) == 1) {
             IAtomType type = getAtomType("In.1");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else {
             IAtomType type = getAtomType("In");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
         return null;
     }
     
-    private IAtomType perceiveChlorine(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (hasOneSingleElectron(atomContainer, atom)) {
-            if (atomContainer.getConnectedBondsCount(atom) > 1) {
+    private IAtomType perceiveChlorine(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (hasOneSingleElectron(context, atom)) {
+            if (context.getConnectedBondsCount(atom) > 1) {
                 if (atom.getFormalCharge() != CDKConstants.UNSET
                         && atom.getFormalCharge() == +1) {
                     IAtomType type = getAtomType("Cl.plus.radical");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 }
-            } else if (atomContainer.getConnectedBondsCount(atom) == 1) {
-                IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+            } else if (context.getConnectedBondsCount(atom) == 1) {
+                IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
                 if (maxBondOrder == IBond.Order.SINGLE) {
                     IAtomType type = getAtomType("Cl.plus.radical");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 }
-            } else if (atomContainer.getConnectedBondsCount(atom) == 0
+            } else if (context.getConnectedBondsCount(atom) == 0
                     && (atom.getFormalCharge() == CDKConstants.UNSET
                     || atom.getFormalCharge() == 0)) {
                 IAtomType type = getAtomType("Cl.radical");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if (atom.getFormalCharge() == CDKConstants.UNSET
                 || atom.getFormalCharge() == 0) {
-            int neighborcount = atomContainer.getConnectedBondsCount(atom);
-            IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+            int neighborcount = context.getConnectedBondsCount(atom);
+            IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
 
             if (maxBondOrder == IBond.Order.DOUBLE) {
-                int neighbor = atomContainer.getConnectedAtomsCount(atom);
+                int neighbor = context.getConnectedAtomsCount(atom);
                 if (neighbor == 2) {
                     IAtomType type = getAtomType("Cl.2");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 } else if (neighbor == 3) {
                     IAtomType type = getAtomType("Cl.chlorate");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 } else if (neighbor == 4) {
                     IAtomType type = getAtomType("Cl.perchlorate");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 }
             } else if (neighborcount <= 1) {
                 IAtomType type = getAtomType("Cl");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == -1)) {
             IAtomType type = getAtomType("Cl.minus");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else if (atom.getFormalCharge() != CDKConstants.UNSET && atom.getFormalCharge() == 1) {
-            IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+            IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
             if (maxBondOrder == IBond.Order.DOUBLE) {
                 IAtomType type = getAtomType("Cl.plus.sp2");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (maxBondOrder == IBond.Order.SINGLE) {
                 IAtomType type = getAtomType("Cl.plus.sp3");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
-                && atom.getFormalCharge() == +3) && atomContainer.getConnectedBondsCount(atom) == 4) {
+                && atom.getFormalCharge() == +3) && context.getConnectedBondsCount(atom) == 4) {
             IAtomType type = getAtomType("Cl.perchlorate.charged");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else {
-            int doubleBonds = countAttachedDoubleBonds(atomContainer, atom);
-            if (atomContainer.getConnectedBondsCount(atom) == 3
+            int doubleBonds = countAttachedDoubleBonds(context, atom);
+            if (context.getConnectedBondsCount(atom) == 3
                     && doubleBonds == 2) {
                 IAtomType type = getAtomType("Cl.chlorate");
-                if (isAcceptable(atom, atomContainer, type)) return type;
-            } else if (atomContainer.getConnectedBondsCount(atom) == 4
+                if (isAcceptable(atom, context, type)) return type;
+            } else if (context.getConnectedBondsCount(atom) == 4
                     && doubleBonds == 3) {
                 IAtomType type = getAtomType("Cl.perchlorate");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         }
         return null;
     }
     
-    private IAtomType perceiveSilver(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (hasOneSingleElectron(atomContainer, atom)) {
+    private IAtomType perceiveSilver(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (hasOneSingleElectron(context, atom)) {
             return null;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0)) {
-            int neighbors = atomContainer.getConnectedAtomsCount(atom);
+            int neighbors = context.getConnectedAtomsCount(atom);
             if (neighbors == 1) {
                 IAtomType type = getAtomType("Ag.1");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
             IAtomType type = getAtomType("Ag.neutral");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 1)) {
             IAtomType type = getAtomType("Ag.plus");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
         return null;
     }
     
-    private IAtomType perceiveGold(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (hasOneSingleElectron(atomContainer, atom)) {
+    private IAtomType perceiveGold(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (hasOneSingleElectron(context, atom)) {
             return null;
         }
-        int neighbors = atomContainer.getConnectedAtomsCount(atom);
+        int neighbors = context.getConnectedAtomsCount(atom);
         if ((atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0) && neighbors == 1) {
             IAtomType type = getAtomType("Au.1");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
         return null;
     }
     
-    private IAtomType perceiveRadium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (hasOneSingleElectron(atomContainer, atom)) {
+    private IAtomType perceiveRadium(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (hasOneSingleElectron(context, atom)) {
             return null;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0)) {
             IAtomType type = getAtomType("Ra.neutral");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
         return null;
     }
     
-    private IAtomType perceiveCalcium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveCalcium(AtomTypingContext context, IAtom atom) throws CDKException {
         if ("Ca".equals(atom.getSymbol())) {
-            if (hasOneSingleElectron(atomContainer, atom)) {
+            if (hasOneSingleElectron(context, atom)) {
                 // no idea how to deal with this yet
                 return null;
             } else if ((atom.getFormalCharge() != CDKConstants.UNSET
-                    && atom.getFormalCharge() == 2 && atomContainer.getConnectedAtomsCount(atom) == 0)) {
+                    && atom.getFormalCharge() == 2 && context.getConnectedAtomsCount(atom) == 0)) {
                 IAtomType type = getAtomType("Ca.2plus");
-                if (isAcceptable(atom, atomContainer, type)) {
+                if (isAcceptable(atom, context, type)) {
                     return type;
                 }
             } else if ((atom.getFormalCharge() != CDKConstants.UNSET
-                    && atom.getFormalCharge() == 0 && atomContainer.getConnectedAtomsCount(atom) == 2)) {
+                    && atom.getFormalCharge() == 0 && context.getConnectedAtomsCount(atom) == 2)) {
                 IAtomType type = getAtomType("Ca.2");
-                if (isAcceptable(atom, atomContainer, type)) {
+                if (isAcceptable(atom, context, type)) {
                     return type;
                 }
             } else if ((atom.getFormalCharge() != CDKConstants.UNSET
-                    && atom.getFormalCharge() == 0 && atomContainer.getConnectedAtomsCount(atom) == 1)) {
+                    && atom.getFormalCharge() == 0 && context.getConnectedAtomsCount(atom) == 1)) {
                 IAtomType type = getAtomType("Ca.1");
-                if (isAcceptable(atom, atomContainer, type)) {
+                if (isAcceptable(atom, context, type)) {
                     return type;
                 }
             }
@@ -2249,295 +2317,295 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
         return null;
     }
     
-    private IAtomType perceivePlatinum(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (hasOneSingleElectron(atomContainer, atom)) {
+    private IAtomType perceivePlatinum(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (hasOneSingleElectron(context, atom)) {
             // no idea how to deal with this yet
             return null;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET &&
                 atom.getFormalCharge() == +2)) {
-            int neighbors = atomContainer.getConnectedAtomsCount(atom);
+            int neighbors = context.getConnectedAtomsCount(atom);
             if (neighbors == 4) {
                 IAtomType type = getAtomType("Pt.2plus.4");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else {
                 IAtomType type = getAtomType("Pt.2plus");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if ((atom.getFormalCharge() == CDKConstants.UNSET ||
                 atom.getFormalCharge() == 0)) {
-            int neighbors = atomContainer.getConnectedAtomsCount(atom);
+            int neighbors = context.getConnectedAtomsCount(atom);
             if (neighbors == 2) {
                 IAtomType type = getAtomType("Pt.2");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (neighbors == 4) {
                 IAtomType type = getAtomType("Pt.4");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (neighbors == 6) {
                 IAtomType type = getAtomType("Pt.6");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         }
         return null;
     }
     
-    private IAtomType perceiveAntimony(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (hasOneSingleElectron(atomContainer, atom)) {
+    private IAtomType perceiveAntimony(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (hasOneSingleElectron(context, atom)) {
             return null;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET &&
                     atom.getFormalCharge() == 0 &&
-                    atomContainer.getConnectedBondsCount(atom) == 3)) {
+                    context.getConnectedBondsCount(atom) == 3)) {
             IAtomType type = getAtomType("Sb.3");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET && 
                     atom.getFormalCharge() == 0 &&
-                    atomContainer.getConnectedBondsCount(atom) == 4)) {
+                    context.getConnectedBondsCount(atom) == 4)) {
             IAtomType type = getAtomType("Sb.4");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
         return null;
     }
     
-    private IAtomType perceiveGadolinum(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveGadolinum(AtomTypingContext context, IAtom atom) throws CDKException {
         if (atom.getFormalCharge() != CDKConstants.UNSET &&
             atom.getFormalCharge() == +3 &&
-            atomContainer.getConnectedBondsCount(atom) == 0) {
+            context.getConnectedBondsCount(atom) == 0) {
             IAtomType type = getAtomType("Gd.3plus");
-            if (isAcceptable(atom, atomContainer, type)) {
+            if (isAcceptable(atom, context, type)) {
                 return type;
             }
         }
         return null;
     }
 
-    private IAtomType perceiveMagnesium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (hasOneSingleElectron(atomContainer, atom)) {
+    private IAtomType perceiveMagnesium(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (hasOneSingleElectron(context, atom)) {
             // no idea how to deal with this yet
             return null;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET &&
                     atom.getFormalCharge() == 0)) {
-            int neighbors = atomContainer.getConnectedAtomsCount(atom);
+            int neighbors = context.getConnectedAtomsCount(atom);
             if (neighbors == 4) {
                 IAtomType type = getAtomType("Mg.neutral");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (neighbors == 2) {
                 IAtomType type = getAtomType("Mg.neutral.2");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (neighbors == 1) {
                 IAtomType type = getAtomType("Mg.neutral.1");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else {
                 IAtomType type = getAtomType("Mg.neutral");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET &&
                 atom.getFormalCharge() == +2)) {
             IAtomType type = getAtomType("Mg.2plus");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
         return null;
     }
     
-    private IAtomType perceiveThallium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveThallium(AtomTypingContext context, IAtom atom) throws CDKException {
         if (atom.getFormalCharge() != CDKConstants.UNSET &&
             atom.getFormalCharge() == +1 &&
-            atomContainer.getConnectedBondsCount(atom) == 0) {
+            context.getConnectedBondsCount(atom) == 0) {
             IAtomType type = getAtomType("Tl.plus");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else if (atom.getFormalCharge() != CDKConstants.UNSET &&
                    atom.getFormalCharge() == 0 &&
-                   atomContainer.getConnectedBondsCount(atom) == 0) {
+                   context.getConnectedBondsCount(atom) == 0) {
             IAtomType type = getAtomType("Tl");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else if (atom.getFormalCharge() != CDKConstants.UNSET &&
                    atom.getFormalCharge() == 0 &&
-                   atomContainer.getConnectedBondsCount(atom) == 1) {
+                   context.getConnectedBondsCount(atom) == 1) {
             IAtomType type = getAtomType("Tl.1");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
         return null;
     }
     
-    private IAtomType perceiveLead(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveLead(AtomTypingContext context, IAtom atom) throws CDKException {
         if (atom.getFormalCharge() != CDKConstants.UNSET &&
             atom.getFormalCharge() == 0 &&
-            atomContainer.getConnectedBondsCount(atom) == 0) {
+            context.getConnectedBondsCount(atom) == 0) {
             IAtomType type = getAtomType("Pb.neutral");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else if (atom.getFormalCharge() != CDKConstants.UNSET &&
                    atom.getFormalCharge() == 2 &&
-                   atomContainer.getConnectedBondsCount(atom) == 0) {
+                   context.getConnectedBondsCount(atom) == 0) {
             IAtomType type = getAtomType("Pb.2plus");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else if (atom.getFormalCharge() != CDKConstants.UNSET &&
                    atom.getFormalCharge() == 0 &&
-                   atomContainer.getConnectedBondsCount(atom) == 1) {
+                   context.getConnectedBondsCount(atom) == 1) {
             IAtomType type = getAtomType("Pb.1");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
         return null;
     }
     
-    private IAtomType perceiveStrontium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (hasOneSingleElectron(atomContainer, atom)) {
+    private IAtomType perceiveStrontium(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (hasOneSingleElectron(context, atom)) {
             return null;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 2)) {
             IAtomType type = getAtomType("Sr.2plus");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
         return null;
     }
     
-    private IAtomType perceiveTitanium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveTitanium(AtomTypingContext context, IAtom atom) throws CDKException {
         if (atom.getFormalCharge() != CDKConstants.UNSET &&
             atom.getFormalCharge() == -3 &&
-            atomContainer.getConnectedBondsCount(atom) == 6) {
+            context.getConnectedBondsCount(atom) == 6) {
             IAtomType type = getAtomType("Ti.3minus");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else if ((atom.getFormalCharge() == CDKConstants.UNSET ||
                     atom.getFormalCharge() == 0) &&
-                   atomContainer.getConnectedBondsCount(atom) == 4) {
+                   context.getConnectedBondsCount(atom) == 4) {
             IAtomType type = getAtomType("Ti.sp3");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == 0)
-                && atomContainer.getConnectedBondsCount(atom) == 2) {
+                && context.getConnectedBondsCount(atom) == 2) {
             IAtomType type = getAtomType("Ti.2");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
         return null;
     }
     
-    private IAtomType perceiveVanadium(IAtomContainer atomContainer, IAtom atom) throws CDKException {
+    private IAtomType perceiveVanadium(AtomTypingContext context, IAtom atom) throws CDKException {
         if (atom.getFormalCharge() != CDKConstants.UNSET &&
                 atom.getFormalCharge() == -3 &&
-                atomContainer.getConnectedBondsCount(atom) == 6) {
+                context.getConnectedBondsCount(atom) == 6) {
             IAtomType type = getAtomType("V.3minus");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else if (atom.getFormalCharge() != CDKConstants.UNSET
                 && atom.getFormalCharge() == -3
-                && atomContainer.getConnectedBondsCount(atom) == 4) {
+                && context.getConnectedBondsCount(atom) == 4) {
             IAtomType type = getAtomType("V.3minus.4");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
         return null;
     }
     
-    private IAtomType perceiveBromine(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (hasOneSingleElectron(atomContainer, atom)) {
-            if (atomContainer.getConnectedBondsCount(atom) == 0) {
+    private IAtomType perceiveBromine(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (hasOneSingleElectron(context, atom)) {
+            if (context.getConnectedBondsCount(atom) == 0) {
                 if (atom.getFormalCharge() != CDKConstants.UNSET &&
                         atom.getFormalCharge() == +1) {
                     IAtomType type = getAtomType("Br.plus.radical");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 } else if (atom.getFormalCharge() == CDKConstants.UNSET ||
                         atom.getFormalCharge() == 0) {
                     IAtomType type = getAtomType("Br.radical");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 }
-            } else if (atomContainer.getConnectedBondsCount(atom) <= 1) {
-                IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+            } else if (context.getConnectedBondsCount(atom) <= 1) {
+                IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
                 if (maxBondOrder == IBond.Order.SINGLE) {
                     IAtomType type = getAtomType("Br.plus.radical");
-                    if (isAcceptable(atom, atomContainer, type)) return type;
+                    if (isAcceptable(atom, context, type)) return type;
                 }
             }
             return null;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET &&
                 atom.getFormalCharge() == -1)) {
             IAtomType type = getAtomType("Br.minus");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else if (atom.getFormalCharge() == 1) {
-            IBond.Order maxBondOrder = atomContainer.getMaximumBondOrder(atom);
+            IBond.Order maxBondOrder = context.getMaximumBondOrder(atom);
             if (maxBondOrder == IBond.Order.DOUBLE) {
                 IAtomType type = getAtomType("Br.plus.sp2");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }else if (maxBondOrder == IBond.Order.SINGLE){
                 IAtomType type = getAtomType("Br.plus.sp3");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
-        } else if (atomContainer.getConnectedBondsCount(atom) == 1 ||
-                atomContainer.getConnectedBondsCount(atom) == 0) {
+        } else if (context.getConnectedBondsCount(atom) == 1 ||
+                context.getConnectedBondsCount(atom) == 0) {
             IAtomType type = getAtomType("Br");
-            if (isAcceptable(atom, atomContainer, type)) return type;
-        } else if (atomContainer.getConnectedBondsCount(atom) == 3) {
+            if (isAcceptable(atom, context, type)) return type;
+        } else if (context.getConnectedBondsCount(atom) == 3) {
             IAtomType type = getAtomType("Br.3");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         }
         return null;
     }
     
-    private int countAttachedDoubleBonds(IAtomContainer container, IAtom atom, String symbol) {
-        return countAttachedBonds(container, atom, IBond.Order.DOUBLE, symbol);
+    private int countAttachedDoubleBonds(AtomTypingContext context, IAtom atom, String symbol) {
+        return countAttachedBonds(context, atom, IBond.Order.DOUBLE, symbol);
     }
     
-    private IAtomType perceiveCobalt(IAtomContainer atomContainer, IAtom atom) throws CDKException {
-        if (hasOneSingleElectron(atomContainer, atom)) {
+    private IAtomType perceiveCobalt(AtomTypingContext context, IAtom atom) throws CDKException {
+        if (hasOneSingleElectron(context, atom)) {
             // no idea how to deal with this yet
             return null;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET &&
                 atom.getFormalCharge() == +2)) {
             IAtomType type = getAtomType("Co.2plus");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else if ((atom.getFormalCharge() != CDKConstants.UNSET &&
                 atom.getFormalCharge() == +3)) {
             IAtomType type = getAtomType("Co.3plus");
-            if (isAcceptable(atom, atomContainer, type)) return type;
+            if (isAcceptable(atom, context, type)) return type;
         } else if ((atom.getFormalCharge() == CDKConstants.UNSET ||
                 atom.getFormalCharge() == 0)) {
-            int neighbors = atomContainer.getConnectedAtomsCount(atom);
+            int neighbors = context.getConnectedAtomsCount(atom);
             if (neighbors == 2) {
                 IAtomType type = getAtomType("Co.2");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (neighbors == 4) {
                 IAtomType type = getAtomType("Co.4");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (neighbors == 6) {
                 IAtomType type = getAtomType("Co.6");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (neighbors == 1) {
                 IAtomType type = getAtomType("Co.1");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else {
                 IAtomType type = getAtomType("Co.metallic");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         } else if ((atom.getFormalCharge() != null
                 && atom.getFormalCharge() == +1)) {
-            int neighbors = atomContainer.getConnectedAtomsCount(atom);
+            int neighbors = context.getConnectedAtomsCount(atom);
             if (neighbors == 2) {
                 IAtomType type = getAtomType("Co.plus.2");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (neighbors == 4) {
                 IAtomType type = getAtomType("Co.plus.4");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (neighbors == 1) {
                 IAtomType type = getAtomType("Co.plus.1");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (neighbors == 6) {
                 IAtomType type = getAtomType("Co.plus.6");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else if (neighbors == 5) {
                 IAtomType type = getAtomType("Co.plus.5");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             } else {
                 IAtomType type = getAtomType("Co.plus");
-                if (isAcceptable(atom, atomContainer, type)) return type;
+                if (isAcceptable(atom, context, type)) return type;
             }
         }
         return null;
     }
 
-    private int countAttachedDoubleBonds(IAtomContainer container, IAtom atom) {
-    	return countAttachedBonds(container, atom, IBond.Order.DOUBLE, null);
+    private int countAttachedDoubleBonds(AtomTypingContext context, IAtom atom) {
+    	return countAttachedBonds(context, atom, IBond.Order.DOUBLE, null);
     }
     
-    private int countAttachedSingleBonds(IAtomContainer atomContainer, IAtom atom) {
-        return countAttachedBonds(atomContainer, atom, IBond.Order.SINGLE, null);
+    private int countAttachedSingleBonds(AtomTypingContext context, IAtom atom) {
+        return countAttachedBonds(context, atom, IBond.Order.SINGLE, null);
     }
 
-    private boolean hasAromaticBond(IAtomContainer container, IAtom atom) {
-        List<IBond> neighbors = container.getConnectedBondsList(atom);
+    private boolean hasAromaticBond(AtomTypingContext context, IAtom atom) {
+        List<IBond> neighbors = context.getConnectedBondsList(atom);
         for (IBond bond : neighbors) {
             if (bond.getFlag(CDKConstants.ISAROMATIC)) return true;
         }
@@ -2547,16 +2615,16 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     /**
      * Count the number of doubly bonded atoms.
      *
-     * @param container the molecule in which to look
+     * @param context connections of the molecule in which to look
      * @param atom the atom being looked at
      * @param order the desired bond order of the attached bonds 
      * @param symbol If not null, then it only counts the double bonded atoms which
      *               match the given symbol.
      * @return the number of doubly bonded atoms
      */
-    private int countAttachedBonds(IAtomContainer container, IAtom atom, IBond.Order order, String symbol) {
+    private int countAttachedBonds(AtomTypingContext context, IAtom atom, IBond.Order order, String symbol) {
     	// count the number of double bonded oxygens
-    	List<IBond> neighbors = container.getConnectedBondsList(atom);
+    	List<IBond> neighbors = context.getConnectedBondsList(atom);
     	int neighborcount = neighbors.size();
     	int doubleBondedAtoms = 0;
     	for (int i=neighborcount-1;i>=0;i--) {
@@ -2587,16 +2655,16 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     	return type;
     }
     
-    private boolean isAcceptable(IAtom atom, IAtomContainer container, IAtomType type) {
+    private boolean isAcceptable(IAtom atom, AtomTypingContext context, IAtomType type) {
     	if (mode == REQUIRE_EXPLICIT_HYDROGENS) {
     		// make sure no implicit hydrogens were assumed
-    		int actualContainerCount = container.getConnectedAtomsCount(atom);
+    		int actualContainerCount = context.getConnectedAtomsCount(atom);
     		int requiredContainerCount = type.getFormalNeighbourCount();
     		if (actualContainerCount != requiredContainerCount)
     			return false;
     	} else if (atom.getImplicitHydrogenCount() != CDKConstants.UNSET) {
     		// confirm correct neighbour count
-    		int connectedAtoms = container.getConnectedAtomsCount(atom);
+    		int connectedAtoms = context.getConnectedAtomsCount(atom);
     		int hCount = atom.getImplicitHydrogenCount();
     		int actualNeighbourCount =  connectedAtoms + hCount;
     		int requiredNeighbourCount = type.getFormalNeighbourCount();
@@ -2607,7 +2675,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     	// confirm correct bond orders
         IBond.Order typeOrder = type.getMaxBondOrder(); 
     	if (typeOrder != null) {
-    		for (IBond bond : container.getConnectedBondsList(atom)) {
+    		for (IBond bond : context.getConnectedBondsList(atom)) {
     			IBond.Order order = bond.getOrder();
     			if (order != CDKConstants.UNSET && order != IBond.Order.UNSET) {
     				if (BondManipulator.isHigherOrder(order, typeOrder)) return false;
@@ -2621,7 +2689,7 @@ public class CDKAtomTypeMatcher implements IAtomTypeMatcher {
     	}
     		
     	// confirm correct valency
-    	if (type.getValency() != CDKConstants.UNSET && container.getBondOrderSum(atom) > type.getValency())
+    	if (type.getValency() != CDKConstants.UNSET && context.getBondOrderSum(atom) > type.getValency())
     		return false;
 
     	// confirm correct formal charge
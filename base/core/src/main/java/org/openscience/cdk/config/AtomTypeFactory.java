@@ -24,6 +24,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
@@ -100,6 +101,12 @@ public class AtomTypeFactory {
     private static Map<String, AtomTypeFactory> tables = null;
     private List<IAtomType> atomTypes = null;
 
+    /** The atom types by name, the first of a name is used. */
+    private Map<String, IAtomType> atomTypesByName = null;
+
+    /** The atom types by element symbol, in the order they were read. */
+    private Map<String, List<IAtomType>> atomTypesBySymbol = null;
+
 	/**
 	 * Private constructor for the AtomTypeFactory singleton.
 	 *
@@ -255,8 +262,30 @@ public class AtomTypeFactory {
 			logger.debug("AtomTypeConfigurator was null!");
 			atomTypes = new ArrayList<IAtomType>();
 		}
+		indexAtomTypes();
 	}
 
+    /**
+     * Index the atom types by name and element symbol such that they can be
+     * looked up in constant time.
+     */
+    private void indexAtomTypes() {
+        atomTypesByName = new HashMap<String, IAtomType>(2 * atomTypes.size());
+        atomTypesBySymbol = new HashMap<String, List<IAtomType>>();
+        for (IAtomType atomType : atomTypes) {
+            String name = atomType.getAtomTypeName();
+            if (name != null && !atomTypesByName.containsKey(name))
+                atomTypesByName.put(name, atomType);
+            String symbol = atomType.getSymbol();
+            if (symbol != null) {
+                List<IAtomType> types = atomTypesBySymbol.get(symbol);
+                if (types == null)
+                    atomTypesBySymbol.put(symbol, types = new ArrayList<IAtomType>(4));
+                types.add(atomType);
+            }
+        }
+    }
+
 
 	/**
 	 * Returns the number of atom types in this list.
@@ -280,11 +309,9 @@ public class AtomTypeFactory {
     @TestMethod("testGetAtomType_String,testGetAtomTypeFromJmol,testGetAtomTypeFromMM2,testGetAtomTypeFromPDB")
     public IAtomType getAtomType(String identifier) throws NoSuchAtomTypeException
 	{
-        for (IAtomType atomType : atomTypes) {
-            if (atomType.getAtomTypeName().equals(identifier)) {
-                return atomType;
-            }
-        }
+        IAtomType atomType = atomTypesByName.get(identifier);
+        if (atomType != null)
+            return atomType;
         throw new NoSuchAtomTypeException("The AtomType " + identifier + " could not be found");
 	}
 
@@ -302,10 +329,9 @@ public class AtomTypeFactory {
 	{
         logger.debug("Request for atomtype for symbol ", symbol);
         List<IAtomType> atomList = new ArrayList<IAtomType>();
-        for (IAtomType atomType : atomTypes) {
-            // logger.debug("  does symbol match for: ", atomType);
-            if (atomType.getSymbol().equals(symbol)) {
-                // logger.debug("Atom type found for symbol: ", atomType);
+        List<IAtomType> matching = atomTypesBySymbol.get(symbol);
+        if (matching != null) {
+            for (IAtomType atomType : matching) {
                 IAtomType clone;
                 try {
                     clone = (IAtomType) atomType.clone();
@@ -0,0 +1,262 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.graph;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.tools.Parallel;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The topological distances between all pairs of atoms in a molecule. Unlike
+ * {@link AllPairsShortestPaths} the paths themselves are not stored, a
+ * breadth-first search from each atom fills a packed triangular matrix of
+ * one (up to 256 atoms) or two bytes per pair. The memory is therefore
+ * n(n-1)/2 or n(n-1) bytes, with no per-atom objects, and large structures
+ * such as proteins can be handled.
+ *
+ * <blockquote><pre>
+ * IAtomContainer    container = ...;
+ * AllPairsDistances distances = new AllPairsDistances(container);
+ *
+ * int d        = distances.distance(0, 5);
+ * int diameter = distances.diameter();
+ * </pre></blockquote>
+ *
+ * @cdk.module core
+ * @cdk.githash
+ * @see AllPairsShortestPaths
+ * @see PathTools#computeFloydAPSP(int[][])
+ */
+public final class AllPairsDistances {
+
+    /** Minimum number of searches in a part of a parallel computation. */
+    private static final int MIN_PART = 64;
+
+    /** Number of vertices. */
+    private final int n;
+
+    /**
+     * Distances for each pair {u > v} at index u(u-1)/2 + v, 0 if v can not
+     * be reached from u. One of the two is used depending on the size.
+     */
+    private final byte[] bytes;
+    private final char[] chars;
+
+    /**
+     * Compute the distances between all pairs of atoms in the container.
+     *
+     * @param container the molecule
+     * @throws IllegalArgumentException the container has more than 65536
+     *                                  atoms
+     */
+    public AllPairsDistances(IAtomContainer container) {
+        this(GraphCache.of(container).graph());
+    }
+
+    /**
+     * Compute the distances between all pairs of vertices in the graph.
+     *
+     * @param graph adjacency list representation of a graph
+     * @throws IllegalArgumentException the graph has more than 65536 vertices
+     */
+    public AllPairsDistances(int[][] graph) {
+        this(graph.length);
+        search(graph, 0, n);
+    }
+
+    /**
+     * Compute the distances between all pairs of vertices in the graph, the
+     * searches are split into parts which are run on the executor.
+     *
+     * @param graph    adjacency list representation of a graph
+     * @param executor runs the parts of the computation
+     * @throws IllegalArgumentException the graph has more than 65536 vertices
+     * @throws InterruptedException     the computation was interrupted
+     */
+    public AllPairsDistances(final int[][] graph, ExecutorService executor) throws InterruptedException {
+        this(graph.length);
+        // the work of the search from 'u' is proportional to the graph size
+        // but the row stored is 'u' long, parts are split evenly by vertex
+        Parallel.forRanges(executor, n, MIN_PART, new Parallel.Range<Void, RuntimeException>() {
+
+            @Override
+            public Void run(int from, int to) {
+                search(graph, from, to);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Internal constructor - allocate the matrix.
+     *
+     * @param n number of vertices
+     */
+    private AllPairsDistances(int n) {
+        if (n > 1 << 16)
+            throw new IllegalArgumentException("Too many atoms (" + n + ") for the distance matrix");
+        this.n = n;
+        int size = (int) ((long) n * (n - 1) / 2);
+        this.bytes = n <= 1 << 8 ? new byte[size] : null;
+        this.chars = bytes == null ? new char[size] : null;
+    }
+
+    /**
+     * Breadth-first search from each of the vertices [from, to) storing the
+     * distance to each vertex with a lower index.
+     *
+     * @param graph adjacency list
+     * @param from  first vertex (inclusive)
+     * @param to    last vertex (exclusive)
+     */
+    private void search(int[][] graph, int from, int to) {
+        int[] dist = new int[n];
+        int[] queue = new int[n];
+        for (int u = from; u < to; u++) {
+            Arrays.fill(dist, -1);
+            int head = 0, tail = 0;
+            dist[u] = 0;
+            queue[tail++] = u;
+            while (head < tail) {
+                int v = queue[head++];
+                for (int w : graph[v]) {
+                    if (dist[w] < 0) {
+                        dist[w] = dist[v] + 1;
+                        queue[tail++] = w;
+                    }
+                }
+            }
+            int offset = offset(u);
+            if (bytes != null) {
+                for (int v = 0; v < u; v++)
+                    bytes[offset + v] = (byte) Math.max(dist[v], 0);
+            } else {
+                for (int v = 0; v < u; v++)
+                    chars[offset + v] = (char) Math.max(dist[v], 0);
+            }
+        }
+    }
+
+    /**
+     * Index of the first pair of {@code u} in the matrix.
+     */
+    private static int offset(int u) {
+        return (int) ((long) u * (u - 1) / 2);
+    }
+
+    /**
+     * The number of vertices (atoms).
+     *
+     * @return number of vertices
+     */
+    public int order() {
+        return n;
+    }
+
+    /**
+     * The topological distance (number of bonds) between two vertices. If
+     * there is no path between the vertices the distance is {@link
+     * Integer#MAX_VALUE}, as with {@link ShortestPaths#distanceTo(int)}.
+     *
+     * @param u a vertex
+     * @param v another vertex
+     * @return the distance between the vertices
+     * @throws IndexOutOfBoundsException a vertex was not in the graph
+     */
+    public int distance(int u, int v) {
+        if (u < 0 || u >= n || v < 0 || v >= n)
+            throw new IndexOutOfBoundsException("vertex " + u + " or " + v + " not in graph of order " + n);
+        if (u == v)
+            return 0;
+        int d = u > v ? value(offset(u) + v) : value(offset(v) + u);
+        return d == 0 ? Integer.MAX_VALUE : d;
+    }
+
+    /**
+     * The stored value at the index.
+     */
+    private int value(int i) {
+        return bytes != null ? bytes[i] & 0xff : chars[i];
+    }
+
+    /**
+     * The largest distance from a vertex to any other vertex. If the graph is
+     * disconnected the eccentricity is {@link Integer#MAX_VALUE}.
+     *
+     * @param u a vertex
+     * @return the eccentricity of the vertex
+     */
+    public int eccentricity(int u) {
+        int max = 0;
+        for (int v = 0; v < n; v++)
+            max = Math.max(max, distance(u, v));
+        return max;
+    }
+
+    /**
+     * The largest eccentricity of any vertex, the graph diameter. The
+     * diameter of an empty graph is 0.
+     *
+     * @return the diameter
+     * @see PathTools#getMolecularGraphDiameter(IAtomContainer)
+     */
+    public int diameter() {
+        int max = 0;
+        for (int u = 0; u < n; u++)
+            max = Math.max(max, eccentricity(u));
+        return max;
+    }
+
+    /**
+     * The smallest eccentricity of any vertex, the graph radius. The radius
+     * of an empty graph is 0.
+     *
+     * @return the radius
+     * @see PathTools#getMolecularGraphRadius(IAtomContainer)
+     */
+    public int radius() {
+        if (n == 0)
+            return 0;
+        int min = Integer.MAX_VALUE;
+        for (int u = 0; u < n; u++)
+            min = Math.min(min, eccentricity(u));
+        return min;
+    }
+
+    /**
+     * The distance matrix, unconnected vertices have a distance of {@link
+     * Integer#MAX_VALUE}.
+     *
+     * @return a new n x n distance matrix
+     */
+    public int[][] toMatrix() {
+        int[][] matrix = new int[n][n];
+        for (int u = 0; u < n; u++) {
+            for (int v = 0; v < u; v++)
+                matrix[u][v] = matrix[v][u] = distance(u, v);
+        }
+        return matrix;
+    }
+}
@@ -91,8 +91,8 @@ public final class AllPairsShortestPaths {
     @TestMethod("testConstruction_Null,testConstruction_Empty")
     public AllPairsShortestPaths(IAtomContainer container) {
 
-        // toAdjList performs null check
-        int[][] adjacent = GraphUtil.toAdjList(container);
+        // the graph construction performs null check
+        int[][] adjacent = GraphCache.of(container).graph();
 
         int n = container.getAtomCount();
 
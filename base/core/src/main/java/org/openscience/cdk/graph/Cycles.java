@@ -801,9 +801,20 @@ public final class Cycles {
         /** {@inheritDoc} */
         @Override public Cycles find(IAtomContainer molecule, int length) throws Intractable {
 
-            EdgeToBondMap bondMap = EdgeToBondMap.withSpaceFor(molecule);
-            int[][] graph = GraphUtil.toAdjList(molecule, bondMap);
-            RingSearch ringSearch = new RingSearch(molecule, graph);
+            // the graph, ring partition and the cycles of an unchanged
+            // molecule are shared, cycles are only kept if not restricted
+            // by length
+            GraphCache cache = GraphCache.of(molecule);
+            boolean unrestricted = length >= molecule.getAtomCount();
+            if (unrestricted) {
+                Cycles cycles = cache.cycles(this);
+                if (cycles != null)
+                    return cycles;
+            }
+
+            EdgeToBondMap bondMap = cache.bondMap();
+            int[][] graph = cache.graph();
+            RingSearch ringSearch = cache.ringSearch();
 
             List<int[]> walks = new ArrayList<int[]>(6);
 
@@ -825,9 +836,12 @@ public final class Cycles {
                 }
             }
 
-            return new Cycles(walks.toArray(new int[walks.size()][0]),
-                              molecule,
-                              bondMap);
+            Cycles cycles = new Cycles(walks.toArray(new int[walks.size()][0]),
+                                       molecule,
+                                       bondMap);
+            if (unrestricted)
+                cache.cycles(this, cycles);
+            return cycles;
         }
 
         /** @inheritDoc */
@@ -973,7 +987,7 @@ public final class Cycles {
 
         /** @inheritDoc */
         @Override public Cycles find(IAtomContainer molecule, int length) throws Intractable {
-            return find(molecule, GraphUtil.toAdjList(molecule), length);
+            return find(molecule, GraphCache.of(molecule).graph(), length);
         }
 
         /** @inheritDoc */
@@ -1053,7 +1067,7 @@ public final class Cycles {
 
         /** @inheritDoc */
         @Override public Cycles find(IAtomContainer molecule, int length) throws Intractable {
-            return find(molecule, GraphUtil.toAdjList(molecule), length);
+            return find(molecule, GraphCache.of(molecule).graph(), length);
         }
 
         /** @inheritDoc */
@@ -1091,7 +1105,7 @@ public final class Cycles {
 
         /** @inheritDoc */
         @Override public Cycles find(IAtomContainer molecule, int length) throws Intractable {
-            return find(molecule, GraphUtil.toAdjList(molecule), length);
+            return find(molecule, GraphCache.of(molecule).graph(), length);
         }
 
         /** @inheritDoc */
@@ -0,0 +1,264 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.graph;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.ringsearch.RingSearch;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.openscience.cdk.graph.GraphUtil.EdgeToBondMap;
+
+/**
+ * Graph properties derived from the connection table of a container, the
+ * adjacency list, bond map, ring partition, connected components and cycle
+ * sets, of the most recently used containers of the calling thread.
+ * Algorithms which are repeatedly invoked on the same molecule (e.g. in a
+ * descriptor or fingerprint pipeline) then share a single perception.
+ *
+ * <blockquote><pre>
+ * GraphCache     cache  = GraphCache.of(container);
+ * int[][]        graph  = cache.graph();
+ * EdgeToBondMap  bonds  = cache.bondMap();
+ * RingSearch     rings  = cache.ringSearch();
+ * </pre></blockquote>
+ *
+ * A cached entry is checked against the container on each call to {@link
+ * #of(IAtomContainer)}: if an atom or bond was added, removed, replaced or a
+ * bond was connected to different atoms the properties are perceived again.
+ * Changes to the atom and bond properties (e.g. the bond order) do not
+ * invalidate the entry as none of the cached values depend on them. Change
+ * notification is not used as not all containers notify their listeners.
+ * The check compares the atoms and bonds by identity, it is linear in the
+ * size of the container but much cheaper than the perception.
+ *
+ * The thread only holds weak references to its entries, an entry (and its
+ * container) is not kept alive by the cache. An entry is shared for as long
+ * as the returned instance is referenced, a caller running several
+ * algorithms on one molecule may hold it for their duration, and may
+ * otherwise be dropped when garbage is collected. Threads which are reused
+ * for different work, such as those of an executor, should call {@link
+ * #clear()} when they are done with their molecules to release the entries
+ * immediately.
+ *
+ * The returned values are shared and must not be modified. An instance is
+ * obtained for, and should only be used on, the calling thread.
+ *
+ * @cdk.module core
+ * @cdk.githash
+ * @see GraphUtil
+ * @see RingSearch
+ * @see Cycles
+ */
+public final class GraphCache {
+
+    /** Number of containers kept for each thread. */
+    private static final int CAPACITY = 8;
+
+    /** The most recently used entries of each thread, most recent first. */
+    private static final ThreadLocal<WeakReference<GraphCache>[]> ENTRIES =
+            new ThreadLocal<WeakReference<GraphCache>[]>() {
+
+                @Override
+                @SuppressWarnings("unchecked")
+                protected WeakReference<GraphCache>[] initialValue() {
+                    return new WeakReference[CAPACITY];
+                }
+            };
+
+    /** The container and the atoms, bonds and bond end points when perceived. */
+    private final IAtomContainer container;
+    private final IAtom[]        atoms;
+    private final IBond[]        bonds;
+    private final IAtom[]        begin, end;
+
+    /** Adjacency list and bond lookup. */
+    private final int[][]       graph;
+    private final EdgeToBondMap bondMap;
+
+    /** Lazily perceived properties. */
+    private RingSearch               ringSearch;
+    private ConnectedComponents      components;
+    private Map<CycleFinder, Cycles> cycles;
+
+    /**
+     * Internal constructor - snapshot the container and build the adjacency
+     * list.
+     *
+     * @param container the container
+     */
+    private GraphCache(IAtomContainer container) {
+        this.bondMap = EdgeToBondMap.withSpaceFor(container);
+        this.graph = GraphUtil.toAdjList(container, bondMap);
+        this.container = container;
+        this.atoms = new IAtom[container.getAtomCount()];
+        this.bonds = new IBond[container.getBondCount()];
+        this.begin = new IAtom[bonds.length];
+        this.end = new IAtom[bonds.length];
+        for (int i = 0; i < atoms.length; i++)
+            atoms[i] = container.getAtom(i);
+        for (int j = 0; j < bonds.length; j++) {
+            IBond bond = container.getBond(j);
+            bonds[j] = bond;
+            begin[j] = bond.getAtom(0);
+            end[j] = bond.getAtom(1);
+        }
+    }
+
+    /**
+     * Access the derived properties of the container, if the container has
+     * not been seen (or has changed) since the properties were last requested
+     * on this thread they are perceived again.
+     *
+     * @param container the container
+     * @return the derived properties of the container
+     * @throws NullPointerException     the container was null
+     * @throws IllegalArgumentException a bond contained an atom not in the
+     *                                  container
+     */
+    public static GraphCache of(IAtomContainer container) {
+        WeakReference<GraphCache>[] entries = ENTRIES.get();
+        int i = 0;
+        GraphCache entry = null;
+        // entries which have been collected are passed over, they are
+        // dropped as the least recently used
+        while (i < entries.length - 1 && entries[i] != null) {
+            entry = entries[i].get();
+            if (entry != null && entry.container == container)
+                break;
+            entry = null;
+            i++;
+        }
+        WeakReference<GraphCache> ref = entries[i];
+        if (entry == null && ref != null) entry = ref.get();
+        if (entry == null || entry.container != container || !entry.matches(container)) {
+            entry = new GraphCache(container);
+            ref = new WeakReference<GraphCache>(entry);
+        }
+        // move the entry to the front, the least recently used is dropped
+        System.arraycopy(entries, 0, entries, 1, i);
+        entries[0] = ref;
+        return entry;
+    }
+
+    /**
+     * Remove all entries of the calling thread. A thread of an executor
+     * should call this when a task is done with its molecules, the entries
+     * are then released without waiting for garbage collection.
+     */
+    public static void clear() {
+        WeakReference<GraphCache>[] entries = ENTRIES.get();
+        for (int i = 0; i < entries.length; i++)
+            entries[i] = null;
+    }
+
+    /**
+     * Check the connection table of the container is unchanged since the
+     * properties were perceived.
+     *
+     * @param container the container
+     * @return the container is unchanged
+     */
+    private boolean matches(IAtomContainer container) {
+        if (container.getAtomCount() != atoms.length || container.getBondCount() != bonds.length)
+            return false;
+        for (int i = 0; i < atoms.length; i++) {
+            if (container.getAtom(i) != atoms[i])
+                return false;
+        }
+        for (int j = 0; j < bonds.length; j++) {
+            IBond bond = container.getBond(j);
+            if (bond != bonds[j] || bond.getAtom(0) != begin[j] || bond.getAtom(1) != end[j])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * The adjacency list of the container.
+     *
+     * @return adjacency list, must not be modified
+     * @see GraphUtil#toAdjList(IAtomContainer)
+     */
+    public int[][] graph() {
+        return graph;
+    }
+
+    /**
+     * Lookup of the bonds of the container by the indices of their atoms.
+     *
+     * @return the bond map
+     * @see GraphUtil#toAdjList(IAtomContainer, EdgeToBondMap)
+     */
+    public EdgeToBondMap bondMap() {
+        return bondMap;
+    }
+
+    /**
+     * The ring partition of the container.
+     *
+     * @return the ring search
+     */
+    public RingSearch ringSearch() {
+        if (ringSearch == null)
+            ringSearch = new RingSearch(container, graph);
+        return ringSearch;
+    }
+
+    /**
+     * The connected components of the container.
+     *
+     * @return the connected components
+     */
+    public ConnectedComponents components() {
+        if (components == null)
+            components = new ConnectedComponents(graph);
+        return components;
+    }
+
+    /**
+     * The cycles of a previous perception with the provided finder.
+     *
+     * @param finder the cycle finder
+     * @return the cycles, null if not perceived
+     */
+    Cycles cycles(CycleFinder finder) {
+        return cycles != null ? cycles.get(finder) : null;
+    }
+
+    /**
+     * Store the cycles perceived with the provided finder.
+     *
+     * @param finder the cycle finder
+     * @param found  the cycles
+     */
+    void cycles(CycleFinder finder, Cycles found) {
+        if (cycles == null)
+            cycles = new HashMap<CycleFinder, Cycles>(4);
+        cycles.put(finder, found);
+    }
+}
@@ -28,7 +28,6 @@ import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.exception.CDKException;
-import org.openscience.cdk.graph.matrix.AdjacencyMatrix;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
@@ -370,22 +369,11 @@ public class PathTools {
      */
     @TestMethod("testGetMolecularGraphRadius_IAtomContainer")
     public static int getMolecularGraphRadius(IAtomContainer atomContainer) {
-        int natom = atomContainer.getAtomCount();
-
-        int[][] admat = AdjacencyMatrix.getMatrix(atomContainer);
-        int[][] distanceMatrix = computeFloydAPSP(admat);
-
-        int[] eta = new int[natom];
-        for (int i = 0; i < natom; i++) {
-            int max = -99999;
-            for (int j = 0; j < natom; j++) {
-                if (distanceMatrix[i][j] > max) max = distanceMatrix[i][j];
-            }
-            eta[i] = max;
-        }
+        AllPairsDistances distances = new AllPairsDistances(GraphUtil.toAdjList(atomContainer));
         int min = 999999;
-        for (int anEta : eta) {
-            if (anEta < min) min = anEta;
+        for (int i = 0; i < distances.order(); i++) {
+            int eta = floydDistance(distances.eccentricity(i));
+            if (eta < min) min = eta;
         }
         return min;
     }
@@ -398,22 +386,11 @@ public class PathTools {
      */
     @TestMethod("testGetMolecularGraphDiameter_IAtomContainer")
     public static int getMolecularGraphDiameter(IAtomContainer atomContainer) {
-        int natom = atomContainer.getAtomCount();
-
-        int[][] admat = AdjacencyMatrix.getMatrix(atomContainer);
-        int[][] distanceMatrix = computeFloydAPSP(admat);
-
-        int[] eta = new int[natom];
-        for (int i = 0; i < natom; i++) {
-            int max = -99999;
-            for (int j = 0; j < natom; j++) {
-                if (distanceMatrix[i][j] > max) max = distanceMatrix[i][j];
-            }
-            eta[i] = max;
-        }
+        AllPairsDistances distances = new AllPairsDistances(GraphUtil.toAdjList(atomContainer));
         int max = -999999;
-        for (int anEta : eta) {
-            if (anEta > max) max = anEta;
+        for (int i = 0; i < distances.order(); i++) {
+            int eta = floydDistance(distances.eccentricity(i));
+            if (eta > max) max = eta;
         }
         return max;
     }
@@ -429,21 +406,30 @@ public class PathTools {
      */
     @TestMethod("testGetVertexCountAtDistance_IAtomContainer_int")
     public static int getVertexCountAtDistance(IAtomContainer atomContainer, int distance) {
-        int natom = atomContainer.getAtomCount();
+        AllPairsDistances distances = new AllPairsDistances(GraphUtil.toAdjList(atomContainer));
 
-        int[][] admat = AdjacencyMatrix.getMatrix(atomContainer);
-        int[][] distanceMatrix = computeFloydAPSP(admat);
+        // each vertex is at distance 0 of itself
+        int n = distance == 0 ? distances.order() : 0;
 
-        int n = 0;
-
-        for (int i = 0; i < natom; i++) {
-            for (int j = 0; j < natom; j++) {
-                if (distanceMatrix[i][j] == distance) n++;
+        for (int i = 0; i < distances.order(); i++) {
+            for (int j = 0; j < i; j++) {
+                if (floydDistance(distances.distance(i, j)) == distance) n += 2;
             }
         }
         return n / 2;
     }
 
+    /**
+     * The distance as in the matrix of {@link #computeFloydAPSP(int[][])},
+     * where unconnected vertices are 999999999 apart.
+     *
+     * @param distance a distance of {@link AllPairsDistances}
+     * @return the distance
+     */
+    private static int floydDistance(int distance) {
+        return distance == Integer.MAX_VALUE ? 999999999 : distance;
+    }
+
     /**
      * Returns a list of atoms in the shortest path between two atoms.
      * <p/>
@@ -24,7 +24,7 @@ package org.openscience.cdk.ringsearch;
 
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
-import org.openscience.cdk.graph.GraphUtil;
+import org.openscience.cdk.graph.GraphCache;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
@@ -119,7 +119,9 @@ public final class RingSearch {
     private final IAtomContainer container;
 
     /**
-     * Create a new RingSearch for the specified container.
+     * Create a new RingSearch for the specified container. The ring partition
+     * is shared with the other searches of the unchanged container on this
+     * thread ({@link GraphCache}).
      *
      * @param container non-null input structure
      * @throws NullPointerException     if the container was null
@@ -129,7 +131,7 @@ public final class RingSearch {
      */
     @TestMethod("testNull")
     public RingSearch(IAtomContainer container) {
-        this(container, GraphUtil.toAdjList(container));
+        this(container, GraphCache.of(container).ringSearch().searcher);
     }
 
     /**
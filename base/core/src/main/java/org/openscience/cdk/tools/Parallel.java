@@ -0,0 +1,158 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.tools;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Split the indices [0, n) of a computation into contiguous ranges which are
+ * run as parts on an executor. There are at most {@link #maxParts()} parts
+ * and each part has at least the given minimum number of indices, so a small
+ * computation is a single part.
+ *
+ * <blockquote><pre>
+ * final double[] values = new double[n];
+ * Parallel.forRanges(executor, n, 64, new Parallel.Range&lt;Void, CDKException&gt;() {
+ *     public Void run(int from, int to) throws CDKException {
+ *         for (int i = from; i &lt; to; i++)
+ *             values[i] = calculate(i);
+ *         return null;
+ *     }
+ * });
+ * </pre></blockquote>
+ *
+ * If a part fails the other parts are cancelled and the exception of the
+ * part is rethrown on the calling thread.
+ *
+ * @cdk.module core
+ * @cdk.githash
+ */
+@TestClass("org.openscience.cdk.tools.ParallelTest")
+public final class Parallel {
+
+    /** Maximum number of parts for each available processor. */
+    private static final int PARTS_PER_PROCESSOR = 4;
+
+    private Parallel() {
+    }
+
+    /**
+     * A computation on the indices [from, to).
+     *
+     * @param <T> the result of a part
+     * @param <E> the checked exception thrown by the computation, use {@link
+     *            RuntimeException} if there is none
+     */
+    public interface Range<T, E extends Exception> {
+
+        /**
+         * Compute the indices [from, to).
+         *
+         * @param from the first index
+         * @param to   the index after the last
+         * @return the result of the part
+         * @throws E the computation failed
+         */
+        T run(int from, int to) throws E;
+    }
+
+    /**
+     * The maximum number of parts a computation is split into.
+     *
+     * @return the number of parts
+     */
+    @TestMethod("maxParts")
+    public static int maxParts() {
+        return PARTS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * The number of parts of a computation of n indices.
+     *
+     * @param n       number of indices
+     * @param minPart minimum number of indices in a part
+     * @return the number of parts, at least one
+     */
+    @TestMethod("parts")
+    public static int parts(int n, int minPart) {
+        return Math.max(1, Math.min(maxParts(), n / minPart));
+    }
+
+    /**
+     * Run a computation of the indices [0, n) in parts on the executor and
+     * wait for all parts to complete.
+     *
+     * @param executor runs the parts
+     * @param n        number of indices
+     * @param minPart  minimum number of indices in a part
+     * @param range    the computation of a part
+     * @param <T>      the result of a part
+     * @param <E>      the checked exception thrown by the computation
+     * @return the result of each part, in order of the indices
+     * @throws E                    a part failed
+     * @throws InterruptedException the calling thread was interrupted
+     */
+    @TestMethod("forRanges,forRangesSmall,forRangesEmpty,forRangesChecked,forRangesUnchecked")
+    @SuppressWarnings("unchecked")
+    public static <T, E extends Exception> List<T> forRanges(ExecutorService executor, int n, int minPart,
+                                                             final Range<T, E> range) throws E,
+                                                                                             InterruptedException {
+        int nParts = parts(n, minPart);
+        List<Future<T>> futures = new ArrayList<Future<T>>(nParts);
+        List<T> results = new ArrayList<T>(nParts);
+        try {
+            for (int i = 0; i < nParts; i++) {
+                final int from = (int) ((long) n * i / nParts);
+                final int to = (int) ((long) n * (i + 1) / nParts);
+                futures.add(executor.submit(new Callable<T>() {
+
+                    @Override
+                    public T call() throws E {
+                        return range.run(from, to);
+                    }
+                }));
+            }
+            for (Future<T> future : futures)
+                results.add(future.get());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            // the range may only throw an 'E'
+            throw (E) cause;
+        } finally {
+            // only incomplete if a part failed or the wait was interrupted
+            for (Future<T> future : futures)
+                future.cancel(true);
+        }
+        return results;
+    }
+}
@@ -43,6 +43,7 @@ import org.openscience.cdk.CrystalTest;
 import org.openscience.cdk.DefaultChemObjectBuilderTest;
 import org.openscience.cdk.ElectronContainerTest;
 import org.openscience.cdk.ElementTest;
+import org.openscience.cdk.IndexedAtomContainerTest;
 import org.openscience.cdk.FragmentAtomTest;
 import org.openscience.cdk.IsotopeTest;
 import org.openscience.cdk.LonePairTest;
@@ -92,6 +93,7 @@ import org.openscience.cdk.protein.data.PDBStructureTest;
     DefaultChemObjectBuilderTest.class,
     ElectronContainerTest.class,
     ElementTest.class,
+    IndexedAtomContainerTest.class,
     IsotopeTest.class,
     LonePairTest.class,
     MappingTest.class,
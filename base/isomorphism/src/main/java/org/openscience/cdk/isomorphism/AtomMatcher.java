@@ -68,6 +68,18 @@ public abstract class AtomMatcher {
         return new ElementMatcher();
     }
 
+    /**
+     * Atoms are compatible if they have the same symbol. Unlike {@link
+     * #forElement()} the atomic number need not be set, an atom without a
+     * symbol is not compatible with any atom.
+     *
+     * @return a matcher which checks symbol compatibility
+     */
+    @TestMethod("symbolMatch,symbolMatch_unset")
+    public static AtomMatcher forSymbol() {
+        return new SymbolMatcher();
+    }
+
     /**
      * Atoms are compatible if the second atom ({@code atom2}) is accepted by
      * the {@link IQueryAtom}, {@code atom1}.
@@ -101,6 +113,16 @@ public abstract class AtomMatcher {
         }
     }
 
+    /** A matcher defines atoms with the same symbol as compatible. */
+    private static final class SymbolMatcher extends AtomMatcher {
+
+        /** @inheritDoc */
+        @Override public boolean matches(IAtom atom1, IAtom atom2) {
+            String symbol = atom1.getSymbol();
+            return symbol != null && symbol.equals(atom2.getSymbol());
+        }
+    }
+
     /**
      * A matcher to use when all atoms are {@link IQueryAtom}s. {@code atom1} is
      * cast to a query atom and matched against {@code atom2}.
@@ -28,6 +28,7 @@ import com.google.common.base.Predicate;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.graph.ConnectedComponents;
+import org.openscience.cdk.graph.GraphCache;
 import org.openscience.cdk.graph.GraphUtil;
 import org.openscience.cdk.interfaces.IAtomContainer;
 
@@ -81,7 +82,7 @@ public final class ComponentGrouping implements Predicate<int[]> {
      * @param target target structure
      */
     public ComponentGrouping(IAtomContainer query, IAtomContainer target) {
-        this(query, GraphUtil.toAdjList(target));
+        this(query, GraphCache.of(target).graph());
     }
 
     /**
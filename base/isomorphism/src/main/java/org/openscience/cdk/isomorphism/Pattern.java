@@ -108,6 +108,53 @@ public abstract class Pattern {
      */
     public abstract Mappings matchAll(IAtomContainer target);
 
+    /**
+     * Find a matching of this pattern in a {@link PreparedTarget}. Matching
+     * a prepared target avoids recomputing the target's adjacency when many
+     * patterns are matched against the same compound. The default
+     * implementation matches the container of the prepared target.
+     *
+     * @param target the prepared target to search for the pattern in
+     * @return the mapping from the pattern to the target or an empty array
+     * @see #match(IAtomContainer)
+     */
+    public int[] match(PreparedTarget target) {
+        return match(target.container());
+    }
+
+    /**
+     * Determine if there is a mapping of this pattern in the prepared {@code
+     * target}.
+     *
+     * <blockquote><pre>
+     * List&lt;Pattern&gt; patterns = ...;
+     * PreparedTarget target   = new PreparedTarget(m);
+     * for (Pattern pattern : patterns) {
+     *     if (pattern.matches(target)) {
+     *         // found mapping!
+     *     }
+     * }
+     * </pre></blockquote>
+     *
+     * @param target the prepared target to search for the pattern in
+     * @return the mapping from the pattern to the target
+     */
+    public final boolean matches(PreparedTarget target) {
+        return match(target).length > 0;
+    }
+
+    /**
+     * Find all mappings of this pattern in a {@link PreparedTarget}. The
+     * default implementation matches the container of the prepared target.
+     *
+     * @param target the prepared target to search for the pattern in
+     * @return the mapping from the pattern to the target
+     * @see #matchAll(IAtomContainer)
+     */
+    public Mappings matchAll(PreparedTarget target) {
+        return matchAll(target.container());
+    }
+
 
     /**
      * Create a pattern which can be used to find molecules which contain the
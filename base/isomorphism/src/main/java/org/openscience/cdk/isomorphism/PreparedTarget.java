@@ -0,0 +1,290 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.isomorphism;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.graph.GraphCache;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IPseudoAtom;
+import org.openscience.cdk.ringsearch.RingSearch;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.openscience.cdk.graph.GraphUtil.EdgeToBondMap;
+
+/**
+ * A target structure which has been prepared for matching against many
+ * {@link Pattern}s. The adjacency list, bond map and atom invariants of the
+ * target are computed once, ring membership is computed on first use. When
+ * screening a single compound against many patterns (e.g. functional group or
+ * alert filters) the target need only be prepared once.
+ *
+ * <blockquote><pre>
+ * List&lt;Pattern&gt; patterns = ...;
+ * for (IAtomContainer m : ms) {
+ *     PreparedTarget target = new PreparedTarget(m);
+ *     for (Pattern pattern : patterns) {
+ *         if (pattern.matches(target)) {
+ *             // hit!
+ *         }
+ *     }
+ * }
+ * </pre></blockquote>
+ *
+ * The prepared target is a snapshot of the container's connectivity and must
+ * not be used once atoms or bonds have been added or removed. The class is
+ * not thread-safe.
+ *
+ * @cdk.module isomorphism
+ * @cdk.githash
+ * @see Pattern#matchAll(PreparedTarget)
+ */
+@TestClass("org.openscience.cdk.isomorphism.PreparedTargetTest")
+public final class PreparedTarget {
+
+    /** Maximum atomic number counted by the element prescreen. */
+    private static final int MAX_ELEMENT = 128;
+
+    /** The target structure. */
+    private final IAtomContainer container;
+
+    /** Adjacency list of the target. */
+    private final int[][] g;
+
+    /** Bond lookup of the target. */
+    private final EdgeToBondMap bondMap;
+
+    /** Atomic number of each atom, -1 if unset. */
+    private final int[] elements;
+
+    /** Number of atoms of each element, null if an element was unset. */
+    private final int[] elementCounts;
+
+    /** Ring membership, computed on demand. */
+    private RingSearch ringSearch;
+
+    /** Pattern specific preparations which have been applied to the container. */
+    private final Set<String> preparations = new HashSet<String>(4);
+
+    /**
+     * Prepare the {@code container} for matching.
+     *
+     * @param container the target structure
+     */
+    @TestMethod("prepare")
+    public PreparedTarget(IAtomContainer container) {
+        this.container = container;
+        GraphCache cache = GraphCache.of(container);
+        this.bondMap = cache.bondMap();
+        this.g = cache.graph();
+        this.elements = new int[g.length];
+        for (int v = 0; v < g.length; v++)
+            elements[v] = atomicNumber(container.getAtom(v));
+        this.elementCounts = elementCounts(elements);
+    }
+
+    /**
+     * The container which was prepared.
+     *
+     * @return the target structure
+     */
+    @TestMethod("prepare")
+    public IAtomContainer container() {
+        return container;
+    }
+
+    /**
+     * Adjacency list representation of the target, the array must not be
+     * modified.
+     *
+     * @return adjacency list
+     */
+    @TestMethod("prepare")
+    public int[][] graph() {
+        return g;
+    }
+
+    /**
+     * Bond lookup for the edges of the {@link #graph()}.
+     *
+     * @return the bond map
+     */
+    @TestMethod("prepare")
+    public EdgeToBondMap bondMap() {
+        return bondMap;
+    }
+
+    /**
+     * The atomic number of the atom at index {@code v}.
+     *
+     * @param v atom index
+     * @return the atomic number, 0 for pseudo atoms or -1 if unset
+     */
+    @TestMethod("invariants")
+    public int atomicNumber(int v) {
+        return elements[v];
+    }
+
+    /**
+     * The number of atoms adjacent to the atom at index {@code v}.
+     *
+     * @param v atom index
+     * @return the degree
+     */
+    @TestMethod("invariants")
+    public int degree(int v) {
+        return g[v].length;
+    }
+
+    /**
+     * Is the atom at index {@code v} a member of a ring.
+     *
+     * @param v atom index
+     * @return the atom is in a ring
+     */
+    @TestMethod("ringMembership")
+    public boolean inRing(int v) {
+        return ringSearch().cyclic(v);
+    }
+
+    /**
+     * Is the edge between the atoms at index {@code u} and {@code v} a member
+     * of a ring.
+     *
+     * @param u atom index
+     * @param v atom index
+     * @return the edge is in a ring
+     */
+    @TestMethod("ringMembership")
+    public boolean inRing(int u, int v) {
+        return ringSearch().cyclic(u, v);
+    }
+
+    /**
+     * Ring search of the target, the search is created on first access and
+     * reuses the adjacency list of this prepared target.
+     *
+     * @return ring search for the target
+     */
+    @TestMethod("ringMembership")
+    public RingSearch ringSearch() {
+        if (ringSearch == null)
+            ringSearch = new RingSearch(container, g);
+        return ringSearch;
+    }
+
+    /**
+     * Has a pattern specific preparation of the container been done. Some
+     * patterns need to assign properties to the container before matching
+     * (e.g. the SMARTS invariants and aromaticity), recording the preparation
+     * allows it to be done once for all patterns matched against this target.
+     *
+     * @param key identifies the preparation
+     * @return the preparation has been done
+     * @see #addPreparation(String)
+     */
+    @TestMethod("preparations")
+    public boolean hasPreparation(String key) {
+        return preparations.contains(key);
+    }
+
+    /**
+     * Record that a pattern specific preparation of the container has been
+     * done.
+     *
+     * @param key identifies the preparation
+     * @see #hasPreparation(String)
+     */
+    @TestMethod("preparations")
+    public void addPreparation(String key) {
+        preparations.add(key);
+    }
+
+    /**
+     * Prescreen the target with the element counts of a query. A match is not
+     * possible if the target has fewer atoms of an element than the query, or,
+     * for identity ({@code subgraph = false}), a different number.
+     *
+     * @param queryCounts element counts of the query (may be null)
+     * @param subgraph    the query should be a subgraph of the target
+     * @return a match may be possible
+     */
+    boolean feasible(int[] queryCounts, boolean subgraph) {
+        if (queryCounts == null || elementCounts == null)
+            return true;
+        for (int i = 0; i < MAX_ELEMENT; i++) {
+            if (subgraph ? queryCounts[i] > elementCounts[i]
+                         : queryCounts[i] != elementCounts[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Count the number of atoms of each element in the container.
+     *
+     * @param container a structure
+     * @return the element counts or null if an element was unset
+     */
+    static int[] elementCounts(IAtomContainer container) {
+        int[] elements = new int[container.getAtomCount()];
+        for (int v = 0; v < elements.length; v++)
+            elements[v] = atomicNumber(container.getAtom(v));
+        return elementCounts(elements);
+    }
+
+    /**
+     * Count the number of atoms of each element.
+     *
+     * @param elements atomic numbers
+     * @return the element counts or null if an element was unset
+     */
+    private static int[] elementCounts(int[] elements) {
+        int[] counts = new int[MAX_ELEMENT];
+        for (int elem : elements) {
+            if (elem < 0 || elem >= MAX_ELEMENT)
+                return null;
+            counts[elem]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Null safe atomic number access, pseudo atoms are given 0 (as in the
+     * {@link AtomMatcher#forElement()}).
+     *
+     * @param atom an atom
+     * @return the atomic number or -1 if unset
+     */
+    private static int atomicNumber(IAtom atom) {
+        Integer elem = atom.getAtomicNumber();
+        if (elem != null)
+            return elem;
+        if (atom instanceof IPseudoAtom)
+            return 0;
+        return -1;
+    }
+}
@@ -31,6 +31,7 @@ import org.openscience.cdk.graph.GraphUtil;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
 
+import java.util.Collections;
 import java.util.Iterator;
 
 import static org.openscience.cdk.graph.GraphUtil.EdgeToBondMap;
@@ -95,6 +96,9 @@ public final class Ullmann extends Pattern {
     /** Is the query matching query atoms/bonds etc? */
     private final boolean queryMatching;
 
+    /** Element counts of the query for prescreening, null if not used. */
+    private final int[] elementCounts;
+
     /**
      * Non-public constructor for-now the atom/bond semantics are fixed.
      *
@@ -111,6 +115,7 @@ public final class Ullmann extends Pattern {
         this.bonds1 = EdgeToBondMap.withSpaceFor(query);
         this.g1 = GraphUtil.toAdjList(query, bonds1);
         this.queryMatching = query instanceof IQueryAtomContainer;
+        this.elementCounts = queryMatching ? null : PreparedTarget.elementCounts(query);
     }
 
     @TestMethod("benzeneSubsearch,napthaleneSubsearch")
@@ -120,13 +125,24 @@ public final class Ullmann extends Pattern {
 
     @TestMethod("benzeneSubsearch,napthaleneSubsearch")
     @Override public Mappings matchAll(IAtomContainer target) {
-        EdgeToBondMap bonds2 = EdgeToBondMap.withSpaceFor(target);
-        int[][] g2 = GraphUtil.toAdjList(target, bonds2);
-        Iterable<int[]> iterable = new UllmannIterable(query, target,
-                                                       g1, g2,
-                                                       bonds1, bonds2,
-                                                       atomMatcher, bondMatcher);    
-        return new Mappings(query, target, iterable);       
+        return matchAll(new PreparedTarget(target));
+    }
+
+    @TestMethod("preparedTarget")
+    @Override public int[] match(PreparedTarget target) {
+        return matchAll(target).stereochemistry().first();
+    }
+
+    @TestMethod("preparedTarget")
+    @Override public Mappings matchAll(PreparedTarget target) {
+        IAtomContainer container = target.container();
+        if (!target.feasible(elementCounts, true))
+            return new Mappings(query, container, Collections.<int[]>emptyList());
+        Iterable<int[]> iterable = new UllmannIterable(query, container,
+                                                       g1, target.graph(),
+                                                       bonds1, target.bondMap(),
+                                                       atomMatcher, bondMatcher);
+        return new Mappings(query, container, iterable);
     }
 
     /**
@@ -31,6 +31,7 @@ import org.openscience.cdk.graph.GraphUtil;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
 
+import java.util.Collections;
 import java.util.Iterator;
 
 import static org.openscience.cdk.graph.GraphUtil.EdgeToBondMap;
@@ -98,18 +99,24 @@ public final class VentoFoggia extends Pattern {
     /** Is the query matching query atoms/bonds etc? */
     private final boolean queryMatching;
 
+    /** Element counts of the query for prescreening, null if not used. */
+    private final int[] elementCounts;
+
     /**
-     * Non-public constructor for-now the atom/bond semantics are fixed.
+     * Non-public constructor, patterns are created with the static factory
+     * methods.
      *
      * @param query        the query structure
      * @param atomMatcher  how atoms should be matched
      * @param bondMatcher  how bonds should be matched
      * @param substructure substructure search
+     * @param prescreen    prescreen targets by element counts
      */
     private VentoFoggia(IAtomContainer query,
                         AtomMatcher atomMatcher,
                         BondMatcher bondMatcher,
-                        boolean substructure) {
+                        boolean substructure,
+                        boolean prescreen) {
         this.query = query;
         this.atomMatcher = atomMatcher;
         this.bondMatcher = bondMatcher;
@@ -117,6 +124,7 @@ public final class VentoFoggia extends Pattern {
         this.g1 = GraphUtil.toAdjList(query, bonds1);
         this.subgraph = substructure;
         this.queryMatching = query instanceof IQueryAtomContainer;
+        this.elementCounts = prescreen && !queryMatching ? PreparedTarget.elementCounts(query) : null;
     }
 
     /** @inheritDoc */
@@ -128,14 +136,27 @@ public final class VentoFoggia extends Pattern {
     /** @inheritDoc */
     @TestMethod("benzeneIdentical,benzeneSubsearch")
     @Override public Mappings matchAll(final IAtomContainer target) {
-        EdgeToBondMap bonds2 = EdgeToBondMap.withSpaceFor(target);
-        int[][] g2 = GraphUtil.toAdjList(target, bonds2);
-        Iterable<int[]> iterable = new VFIterable(query, target,
-                                                  g1, g2,
-                                                  bonds1, bonds2,
+        return matchAll(new PreparedTarget(target));
+    }
+
+    /** @inheritDoc */
+    @TestMethod("preparedTarget")
+    @Override public int[] match(PreparedTarget target) {
+        return matchAll(target).stereochemistry().first();
+    }
+
+    /** @inheritDoc */
+    @TestMethod("preparedTarget")
+    @Override public Mappings matchAll(PreparedTarget target) {
+        IAtomContainer container = target.container();
+        if (!target.feasible(elementCounts, subgraph))
+            return new Mappings(query, container, Collections.<int[]>emptyList());
+        Iterable<int[]> iterable = new VFIterable(query, container,
+                                                  g1, target.graph(),
+                                                  bonds1, target.bondMap(),
                                                   atomMatcher, bondMatcher,
                                                   subgraph);
-        return new Mappings(query, target, iterable);
+        return new Mappings(query, container, iterable);
     }
 
     /**
@@ -151,7 +172,7 @@ public final class VentoFoggia extends Pattern {
         return new VentoFoggia(query,
                                isQuery ? AtomMatcher.forQuery() : AtomMatcher.forElement(),
                                isQuery ? BondMatcher.forQuery() : BondMatcher.forOrder(),
-                               true);
+                               true, true);
     }
 
     /**
@@ -167,7 +188,43 @@ public final class VentoFoggia extends Pattern {
         return new VentoFoggia(query,
                                isQuery ? AtomMatcher.forQuery() : AtomMatcher.forElement(),
                                isQuery ? BondMatcher.forQuery() : BondMatcher.forOrder(),
-                               false);
+                               false, true);
+    }
+
+    /**
+     * Create a pattern which can be used to find molecules which contain the
+     * {@code query} structure. The atoms and bonds are compared with the
+     * provided matchers, for example {@link AtomMatcher#forAny()} and {@link
+     * BondMatcher#forAny()} find the query connectivity regardless of the
+     * elements and bond orders.
+     *
+     * @param query       the substructure to find
+     * @param atomMatcher how atoms are matched
+     * @param bondMatcher how bonds are matched
+     * @return a pattern for finding the {@code query}
+     */
+    @TestMethod("anySubstructure")
+    public static Pattern findSubstructure(IAtomContainer query,
+                                           AtomMatcher atomMatcher,
+                                           BondMatcher bondMatcher) {
+        return new VentoFoggia(query, atomMatcher, bondMatcher, true, false);
+    }
+
+    /**
+     * Create a pattern which can be used to find molecules which are the same
+     * as the {@code query} structure. The atoms and bonds are compared with the
+     * provided matchers.
+     *
+     * @param query       the structure to find
+     * @param atomMatcher how atoms are matched
+     * @param bondMatcher how bonds are matched
+     * @return a pattern for finding the {@code query}
+     */
+    @TestMethod("anyIdentical")
+    public static Pattern findIdentical(IAtomContainer query,
+                                        AtomMatcher atomMatcher,
+                                        BondMatcher bondMatcher) {
+        return new VentoFoggia(query, atomMatcher, bondMatcher, false, false);
     }
 
     private static final class VFIterable implements Iterable<int[]> {
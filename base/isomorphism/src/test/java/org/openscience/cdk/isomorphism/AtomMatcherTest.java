@@ -96,6 +96,29 @@ public class AtomMatcherTest {
         matcher.matches(atom1, atom2);
     }
 
+    @Test public void symbolMatch() throws Exception {
+        AtomMatcher matcher = AtomMatcher.forSymbol();
+        IAtom atom1 = mock(IAtom.class);
+        IAtom atom2 = mock(IAtom.class);
+        IAtom atom3 = mock(IAtom.class);
+        when(atom1.getSymbol()).thenReturn("C");
+        when(atom2.getSymbol()).thenReturn("C");
+        when(atom3.getSymbol()).thenReturn("Cl");
+        assertTrue(matcher.matches(atom1, atom2));
+        assertTrue(matcher.matches(atom2, atom1));
+        assertFalse(matcher.matches(atom1, atom3));
+        assertFalse(matcher.matches(atom3, atom1));
+    }
+
+    @Test public void symbolMatch_unset() throws Exception {
+        AtomMatcher matcher = AtomMatcher.forSymbol();
+        IAtom atom1 = mock(IAtom.class);
+        IAtom atom2 = mock(IAtom.class);
+        when(atom1.getSymbol()).thenReturn(null);
+        when(atom2.getSymbol()).thenReturn(null);
+        assertFalse(matcher.matches(atom1, atom2));
+    }
+
     @Test public void queryMatch() throws Exception {
         AtomMatcher matcher = AtomMatcher.forQuery();
         IQueryAtom atom1 = mock(IQueryAtom.class);
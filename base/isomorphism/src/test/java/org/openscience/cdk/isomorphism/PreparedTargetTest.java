@@ -0,0 +1,98 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.isomorphism;
+
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.templates.TestMoleculeFactory;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests for preparing targets for matching against many patterns.
+ *
+ * @cdk.module test-isomorphism
+ */
+public class PreparedTargetTest {
+
+    @Test public void prepare() throws Exception {
+        IAtomContainer naphthalene = TestMoleculeFactory.makeNaphthalene();
+        PreparedTarget target = new PreparedTarget(naphthalene);
+        assertThat(target.container(), is(naphthalene));
+        assertThat(target.graph().length, is(10));
+        assertThat(target.bondMap().get(0, 1), is(naphthalene.getBond(naphthalene.getAtom(0),
+                                                                       naphthalene.getAtom(1))));
+    }
+
+    @Test public void invariants() throws Exception {
+        IAtomContainer naphthalene = TestMoleculeFactory.makeNaphthalene();
+        PreparedTarget target = new PreparedTarget(naphthalene);
+        for (int v = 0; v < naphthalene.getAtomCount(); v++) {
+            assertThat(target.atomicNumber(v), is(6));
+            assertThat(target.degree(v), is(naphthalene.getConnectedAtomsCount(naphthalene.getAtom(v))));
+        }
+    }
+
+    @Test public void ringMembership() throws Exception {
+        IAtomContainer propylbenzene = TestMoleculeFactory.makeBenzene();
+        propylbenzene.addAtom(propylbenzene.getBuilder().newInstance(IAtom.class, "C"));
+        propylbenzene.addBond(0, 6, IBond.Order.SINGLE);
+        PreparedTarget target = new PreparedTarget(propylbenzene);
+        assertThat(target.inRing(0), is(true));
+        assertThat(target.inRing(6), is(false));
+        assertThat(target.inRing(0, 1), is(true));
+        assertThat(target.inRing(0, 6), is(false));
+    }
+
+    @Test public void elementPrescreen() throws Exception {
+        PreparedTarget target = new PreparedTarget(TestMoleculeFactory.makeBenzene());
+        int[] benzene = PreparedTarget.elementCounts(TestMoleculeFactory.makeBenzene());
+        int[] naphthalene = PreparedTarget.elementCounts(TestMoleculeFactory.makeNaphthalene());
+        assertThat(target.feasible(benzene, true), is(true));
+        assertThat(target.feasible(benzene, false), is(true));
+        assertThat(target.feasible(naphthalene, true), is(false));
+        assertThat(target.feasible(null, true), is(true));
+    }
+
+    @Test public void preparations() throws Exception {
+        PreparedTarget target = new PreparedTarget(TestMoleculeFactory.makeBenzene());
+        assertThat(target.hasPreparation("SMARTS"), is(false));
+        target.addPreparation("SMARTS");
+        assertThat(target.hasPreparation("SMARTS"), is(true));
+        assertThat(target.hasPreparation("SMARTS.RINGS"), is(false));
+    }
+
+    @Test public void reuseForManyPatterns() throws Exception {
+        PreparedTarget target = new PreparedTarget(TestMoleculeFactory.makeNaphthalene());
+        Pattern benzene = Pattern.findSubstructure(TestMoleculeFactory.makeBenzene());
+        Pattern naphthalene = Pattern.findSubstructure(TestMoleculeFactory.makeNaphthalene());
+        Pattern indole = Pattern.findSubstructure(TestMoleculeFactory.makeIndole());
+        assertThat(benzene.matches(target), is(true));
+        assertThat(naphthalene.matches(target), is(true));
+        assertThat(indole.matches(target), is(false));
+        assertThat(benzene.matches(target), is(true));
+    }
+}
@@ -58,4 +58,17 @@ public class UllmannTest {
                                   .size();
         assertThat(count, is(0));
     }
+
+    @Test public void preparedTarget() throws Exception {
+        PreparedTarget target = new PreparedTarget(TestMoleculeFactory.makeNaphthalene());
+        int[] match = Ullmann.findSubstructure(TestMoleculeFactory.makeBenzene())
+                        .match(target);
+        assertThat(match, is(new int[]{2, 7, 6, 5, 4, 3}));
+        int count = FluentIterable.from(Ullmann.findSubstructure(TestMoleculeFactory.makeBenzene())
+                                        .matchAll(target))
+                                  .size();
+        assertThat(count, is(6));
+        assertThat(Ullmann.findSubstructure(TestMoleculeFactory.makeIndole())
+                     .matchAll(target).count(), is(0));
+    }
 }
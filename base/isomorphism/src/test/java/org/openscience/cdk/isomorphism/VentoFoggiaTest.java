@@ -78,4 +78,32 @@ public class VentoFoggiaTest {
                                   .size();
         assertThat(count, is(0)); 
     }
+
+    @Test public void preparedTarget() throws Exception {
+        PreparedTarget target = new PreparedTarget(TestMoleculeFactory.makeNaphthalene());
+        int[] match = VentoFoggia.findSubstructure(TestMoleculeFactory.makeBenzene())
+                        .match(target);
+        assertThat(match, is(new int[]{2, 7, 6, 5, 4, 3}));
+        int count = FluentIterable.from(VentoFoggia.findSubstructure(TestMoleculeFactory.makeBenzene())
+                                        .matchAll(target))
+                                  .size();
+        assertThat(count, is(6));
+        assertThat(VentoFoggia.findSubstructure(TestMoleculeFactory.makeIndole())
+                     .matchAll(target).count(), is(0));
+    }
+
+    @Test public void anySubstructure() throws Exception {
+        Pattern pattern = VentoFoggia.findSubstructure(TestMoleculeFactory.makePyridine(),
+                                                       AtomMatcher.forAny(), BondMatcher.forAny());
+        assertThat(pattern.matchAll(TestMoleculeFactory.makeNaphthalene()).countUnique(), is(2));
+        assertThat(VentoFoggia.findSubstructure(TestMoleculeFactory.makePyridine())
+                              .matchAll(TestMoleculeFactory.makeNaphthalene()).count(), is(0));
+    }
+
+    @Test public void anyIdentical() throws Exception {
+        Pattern pattern = VentoFoggia.findIdentical(TestMoleculeFactory.makePyridine(),
+                                                    AtomMatcher.forAny(), BondMatcher.forAny());
+        assertThat(pattern.matchAll(TestMoleculeFactory.makeBenzene()).count(), is(12));
+        assertThat(pattern.matchAll(TestMoleculeFactory.makeNaphthalene()).count(), is(0));
+    }
 }
@@ -27,6 +27,7 @@ import org.openscience.cdk.isomorphism.AtomMatcherTest;
 import org.openscience.cdk.isomorphism.BondMatcherTest;
 import org.openscience.cdk.isomorphism.CompatibilityMatrixTest;
 import org.openscience.cdk.isomorphism.ComponentGroupingTest;
+import org.openscience.cdk.isomorphism.PreparedTargetTest;
 import org.openscience.cdk.isomorphism.StateStreamTest;
 import org.openscience.cdk.isomorphism.StereoMatchTest;
 import org.openscience.cdk.isomorphism.UllmannStateTest;
@@ -60,6 +61,7 @@ import org.openscience.cdk.isomorphism.matchers.SymbolSetQueryAtomTest;
     CompatibilityMatrixTest.class,
     StateStreamTest.class,
     UllmannTest.class,
+    PreparedTargetTest.class,
     StereoMatchTest.class,
     ComponentGroupingTest.class
 })
@@ -0,0 +1,392 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.silent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IBond.Order;
+import org.openscience.cdk.interfaces.IElectronContainer;
+
+/**
+ * An {@link AtomContainer} which keeps an index of the position of each atom
+ * and of the bonds incident to each atom. Neighbour lookups
+ * ({@link #getConnectedAtomsList(IAtom)}, {@link #getConnectedBondsList(IAtom)},
+ * {@link #getBond(IAtom, IAtom)}, ...) only visit the bonds of the given atom
+ * and {@link #getAtomNumber(IAtom)} / {@link #contains(IAtom)} are constant
+ * time rather than scanning the atom and bond arrays on every call.
+ *
+ * The index is updated as atoms and bonds are added and is invalidated (and
+ * lazily rebuilt) when the container is modified in other ways. As silent
+ * objects do not send change events, the atoms of a bond must not be replaced
+ * while the bond is in this container - unless the atom is also replaced in
+ * the container with {@link #setAtom(int, IAtom)} (as done by
+ * AtomContainerManipulator.replaceAtomByAtom). Alternatively, remove the
+ * bond and add it back after the change.
+ *
+ * <blockquote><pre>
+ * IAtomContainer container = new IndexedAtomContainer();
+ * // or, to index an existing container
+ * IAtomContainer container = new IndexedAtomContainer(molecule);
+ * </pre></blockquote>
+ *
+ * @cdk.module silent
+ * @cdk.githash
+ * @cdk.keyword adjacency
+ * @see AtomContainer
+ */
+public class IndexedAtomContainer extends AtomContainer {
+
+    private static final long serialVersionUID = 4213718806213541985L;
+
+    /** Position of each atom in the atoms array, null when stale. */
+    private Map<IAtom, Integer>     atomIndex;
+
+    /** Bonds incident to each atom (in bond array order), null when stale. */
+    private Map<IAtom, List<IBond>> adjacency;
+
+    /**
+     * Constructs an empty container.
+     */
+    public IndexedAtomContainer() {
+        this(10, 10, 0, 0);
+    }
+
+    /**
+     * Constructs an indexed container with a shallow copy of the atoms and
+     * electron containers of another container.
+     *
+     * @param container the container to copy the atoms and electron containers from
+     */
+    public IndexedAtomContainer(IAtomContainer container) {
+        super(container);
+        invalidate();
+    }
+
+    /**
+     * Constructs an empty container with the starting array lengths set to the
+     * provided values.
+     *
+     * @param atomCount number of atoms to be in this container
+     * @param bondCount number of bonds to be in this container
+     * @param lpCount   number of lone pairs to be in this container
+     * @param seCount   number of single electrons to be in this container
+     */
+    public IndexedAtomContainer(int atomCount, int bondCount, int lpCount, int seCount) {
+        super(atomCount, bondCount, lpCount, seCount);
+        invalidate();
+    }
+
+    /**
+     * Access the atom index, building it if needed.
+     *
+     * @return the atom index
+     */
+    private Map<IAtom, Integer> atomIndex() {
+        if (atomIndex == null) {
+            Map<IAtom, Integer> index = new IdentityHashMap<IAtom, Integer>(2 * atomCount);
+            for (int i = atomCount - 1; i >= 0; i--)
+                index.put(atoms[i], i);
+            atomIndex = index;
+        }
+        return atomIndex;
+    }
+
+    /**
+     * Access the bonds incident to each atom, building the index if needed.
+     *
+     * @return the adjacency index
+     */
+    private Map<IAtom, List<IBond>> adjacency() {
+        if (adjacency == null) {
+            Map<IAtom, List<IBond>> index = new IdentityHashMap<IAtom, List<IBond>>(2 * atomCount);
+            for (int i = 0; i < bondCount; i++)
+                index(index, bonds[i]);
+            adjacency = index;
+        }
+        return adjacency;
+    }
+
+    /**
+     * Add the bond to the incidence list of each of its atoms.
+     *
+     * @param index the adjacency index
+     * @param bond  the bond to index
+     */
+    private static void index(Map<IAtom, List<IBond>> index, IBond bond) {
+        IAtom prev = null;
+        for (IAtom atom : bond.atoms()) {
+            // a bond may (pathologically) list the same atom twice
+            if (atom == null || atom == prev)
+                continue;
+            List<IBond> incident = index.get(atom);
+            if (incident == null)
+                index.put(atom, incident = new ArrayList<IBond>(4));
+            incident.add(bond);
+            prev = atom;
+        }
+    }
+
+    /**
+     * The bonds incident to the atom, the list must not be modified.
+     *
+     * @param atom an atom
+     * @return incident bonds
+     */
+    private List<IBond> incident(IAtom atom) {
+        List<IBond> incident = adjacency().get(atom);
+        return incident != null ? incident : Collections.<IBond>emptyList();
+    }
+
+    /**
+     * Mark both indices as stale, they will be rebuilt on next access. New
+     * map instances are always created on rebuild such that a clone never
+     * shares the indices of the original.
+     */
+    private void invalidate() {
+        atomIndex = null;
+        adjacency = null;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int getAtomNumber(IAtom atom) {
+        Integer idx = atomIndex().get(atom);
+        return idx != null ? idx : -1;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public boolean contains(IAtom atom) {
+        return atomIndex().containsKey(atom);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public boolean contains(IBond bond) {
+        IAtom atom = bond.getAtomCount() > 0 ? bond.getAtom(0) : null;
+        if (atom == null)
+            return super.contains(bond);
+        return incident(atom).contains(bond);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public IBond getBond(IAtom atom1, IAtom atom2) {
+        for (IBond bond : incident(atom1)) {
+            if (bond.getConnectedAtom(atom1) == atom2)
+                return bond;
+        }
+        return null;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public List<IAtom> getConnectedAtomsList(IAtom atom) {
+        List<IBond> incident = incident(atom);
+        List<IAtom> atomsList = new ArrayList<IAtom>(incident.size());
+        for (IBond bond : incident)
+            atomsList.add(bond.getConnectedAtom(atom));
+        return atomsList;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public List<IBond> getConnectedBondsList(IAtom atom) {
+        return new ArrayList<IBond>(incident(atom));
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public List<IElectronContainer> getConnectedElectronContainersList(IAtom atom) {
+        List<IElectronContainer> ecs = new ArrayList<IElectronContainer>(incident(atom));
+        ecs.addAll(getConnectedLonePairsList(atom));
+        ecs.addAll(getConnectedSingleElectronsList(atom));
+        return ecs;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int getConnectedAtomsCount(IAtom atom) {
+        return incident(atom).size();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public double getBondOrderSum(IAtom atom) {
+        double count = 0;
+        for (IBond bond : incident(atom)) {
+            IBond.Order order = bond.getOrder();
+            if (order != null)
+                count += order.numeric();
+        }
+        return count;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Order getMaximumBondOrder(IAtom atom) {
+        IBond.Order max = IBond.Order.SINGLE;
+        for (IBond bond : incident(atom)) {
+            if (bond.getOrder().numeric() > max.numeric())
+                max = bond.getOrder();
+        }
+        return max;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Order getMinimumBondOrder(IAtom atom) {
+        IBond.Order min = IBond.Order.QUADRUPLE;
+        for (IBond bond : incident(atom)) {
+            if (bond.getOrder().numeric() < min.numeric())
+                min = bond.getOrder();
+        }
+        return min;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void setAtoms(IAtom[] atoms) {
+        super.setAtoms(atoms);
+        invalidate();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void setAtom(int number, IAtom atom) {
+        super.setAtom(number, atom);
+        // the bonds of the replaced atom are normally updated afterwards
+        invalidate();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void addAtom(IAtom atom) {
+        int n = atomCount;
+        super.addAtom(atom);
+        if (atomIndex != null && atomCount > n)
+            atomIndex.put(atom, n);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void removeAtom(int position) {
+        super.removeAtom(position);
+        // atoms after the position have shifted
+        atomIndex = null;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void setBonds(IBond[] bonds) {
+        super.setBonds(bonds);
+        adjacency = null;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void addBond(IBond bond) {
+        super.addBond(bond);
+        if (adjacency != null)
+            index(adjacency, bond);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public IBond removeBond(int position) {
+        IBond bond = super.removeBond(position);
+        if (adjacency != null) {
+            IAtom prev = null;
+            for (IAtom atom : bond.atoms()) {
+                List<IBond> incident = atom != null && atom != prev ? adjacency.get(atom) : null;
+                if (incident == null)
+                    continue;
+                for (int i = 0; i < incident.size(); i++) {
+                    if (incident.get(i) == bond) {
+                        incident.remove(i);
+                        break;
+                    }
+                }
+                prev = atom;
+            }
+        }
+        return bond;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void removeAllBonds() {
+        super.removeAllBonds();
+        adjacency = null;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void removeAllElements() {
+        super.removeAllElements();
+        invalidate();
+    }
+}
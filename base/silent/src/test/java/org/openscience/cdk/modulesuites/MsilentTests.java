@@ -42,6 +42,7 @@ import org.openscience.cdk.silent.CrystalTest;
 import org.openscience.cdk.silent.ElectronContainerTest;
 import org.openscience.cdk.silent.ElementTest;
 import org.openscience.cdk.silent.FragmentAtomTest;
+import org.openscience.cdk.silent.IndexedAtomContainerTest;
 import org.openscience.cdk.silent.IsotopeTest;
 import org.openscience.cdk.silent.LonePairTest;
 import org.openscience.cdk.silent.MolecularFormulaSetTest;
@@ -85,6 +86,7 @@ import org.openscience.cdk.silent.StrandTest;
     ElectronContainerTest.class,
     ElementTest.class,
     FragmentAtomTest.class,
+    IndexedAtomContainerTest.class,
     IsotopeTest.class,
     LonePairTest.class,
     MonomerTest.class,
@@ -0,0 +1,123 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.silent;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openscience.cdk.interfaces.AbstractAtomContainerTest;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObject;
+import org.openscience.cdk.interfaces.ITestObjectBuilder;
+
+/**
+ * Checks the functionality of the {@link IndexedAtomContainer}.
+ *
+ * @cdk.module test-silent
+ */
+public class IndexedAtomContainerTest extends AbstractAtomContainerTest {
+
+    @BeforeClass public static void setUp() {
+        setTestObjectBuilder(new ITestObjectBuilder() {
+            public IChemObject newTestObject() {
+                return new IndexedAtomContainer();
+            }
+        });
+    }
+
+    @Test public void testIndexedAtomContainer_IAtomContainer() {
+        IAtomContainer container = new AtomContainer();
+        IAtom c1 = new Atom("C");
+        IAtom c2 = new Atom("C");
+        IAtom o  = new Atom("O");
+        container.addAtom(c1);
+        container.addAtom(c2);
+        container.addAtom(o);
+        container.addBond(0, 1, IBond.Order.SINGLE);
+        container.addBond(1, 2, IBond.Order.DOUBLE);
+
+        IAtomContainer indexed = new IndexedAtomContainer(container);
+        Assert.assertEquals(2, indexed.getAtomNumber(o));
+        Assert.assertEquals(2, indexed.getConnectedAtomsCount(c2));
+        Assert.assertEquals(container.getBond(1), indexed.getBond(o, c2));
+        Assert.assertEquals(3.0, indexed.getBondOrderSum(c2), 0.01);
+    }
+
+    @Test public void testIndexUpdatedOnRemoval() {
+        IAtomContainer container = new IndexedAtomContainer();
+        IAtom c1 = new Atom("C");
+        IAtom c2 = new Atom("C");
+        IAtom c3 = new Atom("C");
+        container.addAtom(c1);
+        container.addAtom(c2);
+        container.addAtom(c3);
+        container.addBond(0, 1, IBond.Order.SINGLE);
+        container.addBond(1, 2, IBond.Order.SINGLE);
+
+        Assert.assertEquals(2, container.getConnectedAtomsCount(c2));
+        container.removeAtomAndConnectedElectronContainers(c1);
+        Assert.assertEquals(1, container.getConnectedAtomsCount(c2));
+        Assert.assertEquals(0, container.getAtomNumber(c2));
+        Assert.assertEquals(1, container.getAtomNumber(c3));
+        Assert.assertEquals(-1, container.getAtomNumber(c1));
+        Assert.assertNull(container.getBond(c1, c2));
+        Assert.assertFalse(container.contains(c1));
+    }
+
+    @Test public void testIndexUpdatedOnBondChange() {
+        IAtomContainer container = new IndexedAtomContainer();
+        IAtom c1 = new Atom("C");
+        IAtom c2 = new Atom("C");
+        IAtom o  = new Atom("O");
+        container.addAtom(c1);
+        container.addAtom(c2);
+        container.addBond(0, 1, IBond.Order.SINGLE);
+        IBond bond = container.getBond(0);
+
+        Assert.assertEquals(1, container.getConnectedAtomsCount(c2));
+
+        // replace c2 with o, as done by AtomContainerManipulator.replaceAtomByAtom
+        container.setAtom(1, o);
+        bond.setAtom(o, 1);
+
+        Assert.assertEquals(0, container.getConnectedAtomsCount(c2));
+        Assert.assertEquals(1, container.getConnectedAtomsCount(o));
+        Assert.assertEquals(bond, container.getBond(c1, o));
+        Assert.assertEquals(1, container.getAtomNumber(o));
+        Assert.assertEquals(-1, container.getAtomNumber(c2));
+    }
+
+    @Test public void testCloneDoesNotShareIndex() throws Exception {
+        IAtomContainer container = new IndexedAtomContainer();
+        container.addAtom(new Atom("C"));
+        container.addAtom(new Atom("C"));
+        container.addBond(0, 1, IBond.Order.SINGLE);
+        // build the index
+        Assert.assertEquals(1, container.getConnectedAtomsCount(container.getAtom(0)));
+
+        IAtomContainer clone = container.clone();
+        clone.removeBond(0);
+        Assert.assertEquals(0, clone.getConnectedAtomsCount(clone.getAtom(0)));
+        Assert.assertEquals(1, container.getConnectedAtomsCount(container.getAtom(0)));
+        Assert.assertEquals(0, container.getAtomNumber(container.getAtom(0)));
+        Assert.assertEquals(-1, container.getAtomNumber(clone.getAtom(0)));
+    }
+}
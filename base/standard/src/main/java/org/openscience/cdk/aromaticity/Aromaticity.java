@@ -30,6 +30,7 @@ import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.graph.CycleFinder;
 import org.openscience.cdk.graph.Cycles;
+import org.openscience.cdk.graph.GraphCache;
 import org.openscience.cdk.graph.GraphUtil;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
@@ -181,12 +182,14 @@ public final class Aromaticity {
     @TestMethod("benzene,furan,quinone")
     public Set<IBond> findBonds(IAtomContainer molecule) throws CDKException {
 
-        // build graph data-structures for fast cycle perception
-        final EdgeToBondMap bondMap = EdgeToBondMap.withSpaceFor(molecule);
-        final int[][]       graph   = GraphUtil.toAdjList(molecule, bondMap);
+        // graph data-structures for fast cycle perception, shared with other
+        // perceptions of the unchanged molecule
+        final GraphCache    cache   = GraphCache.of(molecule);
+        final EdgeToBondMap bondMap = cache.bondMap();
+        final int[][]       graph   = cache.graph();
 
         // initial ring/cycle search and get the contribution from each atom 
-        final RingSearch ringSearch = new RingSearch(molecule, graph);
+        final RingSearch ringSearch = cache.ringSearch();
         final int[]      electrons  = model.contribution(molecule, ringSearch);
 
         final Set<IBond> bonds = Sets.newHashSetWithExpectedSize(molecule.getBondCount());
@@ -29,6 +29,7 @@ import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.aromaticity.Aromaticity;
 import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.graph.GraphUtil;
 import org.openscience.cdk.graph.PathTools;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
@@ -87,6 +88,14 @@ import java.util.Set;
  *  high. </font>
  *  </p>
  *
+ *  The {@link Version#HASHED_1} version encodes the atoms and bonds as
+ *  integers and hashes each path during the path search, no strings are
+ *  created and the bit for a path is computed from its hash directly. The
+ *  bits differ from those of the (default) {@link Version#LEGACY} version,
+ *  fingerprints of different versions must not be compared: <pre>
+ *   IFingerprinter fingerprinter = new Fingerprinter(1024, 8, Fingerprinter.Version.HASHED_1);
+ * </pre>
+ *
  * @author         steinbeck
  * @cdk.created    2002-02-24
  * @cdk.keyword    fingerprint
@@ -107,6 +116,24 @@ public class Fingerprinter implements IFingerprinter {
 	
 	private int size;
 	private int searchDepth;
+	private final Version version;
+
+    /**
+     * The path encoding and bit mapping of the fingerprint. The bits set for
+     * a structure are fixed for a given version.
+     */
+    public enum Version {
+        /**
+         * Paths are encoded as strings, de-duplicated, and mapped to a bit with
+         * {@link java.util.Random}.
+         */
+        LEGACY,
+        /**
+         * Paths are hashed from integer atom and bond labels during the path
+         * search and the hash is mixed to a bit.
+         */
+        HASHED_1
+    }
 
 	static int debugCounter = 0;
 
@@ -148,9 +175,24 @@ public class Fingerprinter implements IFingerprinter {
 	 * @param  searchDepth The desired depth of search
 	 */
 	public Fingerprinter(int size, int searchDepth) {
+		this(size, searchDepth, Version.LEGACY);
+    }
+
+	/**
+	 * Constructs a fingerprint generator that creates fingerprints of
+	 * the given size, using a generation algorithm with the given search
+	 * depth and path encoding version.
+	 *
+	 * @param  size        The desired size of the fingerprint
+	 * @param  searchDepth The desired depth of search
+	 * @param  version     The path encoding version
+	 */
+	public Fingerprinter(int size, int searchDepth, Version version) {
+		if (version == null)
+			throw new NullPointerException("no version provided");
 		this.size = size;
 		this.searchDepth = searchDepth;
-
+		this.version = version;
     }
 
     /**
@@ -180,6 +222,11 @@ public class Fingerprinter implements IFingerprinter {
 		logger.debug("Finished Aromaticity Detection");
 		BitSet bitSet = new BitSet(size);
 
+        if (version == Version.HASHED_1) {
+            hashPaths(container, searchDepth, bitSet);
+            return new BitSetFingerprint(bitSet);
+        }
+
         int[] hashes = findPathes(container, searchDepth);
         for (int hash : hashes) {
             position = new java.util.Random(hash).nextInt(size);
@@ -290,6 +337,147 @@ public class Fingerprinter implements IFingerprinter {
         return hashes;
     }
 
+    /** Multiplier of the path hash. */
+    private static final long PATH_PRIME = 0x100000001B3L;
+
+    /** Offset of bond labels, such that atom and bond labels are distinct. */
+    private static final int BOND_LABEL_OFFSET = 1 << 10;
+
+    /**
+     * Set the bits of all paths of lengths 0 to the specified length
+     * ({@link Version#HASHED_1}). The paths are enumerated with a depth first
+     * search from each atom, the hash of the path and its reverse are updated
+     * as each atom is added and the lower of the two is the hash of the path.
+     * Paths are not de-duplicated, the same path sets the same bit.
+     *
+     * @param container   the molecule to search
+     * @param searchDepth the maximum path length (number of bonds)
+     * @param bitSet      the bits to set
+     * @throws CDKException too many paths from an atom
+     */
+    private void hashPaths(IAtomContainer container, int searchDepth, BitSet bitSet) throws CDKException {
+
+        final int n = container.getAtomCount();
+
+        GraphUtil.EdgeToBondMap bondMap = GraphUtil.EdgeToBondMap.withSpaceFor(container);
+        final int[][] graph = GraphUtil.toAdjList(container, bondMap);
+
+        // integer atom and bond labels
+        final int[] atomLabels = new int[n];
+        final int[][] bondLabels = new int[n][];
+        for (int v = 0; v < n; v++) {
+            atomLabels[v] = atomLabel(container.getAtom(v));
+            bondLabels[v] = new int[graph[v].length];
+            for (int j = 0; j < graph[v].length; j++)
+                bondLabels[v][j] = BOND_LABEL_OFFSET + bondLabel(bondMap.get(v, graph[v][j]));
+        }
+
+        final int maxDepth = Math.min(searchDepth, n - 1);
+        final int[] path = new int[maxDepth + 1];
+        final int[] next = new int[maxDepth + 1];
+        final long[] forward = new long[maxDepth + 1];
+        final long[] reverse = new long[maxDepth + 1];
+        final long[] power = new long[maxDepth + 1];
+        final boolean[] visit = new boolean[n];
+
+        for (int start = 0; start < n; start++) {
+
+            int count = 1;
+            int depth = 0;
+            path[0] = start;
+            next[0] = 0;
+            visit[start] = true;
+            forward[0] = atomLabels[start];
+            reverse[0] = atomLabels[start];
+            power[0] = 1;
+            setPathBit(bitSet, forward[0], reverse[0]);
+
+            while (depth >= 0) {
+                int v = path[depth];
+                if (depth == maxDepth || next[depth] == graph[v].length) {
+                    visit[v] = false;
+                    depth--;
+                    continue;
+                }
+                int j = next[depth]++;
+                int w = graph[v][j];
+                if (visit[w])
+                    continue;
+
+                if (++count > PATH_LIMIT)
+                    throw new CDKException("Too many paths generate. We're working making this faster but for now try generating paths with a smaller length");
+
+                // append the bond and atom labels to the path and prepend them
+                // to the reversed path
+                long pBond = power[depth] * PATH_PRIME;
+                long pAtom = pBond * PATH_PRIME;
+                forward[depth + 1] = (forward[depth] * PATH_PRIME + bondLabels[v][j]) * PATH_PRIME + atomLabels[w];
+                reverse[depth + 1] = reverse[depth] + bondLabels[v][j] * pBond + atomLabels[w] * pAtom;
+                power[depth + 1] = pAtom;
+
+                depth++;
+                path[depth] = w;
+                next[depth] = 0;
+                visit[w] = true;
+                setPathBit(bitSet, forward[depth], reverse[depth]);
+            }
+        }
+    }
+
+    /**
+     * Set the bit of a path given the hash of the path and its reverse.
+     *
+     * @param bitSet  the bits
+     * @param forward hash of the path
+     * @param reverse hash of the reversed path
+     */
+    private void setPathBit(BitSet bitSet, long forward, long reverse) {
+        long h = Math.min(forward, reverse);
+        // 64-bit finalizer of MurmurHash3
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        bitSet.set((int) ((h & Long.MAX_VALUE) % size));
+    }
+
+    /**
+     * The integer label of an atom ({@link Version#HASHED_1}), the atomic
+     * number or one more than the last element for pseudo atoms and
+     * malformed symbols.
+     *
+     * @param atom an atom
+     * @return the label
+     */
+    private static int atomLabel(IAtom atom) {
+        if (!(atom instanceof IPseudoAtom)) {
+            Integer atnum = PeriodicTable.getAtomicNumber(atom.getSymbol());
+            if (atnum != null)
+                return atnum;
+        }
+        return PeriodicTable.getElementCount() + 1;
+    }
+
+	/**
+	 * The integer label of a bond ({@link Version#HASHED_1}), distinguishes
+	 * the same bonds as {@link #getBondSymbol(IBond)}.
+	 *
+	 * @param  bond a bond
+	 * @return      the label
+	 */
+	protected int bondLabel(IBond bond) {
+		if (bond.getFlag(CDKConstants.ISAROMATIC))
+			return 4;
+		else if (bond.getOrder() == IBond.Order.SINGLE)
+			return 1;
+		else if (bond.getOrder() == IBond.Order.DOUBLE)
+			return 2;
+		else if (bond.getOrder() == IBond.Order.TRIPLE)
+			return 3;
+		return 0;
+	}
+
     private String convertSymbol(String symbol) {
 
         String returnSymbol = queryReplace.get( symbol );
@@ -333,6 +521,15 @@ public class Fingerprinter implements IFingerprinter {
 		return size;
 	}
 
+	/**
+	 * The path encoding version of the fingerprints.
+	 *
+	 * @return the version
+	 */
+	public Version getVersion() {
+		return version;
+	}
+
 	@Override
 	public ICountFingerprint getCountFingerprint(IAtomContainer container)
 			throws CDKException {
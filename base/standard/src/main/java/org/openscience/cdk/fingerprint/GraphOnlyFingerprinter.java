@@ -65,6 +65,10 @@ public class GraphOnlyFingerprinter extends Fingerprinter {
 		super(size, searchDepth);
 	}
 
+	public GraphOnlyFingerprinter(int size, int searchDepth, Version version) {
+		super(size, searchDepth, version);
+	}
+
 	/**
 	 * Gets the bondSymbol attribute of the Fingerprinter class. Because we do
 	 * not consider bond orders to be important, we just return "";
@@ -76,6 +80,17 @@ public class GraphOnlyFingerprinter extends Fingerprinter {
 		return "";
 	}
 
+	/**
+	 * Gets the integer label of a bond. Because we do not consider bond
+	 * orders to be important, we just return 0.
+	 *
+	 * @param  bond  the bond
+	 * @return       the bond label
+	 */
+	protected int bondLabel(IBond bond) {
+		return 0;
+	}
+
     @TestMethod("testFingerPrint,testFingerprint")
     public BitSet getBitFingerprint(IAtomContainer container, int size) throws Exception {
 		int[] hashes = findPathes(container, super.getSearchDepth());
@@ -33,6 +33,11 @@ import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 
 /**
+ * A count fingerprint stored as two parallel arrays, the hashes in ascending
+ * order and the count of each hash. As the hashes are sorted, two fingerprints
+ * can be compared with a linear merge (see {@link #numOfPopulatedbins()},
+ * {@link #getHash(int)} and {@link #getCount(int)}).
+ *
  * @author jonalv
  * @cdk.module     standard
  * @cdk.githash
@@ -76,6 +81,42 @@ public class IntArrayCountFingerprint implements ICountFingerprint {
 		}
 	}
 	
+	/**
+	 * Create an <code>IntArrayCountFingerprint</code> from parallel arrays of
+	 * hashes and counts. The hashes need not be sorted or distinct, the counts
+	 * of a hash which occurs more than once are summed. The arrays are not
+	 * modified.
+	 *
+	 * @param hashes the hashes
+	 * @param counts the count of each hash
+	 */
+	public IntArrayCountFingerprint(int[] hashes, int[] counts) {
+		if (hashes.length != counts.length)
+			throw new IllegalArgumentException("hashes and counts must have the same length");
+		// sort the hashes keeping track of the original index
+		long[] order = new long[hashes.length];
+		for (int i = 0; i < hashes.length; i++)
+			order[i] = ((long) hashes[i] << 32) | i;
+		Arrays.sort(order);
+		int n = 0;
+		hitHashes = new int[hashes.length];
+		numOfHits = new int[hashes.length];
+		for (int i = 0; i < order.length; i++) {
+			int hash = (int) (order[i] >> 32);
+			int count = counts[(int) order[i]];
+			if (n > 0 && hitHashes[n - 1] == hash) {
+				numOfHits[n - 1] += count;
+			} else {
+				hitHashes[n] = hash;
+				numOfHits[n++] = count;
+			}
+		}
+		if (n < hashes.length) {
+			hitHashes = Arrays.copyOf(hitHashes, n);
+			numOfHits = Arrays.copyOf(numOfHits, n);
+		}
+	}
+
 	/**
 	 * Create an <code>IntArrayCountFingerprint</code> from a rawFingerprint 
 	 * and if <code>behaveAsBitFingerprint</code> make it only return 0 or 1 
@@ -65,7 +65,7 @@ public class ConnectivityChecker
         // partitioning needed
         if (atomContainer.getAtomCount() < 2) return true;
 
-		ConnectedComponents cc = new ConnectedComponents(GraphUtil.toAdjList(atomContainer));
+		ConnectedComponents cc = GraphCache.of(atomContainer).components();
         return cc.nComponents() == 1;
     }
 	
@@ -82,7 +82,7 @@ public class ConnectivityChecker
     @TestMethod("testPartitionIntoMolecules_IAtomContainer,testPartitionIntoMoleculesKeepsAtomIDs,testPartitionIntoMolecules_IsConnected_Consistency")
     public static IAtomContainerSet partitionIntoMolecules(IAtomContainer container) {
 
-        ConnectedComponents        cc            = new ConnectedComponents(GraphUtil.toAdjList(container));
+        ConnectedComponents        cc            = GraphCache.of(container).components();
         int[]                      components    = cc.components();
         IAtomContainer[]           containers    = new IAtomContainer[cc.nComponents() + 1];
         Map<IAtom,IAtomContainer>  componentsMap = new HashMap<IAtom, IAtomContainer>(2 * container.getAtomCount());
@@ -0,0 +1,75 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.atomtype;
+
+import org.junit.Test;
+import org.openscience.cdk.Atom;
+import org.openscience.cdk.SingleElectron;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.ringsearch.RingSearch;
+import org.openscience.cdk.templates.MoleculeFactory;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @cdk.module test-core
+ */
+public class AtomTypingContextTest {
+
+    @Test public void sameAsContainer() throws Exception {
+        IAtomContainer mol = MoleculeFactory.makeEthylCyclohexane();
+        mol.add(MoleculeFactory.makeAzulene());
+        mol.addSingleElectron(new SingleElectron(mol.getAtom(7)));
+
+        AtomTypingContext context = new AtomTypingContext(mol);
+        RingSearch ringSearch = new RingSearch(mol);
+        for (IAtom atom : mol.atoms()) {
+            assertThat(context.getConnectedAtomsList(atom), is(mol.getConnectedAtomsList(atom)));
+            assertThat(context.getConnectedBondsList(atom), is(mol.getConnectedBondsList(atom)));
+            assertThat(context.getConnectedAtomsCount(atom), is(mol.getConnectedAtomsCount(atom)));
+            assertThat(context.getConnectedBondsCount(atom), is(mol.getConnectedBondsCount(atom)));
+            assertThat(context.getConnectedSingleElectronsCount(atom), is(mol.getConnectedSingleElectronsCount(atom)));
+            assertThat(context.getBondOrderSum(atom), is(mol.getBondOrderSum(atom)));
+            assertThat(context.getMaximumBondOrder(atom), is(mol.getMaximumBondOrder(atom)));
+            assertThat(context.isRingAtom(atom), is(ringSearch.cyclic(atom)));
+        }
+        for (IBond bond : mol.bonds()) {
+            assertThat(context.getBond(bond.getAtom(0), bond.getAtom(1)), is(bond));
+            assertThat(context.getBond(bond.getAtom(1), bond.getAtom(0)), is(bond));
+        }
+        assertThat(context.getBond(mol.getAtom(0), mol.getAtom(mol.getAtomCount() - 1)), is(nullValue()));
+    }
+
+    @Test public void atomNotInContainer() throws Exception {
+        IAtomContainer mol = MoleculeFactory.makeCyclohexane();
+        AtomTypingContext context = new AtomTypingContext(mol);
+        IAtom atom = new Atom("C");
+        assertThat(context.getConnectedAtomsCount(atom), is(0));
+        assertThat(context.getConnectedBondsList(atom).isEmpty(), is(true));
+        assertThat(context.getBondOrderSum(atom), is(0d));
+    }
+}
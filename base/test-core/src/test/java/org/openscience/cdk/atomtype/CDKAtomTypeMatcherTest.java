@@ -109,6 +109,22 @@ public class CDKAtomTypeMatcherTest extends AbstractCDKAtomTypeTest {
         }
     }
 
+    @Test public void testFindMatchingAtomType_IAtomContainer_rings() throws Exception {
+        IAtomContainer mol = MoleculeFactory.makeIndole();
+        mol.add(MoleculeFactory.makeEthylCyclohexane());
+        mol.add(MoleculeFactory.makePyridineOxide());
+
+        // typing all atoms at once gives the same types as one at a time
+        CDKAtomTypeMatcher matcher = CDKAtomTypeMatcher.getInstance(
+            DefaultChemObjectBuilder.getInstance());
+        IAtomType[] types = matcher.findMatchingAtomTypes(mol);
+        Assert.assertEquals(mol.getAtomCount(), types.length);
+        for (int i=0; i<types.length; i++) {
+            IAtomType type = matcher.findMatchingAtomType(mol, mol.getAtom(i));
+            Assert.assertEquals(type.getAtomTypeName(), types[i].getAtomTypeName());
+        }
+    }
+
     @Test public void testDummy() throws Exception {
         IAtomContainer mol = new AtomContainer();
         IAtom atom = new PseudoAtom("R");
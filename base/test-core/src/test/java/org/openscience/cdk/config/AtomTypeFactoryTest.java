@@ -25,6 +25,7 @@ import org.junit.Test;
 import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.ChemObject;
 import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.exception.NoSuchAtomTypeException;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomType;
 import org.openscience.cdk.interfaces.IAtomType.Hybridization;
@@ -45,6 +46,8 @@ import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Checks the functionality of the AtomTypeFactory.
@@ -136,6 +139,25 @@ public class AtomTypeFactoryTest extends CDKTestCase {
         Assert.assertEquals("C", atomTypes[0].getSymbol());
 	}
 
+    @Test
+	public void testGetAtomTypes_String_order() throws Exception {
+        List<String> expected = new ArrayList<String>();
+        for (IAtomType atomType : atf.getAllAtomTypes()) {
+            if ("N".equals(atomType.getSymbol()))
+                expected.add(atomType.getAtomTypeName());
+        }
+        List<String> actual = new ArrayList<String>();
+        for (IAtomType atomType : atf.getAtomTypes("N"))
+            actual.add(atomType.getAtomTypeName());
+        Assert.assertEquals(expected, actual);
+        Assert.assertEquals(0, atf.getAtomTypes("Xx").length);
+	}
+
+    @Test(expected=NoSuchAtomTypeException.class)
+	public void testGetAtomType_String_unknown() throws Exception {
+		atf.getAtomType("unknown");
+	}
+
     @Test
 	public void testGetAtomTypeFromPDB() throws Exception {
         AtomTypeFactory factory = AtomTypeFactory.getInstance("org/openscience/cdk/config/data/pdb_atomtypes.xml", 
@@ -0,0 +1,115 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.graph;
+
+import org.junit.Test;
+import org.openscience.cdk.graph.matrix.AdjacencyMatrix;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.templates.MoleculeFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @cdk.module test-core
+ */
+public class AllPairsDistancesTest {
+
+    @Test public void sameAsShortestPaths() throws Exception {
+        IAtomContainer[] containers = {MoleculeFactory.makeAlphaPinene(), MoleculeFactory.makeSteran(),
+                                       MoleculeFactory.makeSpiroRings(), MoleculeFactory.makeAzulene(),
+                                       MoleculeFactory.makeEthylPropylPhenantren()};
+        for (IAtomContainer container : containers) {
+            AllPairsShortestPaths apsp = new AllPairsShortestPaths(container);
+            int[][] floyd = PathTools.computeFloydAPSP(AdjacencyMatrix.getMatrix(container));
+            AllPairsDistances distances = new AllPairsDistances(container);
+            assertThat(distances.order(), is(container.getAtomCount()));
+            assertThat(distances.toMatrix(), is(floyd));
+            for (int u = 0; u < container.getAtomCount(); u++) {
+                for (int v = 0; v < container.getAtomCount(); v++) {
+                    assertThat(distances.distance(u, v), is(apsp.from(u).distanceTo(v)));
+                }
+            }
+        }
+    }
+
+    @Test public void disconnected() throws Exception {
+        int[][] g = {{1}, {0}, {}};
+        AllPairsDistances distances = new AllPairsDistances(g);
+        assertThat(distances.distance(0, 1), is(1));
+        assertThat(distances.distance(1, 2), is(Integer.MAX_VALUE));
+        assertThat(distances.eccentricity(0), is(Integer.MAX_VALUE));
+        assertThat(distances.diameter(), is(Integer.MAX_VALUE));
+    }
+
+    @Test public void empty() throws Exception {
+        AllPairsDistances distances = new AllPairsDistances(new int[0][0]);
+        assertThat(distances.order(), is(0));
+        assertThat(distances.diameter(), is(0));
+        assertThat(distances.radius(), is(0));
+    }
+
+    @Test public void path() throws Exception {
+        int[][] g = path(1000);
+        AllPairsDistances distances = new AllPairsDistances(g);
+        assertThat(distances.distance(0, 999), is(999));
+        assertThat(distances.distance(700, 300), is(400));
+        assertThat(distances.diameter(), is(999));
+        assertThat(distances.radius(), is(500));
+        assertThat(distances.eccentricity(0), is(999));
+    }
+
+    @Test public void parallel() throws Exception {
+        int[][] g = path(1000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            AllPairsDistances expected = new AllPairsDistances(g);
+            AllPairsDistances actual = new AllPairsDistances(g, executor);
+            assertThat(actual.toMatrix(), is(expected.toMatrix()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void outOfBounds() throws Exception {
+        new AllPairsDistances(path(4)).distance(0, 4);
+    }
+
+    /** A path graph of n vertices. */
+    private static int[][] path(int n) {
+        int[][] g = new int[n][];
+        for (int v = 0; v < n; v++) {
+            if (v == 0)
+                g[v] = new int[]{1};
+            else if (v == n - 1)
+                g[v] = new int[]{v - 1};
+            else
+                g[v] = new int[]{v - 1, v + 1};
+        }
+        return g;
+    }
+}
@@ -0,0 +1,128 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.graph;
+
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.ringsearch.RingSearch;
+import org.openscience.cdk.templates.MoleculeFactory;
+
+import java.lang.ref.WeakReference;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @cdk.module test-core
+ */
+public class GraphCacheTest {
+
+    @Test public void shared() throws Exception {
+        IAtomContainer m = MoleculeFactory.makeAzulene();
+        GraphCache cache = GraphCache.of(m);
+        assertThat(GraphCache.of(m), is(sameInstance(cache)));
+        assertThat(cache.graph(), is(GraphUtil.toAdjList(m)));
+        assertThat(cache.ringSearch(), is(sameInstance(GraphCache.of(m).ringSearch())));
+        assertThat(Cycles.mcb(m), is(sameInstance(Cycles.mcb(m))));
+        assertThat(cache.components().nComponents(), is(1));
+        for (IBond bond : m.bonds()) {
+            int u = m.getAtomNumber(bond.getAtom(0));
+            int v = m.getAtomNumber(bond.getAtom(1));
+            assertThat(cache.bondMap().get(u, v), is(sameInstance(bond)));
+        }
+    }
+
+    @Test public void bondOrderChange() throws Exception {
+        IAtomContainer m = MoleculeFactory.makeBenzene();
+        GraphCache cache = GraphCache.of(m);
+        m.getBond(0).setOrder(IBond.Order.DOUBLE);
+        assertThat(GraphCache.of(m), is(sameInstance(cache)));
+    }
+
+    @Test public void removeBond() throws Exception {
+        IAtomContainer m = MoleculeFactory.makeBenzene();
+        GraphCache cache = GraphCache.of(m);
+        assertThat(new RingSearch(m).cyclic().length, is(6));
+        assertThat(Cycles.mcb(m).numberOfCycles(), is(1));
+        m.removeBond(m.getBond(0));
+        assertThat(GraphCache.of(m), is(not(sameInstance(cache))));
+        assertThat(new RingSearch(m).cyclic().length, is(0));
+        assertThat(Cycles.mcb(m).numberOfCycles(), is(0));
+    }
+
+    @Test public void addAtom() throws Exception {
+        IAtomContainer m = MoleculeFactory.makeBenzene();
+        GraphCache cache = GraphCache.of(m);
+        m.addAtom(m.getBuilder().newInstance(IAtom.class, "O"));
+        assertThat(GraphCache.of(m), is(not(sameInstance(cache))));
+        assertThat(GraphCache.of(m).components().nComponents(), is(2));
+    }
+
+    @Test public void reconnectBond() throws Exception {
+        IAtomContainer m = MoleculeFactory.makeBenzene();
+        GraphCache cache = GraphCache.of(m);
+        IBond bond = m.getBond(0);
+        bond.setAtom(m.getAtom(3), 1);
+        assertThat(GraphCache.of(m), is(not(sameInstance(cache))));
+    }
+
+    @Test public void leastRecentlyUsed() throws Exception {
+        IAtomContainer m = MoleculeFactory.makeBenzene();
+        GraphCache cache = GraphCache.of(m);
+        for (int i = 0; i < 7; i++)
+            GraphCache.of(MoleculeFactory.makeBenzene());
+        assertThat(GraphCache.of(m), is(sameInstance(cache)));
+        for (int i = 0; i < 8; i++)
+            GraphCache.of(MoleculeFactory.makeBenzene());
+        assertThat(GraphCache.of(m), is(not(sameInstance(cache))));
+    }
+
+    @Test public void clear() throws Exception {
+        IAtomContainer m = MoleculeFactory.makeBenzene();
+        GraphCache cache = GraphCache.of(m);
+        GraphCache.clear();
+        assertThat(GraphCache.of(m), is(not(sameInstance(cache))));
+    }
+
+    /**
+     * The cache does not keep a container which is no longer referenced.
+     */
+    @Test public void notRetained() throws Exception {
+        IAtomContainer m = MoleculeFactory.makeAzulene();
+        Cycles.mcb(m);
+        WeakReference<IAtomContainer> ref = new WeakReference<IAtomContainer>(m);
+        m = null;
+        for (int i = 0; i < 10 && ref.get() != null; i++)
+            System.gc();
+        assertThat(ref.get() == null, is(true));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullContainer() throws Exception {
+        GraphCache.of(null);
+    }
+}
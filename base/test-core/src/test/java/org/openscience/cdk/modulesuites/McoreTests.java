@@ -25,6 +25,7 @@ import org.junit.runners.Suite.SuiteClasses;
 import org.openscience.cdk.CDKConstantsTest;
 import org.openscience.cdk.CDKTest;
 import org.openscience.cdk.DynamicFactoryTest;
+import org.openscience.cdk.atomtype.AtomTypingContextTest;
 import org.openscience.cdk.atomtype.CDKAtomTypeMatcherFilesTest;
 import org.openscience.cdk.atomtype.CDKAtomTypeMatcherSMILESTest;
 import org.openscience.cdk.atomtype.CDKAtomTypeMatcherTest;
@@ -44,11 +45,13 @@ import org.openscience.cdk.coverage.CoreCoverageTest;
 import org.openscience.cdk.exception.CDKExceptionTest;
 import org.openscience.cdk.exception.NoSuchAtomExceptionTest;
 import org.openscience.cdk.exception.NoSuchAtomTypeExceptionTest;
+import org.openscience.cdk.graph.AllPairsDistancesTest;
 import org.openscience.cdk.graph.AllPairsShortestPathsTest;
 import org.openscience.cdk.graph.BitMatrixTest;
 import org.openscience.cdk.graph.ConnectedComponentsTest;
 import org.openscience.cdk.graph.CyclesTest;
 import org.openscience.cdk.graph.EssentialCyclesTest;
+import org.openscience.cdk.graph.GraphCacheTest;
 import org.openscience.cdk.graph.GreedyBasisTest;
 import org.openscience.cdk.graph.InitialCyclesTest;
 import org.openscience.cdk.graph.JumboPathGraphTest;
@@ -66,6 +69,7 @@ import org.openscience.cdk.stereo.DoubleBondStereochemistryTest;
 import org.openscience.cdk.stereo.TetrahedralChiralityTest;
 import org.openscience.cdk.tools.DataFeaturesTest;
 import org.openscience.cdk.tools.LoggingToolFactoryTest;
+import org.openscience.cdk.tools.ParallelTest;
 import org.openscience.cdk.tools.SystemOutLoggingToolTest;
 import org.openscience.cdk.tools.manipulator.BondManipulatorTest;
 import org.openscience.cdk.tools.periodictable.PeriodicTableTest;
@@ -102,12 +106,14 @@ import org.openscience.cdk.tools.periodictable.PeriodicTableTest;
     CDKAtomTypeMatcherFilesTest.class,
     CDKAtomTypeMatcherSMILESTest.class,
     RepeatedCDKAtomTypeMatcherSMILESTest.class,
+    AtomTypingContextTest.class,
 
     // other
     CDKExceptionTest.class,
     NoSuchAtomExceptionTest.class,
     NoSuchAtomTypeExceptionTest.class,
     LoggingToolFactoryTest.class,
+    ParallelTest.class,
     SystemOutLoggingToolTest.class,
     BondManipulatorTest.class,
     AdjacencyMatrixTest.class,
@@ -116,6 +122,7 @@ import org.openscience.cdk.tools.periodictable.PeriodicTableTest;
     DoubleBondStereochemistryTest.class,
     SpanningTreeTest.class,
     AllPairsShortestPathsTest.class,
+    AllPairsDistancesTest.class,
     ShortestPathsTest.class,
     DynamicFactoryTest.class,
     ConnectedComponentsTest.class,
@@ -132,7 +139,8 @@ import org.openscience.cdk.tools.periodictable.PeriodicTableTest;
     EssentialCyclesTest.class,
     RegularPathGraphTest.class,
     JumboPathGraphTest.class,
-    CyclesTest.class
+    CyclesTest.class,
+    GraphCacheTest.class
 
 })
 public class McoreTests {}
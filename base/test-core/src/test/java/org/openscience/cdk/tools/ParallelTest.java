@@ -0,0 +1,140 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.tools;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openscience.cdk.exception.CDKException;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @cdk.module test-core
+ */
+public class ParallelTest {
+
+    private static ExecutorService executor;
+
+    @BeforeClass
+    public static void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void maxParts() {
+        assertThat(Parallel.maxParts(), is(4 * Runtime.getRuntime().availableProcessors()));
+    }
+
+    @Test
+    public void parts() {
+        assertThat(Parallel.parts(0, 16), is(1));
+        assertThat(Parallel.parts(31, 16), is(1));
+        assertThat(Parallel.parts(32, 16), is(Math.min(2, Parallel.maxParts())));
+        assertThat(Parallel.parts(Integer.MAX_VALUE, 1), is(Parallel.maxParts()));
+    }
+
+    /**
+     * Each index is computed once and the results are in order.
+     */
+    @Test
+    public void forRanges() throws Exception {
+        final int[] visits = new int[10000];
+        List<int[]> ranges = Parallel.forRanges(executor, visits.length, 16, new Parallel.Range<int[], RuntimeException>() {
+
+            @Override
+            public int[] run(int from, int to) {
+                for (int i = from; i < to; i++)
+                    visits[i]++;
+                return new int[]{from, to};
+            }
+        });
+        for (int visit : visits)
+            assertThat(visit, is(1));
+        assertThat(ranges.size(), is(Parallel.parts(visits.length, 16)));
+        assertThat(ranges.get(0)[0], is(0));
+        for (int i = 1; i < ranges.size(); i++)
+            assertThat(ranges.get(i)[0], is(ranges.get(i - 1)[1]));
+        assertThat(ranges.get(ranges.size() - 1)[1], is(visits.length));
+    }
+
+    @Test
+    public void forRangesSmall() throws Exception {
+        List<Integer> sizes = Parallel.forRanges(executor, 15, 16, new Parallel.Range<Integer, RuntimeException>() {
+
+            @Override
+            public Integer run(int from, int to) {
+                return to - from;
+            }
+        });
+        assertThat(sizes.size(), is(1));
+        assertThat(sizes.get(0), is(15));
+    }
+
+    @Test
+    public void forRangesEmpty() throws Exception {
+        List<Integer> sizes = Parallel.forRanges(executor, 0, 16, new Parallel.Range<Integer, RuntimeException>() {
+
+            @Override
+            public Integer run(int from, int to) {
+                return to - from;
+            }
+        });
+        assertThat(sizes.size(), is(1));
+        assertThat(sizes.get(0), is(0));
+    }
+
+    @Test(expected = CDKException.class)
+    public void forRangesChecked() throws Exception {
+        Parallel.forRanges(executor, 1000, 1, new Parallel.Range<Void, CDKException>() {
+
+            @Override
+            public Void run(int from, int to) throws CDKException {
+                if (from == 0) throw new CDKException("first part failed");
+                return null;
+            }
+        });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void forRangesUnchecked() throws Exception {
+        Parallel.forRanges(executor, 1000, 1, new Parallel.Range<Void, RuntimeException>() {
+
+            @Override
+            public Void run(int from, int to) {
+                if (to == 1000) throw new IllegalArgumentException("last part failed");
+                return null;
+            }
+        });
+    }
+}
@@ -244,6 +244,64 @@ public class FingerprinterTest extends AbstractFixedLengthFingerprinterTest {
         }
     }
 
+    @Test
+    public void testHashedVersion() throws Exception {
+        Fingerprinter fingerprinter = new Fingerprinter(1024, 8, Fingerprinter.Version.HASHED_1);
+        Assert.assertEquals(Fingerprinter.Version.HASHED_1, fingerprinter.getVersion());
+        Assert.assertEquals(Fingerprinter.Version.LEGACY, new Fingerprinter().getVersion());
+
+        BitSet bs = fingerprinter.getBitFingerprint(MoleculeFactory.makeIndole()).asBitSet();
+        BitSet bs1 = fingerprinter.getBitFingerprint(MoleculeFactory.makePyrrole()).asBitSet();
+        Assert.assertTrue(FingerprinterTool.isSubset(bs, bs1));
+        Assert.assertEquals(bs, fingerprinter.getBitFingerprint(MoleculeFactory.makeIndole()).asBitSet());
+        Assert.assertEquals(1024, fingerprinter.getBitFingerprint(MoleculeFactory.makeIndole()).size());
+    }
+
+    @Test
+    public void testHashedVersionBug2819557() throws CDKException {
+        Fingerprinter fp = new Fingerprinter(1024, 8, Fingerprinter.Version.HASHED_1);
+        BitSet b1 = fp.getBitFingerprint(makeButane()).asBitSet();
+        BitSet b2 = fp.getBitFingerprint(makePropylAmine()).asBitSet();
+        Assert.assertFalse("butane should not be a substructure of propylamine", FingerprinterTool.isSubset(b2, b1));
+    }
+
+    @Test
+    public void testHashedVersionAtomPermutation() throws CDKException {
+        IAtomContainer pamine = MoleculeFactory.makeIndole();
+        Fingerprinter fp = new Fingerprinter(1024, 8, Fingerprinter.Version.HASHED_1);
+        IBitFingerprint bs1 = fp.getBitFingerprint(pamine);
+
+        AtomContainerAtomPermutor acp = new AtomContainerAtomPermutor(pamine);
+        for (int i = 0; i < 50 && acp.hasNext(); i++) {
+            IAtomContainer container = acp.next();
+            IBitFingerprint bs2 = fp.getBitFingerprint(container);
+            Assert.assertTrue(bs1.equals(bs2));
+        }
+    }
+
+    @Test
+    public void testHashedVersionBondPermutation() throws CDKException {
+        IAtomContainer pamine = MoleculeFactory.makeCyclopentane();
+        Fingerprinter fp = new Fingerprinter(1024, 8, Fingerprinter.Version.HASHED_1);
+        IBitFingerprint bs1 = fp.getBitFingerprint(pamine);
+
+        AtomContainerBondPermutor acp = new AtomContainerBondPermutor(pamine);
+        while (acp.hasNext()) {
+            IAtomContainer container = acp.next();
+            IBitFingerprint bs2 = fp.getBitFingerprint(container);
+            Assert.assertTrue(bs1.equals(bs2));
+        }
+    }
+
+    @Test(timeout = 500, expected = CDKException.class)
+    public void testHashedVersionTooManyPaths() throws Exception {
+        InputStream ins1 = this.getClass().getClassLoader().getResourceAsStream("data/mdl/boronBuckyBall.mol");
+        MDLV2000Reader reader = new MDLV2000Reader(ins1, Mode.STRICT);
+        IChemFile chemFile = reader.read(new ChemFile());
+        IAtomContainer mol = ChemFileManipulator.getAllAtomContainers(chemFile).get(0);
+        new Fingerprinter(1024, 8, Fingerprinter.Version.HASHED_1).getBitFingerprint(mol);
+    }
+
     public static IAtomContainer makeFragment1()
 	{
 		IAtomContainer mol = DefaultChemObjectBuilder.getInstance().newInstance(IAtomContainer.class);
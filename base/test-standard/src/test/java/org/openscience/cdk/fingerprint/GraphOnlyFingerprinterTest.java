@@ -64,6 +64,15 @@ public class GraphOnlyFingerprinterTest extends AbstractFixedLengthFingerprinter
 		Assert.assertEquals(bs1, bs2);
 	}
 	
+    @Test
+    public void testHashedVersion() throws Exception {
+		SmilesParser parser = new SmilesParser(SilentChemObjectBuilder.getInstance());
+		IFingerprinter printer = new GraphOnlyFingerprinter(1024, 8, Fingerprinter.Version.HASHED_1);
+		IBitFingerprint bs1 = printer.getBitFingerprint(parser.parseSmiles("C=C-C#N"));
+		IBitFingerprint bs2 = printer.getBitFingerprint(parser.parseSmiles("CCCN"));
+		Assert.assertEquals(bs1, bs2);
+	}
+	
     /* ethanolamine */
 	private static final String ethanolamine = "\n\n\n  4  3  0     0  0  0  0  0  0  1 V2000\n    2.5187   -0.3500    0.0000 N   0  0  0  0  0  0  0  0  0  0\n    0.0938   -0.3500    0.0000 C   0  0  0  0  0  0  0  0  0  0\n    1.3062    0.3500    0.0000 C   0  0  0  0  0  0  0  0  0  0\n   -1.1187    0.3500    0.0000 O   0  0  0  0  0  0  0  0  0  0\n  2  3  1  0  0  0  0\n  2  4  1  0  0  0  0\n  1  3  1  0  0  0  0\nM  END\n";
 
@@ -255,36 +255,15 @@ public class CircularFingerprinter implements IFingerprinter
 	{
 		calculate(mol);
 		
-		// extract a convenient {hash:count} datastructure
-		final HashMap<Integer,Integer> map=new HashMap<Integer,Integer>();
-		for (FP fp : fplist)
-		{
-			if (map.containsKey(fp.hashCode)) 
-				map.put(fp.hashCode,map.get(fp.hashCode)+1);
-			else
-				map.put(fp.hashCode,1);
-		}
-		final int sz=map.size();
+		// sorted hash/count arrays, the counts of a repeated hash are summed
+		final int sz=fplist.size();
 		final int[] hash=new int[sz],count=new int[sz];
-		int n=0;
-		for (int h : map.keySet())
+		for (int n=0;n<sz;n++)
 		{
-			hash[n]=h;
-			count[n++]=map.get(h);
+			hash[n]=fplist.get(n).hashCode;
+			count[n]=1;
 		}
-		
-		// implement a custom instance that provides a window directly into the summary content
-		return new ICountFingerprint()
-		{
-        	public long size() {return 4294967296l;}
-        	public int numOfPopulatedbins() {return sz;}
-        	public int getCount(int index) {return count[index];}
-        	public int getHash(int index) {return hash[index];}
-        	public void merge(ICountFingerprint fp) {}
-        	public void setBehaveAsBitFingerprint(boolean behaveAsBitFingerprint) {}
-            public boolean hasHash(int hash) {return map.containsKey(hash);}
-            public int getCountForHash(int hash) {return map.containsKey(hash) ? map.get(hash) : 0;}
-		};
+		return new IntArrayCountFingerprint(hash,count);
 	}
     
 	/**
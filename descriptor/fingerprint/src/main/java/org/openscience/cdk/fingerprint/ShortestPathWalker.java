@@ -29,7 +29,7 @@ import java.util.*;
 import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
-import org.openscience.cdk.graph.AllPairsShortestPaths;
+import org.openscience.cdk.graph.ShortestPaths;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
@@ -86,22 +86,23 @@ public final class ShortestPathWalker {
 
         Set<String> paths = new TreeSet<String>();
 
-        // All-Pairs Shortest-Paths (APSP)
-        AllPairsShortestPaths apsp = new AllPairsShortestPaths(container);
-
+        // shortest paths from one atom at a time, the adjacency list is
+        // shared (GraphCache) and only one atom's paths are held in memory
         for (int i = 0, n = container.getAtomCount(); i < n; i++) {
 
             paths.add(toAtomPattern(container.getAtom(i)));
 
+            ShortestPaths sp = new ShortestPaths(container, container.getAtom(i));
+
             // only do the comparison for i,j then reverse the path for j,i
             for (int j = i + 1; j < n; j++) {
 
-                int nPaths = apsp.from(i).nPathsTo(j);
+                int nPaths = sp.nPathsTo(j);
 
                 // only encode when there is a manageable number of paths
                 if (nPaths > 0 && nPaths < MAX_SHORTEST_PATHS) {
 
-                    for(int[] path : apsp.from(i).pathsTo(j)){
+                    for(int[] path : sp.pathsTo(j)){
                         paths.add(encode(path));
                         paths.add(encode(reverse(path)));
                     }
@@ -31,8 +31,9 @@ import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtomContainer;
-import org.openscience.cdk.smiles.smarts.SMARTSQueryTool;
+import org.openscience.cdk.smiles.smarts.SmartsScreen;
 
+import java.io.IOException;
 import java.util.BitSet;
 import java.util.Map;
 
@@ -375,6 +376,9 @@ public class SubstructureFingerprinter implements IFingerprinter {
 
     private String[] smarts;
 
+    /** The substructures compiled for screening, created on first use. */
+    private SmartsScreen screen;
+
     /**
      * Set up the fingerprinter to use the fragments from 
      * {@link org.openscience.cdk.fingerprint.StandardSubstructureSets}.
@@ -406,18 +410,26 @@ public class SubstructureFingerprinter implements IFingerprinter {
             throw new CDKException("No substructures were defined");
         }
 
-        int bitsetLength = smarts.length;
-        BitSet fingerPrint = new BitSet(bitsetLength);
-
-        SMARTSQueryTool sqt = new SMARTSQueryTool("C", atomContainer.getBuilder());
-        for (int i = 0; i < smarts.length; i++) {
-            String pattern = smarts[i];
+        BitSet fingerPrint = screen(atomContainer).matches(atomContainer);
+        return new BitSetFingerprint(fingerPrint);
+    }
 
-            sqt.setSmarts(pattern);
-            boolean status = sqt.matches(atomContainer);
-            if (status) fingerPrint.set(i, true);
+    /**
+     * Access the screen of the substructures, parsing the SMARTS on first use.
+     *
+     * @param atomContainer the container being fingerprinted (for the builder)
+     * @return the substructure screen
+     * @throws CDKException a substructure could not be parsed
+     */
+    private synchronized SmartsScreen screen(IAtomContainer atomContainer) throws CDKException {
+        if (screen == null) {
+            try {
+                screen = SmartsScreen.create(smarts, atomContainer.getBuilder());
+            } catch (IOException e) {
+                throw new CDKException("Could not parse substructure SMARTS: " + e.getMessage(), e);
+            }
         }
-        return new BitSetFingerprint(fingerPrint);
+        return screen;
     }
 
     /** {@inheritDoc} */
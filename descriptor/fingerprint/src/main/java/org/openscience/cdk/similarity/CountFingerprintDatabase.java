@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+package org.openscience.cdk.similarity;
+
+import org.openscience.cdk.fingerprint.ICountFingerprint;
+import org.openscience.cdk.fingerprint.IntArrayCountFingerprint;
+import org.openscience.cdk.tools.Parallel;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A columnar store of count fingerprints (such as the ECFP counts of the
+ * {@link org.openscience.cdk.fingerprint.CircularFingerprinter}) for scoring
+ * one query against many fingerprints. The sorted hashes and counts of all
+ * fingerprints are held in two shared int arrays, the Tanimoto coefficient
+ * ({@link Tanimoto#calculate(ICountFingerprint, ICountFingerprint)}) of the
+ * query to each fingerprint is computed with a linear merge of the hashes.
+ *
+ * <blockquote><pre>
+ * CountFingerprintDatabase db = CountFingerprintDatabase.create(fps);
+ * double[] sims = db.calculate(query);             // sims[i] is for fps.get(i)
+ * double[] sims = db.calculate(query, executor);   // in parallel
+ * </pre></blockquote>
+ *
+ * The store is immutable and may be used from multiple threads.
+ *
+ * @cdk.module fingerprint
+ * @cdk.githash
+ * @cdk.keyword similarity, tanimoto
+ * @see IntArrayCountFingerprint
+ */
+public final class CountFingerprintDatabase {
+
+    /** Minimum number of fingerprints in a part of a parallel calculation. */
+    private static final int MIN_PART = 1 << 11;
+
+    /** The hashes/counts of fingerprint 'i' are at [offsets[i], offsets[i+1]). */
+    private final int[] offsets;
+
+    /** Hashes of all fingerprints, ascending for each fingerprint. */
+    private final int[] hashes;
+
+    /** Counts of all fingerprints. */
+    private final int[] counts;
+
+    /** Sum of squared counts of each fingerprint. */
+    private final long[] squares;
+
+    /**
+     * Internal constructor.
+     */
+    private CountFingerprintDatabase(int[] offsets, int[] hashes, int[] counts, long[] squares) {
+        this.offsets = offsets;
+        this.hashes = hashes;
+        this.counts = counts;
+        this.squares = squares;
+    }
+
+    /**
+     * The number of fingerprints in the store.
+     *
+     * @return number of fingerprints
+     */
+    public int count() {
+        return squares.length;
+    }
+
+    /**
+     * Calculate the Tanimoto coefficient of the query to each fingerprint in
+     * the store.
+     *
+     * @param query the query fingerprint
+     * @return the coefficients, indexed as the fingerprints were provided
+     */
+    public double[] calculate(ICountFingerprint query) {
+        IntArrayCountFingerprint q = sorted(query);
+        double[] sims = new double[count()];
+        calculate(hashes(q), counts(q), sumOfSquares(q), 0, count(), sims);
+        return sims;
+    }
+
+    /**
+     * Calculate the Tanimoto coefficient of the query to each fingerprint in
+     * the store, the calculation is split into parts which are run on the
+     * executor.
+     *
+     * @param query    the query fingerprint
+     * @param executor runs the parts of the calculation
+     * @return the coefficients, indexed as the fingerprints were provided
+     * @throws InterruptedException the calculation was interrupted
+     */
+    public double[] calculate(ICountFingerprint query, ExecutorService executor) throws InterruptedException {
+        IntArrayCountFingerprint q = sorted(query);
+        final int[] qHashes = hashes(q);
+        final int[] qCounts = counts(q);
+        final long qSquares = sumOfSquares(q);
+        final double[] sims = new double[count()];
+
+        Parallel.forRanges(executor, count(), MIN_PART, new Parallel.Range<Void, RuntimeException>() {
+
+            @Override
+            public Void run(int from, int to) {
+                calculate(qHashes, qCounts, qSquares, from, to, sims);
+                return null;
+            }
+        });
+        return sims;
+    }
+
+    /**
+     * Calculate the coefficients of the query to the fingerprints [from, to).
+     */
+    private void calculate(int[] qHashes, int[] qCounts, long qSquares, int from, int to, double[] sims) {
+        final int[] hashes = this.hashes;
+        final int[] counts = this.counts;
+        final int qn = qHashes.length;
+        for (int k = from; k < to; k++) {
+            int i = 0;
+            int j = offsets[k];
+            final int end = offsets[k + 1];
+            long xy = 0;
+            while (i < qn && j < end) {
+                int hash1 = qHashes[i];
+                int hash2 = hashes[j];
+                if (hash1 < hash2) {
+                    i++;
+                } else if (hash1 > hash2) {
+                    j++;
+                } else {
+                    xy += qCounts[i++] * counts[j++];
+                }
+            }
+            sims[k] = (double) xy / (qSquares + squares[k] - xy);
+        }
+    }
+
+    /**
+     * A count fingerprint with sorted hashes.
+     */
+    private static IntArrayCountFingerprint sorted(ICountFingerprint fp) {
+        if (fp instanceof IntArrayCountFingerprint)
+            return (IntArrayCountFingerprint) fp;
+        return new IntArrayCountFingerprint(hashes(fp), counts(fp));
+    }
+
+    private static int[] hashes(ICountFingerprint fp) {
+        int[] hashes = new int[fp.numOfPopulatedbins()];
+        for (int i = 0; i < hashes.length; i++)
+            hashes[i] = fp.getHash(i);
+        return hashes;
+    }
+
+    private static int[] counts(ICountFingerprint fp) {
+        int[] counts = new int[fp.numOfPopulatedbins()];
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = fp.getCount(i);
+        return counts;
+    }
+
+    private static long sumOfSquares(ICountFingerprint fp) {
+        long sum = 0;
+        for (int i = 0; i < fp.numOfPopulatedbins(); i++) {
+            int count = fp.getCount(i);
+            sum += count * count;
+        }
+        return sum;
+    }
+
+    /**
+     * Create a store of the provided count fingerprints. The index of a
+     * coefficient is the index of the fingerprint in the list.
+     *
+     * @param fps the count fingerprints
+     * @return the store
+     */
+    public static CountFingerprintDatabase create(List<? extends ICountFingerprint> fps) {
+        final int n = fps.size();
+        int[] offsets = new int[n + 1];
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            total += fps.get(i).numOfPopulatedbins();
+            if (total > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Too many hashes");
+        }
+        int[] hashes = new int[(int) total];
+        int[] counts = new int[(int) total];
+        long[] squares = new long[n];
+        for (int i = 0; i < n; i++) {
+            IntArrayCountFingerprint fp = sorted(fps.get(i));
+            int off = offsets[i];
+            int len = fp.numOfPopulatedbins();
+            for (int j = 0; j < len; j++) {
+                hashes[off + j] = fp.getHash(j);
+                counts[off + j] = fp.getCount(j);
+            }
+            squares[i] = sumOfSquares(fp);
+            offsets[i + 1] = off + len;
+        }
+        return new CountFingerprintDatabase(offsets, hashes, counts, squares);
+    }
+}
@@ -0,0 +1,580 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+package org.openscience.cdk.similarity;
+
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+import org.openscience.cdk.tools.Parallel;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A database of fixed size bit fingerprints for Tanimoto similarity search of
+ * one query against many stored fingerprints. The fingerprints are stored as
+ * 64-bit words in one contiguous block, either on the Java heap or off-heap
+ * (a direct buffer or a memory mapped file), and no objects are created per
+ * stored fingerprint.
+ *
+ * <blockquote><pre>
+ * FingerprintDatabase db = FingerprintDatabase.create(fps, false);
+ * for (FingerprintDatabase.Hit hit : db.search(query, 0.8)) {
+ *     int    idx = hit.index();      // index in 'fps'
+ *     double sim = hit.similarity();
+ * }
+ * List&lt;FingerprintDatabase.Hit&gt; nearest = db.top(query, 10);
+ * </pre></blockquote>
+ *
+ * The fingerprints are ordered by the number of bits set. The Tanimoto
+ * coefficient of two fingerprints with <i>a</i> and <i>b</i> bits set is at
+ * most min(a,b)/max(a,b) and so only fingerprints with a bit count that could
+ * reach the threshold (or the current k-th best similarity) are compared. The
+ * similarity of two fingerprints with no bits set is 0.
+ *
+ * A database can be written to a file ({@link #write(File)}) and memory mapped
+ * on {@link #load(File)}, a file may hold at most 2 GB of fingerprints. The
+ * database is immutable and can be searched from multiple threads, the search
+ * methods which take an {@link ExecutorService} split the search into parts
+ * which are run on the executor.
+ *
+ * @cdk.module fingerprint
+ * @cdk.githash
+ * @cdk.keyword similarity, tanimoto
+ * @see Tanimoto
+ */
+public final class FingerprintDatabase {
+
+    /** Magic number of a database file ('CDKF'). */
+    private static final int MAGIC   = 0x43444B46;
+
+    /** Version of the file format. */
+    private static final int VERSION = 1;
+
+    /** Size of the file header in bytes. */
+    private static final int HEADER  = 16;
+
+    /** Minimum number of fingerprints in a part of a parallel search. */
+    private static final int MIN_PART = 1 << 12;
+
+    /** Number of bits in each fingerprint. */
+    private final int        fpSize;
+
+    /** Number of 64-bit words of each fingerprint. */
+    private final int        words;
+
+    /** Number of fingerprints. */
+    private final int        count;
+
+    /** The fingerprint words, ordered by bit count. */
+    private final LongBuffer data;
+
+    /** Index (in the input) of each fingerprint. */
+    private final IntBuffer  ids;
+
+    /** Offset of the fingerprints with 'c' bits set is 'offsets[c]'. */
+    private final int[]      offsets;
+
+    /**
+     * Internal constructor.
+     *
+     * @param fpSize number of bits
+     * @param count  number of fingerprints
+     * @param data   fingerprint words ordered by bit count
+     * @param ids    input index of each fingerprint
+     */
+    private FingerprintDatabase(int fpSize, int count, LongBuffer data, IntBuffer ids) {
+        this.fpSize = fpSize;
+        this.words = words(fpSize);
+        this.count = count;
+        this.data = data;
+        this.ids = ids;
+        this.offsets = new int[fpSize + 2];
+        for (int i = 0; i < count; i++)
+            offsets[cardinality(i) + 1]++;
+        for (int c = 1; c < offsets.length; c++)
+            offsets[c] += offsets[c - 1];
+    }
+
+    /**
+     * The number of fingerprints in the database.
+     *
+     * @return number of fingerprints
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * The number of bits of each fingerprint in the database.
+     *
+     * @return fingerprint size
+     */
+    public int fingerprintSize() {
+        return fpSize;
+    }
+
+    /**
+     * Find all fingerprints with a Tanimoto similarity to the query of at least
+     * the given threshold.
+     *
+     * @param query     the query fingerprint
+     * @param threshold minimum similarity
+     * @return the hits, most similar first
+     */
+    public List<Hit> search(IBitFingerprint query, double threshold) {
+        long[] q = toWords(query);
+        int a = bitCount(q);
+        List<Hit> hits = new ArrayList<Hit>();
+        search(q, a, threshold, lower(a, threshold), upper(a, threshold), hits);
+        Collections.sort(hits, HIT_ORDER);
+        return hits;
+    }
+
+    /**
+     * Find all fingerprints with a Tanimoto similarity to the query of at least
+     * the given threshold, the search is split into parts which are run on the
+     * executor.
+     *
+     * @param query     the query fingerprint
+     * @param threshold minimum similarity
+     * @param executor  runs the parts of the search
+     * @return the hits, most similar first
+     * @throws InterruptedException the search was interrupted
+     */
+    public List<Hit> search(IBitFingerprint query, final double threshold,
+                            ExecutorService executor) throws InterruptedException {
+        final long[] q = toWords(query);
+        final int a = bitCount(q);
+        final int from = lower(a, threshold);
+        final int to = upper(a, threshold);
+
+        Parallel.Range<List<Hit>, RuntimeException> part = new Parallel.Range<List<Hit>, RuntimeException>() {
+
+            @Override
+            public List<Hit> run(int i, int j) {
+                List<Hit> hits = new ArrayList<Hit>();
+                search(q, a, threshold, from + i, from + j, hits);
+                return hits;
+            }
+        };
+
+        List<Hit> hits = new ArrayList<Hit>();
+        for (List<Hit> partHits : Parallel.forRanges(executor, Math.max(0, to - from), MIN_PART, part))
+            hits.addAll(partHits);
+        Collections.sort(hits, HIT_ORDER);
+        return hits;
+    }
+
+    /**
+     * Find the {@code k} fingerprints most similar to the query.
+     *
+     * @param query the query fingerprint
+     * @param k     number of hits
+     * @return the hits, most similar first
+     */
+    public List<Hit> top(IBitFingerprint query, int k) {
+        long[] q = toWords(query);
+        PriorityQueue<Hit> best = top(q, bitCount(q), k, 0, count);
+        return sorted(best, k);
+    }
+
+    /**
+     * Find the {@code k} fingerprints most similar to the query, the search is
+     * split into parts which are run on the executor.
+     *
+     * @param query    the query fingerprint
+     * @param k        number of hits
+     * @param executor runs the parts of the search
+     * @return the hits, most similar first
+     * @throws InterruptedException the search was interrupted
+     */
+    public List<Hit> top(IBitFingerprint query, final int k, ExecutorService executor) throws InterruptedException {
+        final long[] q = toWords(query);
+        final int a = bitCount(q);
+
+        Parallel.Range<PriorityQueue<Hit>, RuntimeException> part = new Parallel.Range<PriorityQueue<Hit>, RuntimeException>() {
+
+            @Override
+            public PriorityQueue<Hit> run(int from, int to) {
+                return top(q, a, k, from, to);
+            }
+        };
+
+        PriorityQueue<Hit> best = new PriorityQueue<Hit>(Math.max(1, k), WORST_FIRST);
+        for (PriorityQueue<Hit> partBest : Parallel.forRanges(executor, count, MIN_PART, part)) {
+            for (Hit hit : partBest)
+                offer(best, hit, k);
+        }
+        return sorted(best, k);
+    }
+
+    /**
+     * Compare the query to the fingerprints at [from, to) and collect those
+     * with a similarity of at least the threshold.
+     */
+    private void search(long[] q, int a, double threshold, int from, int to, List<Hit> hits) {
+        for (int i = from; i < to; i++) {
+            double sim = tanimoto(q, a, i);
+            if (sim >= threshold)
+                hits.add(new Hit(ids.get(i), sim));
+        }
+    }
+
+    /**
+     * Find the {@code k} best hits in the fingerprints at [from, to). The bit
+     * count bins are visited in order of decreasing similarity bound and the
+     * search stops once the bound is less than the k-th best similarity.
+     */
+    private PriorityQueue<Hit> top(long[] q, int a, int k, int from, int to) {
+        PriorityQueue<Hit> best = new PriorityQueue<Hit>(Math.max(1, k), WORST_FIRST);
+        if (k <= 0)
+            return best;
+
+        // bins below (lo) and above (hi) the query bit count
+        int lo = a, hi = a + 1;
+        while (lo >= 0 || hi <= fpSize) {
+            double loBound = lo >= 0 ? bound(a, lo) : -1;
+            double hiBound = hi <= fpSize ? bound(a, hi) : -1;
+            int bin;
+            double bound;
+            if (loBound >= hiBound) {
+                bin = lo--;
+                bound = loBound;
+            } else {
+                bin = hi++;
+                bound = hiBound;
+            }
+            if (best.size() == k && bound < best.peek().similarity)
+                break;
+            int beg = Math.max(from, offsets[bin]);
+            int end = Math.min(to, offsets[bin + 1]);
+            for (int i = beg; i < end; i++) {
+                double sim = tanimoto(q, a, i);
+                if (best.size() < k || sim >= best.peek().similarity)
+                    offer(best, new Hit(ids.get(i), sim), k);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The Tanimoto similarity of the query to the i'th stored fingerprint.
+     */
+    private double tanimoto(long[] q, int a, int i) {
+        final LongBuffer data = this.data;
+        final int off = i * words;
+        int common = 0;
+        int b = 0;
+        for (int w = 0; w < words; w++) {
+            long x = data.get(off + w);
+            common += Long.bitCount(q[w] & x);
+            b += Long.bitCount(x);
+        }
+        int union = a + b - common;
+        return union == 0 ? 0 : common / (double) union;
+    }
+
+    /**
+     * Number of bits set in the i'th stored fingerprint.
+     */
+    private int cardinality(int i) {
+        int c = 0;
+        for (int w = 0; w < words; w++)
+            c += Long.bitCount(data.get(i * words + w));
+        return c;
+    }
+
+    /**
+     * Maximum similarity of fingerprints with a and b bits set.
+     */
+    private static double bound(int a, int b) {
+        if (a == 0 && b == 0)
+            return 0;
+        return Math.min(a, b) / (double) Math.max(a, b);
+    }
+
+    /**
+     * Offset of the first fingerprint which may have a similarity of at least
+     * the threshold to a query with 'a' bits set, b &ge; t*a.
+     */
+    private int lower(int a, double threshold) {
+        if (threshold <= 0)
+            return 0;
+        int c = (int) Math.floor(threshold * a);
+        return offsets[Math.max(0, Math.min(fpSize + 1, c))];
+    }
+
+    /**
+     * Offset after the last fingerprint which may have a similarity of at
+     * least the threshold to a query with 'a' bits set, b &le; a/t.
+     */
+    private int upper(int a, double threshold) {
+        if (threshold <= 0)
+            return count;
+        double c = Math.ceil(a / threshold);
+        return c > fpSize ? count : offsets[(int) c + 1];
+    }
+
+    /**
+     * Add a hit to a bounded queue of the best hits.
+     */
+    private static void offer(PriorityQueue<Hit> best, Hit hit, int k) {
+        if (k <= 0)
+            return;
+        if (best.size() < k) {
+            best.add(hit);
+        } else if (WORST_FIRST.compare(hit, best.peek()) > 0) {
+            best.poll();
+            best.add(hit);
+        }
+    }
+
+    /**
+     * The hits of a queue, most similar first.
+     */
+    private static List<Hit> sorted(PriorityQueue<Hit> best, int k) {
+        List<Hit> hits = new ArrayList<Hit>(best);
+        Collections.sort(hits, HIT_ORDER);
+        return hits.size() > k ? new ArrayList<Hit>(hits.subList(0, Math.max(0, k))) : hits;
+    }
+
+    /**
+     * The words of a query fingerprint.
+     */
+    private long[] toWords(IBitFingerprint query) {
+        if (query.size() != fpSize)
+            throw new IllegalArgumentException("Fingerprints must have the same size");
+        return toWords(query, words);
+    }
+
+    private static long[] toWords(IBitFingerprint fp, int words) {
+        long[] ws = new long[words];
+        for (int bit : fp.getSetbits())
+            ws[bit >>> 6] |= 1L << bit;
+        return ws;
+    }
+
+    private static int bitCount(long[] ws) {
+        int c = 0;
+        for (long w : ws)
+            c += Long.bitCount(w);
+        return c;
+    }
+
+    private static int words(int fpSize) {
+        return (fpSize + 63) >>> 6;
+    }
+
+    /**
+     * Write the database to a file which can be loaded with {@link
+     * #load(File)}.
+     *
+     * @param file the file to write
+     * @throws IOException the file could not be written
+     */
+    public void write(File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            write(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Write the database to an output stream.
+     *
+     * @param out the output stream, not closed
+     * @throws IOException the database could not be written
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        dout.writeInt(MAGIC);
+        dout.writeInt(VERSION);
+        dout.writeInt(fpSize);
+        dout.writeInt(count);
+        for (int i = 0; i < count; i++)
+            dout.writeInt(ids.get(i));
+        if ((count & 0x1) != 0)
+            dout.writeInt(0); // align the words
+        for (int i = 0; i < count * words; i++)
+            dout.writeLong(data.get(i));
+        dout.flush();
+    }
+
+    /**
+     * Load a database written with {@link #write(File)}, the file is memory
+     * mapped.
+     *
+     * @param file the database file
+     * @return the database
+     * @throws IOException the file could not be read or is not a database
+     */
+    public static FingerprintDatabase load(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        ByteBuffer buf;
+        try {
+            buf = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        } finally {
+            // the mapping remains valid after the file is closed
+            raf.close();
+        }
+        buf.order(ByteOrder.BIG_ENDIAN);
+        if (buf.limit() < HEADER || buf.getInt(0) != MAGIC)
+            throw new IOException(file + " is not a fingerprint database");
+        if (buf.getInt(4) != VERSION)
+            throw new IOException("Unsupported fingerprint database version " + buf.getInt(4));
+        int fpSize = buf.getInt(8);
+        int count = buf.getInt(12);
+        int idsEnd = HEADER + 4 * (count + (count & 0x1));
+        if (fpSize < 0 || count < 0 || buf.limit() != idsEnd + 8L * count * words(fpSize))
+            throw new IOException(file + " is truncated or corrupt");
+
+        buf.position(HEADER);
+        IntBuffer ids = buf.slice().asIntBuffer();
+        ids.limit(count);
+        buf.position(idsEnd);
+        LongBuffer data = buf.slice().asLongBuffer();
+        return new FingerprintDatabase(fpSize, count, data, ids);
+    }
+
+    /**
+     * Create a database of the provided fingerprints, all of which must have
+     * the same size. The index of a hit is the index of the fingerprint in
+     * the list.
+     *
+     * @param fps     the fingerprints
+     * @param offHeap store the fingerprints in a direct (off-heap) buffer
+     * @return the database
+     */
+    public static FingerprintDatabase create(List<? extends IBitFingerprint> fps, boolean offHeap) {
+        if (fps.isEmpty())
+            throw new IllegalArgumentException("No fingerprints provided");
+        long size = fps.get(0).size();
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Fingerprint size is too large");
+        final int fpSize = (int) size;
+        final int words = words(fpSize);
+        final int n = fps.size();
+        if ((long) n * words > Integer.MAX_VALUE || offHeap && 8L * n * words > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many fingerprints");
+
+        // order by bit count (counting sort)
+        int[] counts = new int[n];
+        int[] offsets = new int[fpSize + 2];
+        for (int i = 0; i < n; i++) {
+            IBitFingerprint fp = fps.get(i);
+            if (fp.size() != fpSize)
+                throw new IllegalArgumentException("Fingerprints must have the same size");
+            counts[i] = fp.cardinality();
+            offsets[counts[i] + 1]++;
+        }
+        for (int c = 1; c < offsets.length; c++)
+            offsets[c] += offsets[c - 1];
+
+        LongBuffer data = offHeap ? ByteBuffer.allocateDirect(8 * n * words).order(ByteOrder.nativeOrder())
+                                              .asLongBuffer() : LongBuffer.allocate(n * words);
+        IntBuffer ids = IntBuffer.allocate(n);
+        for (int i = 0; i < n; i++) {
+            int pos = offsets[counts[i]]++;
+            ids.put(pos, i);
+            long[] ws = toWords(fps.get(i), words);
+            for (int w = 0; w < words; w++)
+                data.put(pos * words + w, ws[w]);
+        }
+        return new FingerprintDatabase(fpSize, n, data, ids);
+    }
+
+    /** Hits with the most similar (then lowest index) first. */
+    private static final Comparator<Hit> HIT_ORDER = new Comparator<Hit>() {
+
+        @Override
+        public int compare(Hit a, Hit b) {
+            int cmp = Double.compare(b.similarity, a.similarity);
+            return cmp != 0 ? cmp : a.index - b.index;
+        }
+    };
+
+    /** Hits with the least similar (then highest index) first. */
+    private static final Comparator<Hit> WORST_FIRST = new Comparator<Hit>() {
+
+        @Override
+        public int compare(Hit a, Hit b) {
+            return HIT_ORDER.compare(b, a);
+        }
+    };
+
+    /**
+     * A fingerprint found by a search.
+     */
+    public static final class Hit {
+
+        private final int    index;
+        private final double similarity;
+
+        private Hit(int index, double similarity) {
+            this.index = index;
+            this.similarity = similarity;
+        }
+
+        /**
+         * Index of the fingerprint, as provided when the database was
+         * created.
+         *
+         * @return the index
+         */
+        public int index() {
+            return index;
+        }
+
+        /**
+         * Tanimoto similarity of the fingerprint to the query.
+         *
+         * @return the similarity
+         */
+        public double similarity() {
+            return similarity;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString() {
+            return index + ":" + similarity;
+        }
+    }
+}
@@ -201,6 +201,8 @@ public class Tanimoto
     @TestMethod("testICountFingerprintComparison")
 	public static double calculate( ICountFingerprint fp1, 
 			                       ICountFingerprint fp2 ) {
+		if (fp1 instanceof IntArrayCountFingerprint && fp2 instanceof IntArrayCountFingerprint)
+			return calculateSorted(fp1, fp2);
 		long xy=0, 
 		     x=0, 
 		     y=0;
@@ -218,6 +220,42 @@ public class Tanimoto
 		}
 	    return ( (double)xy / (x + y - xy) );
 	}
+
+    /**
+     * Tanimoto coefficient of two count fingerprints with the hashes in
+     * ascending order (and each hash only once), the common hashes are found
+     * with a linear merge.
+     *
+     * @param fp1 count fingerprint 1
+     * @param fp2 count fingerprint 2
+     * @return the Tanimoto coefficient
+     */
+    private static double calculateSorted(ICountFingerprint fp1, ICountFingerprint fp2) {
+        final int n1 = fp1.numOfPopulatedbins();
+        final int n2 = fp2.numOfPopulatedbins();
+        long xy = 0, x = 0, y = 0;
+        int i = 0, j = 0;
+        while (i < n1 && j < n2) {
+            int hash1 = fp1.getHash(i);
+            int hash2 = fp2.getHash(j);
+            if (hash1 < hash2) {
+                i++;
+            } else if (hash1 > hash2) {
+                j++;
+            } else {
+                xy += fp1.getCount(i++) * fp2.getCount(j++);
+            }
+        }
+        for (i = 0; i < n1; i++) {
+            int count = fp1.getCount(i);
+            x += count * count;
+        }
+        for (j = 0; j < n2; j++) {
+            int count = fp2.getCount(j);
+            y += count * count;
+        }
+        return ((double) xy / (x + y - xy));
+    }
     
     /**
      * Calculates Tanimoto distance for two count fingerprints using method 1.
@@ -243,39 +281,30 @@ public class Tanimoto
     public static double method2( ICountFingerprint fp1,
                                   ICountFingerprint fp2) {
     	
+    		final int n1 = fp1.numOfPopulatedbins();
+    		final int n2 = fp2.numOfPopulatedbins();
     		long maxSum = 0,
     		     minSum = 0;
     		int i = 0, 
     		    j = 0;
-    		while ( i < fp1.numOfPopulatedbins() 
-    				|| j < fp2.numOfPopulatedbins() ) {
-    			Integer hash1 = i < fp1.numOfPopulatedbins() ? fp1.getHash(i) 
-    					                                     : null;
-    			Integer hash2 = j < fp2.numOfPopulatedbins() ? fp2.getHash(j) 
-    					                                     : null;
-    			Integer count1 = i < fp1.numOfPopulatedbins() ? fp1.getCount(i) 
-    					                                      : null;
-    			Integer count2 = j < fp2.numOfPopulatedbins() ? fp2.getCount(j) 
-    					                                      : null;
-    			
-    			if ( count2 == null || (hash1 != null && hash1 < hash2) ) {
-    			maxSum += count1;
-    				i++;
-    				continue;
-    			}
-    			if ( count1 == null || (hash2 != null && hash1 > hash2 ) ) {
-    				maxSum += count2;
-    				j++;
-    				continue;
-    			}
-    			
-    			if ( hash1.equals(hash2) ) {
+    		while ( i < n1 && j < n2 ) {
+    			int hash1 = fp1.getHash(i);
+    			int hash2 = fp2.getHash(j);
+    			if ( hash1 < hash2 ) {
+    				maxSum += fp1.getCount(i++);
+    			} else if ( hash1 > hash2 ) {
+    				maxSum += fp2.getCount(j++);
+    			} else {
+    				int count1 = fp1.getCount(i++);
+    				int count2 = fp2.getCount(j++);
     				maxSum += Math.max(count1, count2);
     				minSum += Math.min(count1, count2);
-    				i++;
-    				j++;
     			}
     		}
+    		while ( i < n1 )
+    			maxSum += fp1.getCount(i++);
+    		while ( j < n2 )
+    			maxSum += fp2.getCount(j++);
     		return ((double)minSum) / maxSum;
     }
 }
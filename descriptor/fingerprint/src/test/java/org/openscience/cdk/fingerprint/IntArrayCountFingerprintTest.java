@@ -61,4 +61,15 @@ public class IntArrayCountFingerprintTest {
 		assertEquals( fp1.numOfHits[Cindex], 3);
 	} 
 
+	@Test
+	public void testHashesAndCounts() {
+		IntArrayCountFingerprint fp = new IntArrayCountFingerprint(
+				new int[]{5, -3, 5, 9, -3, 5}, new int[]{1, 2, 3, 4, 5, 6});
+		assertEquals(3, fp.numOfPopulatedbins());
+		assertArrayEquals(new int[]{-3, 5, 9}, fp.hitHashes);
+		assertArrayEquals(new int[]{7, 10, 4}, fp.numOfHits);
+		assertEquals(10, fp.getCountForHash(5));
+		assertFalse(fp.hasHash(0));
+	}
+
 }
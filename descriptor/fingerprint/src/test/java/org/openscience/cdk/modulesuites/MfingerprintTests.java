@@ -32,7 +32,9 @@ import org.openscience.cdk.fingerprint.PubchemFingerprinterTest;
 import org.openscience.cdk.fingerprint.ShortestPathFingerprinterTest;
 import org.openscience.cdk.fingerprint.ShortestPathWalkerTest;
 import org.openscience.cdk.fingerprint.CircularFingerprinterTest;
+import org.openscience.cdk.similarity.CountFingerprintDatabaseTest;
 import org.openscience.cdk.similarity.DistanceMomentTest;
+import org.openscience.cdk.similarity.FingerprintDatabaseTest;
 import org.openscience.cdk.similarity.LingoSimilarityTest;
 import org.openscience.cdk.similarity.TanimotoTest;
 
@@ -51,6 +53,8 @@ import org.openscience.cdk.similarity.TanimotoTest;
     PubchemFingerprinterTest.class,
     DistanceMomentTest.class,
     TanimotoTest.class,
+    FingerprintDatabaseTest.class,
+    CountFingerprintDatabaseTest.class,
     LingoSimilarityTest.class,
     KlekotaRothFingerprinterTest.class,
 	ShortestPathFingerprinterTest.class,
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+package org.openscience.cdk.similarity;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.fingerprint.ICountFingerprint;
+import org.openscience.cdk.fingerprint.IntArrayCountFingerprint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * @cdk.module test-fingerprint
+ */
+public class CountFingerprintDatabaseTest {
+
+    @Test public void calculateMatchesTanimoto() throws Exception {
+        List<ICountFingerprint> fps = fingerprints(300, 1);
+        CountFingerprintDatabase db = CountFingerprintDatabase.create(fps);
+        Assert.assertEquals(300, db.count());
+        for (ICountFingerprint query : fingerprints(10, 2)) {
+            double[] sims = db.calculate(query);
+            for (int i = 0; i < fps.size(); i++)
+                Assert.assertEquals(Tanimoto.calculate(query, fps.get(i)), sims[i], 1e-12);
+        }
+    }
+
+    @Test public void parallel() throws Exception {
+        List<ICountFingerprint> fps = fingerprints(10000, 3);
+        CountFingerprintDatabase db = CountFingerprintDatabase.create(fps);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (ICountFingerprint query : fingerprints(3, 4)) {
+                Assert.assertArrayEquals(db.calculate(query), db.calculate(query, executor), 0);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test public void identical() throws Exception {
+        List<ICountFingerprint> fps = fingerprints(20, 5);
+        CountFingerprintDatabase db = CountFingerprintDatabase.create(fps);
+        Assert.assertEquals(1.0, db.calculate(fps.get(7))[7], 1e-12);
+    }
+
+    static List<ICountFingerprint> fingerprints(int n, long seed) {
+        Random rnd = new Random(seed);
+        List<ICountFingerprint> fps = new ArrayList<ICountFingerprint>();
+        for (int i = 0; i < n; i++) {
+            int len = 1 + rnd.nextInt(40);
+            int[] hashes = new int[len];
+            int[] counts = new int[len];
+            for (int j = 0; j < len; j++) {
+                hashes[j] = rnd.nextInt(200) - 100;
+                counts[j] = 1 + rnd.nextInt(4);
+            }
+            fps.add(new IntArrayCountFingerprint(hashes, counts));
+        }
+        return fps;
+    }
+}
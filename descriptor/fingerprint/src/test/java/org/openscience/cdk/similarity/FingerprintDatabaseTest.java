@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+package org.openscience.cdk.similarity;
+
+import org.junit.Test;
+import org.openscience.cdk.fingerprint.BitSetFingerprint;
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @cdk.module test-fingerprint
+ */
+public class FingerprintDatabaseTest {
+
+    @Test public void searchMatchesTanimoto() throws Exception {
+        List<IBitFingerprint> fps = fingerprints(500, 256, 1);
+        FingerprintDatabase db = FingerprintDatabase.create(fps, false);
+        assertThat(db.count(), is(500));
+        assertThat(db.fingerprintSize(), is(256));
+        for (IBitFingerprint query : fingerprints(10, 256, 2)) {
+            assertThat(str(db.search(query, 0.4)), is(str(expected(fps, query, 0.4, fps.size()))));
+        }
+    }
+
+    @Test public void topMatchesTanimoto() throws Exception {
+        List<IBitFingerprint> fps = fingerprints(500, 256, 3);
+        FingerprintDatabase db = FingerprintDatabase.create(fps, true);
+        for (IBitFingerprint query : fingerprints(10, 256, 4)) {
+            assertThat(str(db.top(query, 7)), is(str(expected(fps, query, 0, 7))));
+        }
+    }
+
+    @Test public void parallel() throws Exception {
+        List<IBitFingerprint> fps = fingerprints(20000, 128, 5);
+        FingerprintDatabase db = FingerprintDatabase.create(fps, false);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (IBitFingerprint query : fingerprints(3, 128, 6)) {
+                assertThat(str(db.search(query, 0.5, executor)), is(str(db.search(query, 0.5))));
+                assertThat(str(db.top(query, 25, executor)), is(str(db.top(query, 25))));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test public void identicalIsMostSimilar() throws Exception {
+        List<IBitFingerprint> fps = fingerprints(100, 64, 7);
+        FingerprintDatabase db = FingerprintDatabase.create(fps, false);
+        List<FingerprintDatabase.Hit> hits = db.top(fps.get(42), 1);
+        assertThat(hits.size(), is(1));
+        assertThat(hits.get(0).index(), is(42));
+        assertThat(hits.get(0).similarity(), is(1d));
+    }
+
+    @Test public void writeAndLoad() throws Exception {
+        List<IBitFingerprint> fps = fingerprints(301, 192, 8);
+        FingerprintDatabase db = FingerprintDatabase.create(fps, false);
+        File f = File.createTempFile("cdk", ".fpdb");
+        try {
+            db.write(f);
+            FingerprintDatabase loaded = FingerprintDatabase.load(f);
+            assertThat(loaded.count(), is(301));
+            assertThat(loaded.fingerprintSize(), is(192));
+            for (IBitFingerprint query : fingerprints(5, 192, 9)) {
+                assertThat(str(loaded.search(query, 0.3)), is(str(db.search(query, 0.3))));
+                assertThat(str(loaded.top(query, 5)), is(str(db.top(query, 5))));
+            }
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void differentSize() throws Exception {
+        FingerprintDatabase db = FingerprintDatabase.create(fingerprints(10, 64, 10), false);
+        db.search(new BitSetFingerprint(128), 0.5);
+    }
+
+    /** Expected hits from a linear search with Tanimoto.calculate(). */
+    static List<double[]> expected(List<IBitFingerprint> fps, IBitFingerprint query, double threshold, int k) {
+        List<double[]> hits = new ArrayList<double[]>();
+        for (int i = 0; i < fps.size(); i++) {
+            double sim = Tanimoto.calculate(fps.get(i), query);
+            if (Double.isNaN(sim)) sim = 0;
+            if (sim >= threshold) hits.add(new double[]{i, sim});
+        }
+        Collections.sort(hits, new Comparator<double[]>() {
+            @Override
+            public int compare(double[] a, double[] b) {
+                int cmp = Double.compare(b[1], a[1]);
+                return cmp != 0 ? cmp : Double.compare(a[0], b[0]);
+            }
+        });
+        return hits.size() > k ? hits.subList(0, k) : hits;
+    }
+
+    static String str(List<?> hits) {
+        StringBuilder sb = new StringBuilder();
+        for (Object hit : hits) {
+            if (hit instanceof double[])
+                sb.append((int) ((double[]) hit)[0]).append(':').append(((double[]) hit)[1]);
+            else
+                sb.append(hit);
+            sb.append(' ');
+        }
+        return sb.toString();
+    }
+
+    static List<IBitFingerprint> fingerprints(int n, int size, long seed) {
+        Random rnd = new Random(seed);
+        List<IBitFingerprint> fps = new ArrayList<IBitFingerprint>();
+        for (int i = 0; i < n; i++) {
+            BitSet bs = new BitSet(size);
+            double density = rnd.nextDouble() * 0.5;
+            for (int j = 0; j < size; j++)
+                if (rnd.nextDouble() < density) bs.set(j);
+            fps.add(new BitSetFingerprint(bs));
+        }
+        return fps;
+    }
+}
@@ -176,6 +176,35 @@ public class TanimotoTest extends CDKTestCase
         Assert.assertEquals(0.75, Tanimoto.method2(fp1, fp2), 0.001 );
     }
 
+    @Test
+    public void sortedAndUnsortedCountFingerprints() throws CDKException {
+        final int[] hashes1 = {7, -2, 40, 3};
+        final int[] counts1 = {2, 1, 3, 5};
+        final int[] hashes2 = {3, 8, 7, -9};
+        final int[] counts2 = {1, 4, 2, 2};
+        ICountFingerprint fp1 = new IntArrayCountFingerprint(hashes1, counts1);
+        ICountFingerprint fp2 = new IntArrayCountFingerprint(hashes2, counts2);
+        // xy = 2*2 + 5*1 = 9, x = 4+1+9+25 = 39, y = 1+16+4+4 = 25
+        Assert.assertEquals(9d / (39 + 25 - 9), Tanimoto.calculate(fp1, fp2), 0.0001);
+        Assert.assertEquals(Tanimoto.calculate(fp1, fp2),
+                            Tanimoto.calculate(unsorted(hashes1, counts1), unsorted(hashes2, counts2)), 0.0001);
+        // min = 2 + 1, max = 2 + 1 + 3 + 5 + 4 + 2
+        Assert.assertEquals(3d / 17, Tanimoto.method2(fp1, fp2), 0.0001);
+    }
+
+    private static ICountFingerprint unsorted(final int[] hashes, final int[] counts) {
+        return new ICountFingerprint() {
+            public long size() {return 4294967296l;}
+            public int numOfPopulatedbins() {return hashes.length;}
+            public int getCount(int index) {return counts[index];}
+            public int getHash(int index) {return hashes[index];}
+            public void merge(ICountFingerprint fp) {}
+            public void setBehaveAsBitFingerprint(boolean behaveAsBitFingerprint) {}
+            public boolean hasHash(int hash) {return false;}
+            public int getCountForHash(int hash) {return 0;}
+        };
+    }
+
     @Test
     public void testCompareBitSetandBitFingerprintTanimoto() throws Exception {
         IAtomContainer mol1 = MoleculeFactory.make123Triazole();
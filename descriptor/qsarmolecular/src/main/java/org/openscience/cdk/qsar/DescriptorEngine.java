@@ -23,19 +23,32 @@ package org.openscience.cdk.qsar;
 import nu.xom.Attribute;
 import nu.xom.Element;
 import nu.xom.Elements;
+import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.IImplementationSpecification;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.aromaticity.Aromaticity;
 import org.openscience.cdk.dict.Dictionary;
 import org.openscience.cdk.dict.DictionaryDatabase;
 import org.openscience.cdk.dict.Entry;
 import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.graph.GraphCache;
+import org.openscience.cdk.graph.GraphUtil;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.qsar.result.BooleanResult;
+import org.openscience.cdk.qsar.result.DoubleArrayResult;
+import org.openscience.cdk.qsar.result.DoubleResult;
+import org.openscience.cdk.qsar.result.IDescriptorResult;
+import org.openscience.cdk.qsar.result.IntegerArrayResult;
+import org.openscience.cdk.qsar.result.IntegerResult;
+import org.openscience.cdk.ringsearch.RingSearch;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
+import org.openscience.cdk.tools.Parallel;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
 
 import java.io.File;
 import java.io.IOException;
@@ -48,8 +61,11 @@ import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -86,6 +102,9 @@ import java.util.jar.JarFile;
 public class DescriptorEngine {
     private static String rdfNS = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
 
+    /** Minimum number of molecules in a part of a batch calculation. */
+    private static final int MIN_PART = 64;
+
     private Dictionary dict = null;
     private List<String> classNames = new ArrayList<String>(200);
     private List<IDescriptor> descriptors = new ArrayList<IDescriptor>(200);
@@ -217,6 +236,211 @@ public class DescriptorEngine {
         }
     }
 
+    /**
+     * Names of the values calculated by the molecular descriptors, these are
+     * the columns of the matrix returned by {@link #process(Iterable, ExecutorService)}.
+     *
+     * @return the value names, in column order
+     */
+    public List<String> getMolecularDescriptorNames() {
+        List<String> names = new ArrayList<String>();
+        for (IMolecularDescriptor descriptor : molecularDescriptors())
+            names.addAll(Arrays.asList(descriptor.getDescriptorNames()));
+        return names;
+    }
+
+    /**
+     * Calculates the molecular descriptors for a batch of molecules, the
+     * molecules are split into parts which are run on the executor. Unlike
+     * {@link #process(IAtomContainer)} the results are not stored as
+     * properties but returned in a columnar matrix, {@code matrix[j][i]} is
+     * value {@code j} (see {@link #getMolecularDescriptorNames()}) of
+     * molecule {@code i}. A value that could not be calculated is NaN.
+     * <p/>
+     * Descriptors hold state between calls and so each running part uses
+     * its own instances, copies with the parameters of the engine's
+     * instances (which are not used). A later part may reuse the copies of
+     * a finished part. The
+     * molecules are not modified: each is cloned and prepared once (ring
+     * membership, atom types and aromaticity) before all descriptors are
+     * calculated on the clone. Atomic and bond descriptors are ignored.
+     *
+     * @param molecules the molecules, only iterated once
+     * @param executor  runs the parts of the calculation
+     * @return the descriptor values, one row per value and one column per molecule
+     * @throws CDKException         the descriptors could not be instantiated
+     * @throws InterruptedException the calculation was interrupted
+     */
+    public double[][] process(Iterable<IAtomContainer> molecules, ExecutorService executor) throws CDKException,
+                                                                                                  InterruptedException {
+
+        if (descriptors == null) throw new CDKException("Descriptors have not been instantiated");
+
+        final List<IMolecularDescriptor> prototypes = molecularDescriptors();
+        final int[] widths = new int[prototypes.size()];
+        int nValues = 0;
+        for (int i = 0; i < widths.length; i++) {
+            widths[i] = prototypes.get(i).getDescriptorNames().length;
+            nValues += widths[i];
+        }
+
+        // descriptor instances not in use by a part, the engine's own
+        // instances are only copied
+        final Queue<List<IMolecularDescriptor>> idle = new ConcurrentLinkedQueue<List<IMolecularDescriptor>>();
+
+        final int chunkSize = Parallel.maxParts() * MIN_PART;
+        final List<IAtomContainer> chunk = new ArrayList<IAtomContainer>(chunkSize);
+        int capacity = chunkSize;
+        double[][] matrix = new double[nValues][capacity];
+        int n = 0;
+
+        Iterator<IAtomContainer> it = molecules.iterator();
+        while (it.hasNext()) {
+            chunk.clear();
+            while (it.hasNext() && chunk.size() < chunkSize)
+                chunk.add(it.next());
+
+            if (n + chunk.size() > capacity) {
+                capacity = Math.max(n + chunk.size(), 2 * capacity);
+                for (int j = 0; j < nValues; j++)
+                    matrix[j] = Arrays.copyOf(matrix[j], capacity);
+            }
+
+            final double[][] values = matrix;
+            final int offset = n;
+            Parallel.forRanges(executor, chunk.size(), MIN_PART, new Parallel.Range<Void, CDKException>() {
+
+                @Override
+                public Void run(int from, int to) throws CDKException {
+                    List<IMolecularDescriptor> instances = idle.poll();
+                    if (instances == null) instances = copy(prototypes);
+                    try {
+                        for (int i = from; i < to; i++)
+                            calculate(instances, widths, chunk.get(i), values, offset + i);
+                    } finally {
+                        idle.add(instances);
+                        // the executor's thread does not keep the molecules
+                        GraphCache.clear();
+                    }
+                    return null;
+                }
+            });
+            n += chunk.size();
+        }
+
+        for (int j = 0; j < nValues; j++)
+            matrix[j] = Arrays.copyOf(matrix[j], n);
+        return matrix;
+    }
+
+    /**
+     * Calculate the descriptors of a molecule storing the values in column
+     * {@code col} of the matrix.
+     */
+    private void calculate(List<IMolecularDescriptor> instances, int[] widths, IAtomContainer molecule,
+                           double[][] matrix, int col) {
+        IAtomContainer prepared;
+        try {
+            prepared = prepare(molecule);
+        } catch (Exception e) {
+            logger.error("Could not prepare molecule for descriptor calculation: ", e.getMessage());
+            logger.debug(e);
+            for (double[] row : matrix)
+                row[col] = Double.NaN;
+            return;
+        }
+        int row = 0;
+        for (int i = 0; i < instances.size(); i++) {
+            IMolecularDescriptor descriptor = instances.get(i);
+            IDescriptorResult result = null;
+            try {
+                DescriptorValue value = descriptor.calculate(prepared);
+                if (value.getException() == null) result = value.getValue();
+                else {
+                    logger.error("Could not calculate descriptor value for: ", descriptor.getClass().getName());
+                    logger.debug(value.getException());
+                }
+            } catch (Exception e) {
+                logger.error("Could not calculate descriptor value for: ", descriptor.getClass().getName());
+                logger.debug(e);
+            }
+            for (int k = 0; k < widths[i]; k++)
+                matrix[row + k][col] = value(result, k);
+            row += widths[i];
+        }
+    }
+
+    /**
+     * Value {@code k} of a descriptor result, NaN if there is no such value.
+     */
+    private static double value(IDescriptorResult result, int k) {
+        if (result instanceof DoubleResult)
+            return k == 0 ? ((DoubleResult) result).doubleValue() : Double.NaN;
+        if (result instanceof IntegerResult)
+            return k == 0 ? ((IntegerResult) result).intValue() : Double.NaN;
+        if (result instanceof BooleanResult)
+            return k == 0 ? (((BooleanResult) result).booleanValue() ? 1 : 0) : Double.NaN;
+        if (result instanceof DoubleArrayResult)
+            return k < result.length() ? ((DoubleArrayResult) result).get(k) : Double.NaN;
+        if (result instanceof IntegerArrayResult)
+            return k < result.length() ? ((IntegerArrayResult) result).get(k) : Double.NaN;
+        return Double.NaN;
+    }
+
+    /**
+     * Clone a molecule and perceive the ring membership, atom types and
+     * aromaticity which many descriptors would otherwise each perceive.
+     */
+    private static IAtomContainer prepare(IAtomContainer molecule) throws CloneNotSupportedException, CDKException {
+        IAtomContainer prepared = molecule.clone();
+        int[][] graph = GraphUtil.toAdjList(prepared);
+        RingSearch rings = new RingSearch(prepared, graph);
+        for (int i = 0; i < prepared.getAtomCount(); i++)
+            prepared.getAtom(i).setFlag(CDKConstants.ISINRING, rings.cyclic(i));
+        for (IBond bond : prepared.bonds()) {
+            int u = prepared.getAtomNumber(bond.getAtom(0));
+            int v = prepared.getAtomNumber(bond.getAtom(1));
+            bond.setFlag(CDKConstants.ISINRING, rings.cyclic(u, v));
+        }
+        AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(prepared);
+        Aromaticity.cdkLegacy().apply(prepared);
+        return prepared;
+    }
+
+    /**
+     * The molecular descriptors of this engine.
+     */
+    private List<IMolecularDescriptor> molecularDescriptors() {
+        List<IMolecularDescriptor> molecular = new ArrayList<IMolecularDescriptor>();
+        for (IDescriptor descriptor : descriptors) {
+            if (descriptor instanceof IMolecularDescriptor) molecular.add((IMolecularDescriptor) descriptor);
+        }
+        return molecular;
+    }
+
+    /**
+     * New instances of the descriptors with the same parameters.
+     */
+    private List<IMolecularDescriptor> copy(List<IMolecularDescriptor> descriptors) throws CDKException {
+        List<IMolecularDescriptor> copies = new ArrayList<IMolecularDescriptor>(descriptors.size());
+        for (IMolecularDescriptor descriptor : descriptors) {
+            try {
+                IMolecularDescriptor copy = (IMolecularDescriptor) instantiate(descriptor.getClass());
+                copy.initialise(builder);
+                Object[] params = descriptor.getParameters();
+                if (params != null && params.length > 0) copy.setParameters(params);
+                copies.add(copy);
+            } catch (IllegalAccessException e) {
+                throw new CDKException("Could not instantiate descriptor: " + descriptor.getClass().getName(), e);
+            } catch (InvocationTargetException e) {
+                throw new CDKException("Could not instantiate descriptor: " + descriptor.getClass().getName(), e);
+            } catch (InstantiationException e) {
+                throw new CDKException("Could not instantiate descriptor: " + descriptor.getClass().getName(), e);
+            }
+        }
+        return copies;
+    }
+
     /**
      * Returns the type of the descriptor as defined in the descriptor dictionary.
      * <p/>
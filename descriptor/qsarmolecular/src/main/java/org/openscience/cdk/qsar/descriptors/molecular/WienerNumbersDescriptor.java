@@ -22,8 +22,8 @@ package org.openscience.cdk.qsar.descriptors.molecular;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.exception.CDKException;
-import org.openscience.cdk.graph.PathTools;
-import org.openscience.cdk.graph.matrix.ConnectionMatrix;
+import org.openscience.cdk.graph.AllPairsDistances;
+import org.openscience.cdk.graph.GraphUtil;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.qsar.AbstractMolecularDescriptor;
 import org.openscience.cdk.qsar.DescriptorSpecification;
@@ -71,9 +71,10 @@ public class WienerNumbersDescriptor extends AbstractMolecularDescriptor impleme
 
     private static final String[] names = {"WPATH", "WPOL"};
 
-    double[][] matr = null;
+    /** Distance of unconnected atoms in the distance matrix. */
+    private static final int UNCONNECTED = 999999999;
+
     DoubleArrayResult wienerNumbers = null;
-    ConnectionMatrix connectionMatrix = new ConnectionMatrix();
     AtomContainerManipulator atm =  new AtomContainerManipulator();
 
     /**
@@ -155,21 +156,23 @@ public class WienerNumbersDescriptor extends AbstractMolecularDescriptor impleme
         double wienerPolarityNumber = 0; //wienerPol
 
 
-        matr = ConnectionMatrix.getMatrix(AtomContainerManipulator.removeHydrogens(atomContainer));        
-        int[][] distances = PathTools.computeFloydAPSP(matr);
+        IAtomContainer heavy = AtomContainerManipulator.removeHydrogens(atomContainer);
+        AllPairsDistances distances = new AllPairsDistances(GraphUtil.toAdjList(heavy));
 
+        // each pair is visited once, unconnected pairs are counted with the
+        // distance given by PathTools.computeFloydAPSP
         int partial;
-        for (int i = 0; i < distances.length; i++) {
-            for (int j = 0; j < distances.length; j++) {
-                partial = distances[i][j];
+        for (int i = 0; i < distances.order(); i++) {
+            for (int j = 0; j < i; j++) {
+                partial = distances.distance(i, j);
+                if (partial == Integer.MAX_VALUE)
+                    partial = UNCONNECTED;
                 wienerPathNumber += partial;
                 if (partial == 3) {
                     wienerPolarityNumber += 1;
                 }
             }
         }
-        wienerPathNumber = wienerPathNumber / 2;
-        wienerPolarityNumber = wienerPolarityNumber / 2;
 
         wienerNumbers.add(wienerPathNumber);
         wienerNumbers.add(wienerPolarityNumber);
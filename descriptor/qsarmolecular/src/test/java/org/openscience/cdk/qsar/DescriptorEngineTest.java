@@ -23,13 +23,21 @@
  */
 package org.openscience.cdk.qsar;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.junit.Assert;
 import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.CDKTestCase;
 import org.openscience.cdk.DefaultChemObjectBuilder;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.modeling.builder3d.ModelBuilder3D;
 import org.openscience.cdk.modeling.builder3d.TemplateHandler3D;
+import org.openscience.cdk.qsar.result.IntegerResult;
 import org.openscience.cdk.smiles.SmilesParser;
 
 /**
@@ -137,5 +145,86 @@ public class DescriptorEngineTest extends CDKTestCase {
     	Assert.assertEquals(loadedDescriptors, engine.getDescriptorClassNames().size());
     	Assert.assertEquals(loadedDescriptors, engine.getDescriptorSpecifications().size());
     }
-}
 
+    @Test
+    public void testBatchProcess() throws Exception {
+        DescriptorEngine engine = new DescriptorEngine(
+                Arrays.asList("org.openscience.cdk.qsar.descriptors.molecular.AromaticAtomsCountDescriptor",
+                              "org.openscience.cdk.qsar.descriptors.molecular.BondCountDescriptor"),
+                DefaultChemObjectBuilder.getInstance());
+        Assert.assertEquals(Arrays.asList("naAromAtom", "nB"), engine.getMolecularDescriptorNames());
+
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        String[] smiles = {"C1=CC=CC=C1", "CCO", "C1=CC=C2C=CC=CC2=C1", "O=C(O)C1=CC=CN=C1"};
+        int[][] expected = {{6, 0, 10, 6}, {6, 2, 11, 9}};
+        List<IAtomContainer> molecules = new ArrayList<IAtomContainer>();
+        for (int i = 0; i < 1000; i++)
+            molecules.add(sp.parseSmiles(smiles[i % smiles.length]));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            double[][] matrix = engine.process(molecules, executor);
+            Assert.assertEquals(2, matrix.length);
+            for (int j = 0; j < matrix.length; j++) {
+                Assert.assertEquals(molecules.size(), matrix[j].length);
+                for (int i = 0; i < molecules.size(); i++)
+                    Assert.assertEquals(expected[j][i % smiles.length], matrix[j][i], 0.01);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // the input is not modified
+        Assert.assertFalse(molecules.get(0).getAtom(0).getFlag(CDKConstants.ISAROMATIC));
+    }
+
+    /**
+     * An engine without molecular descriptors has no values to calculate.
+     */
+    @Test
+    public void testBatchProcessAtomicDescriptors() throws Exception {
+        DescriptorEngine engine = new DescriptorEngine(IAtomicDescriptor.class, DefaultChemObjectBuilder.getInstance());
+        Assert.assertTrue(engine.getMolecularDescriptorNames().isEmpty());
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        List<IAtomContainer> molecules = new ArrayList<IAtomContainer>();
+        for (int i = 0; i < 100; i++)
+            molecules.add(sp.parseSmiles("CCO"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Assert.assertEquals(0, engine.process(molecules, executor).length);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatchProcessMatchesProcess() throws Exception {
+        DescriptorEngine engine = new DescriptorEngine(
+                Arrays.asList("org.openscience.cdk.qsar.descriptors.molecular.RotatableBondsCountDescriptor",
+                              "org.openscience.cdk.qsar.descriptors.molecular.HBondDonorCountDescriptor"),
+                DefaultChemObjectBuilder.getInstance());
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        List<IAtomContainer> molecules = new ArrayList<IAtomContainer>();
+        for (String smi : new String[]{"CCCCO", "NCC(=O)O", "c1ccccc1CCN", "OCC(O)CO"})
+            molecules.add(sp.parseSmiles(smi));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        double[][] matrix;
+        try {
+            matrix = engine.process(molecules, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int i = 0; i < molecules.size(); i++) {
+            IAtomContainer molecule = molecules.get(i);
+            engine.process(molecule);
+            for (int j = 0; j < engine.getDescriptorSpecifications().size(); j++) {
+                DescriptorValue value = (DescriptorValue) molecule.getProperty(engine.getDescriptorSpecifications()
+                                                                                     .get(j));
+                Assert.assertEquals(((IntegerResult) value.getValue()).intValue(), matrix[j][i], 0.01);
+            }
+        }
+    }
+}
@@ -30,12 +30,24 @@ import org.openscience.cdk.CDKTestCase;
 import org.openscience.cdk.DefaultChemObjectBuilder;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IChemObject;
+import org.openscience.cdk.io.IChemObjectReader;
+import org.openscience.cdk.io.listener.IChemObjectIOListener;
+import org.openscience.cdk.io.setting.IOSetting;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FileWriter;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Test for {@link RandomAccessSDFReader}.
@@ -100,4 +112,133 @@ public class RandomAccessTest extends CDKTestCase {
                 in.close();
         }
     }
+
+    private static final String[] MDLNUMBERS = {
+            "MFCD00000387",
+            "MFCD00000661",
+            "MFCD00000662",
+            "MFCD00000663",
+            "MFCD00000664",
+            "MFCD03453215"
+    };
+
+    @Test public void binaryIndexIsReused() throws Exception {
+        File f = copy("/data/mdl/test2.sdf");
+        File index = RandomAccessReader.getIndexFile(f.getAbsolutePath());
+        try {
+            RandomAccessReader rf = new RandomAccessSDFReader(f, DefaultChemObjectBuilder.getInstance());
+            Assert.assertEquals(6, rf.size());
+            rf.close();
+
+            Assert.assertTrue(index.exists());
+            DataInputStream in = new DataInputStream(new FileInputStream(index));
+            Assert.assertEquals(0x43444B49, in.readInt());
+            Assert.assertEquals(2, in.readInt());
+            in.close();
+            long modified = index.lastModified();
+
+            rf = new RandomAccessSDFReader(f, DefaultChemObjectBuilder.getInstance());
+            Assert.assertEquals(6, rf.size());
+            for (int i = 0; i < rf.size(); i++)
+                Assert.assertEquals(MDLNUMBERS[i], rf.readRecord(i).getProperty("MDLNUMBER"));
+            rf.close();
+            Assert.assertEquals(modified, index.lastModified());
+        } finally {
+            f.delete();
+            index.delete();
+        }
+    }
+
+    @Test public void textIndexIsReplaced() throws Exception {
+        File f = copy("/data/mdl/test2.sdf");
+        File index = RandomAccessReader.getIndexFile(f.getAbsolutePath());
+        try {
+            // an index in the old text format
+            FileWriter out = new FileWriter(index);
+            out.write("1\n" + f.getAbsolutePath() + "\n" + f.length() + "\n1\n0\t10\t-1\n1\n" + f.getAbsolutePath() + "\n");
+            out.close();
+            RandomAccessReader rf = new RandomAccessSDFReader(f, DefaultChemObjectBuilder.getInstance());
+            Assert.assertEquals(6, rf.size());
+            Assert.assertEquals(MDLNUMBERS[5], rf.readRecord(5).getProperty("MDLNUMBER"));
+            rf.close();
+        } finally {
+            f.delete();
+            index.delete();
+        }
+    }
+
+    @Test public void concurrentReads() throws Exception {
+        File f = copy("/data/mdl/test2.sdf");
+        File index = RandomAccessReader.getIndexFile(f.getAbsolutePath());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final RandomAccessReader rf = new RandomAccessSDFReader(f, DefaultChemObjectBuilder.getInstance());
+            List<Future<Object>> results = new ArrayList<Future<Object>>();
+            for (int i = 0; i < 120; i++) {
+                final int record = i % rf.size();
+                results.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        return rf.readRecord(record).getProperty("MDLNUMBER");
+                    }
+                }));
+            }
+            for (int i = 0; i < results.size(); i++)
+                Assert.assertEquals(MDLNUMBERS[i % MDLNUMBERS.length], results.get(i).get());
+            rf.close();
+        } finally {
+            executor.shutdown();
+            f.delete();
+            index.delete();
+        }
+    }
+
+    @Test public void settingsOfOtherThreads() throws Exception {
+        File f = copy("/data/mdl/test2.sdf");
+        File index = RandomAccessReader.getIndexFile(f.getAbsolutePath());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final RandomAccessReader rf = new RandomAccessSDFReader(f, DefaultChemObjectBuilder.getInstance());
+            rf.getChemObjectReader().getSetting("ForceReadAs3DCoordinates").setSetting("true");
+            IChemObjectIOListener listener = new IChemObjectIOListener() {
+                @Override
+                public void processIOSettingQuestion(IOSetting setting) {
+                }
+            };
+            rf.addChemObjectIOListener(listener);
+            Future<IChemObjectReader> other = executor.submit(new Callable<IChemObjectReader>() {
+                @Override
+                public IChemObjectReader call() throws Exception {
+                    rf.readRecord(1);
+                    return rf.getChemObjectReader();
+                }
+            });
+            IChemObjectReader reader = other.get();
+            Assert.assertNotSame(rf.getChemObjectReader(), reader);
+            Assert.assertEquals("true", reader.getSetting("ForceReadAs3DCoordinates").getSetting());
+            Assert.assertTrue(reader.getListeners().contains(listener));
+            rf.close();
+        } finally {
+            executor.shutdown();
+            f.delete();
+            index.delete();
+        }
+    }
+
+    private File copy(String path) throws Exception {
+        InputStream in = getClass().getResourceAsStream(path);
+        File f = File.createTempFile("tmp", "sdf");
+        FileOutputStream out = new FileOutputStream(f);
+        try {
+            byte[] buf = new byte[1024];
+            int len;
+            while ((len = in.read(buf)) > 0) {
+                out.write(buf, 0, len);
+            }
+        } finally {
+            out.close();
+            in.close();
+        }
+        return f;
+    }
 }
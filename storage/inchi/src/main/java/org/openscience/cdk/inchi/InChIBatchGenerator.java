@@ -0,0 +1,221 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.inchi;
+
+import net.sf.jniinchi.INCHI_RET;
+import net.sf.jniinchi.JniInchiException;
+import net.sf.jniinchi.JniInchiInput;
+import org.openscience.cdk.config.Isotopes;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Generates the InChI and InChIKey of many molecules, for example when
+ * registering a file of compounds. The conversion of each {@link
+ * IAtomContainer} to the input of the InChI library is done in parallel by
+ * tasks submitted to an executor while the library itself, which is not
+ * re-entrant, is called for one molecule at a time on the thread of the
+ * caller. The molecules are read from the iterator ahead of the library
+ * calls, so the conversion of the next molecules overlaps with the InChI
+ * generation of the current one. Each result is passed to a {@link Handler}
+ * on the thread of the caller, in the order of the input, as soon as it is
+ * generated.
+ *
+ * <blockquote><pre>
+ * InChIGeneratorFactory factory  = InChIGeneratorFactory.getInstance();
+ * ExecutorService       executor = Executors.newFixedThreadPool(4);
+ * InChIBatchGenerator   batch    = factory.getInChIBatchGenerator(executor);
+ * batch.generate(molecules, new InChIBatchGenerator.Handler() {
+ *     public void handle(IAtomContainer molecule, InChIGenerator gen) throws CDKException {
+ *         if (gen.getReturnStatus() == INCHI_RET.OKAY || gen.getReturnStatus() == INCHI_RET.WARNING)
+ *             register(molecule.getID(), gen.getInchi(), gen.getInchiKey());
+ *     }
+ * });
+ * </pre></blockquote>
+ *
+ * Only the molecules read ahead are held by the batch, the molecules and
+ * results which have been handled are not referenced so a large input (e.g.
+ * an iterating reader) is generated in bounded memory. The generators do not
+ * keep the molecule or the input of the library, only the results. The
+ * InChIKey of each molecule which has an InChI is generated with the InChI,
+ * {@link InChIGenerator#getInchiKey()} does not call the library again.
+ * The library calls of a batch share a queue with all other InChI
+ * generation and parsing (e.g. other batches or {@link InChIGenerator}s
+ * used from several threads) and are made in turn. An instance is obtained from the {@link
+ * InChIGeneratorFactory}, which ensures the native code is loaded.
+ *
+ * @cdk.module inchi
+ * @cdk.githash
+ * @see InChIGenerator
+ */
+public final class InChIBatchGenerator {
+
+    /** Number of molecules read ahead of the library calls, per processor. */
+    private static final int READ_AHEAD = 4;
+
+    private final ExecutorService executor;
+    private final String          options;
+    private final boolean         ignoreAromaticBonds;
+
+    /**
+     * Receives the result of each molecule of a batch.
+     */
+    public interface Handler {
+
+        /**
+         * Handle the result of a molecule, called on the thread generating
+         * the batch in the order of the input.
+         *
+         * @param container the molecule
+         * @param generator the InChI generator of the molecule, the InChI has
+         *                  been generated
+         * @throws CDKException the result could not be handled, the batch is
+         *                      stopped
+         */
+        void handle(IAtomContainer container, InChIGenerator generator) throws CDKException;
+    }
+
+    /**
+     * Create a batch generator.
+     *
+     * @param executor            runs the conversion of the molecules
+     * @param options             space delimited string of options to pass to
+     *                            the InChI library, empty for Standard InChI
+     * @param ignoreAromaticBonds if aromatic bonds should be treated as bonds
+     *                            of type single and double
+     */
+    InChIBatchGenerator(ExecutorService executor, String options, boolean ignoreAromaticBonds) {
+        if (executor == null) throw new NullPointerException("no executor provided");
+        this.executor = executor;
+        this.options = options != null ? options : "";
+        this.ignoreAromaticBonds = ignoreAromaticBonds;
+    }
+
+    /**
+     * Generate the InChI (and InChIKey) of each molecule and pass it to the
+     * handler. A molecule for which the InChI library fails does not stop the
+     * batch, the return status and message of its generator report the
+     * failure.
+     *
+     * @param containers the molecules, read in order on the calling thread
+     * @param handler    receives an InChI generator for each molecule, in the
+     *                   order of the input
+     * @throws CDKException         a molecule could not be converted to the
+     *                              input of the InChI library or the handler
+     *                              failed
+     * @throws InterruptedException the thread was interrupted waiting for a
+     *                              conversion to complete
+     */
+    public void generate(Iterable<? extends IAtomContainer> containers, Handler handler) throws CDKException,
+            InterruptedException {
+
+        // load the isotopes used by the conversion before the tasks share them
+        try {
+            Isotopes.getInstance();
+        } catch (Exception e) {
+            // Do nothing, as InChIGenerator
+        }
+
+        int readAhead = READ_AHEAD * Runtime.getRuntime().availableProcessors();
+        Deque<IAtomContainer> read = new ArrayDeque<IAtomContainer>(readAhead);
+        Deque<Future<InChIGenerator>> pending = new ArrayDeque<Future<InChIGenerator>>(readAhead);
+        Iterator<? extends IAtomContainer> iterator = containers.iterator();
+
+        try {
+            while (iterator.hasNext() || !pending.isEmpty()) {
+                while (pending.size() < readAhead && iterator.hasNext()) {
+                    IAtomContainer container = iterator.next();
+                    read.add(container);
+                    pending.add(executor.submit(conversion(container)));
+                }
+                InChIGenerator generator = pending.poll().get();
+                generate(generator);
+                handler.handle(read.poll(), generator);
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CDKException) throw (CDKException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        } finally {
+            // only non-empty if the batch failed
+            for (Future<InChIGenerator> future : pending)
+                future.cancel(true);
+        }
+    }
+
+    /**
+     * A task converting a molecule to the input of the InChI library.
+     *
+     * @param container the molecule
+     * @return the task
+     */
+    private Callable<InChIGenerator> conversion(final IAtomContainer container) {
+        return new Callable<InChIGenerator>() {
+
+            @Override
+            public InChIGenerator call() throws CDKException {
+                try {
+                    return new InChIGenerator(container, new JniInchiInput(options), ignoreAromaticBonds);
+                } catch (JniInchiException jie) {
+                    throw new CDKException("InChI generation failed: " + jie.getMessage(), jie);
+                }
+            }
+        };
+    }
+
+    /**
+     * Call the InChI library for a converted molecule, the InChI and key are
+     * generated without another call to the library in between. The
+     * generator's molecule and library input are then released.
+     *
+     * @param generator the converted molecule
+     * @throws CDKException the InChI library could not be called
+     */
+    private static void generate(InChIGenerator generator) throws CDKException {
+        InChIGenerator.LIBRARY.lock();
+        try {
+            generator.generateInchi();
+            INCHI_RET ret = generator.getReturnStatus();
+            if (ret == INCHI_RET.OKAY || ret == INCHI_RET.WARNING) {
+                try {
+                    generator.getInchiKey();
+                } catch (CDKException e) {
+                    // reported again when the key is requested from the generator
+                }
+            }
+        } finally {
+            InChIGenerator.LIBRARY.unlock();
+        }
+        generator.release();
+    }
+}
@@ -25,6 +25,8 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.vecmath.Point2d;
 import javax.vecmath.Point3d;
@@ -104,6 +106,12 @@ import org.openscience.cdk.stereo.ExtendedTetrahedral;
 @TestClass("org.openscience.cdk.inchi.InChIGeneratorTest")
 public class InChIGenerator {
 
+    /**
+     * The calls to the InChI library, which is not re-entrant, waiting
+     * threads are queued in order.
+     */
+    static final Lock LIBRARY = new ReentrantLock(true);
+
     protected JniInchiInput input;
 
     protected JniInchiOutput output;
@@ -113,6 +121,11 @@ public class InChIGenerator {
      */
     protected IAtomContainer atomContainer;
 
+    /**
+     * The InChIKey, once generated.
+     */
+    private String inchiKey;
+
     /**
      * <p>Constructor. Generates InChI from CDK AtomContainer.
      *
@@ -129,6 +142,7 @@ public class InChIGenerator {
         try {
             input = new JniInchiInput("");
             generateInchiFromCDKAtomContainer(atomContainer, ignoreAromaticBonds);
+            generateInchi();
         } catch (JniInchiException jie) {
             throw new CDKException("InChI generation failed: " + jie.getMessage(), jie);
         }
@@ -152,6 +166,7 @@ public class InChIGenerator {
         try {
             input = new JniInchiInput(options);
             generateInchiFromCDKAtomContainer(atomContainer, ignoreAromaticBonds);
+            generateInchi();
         } catch (JniInchiException jie) {
             throw new CDKException("InChI generation failed: " + jie.getMessage(), jie);
         }
@@ -174,16 +189,35 @@ public class InChIGenerator {
         try {
             input = new JniInchiInput(options);
             generateInchiFromCDKAtomContainer(atomContainer, ignoreAromaticBonds);
+            generateInchi();
         } catch (JniInchiException jie) {
             throw new CDKException("InChI generation failed: " + jie.getMessage(), jie);
         }
     }
 
 
+    /**
+     * <p>Constructor. Converts the CDK AtomContainer to the input of the InChI
+     * library but does not call the library, {@link #generateInchi()} must be
+     * called before the results are accessed. This allows the conversion to
+     * be done on a different thread from the library call, see
+     * {@link InChIBatchGenerator}.
+     *
+     * @param atomContainer      AtomContainer to generate InChI for.
+     * @param input              empty input of the InChI library, with the options set
+     * @param ignoreAromaticBonds if aromatic bonds should be treated as bonds of type single and double
+     * @throws CDKException if the atom container could not be converted
+     */
+    InChIGenerator(IAtomContainer atomContainer, JniInchiInput input, boolean ignoreAromaticBonds) throws
+            CDKException {
+        this.input = input;
+        generateInchiFromCDKAtomContainer(atomContainer, ignoreAromaticBonds);
+    }
+
+
     /**
      * <p>Reads atoms, bonds etc from atom container and converts to format
-     * InChI library requires, then places call for the library to generate
-     * the InChI.
+     * InChI library requires.
      *
      * @param atomContainer      AtomContainer to generate InChI for.
      * @throws CDKException
@@ -515,12 +549,33 @@ public class InChIGenerator {
             }
         }
 
+    }
+
+    /**
+     * Places the call for the library to generate the InChI from the
+     * converted input.
+     *
+     * @throws CDKException
+     */
+    void generateInchi() throws CDKException {
+        LIBRARY.lock();
         try {
             output = JniInchiWrapper.getInchi(input);
         } catch (JniInchiException jie) {
             throw new CDKException("Failed to generate InChI: " + jie.getMessage(), jie);
+        } finally {
+            LIBRARY.unlock();
         }
     }
+
+    /**
+     * Release the molecule and the input of the library once the InChI has
+     * been generated, the results remain available.
+     */
+    void release() {
+        atomContainer = null;
+        input = null;
+    }
     
     private static List<IBond> onlySingleBonded(List<IBond> bonds) {
         List<IBond> filtered = new ArrayList<IBond>();
@@ -560,11 +615,14 @@ public class InChIGenerator {
      */
     @TestMethod("testGetInchiFromEthane")
     public String getInchiKey() throws CDKException {
+        if (inchiKey != null) return inchiKey;
         JniInchiOutputKey key;
+        LIBRARY.lock();
         try {
             key = JniInchiWrapper.getInchiKey(output.getInchi());
             if (key.getReturnStatus() == INCHI_KEY.OK) {
-                return key.getKey();
+                inchiKey = key.getKey();
+                return inchiKey;
             } else {
                 throw new CDKException("Error while creating InChIKey: " +
                                        key.getReturnStatus());
@@ -572,6 +630,8 @@ public class InChIGenerator {
         } catch (JniInchiException exception) {
             throw new CDKException("Error while creating InChIKey: " +
                                    exception.getMessage(), exception);
+        } finally {
+            LIBRARY.unlock();
         }
     }
 
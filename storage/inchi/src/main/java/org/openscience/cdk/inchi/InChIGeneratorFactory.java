@@ -21,6 +21,7 @@
 package org.openscience.cdk.inchi;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import net.sf.jniinchi.INCHI_OPTION;
 import net.sf.jniinchi.JniInchiWrapper;
@@ -183,6 +184,31 @@ public class InChIGeneratorFactory {
         return(new InChIGenerator(container, options, ignoreAromaticBonds));
     }
     
+    /**
+     * Gets a batch generator of Standard InChIs, which converts the molecules
+     * in parallel and calls the InChI library one molecule at a time.
+     * 
+     * @param executor      runs the conversion of the molecules
+     * @return the batch InChI generator
+     */
+    @TestMethod("testGetInChIBatchGenerator_ExecutorService")
+    public InChIBatchGenerator getInChIBatchGenerator(ExecutorService executor) {
+        return(new InChIBatchGenerator(executor, "", ignoreAromaticBonds));
+    }
+
+    /**
+     * Gets a batch generator of InChIs, which converts the molecules in
+     * parallel and calls the InChI library one molecule at a time.
+     * 
+     * @param executor      runs the conversion of the molecules
+     * @param options       String of options for InChI generation.
+     * @return the batch InChI generator
+     */
+    @TestMethod("testGetInChIBatchGenerator_ExecutorService_String")
+    public InChIBatchGenerator getInChIBatchGenerator(ExecutorService executor, String options) {
+        return(new InChIBatchGenerator(executor, options, ignoreAromaticBonds));
+    }
+    
     /**
      * Gets structure generator for an InChI string.
      * 
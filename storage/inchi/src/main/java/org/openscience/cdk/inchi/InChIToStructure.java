@@ -155,10 +155,13 @@ protected JniInchiInputInchi input;
      */
     @TestMethod("testGetAtomContainer_IChemObjectBuilder")
     protected void generateAtomContainerFromInchi(IChemObjectBuilder builder) throws CDKException {
+        InChIGenerator.LIBRARY.lock();
         try {
             output = JniInchiWrapper.getStructureFromInchi(input);
         } catch (JniInchiException jie) {
             throw new CDKException("Failed to convert InChI to molecule: " + jie.getMessage(), jie);
+        } finally {
+            InChIGenerator.LIBRARY.unlock();
         }
         
         //molecule = new AtomContainer();
@@ -0,0 +1,200 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.inchi;
+
+import net.sf.jniinchi.INCHI_RET;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openscience.cdk.Atom;
+import org.openscience.cdk.AtomContainer;
+import org.openscience.cdk.Bond;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @cdk.module test-inchi
+ */
+public class InChIBatchGeneratorTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void sameAsGenerator() throws Exception {
+        InChIGeneratorFactory factory = InChIGeneratorFactory.getInstance();
+        List<IAtomContainer> containers = new ArrayList<IAtomContainer>();
+        for (int i = 1; i <= 20; i++)
+            containers.add(chain(i, i % 2 == 0 ? IBond.Order.SINGLE : IBond.Order.DOUBLE));
+
+        List<InChIGenerator> gens = generate(factory.getInChIBatchGenerator(executor), containers);
+        assertThat(gens.size(), is(containers.size()));
+        for (int i = 0; i < containers.size(); i++) {
+            InChIGenerator expected = factory.getInChIGenerator(containers.get(i));
+            assertThat(gens.get(i).getReturnStatus(), is(expected.getReturnStatus()));
+            assertThat(gens.get(i).getInchi(), is(expected.getInchi()));
+            assertThat(gens.get(i).getInchiKey(), is(expected.getInchiKey()));
+        }
+    }
+
+    @Test
+    public void ethane() throws Exception {
+        InChIBatchGenerator batch = InChIGeneratorFactory.getInstance().getInChIBatchGenerator(executor);
+        List<InChIGenerator> gens = generate(batch, Collections.singletonList(chain(2, IBond.Order.SINGLE)));
+        assertThat(gens.get(0).getReturnStatus(), is(INCHI_RET.OKAY));
+        assertThat(gens.get(0).getInchi(), is("InChI=1S/C2H6/c1-2/h1-2H3"));
+        assertThat(gens.get(0).getInchiKey(), is("OTMSDBZUPAUEDD-UHFFFAOYSA-N"));
+    }
+
+    /**
+     * More molecules than are read ahead, the results are in input order.
+     */
+    @Test
+    public void inputOrder() throws Exception {
+        InChIBatchGenerator batch = InChIGeneratorFactory.getInstance().getInChIBatchGenerator(executor);
+        List<IAtomContainer> containers = new ArrayList<IAtomContainer>();
+        for (int i = 0; i < 500; i++)
+            containers.add(chain(1 + (i % 3), IBond.Order.SINGLE));
+        String[] expected = {"InChI=1S/CH4/h1H4", "InChI=1S/C2H6/c1-2/h1-2H3", "InChI=1S/C3H8/c1-3-2/h3H2,1-2H3"};
+        List<InChIGenerator> gens = generate(batch, containers);
+        assertThat(gens.size(), is(500));
+        for (int i = 0; i < 500; i++)
+            assertThat(gens.get(i).getInchi(), is(expected[i % 3]));
+    }
+
+    @Test
+    public void empty() throws Exception {
+        InChIBatchGenerator batch = InChIGeneratorFactory.getInstance().getInChIBatchGenerator(executor);
+        assertThat(generate(batch, Collections.<IAtomContainer>emptyList()).isEmpty(), is(true));
+    }
+
+    /**
+     * Each molecule is handled with its result, the result does not keep the
+     * molecule.
+     */
+    @Test
+    public void handledMolecule() throws Exception {
+        InChIBatchGenerator batch = InChIGeneratorFactory.getInstance().getInChIBatchGenerator(executor);
+        final List<IAtomContainer> containers = new ArrayList<IAtomContainer>();
+        for (int i = 0; i < 50; i++)
+            containers.add(chain(1 + (i % 3), IBond.Order.SINGLE));
+        final int[] count = {0};
+        batch.generate(containers, new InChIBatchGenerator.Handler() {
+
+            @Override
+            public void handle(IAtomContainer container, InChIGenerator generator) {
+                assertThat(container == containers.get(count[0]++), is(true));
+                assertThat(generator.atomContainer == null, is(true));
+                assertThat(generator.getReturnStatus(), is(INCHI_RET.OKAY));
+            }
+        });
+        assertThat(count[0], is(50));
+    }
+
+    /**
+     * A failing handler stops the batch.
+     */
+    @Test
+    public void handlerFailed() throws Exception {
+        InChIBatchGenerator batch = InChIGeneratorFactory.getInstance().getInChIBatchGenerator(executor);
+        List<IAtomContainer> containers = new ArrayList<IAtomContainer>();
+        for (int i = 0; i < 50; i++)
+            containers.add(chain(2, IBond.Order.SINGLE));
+        final int[] count = {0};
+        try {
+            batch.generate(containers, new InChIBatchGenerator.Handler() {
+
+                @Override
+                public void handle(IAtomContainer container, InChIGenerator generator) throws CDKException {
+                    if (++count[0] == 10) throw new CDKException("could not register");
+                }
+            });
+            fail("the handler failed");
+        } catch (CDKException e) {
+            assertThat(e.getMessage(), is("could not register"));
+        }
+        assertThat(count[0], is(10));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void noExecutor() throws Exception {
+        InChIGeneratorFactory.getInstance().getInChIBatchGenerator(null);
+    }
+
+    /**
+     * The generators of a batch, in order.
+     */
+    static List<InChIGenerator> generate(InChIBatchGenerator batch, Iterable<IAtomContainer> containers)
+            throws Exception {
+        final List<InChIGenerator> generators = new ArrayList<InChIGenerator>();
+        batch.generate(containers, new InChIBatchGenerator.Handler() {
+
+            @Override
+            public void handle(IAtomContainer container, InChIGenerator generator) {
+                generators.add(generator);
+            }
+        });
+        return generators;
+    }
+
+    /**
+     * A carbon chain with implicit hydrogens, the first bond has the given
+     * order.
+     */
+    static IAtomContainer chain(int length, IBond.Order order) {
+        IAtomContainer ac = new AtomContainer();
+        for (int i = 0; i < length; i++)
+            ac.addAtom(new Atom("C"));
+        for (int i = 1; i < length; i++)
+            ac.addBond(new Bond(ac.getAtom(i - 1), ac.getAtom(i), i == 1 ? order : IBond.Order.SINGLE));
+        for (int i = 0; i < length; i++) {
+            IAtom atom = ac.getAtom(i);
+            int valence = 0;
+            for (IBond bond : ac.getConnectedBondsList(atom))
+                valence += bond.getOrder().numeric();
+            atom.setImplicitHydrogenCount(4 - valence);
+        }
+        return ac;
+    }
+}
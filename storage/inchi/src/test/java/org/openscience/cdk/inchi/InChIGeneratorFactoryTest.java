@@ -21,7 +21,10 @@
 package org.openscience.cdk.inchi;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import net.sf.jniinchi.INCHI_OPTION;
 import net.sf.jniinchi.INCHI_RET;
@@ -108,6 +111,40 @@ public class InChIGeneratorFactoryTest {
         Assert.assertEquals("InChI=1/ClH/h1H", gen.getInchi());
     }
 
+    @Test public void testGetInChIBatchGenerator_ExecutorService() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            IAtomContainer ac = new AtomContainer();
+            IAtom a = new Atom("Cl");
+            a.setImplicitHydrogenCount(1);
+            ac.addAtom(a);
+            InChIBatchGenerator batch = InChIGeneratorFactory.getInstance().getInChIBatchGenerator(executor);
+            List<InChIGenerator> gens = InChIBatchGeneratorTest.generate(batch, Collections.singletonList(ac));
+            Assert.assertEquals(1, gens.size());
+            Assert.assertEquals(INCHI_RET.OKAY, gens.get(0).getReturnStatus());
+            Assert.assertEquals("InChI=1S/ClH/h1H", gens.get(0).getInchi());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test public void testGetInChIBatchGenerator_ExecutorService_String() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            IAtomContainer ac = new AtomContainer();
+            IAtom a = new Atom("Cl");
+            a.setImplicitHydrogenCount(1);
+            ac.addAtom(a);
+            InChIBatchGenerator batch = InChIGeneratorFactory.getInstance().getInChIBatchGenerator(executor, "FixedH");
+            List<InChIGenerator> gens = InChIBatchGeneratorTest.generate(batch, Collections.singletonList(ac));
+            Assert.assertEquals(1, gens.size());
+            Assert.assertEquals(INCHI_RET.OKAY, gens.get(0).getReturnStatus());
+            Assert.assertEquals("InChI=1/ClH/h1H", gens.get(0).getInchi());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
 	/**
 	 * Because we are setting an options, we get a non-standard InChI.
 	 */
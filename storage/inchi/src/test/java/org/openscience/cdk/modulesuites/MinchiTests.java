@@ -24,6 +24,7 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 import org.openscience.cdk.coverage.InchiCoverageTest;
 import org.openscience.cdk.graph.invariant.InChINumbersToolsTest;
+import org.openscience.cdk.inchi.InChIBatchGeneratorTest;
 import org.openscience.cdk.inchi.InChIGeneratorFactoryTest;
 import org.openscience.cdk.inchi.InChIGeneratorTest;
 import org.openscience.cdk.inchi.InChIToStructureTest;
@@ -41,6 +42,7 @@ import org.openscience.cdk.smiles.AbsoluteSMILESTest;
     InChIToStructureTest.class,
     InChINumbersToolsTest.class,
     InChIGeneratorFactoryTest.class,
+    InChIBatchGeneratorTest.class,
     AbsoluteSMILESTest.class
 })
 public class MinchiTests {}
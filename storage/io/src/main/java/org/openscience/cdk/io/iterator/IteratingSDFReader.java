@@ -30,11 +30,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.ReadableByteChannel;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
@@ -46,7 +46,6 @@ import org.openscience.cdk.io.formats.IChemFormat;
 import org.openscience.cdk.io.formats.IResourceFormat;
 import org.openscience.cdk.io.formats.MDLFormat;
 import org.openscience.cdk.io.formats.MDLV2000Format;
-import org.openscience.cdk.io.formats.MDLV3000Format;
 import org.openscience.cdk.io.setting.BooleanIOSetting;
 import org.openscience.cdk.io.setting.IOSetting;
 import org.openscience.cdk.tools.ILoggingTool;
@@ -71,6 +70,15 @@ import org.openscience.cdk.tools.LoggingToolFactory;
  * }
  * </pre>
  *
+ * <p>For large files the reader can be constructed from a channel, the
+ * records are then split at the byte level with an {@link SDFRecordSplitter}
+ * and each record is parsed directly from the read buffer:
+ * <pre>
+ * IteratingSDFReader reader = new IteratingSDFReader(
+ *   new FileInputStream(sdfFile).getChannel(), builder, false
+ * );
+ * </pre>
+ *
  * @cdk.module io
  * @cdk.githash
  *
@@ -88,6 +96,9 @@ import org.openscience.cdk.tools.LoggingToolFactory;
 public class IteratingSDFReader extends DefaultIteratingChemObjectReader<IAtomContainer> {
 
     private BufferedReader input;
+
+    // when reading from a channel, the records of the input
+    private SDFRecordSplitter records;
     private static ILoggingTool logger =
         LoggingToolFactory.createLoggingTool(IteratingSDFReader.class);
     private String currentLine;
@@ -105,15 +116,12 @@ public class IteratingSDFReader extends DefaultIteratingChemObjectReader<IAtomCo
     private boolean skip = false;
 
     // buffer to store pre-read Mol records in
-    private StringBuffer buffer = new StringBuffer(10000);
+    private StringBuilder buffer = new StringBuilder(10000);
 
     private static final String LINE_SEPARATOR = System.getProperty("line.separator");
-    
-    // patterns to match
-    private static Pattern MDL_VERSION          = Pattern.compile("[vV](2000|3000)");
-    private static Pattern M_END                = Pattern.compile("M\\s\\sEND");
-    private static Pattern SDF_RECORD_SEPARATOR = Pattern.compile("\\$\\$\\$\\$");
-    private static Pattern SDF_FIELD_START      = Pattern.compile("\\A>\\s");
+
+    // the SDF record separator
+    private static final String SDF_RECORD_SEPARATOR = "$$$$";
 
     // map of MDL formats to their readers
     private final Map<IChemFormat, ISimpleChemObjectReader> readerMap
@@ -175,6 +183,24 @@ public class IteratingSDFReader extends DefaultIteratingChemObjectReader<IAtomCo
         setSkip(skip);
     }
 
+    /**
+     * Constructs a new IteratingSDFReader that reads molecules from a channel
+     * (for example, a {@link java.nio.channels.FileChannel}). The records
+     * are split at the byte level and parsed without first being copied to
+     * an intermediate string.
+     *
+     * @param channel  the channel to read from
+     * @param builder  builder to use
+     * @param skip     whether to skip null molecules
+     * @see #IteratingSDFReader(InputStream, IChemObjectBuilder, boolean)
+     */
+    public IteratingSDFReader(ReadableByteChannel channel, IChemObjectBuilder builder, boolean skip) {
+        this.builder = builder;
+        setReader(channel);
+        initIOSettings();
+        setSkip(skip);
+    }
+
 
     @TestMethod("testGetFormat")
     public IResourceFormat getFormat() {
@@ -222,6 +248,10 @@ public class IteratingSDFReader extends DefaultIteratingChemObjectReader<IAtomCo
 
         hasNext = false;
         nextMolecule = null;
+
+        if (records != null)
+            return hasNextRecord();
+
         buffer.delete(0, buffer.length());
             
         // now try to parse the next Molecule
@@ -234,36 +264,21 @@ public class IteratingSDFReader extends DefaultIteratingChemObjectReader<IAtomCo
                 buffer.append(currentLine).append(LINE_SEPARATOR);
 
                 // do MDL molfile version checking
-                Matcher versionMatcher = MDL_VERSION.matcher(currentLine);
-                if (versionMatcher.find()) {
-                    currentFormat = versionMatcher.group(1) != null
-                            ? (IChemFormat) MDLV2000Format.getInstance()
-                            : (IChemFormat) MDLV3000Format.getInstance();
+                if (isMDLVersion(currentLine)) {
+                    currentFormat = (IChemFormat) MDLV2000Format.getInstance();
                 }
 
                 // un-trimmed line has already been stored in buffer
                 currentLine = currentLine.trim();
                 
-                if(M_END.matcher(currentLine).matches()) {
+                if(isMEnd(currentLine)) {
 
                     logger.debug("MDL file part read: ", buffer);
 
-                    IAtomContainer molecule = null;
-
-                    try{
-                        ISimpleChemObjectReader reader = getReader(currentFormat);
-                        InputStream byteStream         = new ByteArrayInputStream(buffer.toString().getBytes("UTF-8"));
-                        reader.setReader(byteStream);
-                        molecule = (IAtomContainer)reader.read(builder.newInstance(IAtomContainer.class));
-                        byteStream.close();
-                    } catch (Exception exception){
-                        logger.error("Error while reading next molecule: " +
-                                     exception.getMessage());
-                        logger.debug(exception);
-                    }
+                    IAtomContainer molecule = readMolecule(new StringReader(buffer.toString()));
 
                     if(molecule != null){
-                        readDataBlockInto(molecule);
+                        readDataBlockInto(input, molecule);
                         hasNext              = true;
                         nextAvailableIsKnown = true;
                         nextMolecule         = molecule;
@@ -271,7 +286,7 @@ public class IteratingSDFReader extends DefaultIteratingChemObjectReader<IAtomCo
                     } else if(skip){
                         // null molecule and skip = true, eat up the rest of the entry until '$$$$'
                         String line;
-                        while ((line = input.readLine()) != null && !SDF_RECORD_SEPARATOR.matcher(line).matches()) {
+                        while ((line = input.readLine()) != null && !SDF_RECORD_SEPARATOR.equals(line)) {
                             buffer.delete(0, buffer.length());
                         }
                     } else {
@@ -285,7 +300,7 @@ public class IteratingSDFReader extends DefaultIteratingChemObjectReader<IAtomCo
 
                 // found SDF record separator ($$$$) without parsing a molecule (separator is detected
                 // in readDataBlockInto()) the buffer is cleared and the iterator continues reading
-                if(SDF_RECORD_SEPARATOR.matcher(currentLine).matches()){
+                if(SDF_RECORD_SEPARATOR.equals(currentLine)){
                     buffer.delete(0, buffer.length());
                 }
 
@@ -301,16 +316,90 @@ public class IteratingSDFReader extends DefaultIteratingChemObjectReader<IAtomCo
 
     }
 
-    private void readDataBlockInto(IAtomContainer m) throws IOException {
+    /**
+     * Read the molfile part of a record with the reader for the current
+     * format.
+     *
+     * @param in the molfile
+     * @return the molecule, or null if it could not be read
+     */
+    private IAtomContainer readMolecule(Reader in) {
+        try {
+            ISimpleChemObjectReader reader = getReader(currentFormat);
+            reader.setReader(in);
+            return (IAtomContainer) reader.read(builder.newInstance(IAtomContainer.class));
+        } catch (Exception exception) {
+            logger.error("Error while reading next molecule: " +
+                         exception.getMessage());
+            logger.debug(exception);
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if another molecule can be read from the records of the
+     * channel. Each record is parsed from the bytes of the read buffer, the
+     * molfile is passed to the MDL reader and the data block is read here.
+     */
+    private boolean hasNextRecord() {
+        try {
+            while (records.next()) {
+
+                byte[] buf = records.buffer();
+                int    beg = records.offset();
+                int    end = beg + records.length();
+
+                // find the end of the molfile part, 'M  END', and the version
+                currentFormat = (IChemFormat) MDLFormat.getInstance();
+                int molEnd = -1;
+                for (int i = beg; i < end && molEnd < 0; ) {
+                    int eol = i;
+                    while (eol < end && buf[eol] != '\n')
+                        eol++;
+                    if (isMDLVersion(buf, i, eol))
+                        currentFormat = (IChemFormat) MDLV2000Format.getInstance();
+                    if (isMEnd(buf, i, eol))
+                        molEnd = Math.min(eol + 1, end);
+                    i = eol + 1;
+                }
+
+                // no molfile in this record
+                if (molEnd < 0)
+                    continue;
+
+                IAtomContainer molecule = readMolecule(new InputStreamReader(new ByteArrayInputStream(buf, beg, molEnd - beg)));
+
+                if (molecule != null) {
+                    readDataBlockInto(new BufferedReader(new InputStreamReader(new ByteArrayInputStream(buf, molEnd, end - molEnd))),
+                                      molecule);
+                    hasNext              = true;
+                    nextAvailableIsKnown = true;
+                    nextMolecule         = molecule;
+                    return true;
+                } else if (!skip) {
+                    return false;
+                }
+            }
+        } catch (IOException exception) {
+            logger.error("Error while reading next molecule: " +
+                         exception.getMessage());
+            logger.debug(exception);
+        }
+
+        // reached end of file
+        return false;
+    }
+
+    private void readDataBlockInto(BufferedReader input, IAtomContainer m) throws IOException {
         String fieldName = null;
         while ((currentLine = input.readLine()) != null
-                && !SDF_RECORD_SEPARATOR.matcher(currentLine).matches()) {
+                && !SDF_RECORD_SEPARATOR.equals(currentLine)) {
             logger.debug("looking for data header: ", currentLine);
             String str = new String(currentLine);
-            if (SDF_FIELD_START.matcher(str).find()) {
+            if (isFieldStart(str)) {
                 fieldName = extractFieldName(fieldName, str);
-                str = skipOtherFieldHeaderLines(str);
-                String data = extractFieldData(str);
+                str = skipOtherFieldHeaderLines(input, str);
+                String data = extractFieldData(input, str);
                 if (fieldName != null) {
                     logger.info("fieldName, data: ", fieldName, ", ", data);
                     m.setProperty(fieldName, data);
@@ -329,25 +418,29 @@ public class IteratingSDFReader extends DefaultIteratingChemObjectReader<IAtomCo
         this.skip = skip;
     }
 
-    private String extractFieldData(String str) throws IOException {
+    private String extractFieldData(BufferedReader input, String str) throws IOException {
         StringBuilder data = new StringBuilder();
         while (str.trim().length() > 0) {
             logger.debug("data line: ", currentLine);
 			if(data.length() > 0) {
-				str = System.getProperty("line.separator") + str;
+				str = LINE_SEPARATOR + str;
 			}
             data.append(str);
             currentLine = input.readLine();
-            str = new String(currentLine).trim();
+            if (currentLine == null)
+                break;
+            str = currentLine.trim();
         }
         return data.toString();
     }
 
-    private String skipOtherFieldHeaderLines(String str) throws IOException {
+    private String skipOtherFieldHeaderLines(BufferedReader input, String str) throws IOException {
         while (str.startsWith("> ")) {
             logger.debug("data header line: ", currentLine);
             currentLine = input.readLine();
-            str = new String(currentLine);
+            if (currentLine == null)
+                return "";
+            str = currentLine;
         }
         return str;
     }
@@ -382,7 +475,10 @@ public class IteratingSDFReader extends DefaultIteratingChemObjectReader<IAtomCo
     
     @TestMethod("testClose")
     public void close() throws IOException {
-        input.close();
+        if (records != null)
+            records.close();
+        else
+            input.close();
     }
     
     public void remove() {
@@ -396,6 +492,7 @@ public class IteratingSDFReader extends DefaultIteratingChemObjectReader<IAtomCo
 		} else {
 			input = new BufferedReader(reader);
 		}
+        records = null;
         nextMolecule = null;
         nextAvailableIsKnown = false;
         hasNext = false;
@@ -406,6 +503,106 @@ public class IteratingSDFReader extends DefaultIteratingChemObjectReader<IAtomCo
 	    setReader(new InputStreamReader(reader));
     }
 
+    /**
+     * Set the channel to read molecules from, the records of the channel are
+     * split at the byte level.
+     *
+     * @param channel the channel to read from
+     */
+    @TestMethod("testSetReader_Channel")
+    public void setReader(ReadableByteChannel channel) {
+        records = new SDFRecordSplitter(channel);
+        input = null;
+        nextMolecule = null;
+        nextAvailableIsKnown = false;
+        hasNext = false;
+    }
+
+    /**
+     * Does the line contain an MDL version tag (V2000 or V3000).
+     *
+     * @param line a line
+     * @return the line has a version tag
+     */
+    private static boolean isMDLVersion(String line) {
+        for (int i = 0, end = line.length() - 4; i < end; i++) {
+            char c = line.charAt(i);
+            if ((c == 'v' || c == 'V') && (line.charAt(i + 1) == '2' || line.charAt(i + 1) == '3')
+                    && line.startsWith("000", i + 2))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Does the line {@code buf[from..to)} contain an MDL version tag (V2000
+     * or V3000).
+     *
+     * @param buf  bytes
+     * @param from start of the line
+     * @param to   end of the line (exclusive)
+     * @return the line has a version tag
+     */
+    private static boolean isMDLVersion(byte[] buf, int from, int to) {
+        for (int i = from, end = to - 4; i < end; i++) {
+            byte c = buf[i];
+            if ((c == 'v' || c == 'V') && (buf[i + 1] == '2' || buf[i + 1] == '3')
+                    && buf[i + 2] == '0' && buf[i + 3] == '0' && buf[i + 4] == '0')
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Is the (trimmed) line the end of a molfile, 'M  END'.
+     *
+     * @param line a trimmed line
+     * @return the line ends the molfile
+     */
+    private static boolean isMEnd(String line) {
+        return line.length() == 6 && line.charAt(0) == 'M' && isSpace(line.charAt(1))
+                && isSpace(line.charAt(2)) && line.startsWith("END", 3);
+    }
+
+    /**
+     * Is the line {@code buf[from..to)}, ignoring surrounding whitespace,
+     * the end of a molfile, 'M  END'.
+     *
+     * @param buf  bytes
+     * @param from start of the line
+     * @param to   end of the line (exclusive)
+     * @return the line ends the molfile
+     */
+    private static boolean isMEnd(byte[] buf, int from, int to) {
+        while (from < to && (buf[from] & 0xff) <= ' ')
+            from++;
+        while (to > from && (buf[to - 1] & 0xff) <= ' ')
+            to--;
+        return to - from == 6 && buf[from] == 'M' && isSpace((char) buf[from + 1])
+                && isSpace((char) buf[from + 2]) && buf[from + 3] == 'E' && buf[from + 4] == 'N'
+                && buf[from + 5] == 'D';
+    }
+
+    /**
+     * Is the line the start of a data field, '&gt;' followed by whitespace.
+     *
+     * @param line a line
+     * @return the line starts a data field
+     */
+    private static boolean isFieldStart(String line) {
+        return line.length() > 1 && line.charAt(0) == '>' && isSpace(line.charAt(1));
+    }
+
+    /**
+     * Is the character whitespace, as defined by the regex '\s' class.
+     *
+     * @param c a character
+     * @return the character is whitespace
+     */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\013' || c == '\f' || c == '\r';
+    }
+
     private void initIOSettings() {
         forceReadAs3DCoords = new BooleanIOSetting("ForceReadAs3DCoordinates", IOSetting.Importance.LOW,
           "Should coordinates always be read as 3D?", 
@@ -0,0 +1,407 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.io.iterator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+
+/**
+ * Base class for iterating readers which split the input into records on the
+ * calling thread and parse the records on a pool of worker threads. At most
+ * a fixed number of records (the capacity) are held in memory, split but not
+ * yet returned by {@link #next()}. Molecules are returned in input order
+ * unless the reader was created as unordered, in which case they are returned
+ * as soon as they are parsed.
+ *
+ * A record which can not be parsed is reported to the error handler (see
+ * {@link #setErrorHandler(org.openscience.cdk.io.IChemObjectReaderErrorHandler)})
+ * with its (0-based) record number. The reader then stops, unless {@link
+ * #setSkip(boolean)} was set in which case the record is skipped.
+ *
+ * Subclasses provide the record splitting ({@link #readRecord()}) and parsing
+ * ({@link #parseRecord(Object)}), the parse method is called concurrently
+ * and so each worker thread should use its own parser.
+ *
+ * @param <R> the type of a record
+ * @cdk.module io
+ * @cdk.githash
+ * @see ParallelIteratingSDFReader
+ */
+public abstract class ParallelIteratingReader<R> extends DefaultIteratingChemObjectReader<IAtomContainer> {
+
+    private static final ILoggingTool logger = LoggingToolFactory.createLoggingTool(ParallelIteratingReader.class);
+
+    /** Default number of records in flight per worker thread. */
+    protected static final int RECORDS_PER_THREAD = 64;
+
+    /** The worker threads. */
+    private final ExecutorService executor;
+
+    /** The executor was created by (and so is shut down by) this reader. */
+    private final boolean ownsExecutor;
+
+    /** Maximum number of records in flight. */
+    private final int capacity;
+
+    /** Whether the input order is preserved. */
+    private final boolean ordered;
+
+    /** Parse results in input order (ordered). */
+    private final Deque<Future<Result>> pending = new ArrayDeque<Future<Result>>();
+
+    /** Parse results in completion order (unordered). */
+    private CompletionService<Result> completed;
+
+    /** Number of records split but not yet consumed. */
+    private int inFlight;
+
+    /** Number of records split. */
+    private long recordCount;
+
+    /** No more records will be split. */
+    private boolean exhausted;
+
+    /** The input failed, reported once the records before it are consumed. */
+    private IOException readError;
+
+    /** Skip records that could not be parsed. */
+    private boolean skip;
+
+    private boolean        nextAvailableIsKnown;
+    private boolean        hasNext;
+    private IAtomContainer nextMolecule;
+
+    /**
+     * Create a reader that parses on a new pool of {@code nThreads} worker
+     * threads, the pool is shut down when the reader is closed.
+     *
+     * @param nThreads number of worker threads
+     * @param capacity maximum number of records in flight
+     * @param ordered  whether molecules should be returned in input order
+     */
+    protected ParallelIteratingReader(int nThreads, int capacity, boolean ordered) {
+        this(Executors.newFixedThreadPool(nThreads, new DaemonThreadFactory()), true, capacity, ordered);
+    }
+
+    /**
+     * Create a reader that parses on the provided executor, the executor is
+     * not shut down when the reader is closed.
+     *
+     * @param executor the executor to parse records on
+     * @param capacity maximum number of records in flight
+     * @param ordered  whether molecules should be returned in input order
+     */
+    protected ParallelIteratingReader(ExecutorService executor, int capacity, boolean ordered) {
+        this(executor, false, capacity, ordered);
+    }
+
+    private ParallelIteratingReader(ExecutorService executor, boolean ownsExecutor, int capacity, boolean ordered) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be at least 1");
+        this.executor     = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.capacity     = capacity;
+        this.ordered      = ordered;
+        this.completed    = new ExecutorCompletionService<Result>(executor);
+    }
+
+    /**
+     * Read the next record from the input, called on the thread iterating
+     * the reader.
+     *
+     * @return the next record, or null if there are no more records
+     * @throws IOException low-level IO error
+     */
+    protected abstract R readRecord() throws IOException;
+
+    /**
+     * Parse a record, called concurrently on the worker threads.
+     *
+     * @param record a record
+     * @return the molecule
+     * @throws Exception the record could not be parsed
+     */
+    protected abstract IAtomContainer parseRecord(R record) throws Exception;
+
+    /**
+     * Close the input of the reader.
+     *
+     * @throws IOException low-level IO error
+     */
+    protected abstract void closeInput() throws IOException;
+
+    /**
+     * Indicate whether the reader should skip over records that could not be
+     * parsed. If false the reader stops at the first such record.
+     *
+     * @param skip ignore records that could not be parsed
+     */
+    public void setSkip(boolean skip) {
+        this.skip = skip;
+    }
+
+    /**
+     * Returns true if another molecule can be read.
+     */
+    @Override
+    public boolean hasNext() {
+
+        if (nextAvailableIsKnown)
+            return hasNext;
+
+        hasNext = false;
+        nextMolecule = null;
+
+        while (true) {
+
+            fill();
+
+            if (inFlight == 0) {
+                if (readError != null) reportReadError();
+                break;
+            }
+
+            Result result = take();
+            inFlight--;
+
+            if (result == null) {
+                cancel();
+                break;
+            }
+
+            if (result.molecule != null) {
+                hasNext = true;
+                nextMolecule = result.molecule;
+                break;
+            }
+
+            String message = "Could not read record " + result.index
+                    + (result.exception != null ? ": " + result.exception.getMessage() : "");
+            logger.error(message);
+            if (result.exception != null)
+                logger.debug(result.exception);
+            boolean stop = !skip;
+            try {
+                if (result.exception != null)
+                    handleError(message, result.exception);
+                else
+                    handleError(message);
+            } catch (CDKException e) {
+                // strict mode
+                stop = true;
+            }
+
+            if (stop) {
+                cancel();
+                break;
+            }
+        }
+
+        nextAvailableIsKnown = true;
+        return hasNext;
+    }
+
+    /**
+     * Returns the next molecule.
+     */
+    @Override
+    public IAtomContainer next() {
+        if (!nextAvailableIsKnown) {
+            hasNext();
+        }
+        nextAvailableIsKnown = false;
+        if (!hasNext) {
+            throw new NoSuchElementException();
+        }
+        return nextMolecule;
+    }
+
+    /**
+     * Split records and submit them for parsing until the capacity is
+     * reached or the input is exhausted.
+     */
+    private void fill() {
+        while (!exhausted && inFlight < capacity) {
+            R record;
+            try {
+                record = readRecord();
+            } catch (IOException e) {
+                // the input can not be read further
+                readError = e;
+                exhausted = true;
+                break;
+            }
+            if (record == null) {
+                exhausted = true;
+                break;
+            }
+            Task task = new Task(record, recordCount++);
+            if (ordered)
+                pending.add(executor.submit(task));
+            else
+                completed.submit(task);
+            inFlight++;
+        }
+    }
+
+    /**
+     * Report a failure reading the input to the error handler, the records
+     * read before it have been consumed and the iteration ends.
+     */
+    private void reportReadError() {
+        String message = "Error while reading record " + recordCount + ": " + readError.getMessage();
+        logger.error(message);
+        logger.debug(readError);
+        IOException e = readError;
+        readError = null;
+        try {
+            handleError(message, e);
+        } catch (CDKException strict) {
+            // the iteration ends in either mode
+        }
+    }
+
+    /**
+     * Take the next parse result, waiting for it if needed.
+     *
+     * @return the result, or null if the thread was interrupted
+     */
+    private Result take() {
+        try {
+            return ordered ? pending.poll().get() : completed.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            // tasks capture their exceptions, only errors end up here
+            Throwable cause = e.getCause();
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Stop reading, records which are in flight are cancelled.
+     */
+    private void cancel() {
+        exhausted = true;
+        for (Future<Result> future : pending)
+            future.cancel(true);
+        pending.clear();
+        // results of unordered tasks are dropped with the completion service
+        completed = new ExecutorCompletionService<Result>(executor);
+        inFlight = 0;
+    }
+
+    /**
+     * Discard any records in flight and start reading from a new input,
+     * subclasses call this when the input is changed.
+     */
+    protected void reset() {
+        cancel();
+        exhausted = false;
+        readError = null;
+        recordCount = 0;
+        nextMolecule = null;
+        nextAvailableIsKnown = false;
+        hasNext = false;
+    }
+
+    /**
+     * Close the input, records in flight are cancelled and the worker threads
+     * are shut down if they were created by this reader.
+     *
+     * @throws IOException low-level IO error
+     */
+    @Override
+    public void close() throws IOException {
+        cancel();
+        if (ownsExecutor)
+            executor.shutdownNow();
+        closeInput();
+    }
+
+    /** The result of parsing a record. */
+    private static final class Result {
+
+        private final long           index;
+        private final IAtomContainer molecule;
+        private final Exception      exception;
+
+        private Result(long index, IAtomContainer molecule, Exception exception) {
+            this.index = index;
+            this.molecule = molecule;
+            this.exception = exception;
+        }
+    }
+
+    /** Parse a single record capturing any exception. */
+    private final class Task implements Callable<Result> {
+
+        private final R    record;
+        private final long index;
+
+        private Task(R record, long index) {
+            this.record = record;
+            this.index = index;
+        }
+
+        @Override
+        public Result call() {
+            try {
+                return new Result(index, parseRecord(record), null);
+            } catch (Exception e) {
+                return new Result(index, null, e);
+            }
+        }
+    }
+
+    /** Creates daemon threads such that an unclosed reader does not keep the VM alive. */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final ThreadFactory delegate = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = delegate.newThread(r);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.io.iterator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.io.MDLV2000Reader;
+import org.openscience.cdk.io.formats.IResourceFormat;
+import org.openscience.cdk.io.formats.MDLV2000Format;
+
+/**
+ * Iterating MDL SDF reader which parses the records on multiple threads. The
+ * input is split into records on the thread calling {@link #hasNext()} and
+ * each record (molfile and data items) is parsed with a per-thread {@link
+ * MDLV2000Reader}. The V3000 format is not supported.
+ *
+ * <pre>
+ * ParallelIteratingSDFReader reader = new ParallelIteratingSDFReader(
+ *   new FileInputStream(sdfFile), builder, 4
+ * );
+ * while (reader.hasNext()) {
+ *   IAtomContainer molecule = reader.next();
+ * }
+ * reader.close();
+ * </pre>
+ *
+ * See {@link ParallelIteratingReader} for ordering, memory and error handling.
+ *
+ * @cdk.module io
+ * @cdk.githash
+ * @cdk.keyword file format, SDF
+ * @see IteratingSDFReader
+ */
+public class ParallelIteratingSDFReader extends ParallelIteratingReader<String> {
+
+    /** Byte-level record splitter (when reading bytes). */
+    private SDFRecordSplitter records;
+
+    /** Line reader (when reading characters). */
+    private BufferedReader    input;
+
+    /** Character set to decode records with. */
+    private final Charset     charset = Charset.defaultCharset();
+
+    private final IChemObjectBuilder builder;
+
+    /** A reader for each worker thread. */
+    private final ThreadLocal<MDLV2000Reader> readers = new ThreadLocal<MDLV2000Reader>() {
+
+        @Override
+        protected MDLV2000Reader initialValue() {
+            MDLV2000Reader reader = new MDLV2000Reader();
+            reader.setReaderMode(mode);
+            return reader;
+        }
+    };
+
+    /**
+     * Read molecules from an input stream parsing on {@code nThreads} worker
+     * threads, the molecules are returned in input order.
+     *
+     * @param in       the input stream to read from
+     * @param builder  builder to use
+     * @param nThreads number of worker threads
+     */
+    public ParallelIteratingSDFReader(InputStream in, IChemObjectBuilder builder, int nThreads) {
+        super(nThreads, nThreads * RECORDS_PER_THREAD, true);
+        this.builder = builder;
+        setReader(in);
+    }
+
+    /**
+     * Read molecules from a channel (e.g. a {@link java.nio.channels.FileChannel})
+     * parsing on {@code nThreads} worker threads.
+     *
+     * @param channel  the channel to read from
+     * @param builder  builder to use
+     * @param nThreads number of worker threads
+     * @param capacity maximum number of records in memory
+     * @param ordered  whether molecules are returned in input order
+     */
+    public ParallelIteratingSDFReader(ReadableByteChannel channel, IChemObjectBuilder builder, int nThreads,
+                                      int capacity, boolean ordered) {
+        super(nThreads, capacity, ordered);
+        this.builder = builder;
+        setReader(channel);
+    }
+
+    /**
+     * Read molecules from a channel parsing on the provided executor, the
+     * executor is not shut down when the reader is closed.
+     *
+     * @param channel  the channel to read from
+     * @param builder  builder to use
+     * @param executor executor to parse records on
+     * @param capacity maximum number of records in memory
+     * @param ordered  whether molecules are returned in input order
+     */
+    public ParallelIteratingSDFReader(ReadableByteChannel channel, IChemObjectBuilder builder,
+                                      ExecutorService executor, int capacity, boolean ordered) {
+        super(executor, capacity, ordered);
+        this.builder = builder;
+        setReader(channel);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public IResourceFormat getFormat() {
+        return MDLV2000Format.getInstance();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected String readRecord() throws IOException {
+        if (records != null) {
+            while (records.next()) {
+                String record = new String(records.buffer(), records.offset(), records.length(), charset);
+                if (!record.trim().isEmpty())
+                    return record;
+            }
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        String line;
+        while ((line = input.readLine()) != null) {
+            if (line.trim().equals("$$$$")) {
+                if (sb.length() == 0)
+                    continue;
+                return sb.toString();
+            }
+            sb.append(line).append('\n');
+        }
+        return sb.toString().trim().isEmpty() ? null : sb.toString();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected IAtomContainer parseRecord(String record) throws Exception {
+        MDLV2000Reader reader = readers.get();
+        reader.setReader(new StringReader(record));
+        return reader.read(builder.newInstance(IAtomContainer.class));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void closeInput() throws IOException {
+        if (records != null)
+            records.close();
+        if (input != null)
+            input.close();
+    }
+
+    /**
+     * Set the channel to read molecules from, records are split at the byte
+     * level.
+     *
+     * @param channel the channel
+     */
+    public void setReader(ReadableByteChannel channel) {
+        reset();
+        records = new SDFRecordSplitter(channel);
+        input = null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setReader(InputStream in) {
+        reset();
+        records = new SDFRecordSplitter(in);
+        input = null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setReader(Reader reader) {
+        reset();
+        input = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        records = null;
+    }
+}
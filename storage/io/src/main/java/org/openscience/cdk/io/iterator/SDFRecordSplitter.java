@@ -0,0 +1,275 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.io.iterator;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Splits the bytes of an SD file into records at the <code>$$$$</code>
+ * separator lines. The input is read in large blocks from a channel (for
+ * example, a {@link java.nio.channels.FileChannel}) and each record is
+ * provided as a slice of an internal buffer - no per line strings are created
+ * and the bytes are not decoded. A record slice is only valid until the next
+ * call to {@link #next()}.
+ *
+ * <pre>
+ * SDFRecordSplitter records = new SDFRecordSplitter(new FileInputStream(f).getChannel());
+ * while (records.next()) {
+ *     byte[] buf = records.buffer();
+ *     int    off = records.offset();
+ *     int    len = records.length();
+ *     // record is buf[off..off+len)
+ * }
+ * records.close();
+ * </pre>
+ *
+ * The separator line is not included in the record. Leading and trailing
+ * whitespace on the separator line is ignored (as in {@link
+ * IteratingSDFReader}). Records may be empty, a trailing record that is only
+ * whitespace is not reported.
+ *
+ * @cdk.module io
+ * @cdk.githash
+ * @cdk.keyword file format, SDF
+ * @see IteratingSDFReader
+ */
+public final class SDFRecordSplitter implements Closeable {
+
+    /** Initial size of the buffer, grown for records larger than this. */
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    /** The input. */
+    private final ReadableByteChannel channel;
+
+    /** Buffered input. */
+    private byte[] buf = new byte[INITIAL_CAPACITY];
+
+    /** Number of bytes in the buffer. */
+    private int lim;
+
+    /** Start of the next record. */
+    private int beg;
+
+    /** Start of the next line to scan, never before beg. */
+    private int pos;
+
+    /** The channel has no more bytes. */
+    private boolean eof;
+
+    /** The current record. */
+    private int recBeg, recEnd;
+
+    /**
+     * Split the records read from a channel.
+     *
+     * @param channel the input channel
+     */
+    public SDFRecordSplitter(ReadableByteChannel channel) {
+        if (channel == null)
+            throw new NullPointerException("no channel provided");
+        this.channel = channel;
+    }
+
+    /**
+     * Split the records read from an input stream.
+     *
+     * @param in the input stream
+     */
+    public SDFRecordSplitter(InputStream in) {
+        this(Channels.newChannel(in));
+    }
+
+    /**
+     * Advance to the next record. The previous record slice is no longer
+     * valid after this call.
+     *
+     * @return a record was found
+     * @throws IOException low-level IO error
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            int eol = indexOfNewline(pos);
+            if (eol < 0) {
+                if (!eof) {
+                    fill();
+                    continue;
+                }
+                // last line without a newline
+                if (pos < lim && isSeparator(buf, pos, lim)) {
+                    return record(beg, pos, lim);
+                } else if (!isBlank(buf, beg, lim)) {
+                    return record(beg, lim, lim);
+                }
+                beg = pos = lim;
+                return false;
+            }
+            if (isSeparator(buf, pos, eol)) {
+                return record(beg, pos, eol + 1);
+            }
+            pos = eol + 1;
+        }
+    }
+
+    /**
+     * Set the current record and the start of the next one.
+     *
+     * @param from start of the record
+     * @param to   end of the record (exclusive)
+     * @param next start of the next record
+     * @return true
+     */
+    private boolean record(int from, int to, int next) {
+        recBeg = from;
+        recEnd = to;
+        beg = pos = next;
+        return true;
+    }
+
+    /**
+     * Index of the next newline at or after {@code i}.
+     *
+     * @param i start index
+     * @return index of the newline or -1 if none is buffered
+     */
+    private int indexOfNewline(int i) {
+        final byte[] buf = this.buf;
+        final int lim = this.lim;
+        for (; i < lim; i++) {
+            if (buf[i] == '\n')
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Read more bytes from the channel. The unprocessed bytes (from the start
+     * of the next record) are moved to the front of the buffer which is grown
+     * if it is full.
+     *
+     * @throws IOException low-level IO error
+     */
+    private void fill() throws IOException {
+        if (beg > 0) {
+            System.arraycopy(buf, beg, buf, 0, lim - beg);
+            lim -= beg;
+            pos -= beg;
+            beg = 0;
+        }
+        if (lim == buf.length)
+            buf = Arrays.copyOf(buf, 2 * buf.length);
+        ByteBuffer bb = ByteBuffer.wrap(buf, lim, buf.length - lim);
+        int n = channel.read(bb);
+        if (n < 0)
+            eof = true;
+        else
+            lim += n;
+    }
+
+    /**
+     * The buffer holding the current record, the array must not be modified.
+     *
+     * @return the buffer
+     */
+    public byte[] buffer() {
+        return buf;
+    }
+
+    /**
+     * Offset of the current record in the {@link #buffer()}.
+     *
+     * @return the offset
+     */
+    public int offset() {
+        return recBeg;
+    }
+
+    /**
+     * Number of bytes in the current record.
+     *
+     * @return the length
+     */
+    public int length() {
+        return recEnd - recBeg;
+    }
+
+    /**
+     * An input stream of the current record, the stream reads directly from
+     * the buffer and so is only valid until the next call to {@link #next()}.
+     *
+     * @return stream of the record bytes
+     */
+    public InputStream stream() {
+        return new ByteArrayInputStream(buf, recBeg, recEnd - recBeg);
+    }
+
+    /**
+     * Close the channel.
+     *
+     * @throws IOException low-level IO error
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Is the line {@code buf[from..to)} (possibly with surrounding whitespace)
+     * the SDF record separator <code>$$$$</code>.
+     *
+     * @param buf  bytes
+     * @param from start of the line
+     * @param to   end of the line (exclusive)
+     * @return the line is a separator
+     */
+    static boolean isSeparator(byte[] buf, int from, int to) {
+        while (from < to && (buf[from] & 0xff) <= ' ')
+            from++;
+        while (to > from && (buf[to - 1] & 0xff) <= ' ')
+            to--;
+        return to - from == 4 && buf[from] == '$' && buf[from + 1] == '$' && buf[from + 2] == '$'
+                && buf[from + 3] == '$';
+    }
+
+    /**
+     * Are the bytes {@code buf[from..to)} all whitespace.
+     *
+     * @param buf  bytes
+     * @param from start index
+     * @param to   end index (exclusive)
+     * @return the bytes are all whitespace
+     */
+    private static boolean isBlank(byte[] buf, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if ((buf[i] & 0xff) > ' ')
+                return false;
+        }
+        return true;
+    }
+}
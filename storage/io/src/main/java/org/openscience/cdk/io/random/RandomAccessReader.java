@@ -25,13 +25,23 @@
  */
 package org.openscience.cdk.io.random;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.exception.CDKException;
@@ -53,6 +63,13 @@ import org.openscience.cdk.tools.LoggingToolFactory;
  * The index stores offset, length and a third field reserved for future use.
  * Subsequent access for a record N uses this index to seek the record and return the molecule.
  * Useful for very big files.
+ *
+ * The index is stored in a binary format which is memory mapped when the
+ * reader is opened, reopening a file which has already been indexed does not
+ * read the index entries. Records are read with positional reads of the
+ * file channel and parsed with a reader for each thread, {@link
+ * #readRecord(int)} may therefore be called concurrently from multiple
+ * threads.
  *  
  * @author     Nina Jeliazkova <nina@acad.bg>
  * @cdk.module io
@@ -64,22 +81,69 @@ public abstract class RandomAccessReader
 
     protected static ILoggingTool logger =
         LoggingToolFactory.createLoggingTool(RandomAccessReader.class);
+
+    /** Magic number at the start of a binary index file ('CDKI'). */
+    private static final int INDEX_MAGIC = 0x43444B49;
+
+    /** Size of an index entry: offset (long), length (int), number of atoms (int). */
+    private static final int ENTRY_SIZE = 16;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
     protected RandomAccessFile raFile;
     protected IOSetting[] headerOptions = null;
     private final String filename;
     protected ISimpleChemObjectReader chemObjectReader;
-    protected int indexVersion=1;
+    protected int indexVersion=2;
     /*
-     * index[record][0]  - record offset in file
-     * index[record][1]  - record length
-     * index[record][2]  - number of atoms (if available)
+     * for each record (at indexStart + record * ENTRY_SIZE)
+     *   long - record offset in file
+     *   int  - record length
+     *   int  - number of atoms (if available)
+     */
+    private ByteBuffer indexBuffer;
+    private int indexStart;
+    /**
+     * @deprecated the index is memory mapped and this array is no longer
+     *             filled, use {@link #recordOffset(int)} and {@link
+     *             #recordLength(int)}
      */
+    @Deprecated
     protected long[][] index=null;
     protected int records;
-    protected int currentRecord = 0;
+    protected volatile int currentRecord = 0;
+    /**
+     * @deprecated records are read into a buffer for each call and this
+     *             array is no longer allocated
+     */
+    @Deprecated
     protected byte[] b;
     protected IChemObjectBuilder builder;
     protected boolean indexCreated = false;
+
+    /** The file contents, read with positional (thread-safe) reads. */
+    private FileChannel channel;
+
+    /** Listeners which are added to the reader of each thread. */
+    private final List<IChemObjectIOListener> listeners = new CopyOnWriteArrayList<IChemObjectIOListener>();
+
+    /** The record reader of each thread. */
+    private final ThreadLocal<ISimpleChemObjectReader> readers = new ThreadLocal<ISimpleChemObjectReader>() {
+
+        @Override
+        protected ISimpleChemObjectReader initialValue() {
+            ISimpleChemObjectReader reader = createChemObjectReader();
+            if (reader != null) {
+                // configured as the reader of the constructing thread
+                if (chemObjectReader != null)
+                    reader.addSettings(chemObjectReader.getSettings());
+                reader.setReaderMode(mode);
+                for (IChemObjectIOListener listener : listeners)
+                    reader.addChemObjectIOListener(listener);
+            }
+            return reader;
+        }
+    };
     
     /**
      * Reads the file and builds an index file, if the index file doesn't already exist.
@@ -107,6 +171,7 @@ public abstract class RandomAccessReader
         setChemObjectReader(createChemObjectReader());
         if (listener != null) addChemObjectIOListener(listener);
         raFile = new RandomAccessFile(file,"r");
+        channel = raFile.getChannel();
         records = 0;
         setIndexCreated(false);
         indexTheFile();
@@ -124,15 +189,17 @@ public abstract class RandomAccessReader
     /**
      * Returns the object at given record No.
      *
-     * Record numbers are zero-based!
+     * Record numbers are zero-based! Records may be read concurrently
+     * from multiple threads.
      */
-    public synchronized IChemObject readRecord(int record) throws Exception {
+    public IChemObject readRecord(int record) throws Exception {
     	String buffer = readContent(record);
-        if (chemObjectReader == null) throw new CDKException("No chemobject reader!");
+        ISimpleChemObjectReader reader = readers.get();
+        if (reader == null) throw new CDKException("No chemobject reader!");
         else { 
-            chemObjectReader.setReader(new StringReader(buffer));
+            reader.setReader(new StringReader(buffer));
             currentRecord = record;            
-            return  processContent();
+            return  processContent(reader);
         }
     }
     /**
@@ -151,21 +218,62 @@ public abstract class RandomAccessReader
         }
         //fireFrameRead();
 
-        raFile.seek(index[record][0]);
-        int length = (int)index[record][1];
-        raFile.read(b,0,length);    	
-        return new String(b,0,length);
+        long offset = recordOffset(record);
+        ByteBuffer buf = ByteBuffer.allocate(recordLength(record));
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, offset + buf.position()) < 0)
+                throw new EOFException("Record " + record + " is truncated");
+        }
+        return new String(buf.array(), 0, buf.limit());
+    }
+
+    /**
+     * The offset of a record in the file.
+     *
+     * @param record the record number
+     * @return the offset in bytes
+     */
+    protected long recordOffset(int record) {
+        return indexBuffer.getLong(indexStart + record * ENTRY_SIZE);
+    }
+
+    /**
+     * The length of a record in the file.
+     *
+     * @param record the record number
+     * @return the length in bytes
+     */
+    protected int recordLength(int record) {
+        return indexBuffer.getInt(indexStart + record * ENTRY_SIZE + 8);
+    }
+
+    /**
+     * Parse the record content the reader has been set to.
+     *
+     * @param reader a reader set to read the record content
+     * @return the read IChemObject
+     * @throws CDKException an error occurred whilst reading the file
+     */
+    protected IChemObject processContent(ISimpleChemObjectReader reader) throws CDKException {
+        return reader.read(builder.newInstance(IChemFile.class));
     }
+
     /**
      * The reader is already set to read the record buffer. 
      * @return the read IChemObject
      * @throws CDKException an error occurred whilst reading the file
+     * @deprecated use {@link #processContent(ISimpleChemObjectReader)}, the
+     *             record is parsed with the reader of the calling thread
      */
+    @Deprecated
     protected IChemObject processContent() throws CDKException {
-        return chemObjectReader.read(builder.newInstance(IChemFile.class));
+        return processContent(readers.get());
     }
 
-
+    /**
+     * @deprecated the index is no longer stored in a {@code long[][]}
+     */
+    @Deprecated
     protected long[][] resize(long[][] index, int newLength) {
         long[][] newIndex = new long[newLength][3];
         for (int i=0; i < index.length;i++) {
@@ -176,92 +284,81 @@ public abstract class RandomAccessReader
         return newIndex;
                                       
     }    
+
     protected abstract boolean isRecordEnd(String line);
         
-    protected synchronized void saveIndex(File file) throws Exception {
+    /**
+     * Write the binary index: a header (magic number, index version, length
+     * of the indexed file, number of records and the indexed file name)
+     * followed by an entry for each record.
+     *
+     * @param file    the index file
+     * @param offsets offset of each record
+     * @param lengths length of each record
+     * @throws Exception the index could not be written
+     */
+    protected synchronized void saveIndex(File file, long[] offsets, int[] lengths) throws Exception {
     	if (records == 0) {file.delete(); return;}
-        FileWriter out = new FileWriter(file);
-        out.write(Integer.toString(indexVersion));
-        out.write('\n');
-        out.write(filename);
-        out.write('\n');
-        out.write(Long.toString(raFile.length()));
-        out.write('\n');
-        out.write(Integer.toString(records));
-        out.write('\n');
-        for (int i=0; i < records;i++) {
-            out.write(Long.toString(index[i][0]));
-            out.write('\t');
-            out.write(Long.toString(index[i][1]));
-            out.write('\t');
-            out.write(Long.toString(index[i][2]));
-            out.write('\n');
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try {
+            byte[] name = filename.getBytes(UTF_8);
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(indexVersion);
+            out.writeLong(raFile.length());
+            out.writeInt(records);
+            out.writeInt(name.length);
+            out.write(name);
+            for (int i=0; i < records;i++) {
+                out.writeLong(offsets[i]);
+                out.writeInt(lengths[i]);
+                out.writeInt(-1);
+            }
+        } finally {
+            out.close();
         }
-        out.write(Integer.toString(records));
-        out.write('\n');
-        out.write(filename);
-        out.write('\n');
-        out.close();
     }
     
+    /**
+     * Memory map a binary index written by {@link #saveIndex(File, long[], int[])}.
+     *
+     * @param file the index file
+     * @throws Exception the index is invalid or for a different file
+     */
     protected synchronized void loadIndex(File file) throws Exception {
-    	BufferedReader in = new BufferedReader(new FileReader(file));
-        String version = in.readLine();
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        ByteBuffer buf;
         try {
-	        if (Integer.parseInt(version) != indexVersion) {
-	        	in.close();
-	        	throw new Exception("Expected index version "+indexVersion+" instead of "+version);
-	        }
-        } catch (Exception x) {
-        	in.close();
-        	throw new Exception("Invalid index version "+version);        	
-        }
-        String fileIndexed = in.readLine();
-        if (!filename.equals(fileIndexed)) {
-        	in.close();
-        	throw new Exception("Index for " + fileIndexed + " found instead of "+filename + ". Creating new index.");
-        }
-        String line = in.readLine();
-        int fileLength = Integer.parseInt(line);
-        if (fileLength != raFile.length()) {
-        	in.close();
-        	throw new Exception("Index for file of size " + fileLength + " found instead of "+raFile.length());
-        }
-        line = in.readLine();
-        int indexLength = Integer.parseInt(line);
-        if (indexLength <= 0 ) {
-        	in.close();
-        	throw new Exception("Index of zero lenght! "+file.getAbsolutePath());
+            buf = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+        } finally {
+            // the mapping remains valid after the file is closed
+            in.close();
         }
-        index = new long[indexLength][3];
-        records = 0;
-        int maxRecordLength = 0;
-        for (int i=0; i < index.length;i++) {
-        	line = in.readLine();
-        	String[] result = line.split("\t");
-        	for (int j=0;j<3;j++) 
-        		try {
-        			index[i][j] = Long.parseLong(result[j]);
-
-        		} catch (Exception x) {
-        			in.close();
-        			throw new Exception("Error reading index! "+result[j],x);
-        		}
-    		        		
-            if (maxRecordLength < index[records][1]) 
-                maxRecordLength = (int) index[records][1];
-            records++;
-        }
-        
-        line = in.readLine();
-        int indexLength2 = Integer.parseInt(line);
-        if (indexLength2 <= 0 ) {in.close(); throw new Exception("Index of zero lenght!");}
-        if (indexLength2 != indexLength ) { in.close(); throw new Exception("Wrong index length!");}
-        line = in.readLine();
-        if (!line.equals(filename)) {in.close(); throw new Exception("Index for " + line + " found instead of "+filename);}
-        in.close();
-        
-        b = new byte[maxRecordLength];
+        if (buf.limit() < 24 || buf.getInt(0) != INDEX_MAGIC)
+            throw new Exception("Invalid index file "+file.getAbsolutePath()+". Creating new index.");
+        int version = buf.getInt(4);
+        if (version != indexVersion)
+            throw new Exception("Expected index version "+indexVersion+" instead of "+version);
+        long fileLength = buf.getLong(8);
+        if (fileLength != raFile.length())
+            throw new Exception("Index for file of size " + fileLength + " found instead of "+raFile.length());
+        int indexLength = buf.getInt(16);
+        if (indexLength <= 0 )
+            throw new Exception("Index of zero lenght! "+file.getAbsolutePath());
+        int nameLength = buf.getInt(20);
+        if (nameLength < 0 || 24 + nameLength > buf.limit())
+            throw new Exception("Invalid index file "+file.getAbsolutePath());
+        byte[] name = new byte[nameLength];
+        buf.position(24);
+        buf.get(name);
+        String fileIndexed = new String(name, UTF_8);
+        if (!filename.equals(fileIndexed))
+            throw new Exception("Index for " + fileIndexed + " found instead of "+filename + ". Creating new index.");
+        if (buf.limit() != 24 + nameLength + (long) indexLength * ENTRY_SIZE)
+            throw new Exception("Wrong index length!");
+        buf.position(0);
+        indexBuffer = buf;
+        indexStart = 24 + nameLength;
+        records = indexLength;
         //fireFrameRead();
     }
     /**
@@ -280,52 +377,73 @@ public abstract class RandomAccessReader
     		}
     	indexCreated = false;    		
         long now = System.currentTimeMillis();
-        int recordLength = 1000;
-        int maxRecords = 1;
-        int maxRecordLength = 0;
-        maxRecords = (int)raFile.length()/recordLength;
-        if (maxRecords == 0) maxRecords = 1;
-        index = new long[maxRecords][3];
-
-        String s = null;
+        long[] offsets = new long[64];
+        int[] lengths = new int[64];
+
+        InputStream in = new BufferedInputStream(Channels.newInputStream(channel.position(0)), 1 << 16);
+        StringBuilder line = new StringBuilder();
+        long pos = 0;
         long start = 0;
         long end = 0;
-        raFile.seek(0);
         records = 0;
-        recordLength = 0;
-        while ((s = raFile.readLine()) != null) {
-            if (start == -1) start = raFile.getFilePointer(); 
-            if (isRecordEnd(s)) {
+        boolean more = true;
+        while (more) {
+            // read a line as RandomAccessFile.readLine() does, tracking the position
+            line.setLength(0);
+            int c = -1;
+            while ((c = in.read()) >= 0) {
+                pos++;
+                if (c == '\n')
+                    break;
+                if (c == '\r') {
+                    in.mark(1);
+                    if (in.read() == '\n')
+                        pos++;
+                    else
+                        in.reset();
+                    break;
+                }
+                line.append((char) c);
+            }
+            if (c < 0) {
+                more = false;
+                if (line.length() == 0)
+                    break;
+            }
+            if (isRecordEnd(line.toString())) {
                 //fireFrameRead();
-                if (records >= maxRecords) {
-                    double averageLength = recordLength/records;
-                    //records + (rf.length()-rf.getFilePointer())/averageLength
-                    index = resize(index,records + 
-                            (int) (records + (raFile.length()-records*raFile.getFilePointer())/recordLength));
-            	}
+                if (records == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, 2 * records);
+                    lengths = Arrays.copyOf(lengths, 2 * records);
+                }
                 end += 4;
-                index[records][0] = start;
-                index[records][1] = end - start;
-                index[records][2] = -1;
-                if (maxRecordLength < index[records][1]) 
-                    maxRecordLength = (int) index[records][1];
+                offsets[records] = start;
+                lengths[records] = (int) (end - start);
                 records++;
-                recordLength += end-start; 
-               
-                start = raFile.getFilePointer();
+                start = pos;
             } else {
-                end = raFile.getFilePointer(); 
+                end = pos;
             }
-            
         }
-        b = new byte[maxRecordLength];
         //fireFrameRead();
         logger.info("Index created in "+ (System.currentTimeMillis()-now) + " ms.");
         try {
-            saveIndex(indexFile);
+            saveIndex(indexFile, offsets, lengths);
+            if (records > 0) {
+                loadIndex(indexFile);
+                return;
+            }
         } catch (Exception x) {
             logger.error(x);
         }
+        // the index could not be saved, keep it in memory
+        indexBuffer = ByteBuffer.allocate(records * ENTRY_SIZE);
+        indexStart = 0;
+        for (int i = 0; i < records; i++) {
+            indexBuffer.putLong(i * ENTRY_SIZE, offsets[i]);
+            indexBuffer.putInt(i * ENTRY_SIZE + 8, lengths[i]);
+            indexBuffer.putInt(i * ENTRY_SIZE + 12, -1);
+        }
     }
 
     /**
@@ -353,14 +471,26 @@ public abstract class RandomAccessReader
 
     }
 
-    public synchronized IChemObjectReader getChemObjectReader() {
-        return chemObjectReader;
+    /**
+     * The reader used to parse records on the calling thread.
+     *
+     * @return the record reader
+     */
+    public IChemObjectReader getChemObjectReader() {
+        return readers.get();
     }
     public abstract ISimpleChemObjectReader createChemObjectReader();
     
+    /**
+     * Set the reader used to parse records on the calling thread, other
+     * threads use a reader from {@link #createChemObjectReader()}.
+     *
+     * @param chemObjectReader the record reader
+     */
     public synchronized void setChemObjectReader(
     		ISimpleChemObjectReader chemObjectReader) {
         this.chemObjectReader = chemObjectReader;
+        readers.set(chemObjectReader);
     }
     /* (non-Javadoc)
      * @see java.util.Iterator#hasNext()
@@ -430,17 +560,21 @@ public abstract class RandomAccessReader
     }
     public void addChemObjectIOListener(IChemObjectIOListener listener) {
         super.addChemObjectIOListener(listener);
-        if (chemObjectReader != null)
-        chemObjectReader.addChemObjectIOListener(listener);
+        listeners.add(listener);
+        ISimpleChemObjectReader reader = readers.get();
+        if (reader != null)
+        reader.addChemObjectIOListener(listener);
     }
 
     public void removeChemObjectIOListener(IChemObjectIOListener listener) {
         super.removeChemObjectIOListener(listener);
-        if (chemObjectReader != null)
-        chemObjectReader.removeChemObjectIOListener(listener);
+        listeners.remove(listener);
+        ISimpleChemObjectReader reader = readers.get();
+        if (reader != null)
+        reader.removeChemObjectIOListener(listener);
     }
 
-    public synchronized int getCurrentRecord() {
+    public int getCurrentRecord() {
         return currentRecord;
     }
 
@@ -457,7 +591,6 @@ public abstract class RandomAccessReader
         	setIndexCreated(false);
         	makeIndex();
             currentRecord = 0;
-            raFile.seek(index[0][0]);
         	setIndexCreated(true);
         } catch (Exception x) {
         	setIndexCreated(true);
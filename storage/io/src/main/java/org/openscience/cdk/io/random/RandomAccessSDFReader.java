@@ -80,12 +80,12 @@ public class RandomAccessSDFReader extends RandomAccessReader {
     public IResourceFormat getFormat() {
         return MDLFormat.getInstance();
     }
-    protected IChemObject processContent() throws CDKException {
+    protected IChemObject processContent(ISimpleChemObjectReader reader) throws CDKException {
         	/*
-            return chemObjectReader.read(builder.newInstance(IMolecule.class));
+            return reader.read(builder.newInstance(IMolecule.class));
             */
             //read(IMolecule) doesn't read properties ...
-            IChemObject co = chemObjectReader.read(builder.newInstance(IChemFile.class));
+            IChemObject co = reader.read(builder.newInstance(IChemFile.class));
             if (co instanceof IChemFile) {
                 int c = ((IChemFile) co).getChemSequenceCount();
                 for (int i=0; i <c;i++) {
@@ -30,6 +30,8 @@ package org.openscience.cdk.io.iterator;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
 import java.util.Properties;
 
 import org.junit.Assert;
@@ -331,4 +333,81 @@ public class IteratingSDFReaderTest extends CDKTestCase {
 
     }
 
+    @Test public void testSDF_channel() throws Exception {
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream("data/mdl/test2.sdf");
+        IteratingSDFReader reader = new IteratingSDFReader(
+            Channels.newChannel(ins), DefaultChemObjectBuilder.getInstance(), false
+        );
+
+        int molCount = 0;
+        while (reader.hasNext()) {
+            Object object = reader.next();
+            Assert.assertNotNull(object);
+            Assert.assertTrue(object instanceof IAtomContainer);
+            molCount++;
+            Assert.assertEquals("Molecule # was not in MDL V2000 format: " + molCount,
+                    MDLV2000Format.getInstance(), reader.getFormat());
+        }
+        reader.close();
+
+        Assert.assertEquals(6, molCount);
+    }
+
+    @Test public void testReadDataItems_channel() throws Exception {
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream("data/mdl/test.sdf");
+        IteratingSDFReader reader = new IteratingSDFReader(
+            Channels.newChannel(ins), DefaultChemObjectBuilder.getInstance(), false
+        );
+
+        IAtomContainer m = reader.next();
+        Assert.assertEquals("2-methylbenzo-1,4-quinone", m.getProperty(CDKConstants.TITLE));
+        Assert.assertEquals("1", m.getProperty("E_NSC"));
+        Assert.assertEquals("553-97-9", m.getProperty("E_CAS"));
+        m = reader.next();
+        Assert.assertEquals("120-78-5", m.getProperty("E_CAS"));
+        reader.close();
+    }
+
+    @Test public void testEmptyEntryIteratingReader_channel() throws Exception {
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream("data/mdl/emptyStructures.sdf");
+        IteratingSDFReader reader = new IteratingSDFReader(
+            Channels.newChannel(ins), DefaultChemObjectBuilder.getInstance(), false
+        );
+        int molCount = 0;
+        while (reader.hasNext()) {
+            IAtomContainer mol = reader.next();
+            molCount++;
+            if (molCount == 2)
+                Assert.assertEquals("rat", mol.getProperty("Species"));
+        }
+        reader.close();
+        Assert.assertEquals(2, molCount);
+    }
+
+    @Test public void testBrokenSDF_channel() throws Exception {
+        InputStream in            = getClass().getClassLoader().getResourceAsStream("data/mdl/bug3488307.sdf");
+        IteratingSDFReader reader = new IteratingSDFReader(Channels.newChannel(in),
+                                                           DefaultChemObjectBuilder.getInstance(), true);
+        int count = 0;
+        while (reader.hasNext()) {
+            reader.next();
+            count++;
+        }
+        reader.close();
+        Assert.assertEquals(3, count);
+    }
+
+    @Test public void testSetReader_Channel() throws Exception {
+        IteratingSDFReader reader = new IteratingSDFReader(new StringReader(""),
+                                                           DefaultChemObjectBuilder.getInstance());
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream("data/mdl/test2.sdf");
+        reader.setReader(Channels.newChannel(ins));
+        int molCount = 0;
+        while (reader.hasNext()) {
+            reader.next();
+            molCount++;
+        }
+        Assert.assertEquals(6, molCount);
+    }
+
 }
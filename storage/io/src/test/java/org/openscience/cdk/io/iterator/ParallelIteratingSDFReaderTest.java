@@ -0,0 +1,258 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.io.iterator;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.io.IChemObjectReader;
+import org.openscience.cdk.io.IChemObjectReaderErrorHandler;
+
+/**
+ * @cdk.module test-io
+ */
+public class ParallelIteratingSDFReaderTest {
+
+    @Test public void testSDF() throws Exception {
+        InputStream ins = getClass().getClassLoader().getResourceAsStream("data/mdl/test2.sdf");
+        ParallelIteratingSDFReader reader = new ParallelIteratingSDFReader(ins, DefaultChemObjectBuilder.getInstance(), 2);
+        int molCount = 0;
+        while (reader.hasNext()) {
+            Assert.assertNotNull(reader.next());
+            molCount++;
+        }
+        reader.close();
+        Assert.assertEquals(6, molCount);
+    }
+
+    @Test public void testReader() throws Exception {
+        InputStream ins = getClass().getClassLoader().getResourceAsStream("data/mdl/test2.sdf");
+        ParallelIteratingSDFReader reader = new ParallelIteratingSDFReader(ins, DefaultChemObjectBuilder.getInstance(), 2);
+        reader.setReader(new InputStreamReader(getClass().getClassLoader().getResourceAsStream("data/mdl/test2.sdf")));
+        int molCount = 0;
+        while (reader.hasNext()) {
+            Assert.assertNotNull(reader.next());
+            molCount++;
+        }
+        reader.close();
+        Assert.assertEquals(6, molCount);
+    }
+
+    @Test public void sameOrderAsIteratingReader() throws Exception {
+        List<String> expected = new ArrayList<String>();
+        IteratingSDFReader sequential = new IteratingSDFReader(getClass().getClassLoader()
+                                                                       .getResourceAsStream("data/mdl/test2.sdf"),
+                                                               DefaultChemObjectBuilder.getInstance());
+        while (sequential.hasNext())
+            expected.add(signature(sequential.next()));
+        sequential.close();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        // capacity of 2 forces the splitting to wait on the parsing
+        ParallelIteratingSDFReader reader = new ParallelIteratingSDFReader(
+                Channels.newChannel(getClass().getClassLoader().getResourceAsStream("data/mdl/test2.sdf")),
+                DefaultChemObjectBuilder.getInstance(), executor, 2, true);
+        List<String> actual = new ArrayList<String>();
+        while (reader.hasNext())
+            actual.add(signature(reader.next()));
+        reader.close();
+        executor.shutdown();
+
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test public void unordered() throws Exception {
+        ParallelIteratingSDFReader reader = new ParallelIteratingSDFReader(
+                Channels.newChannel(getClass().getClassLoader().getResourceAsStream("data/mdl/test2.sdf")),
+                DefaultChemObjectBuilder.getInstance(), 3, 4, false);
+        int molCount = 0;
+        while (reader.hasNext()) {
+            Assert.assertNotNull(reader.next());
+            molCount++;
+        }
+        reader.close();
+        Assert.assertEquals(6, molCount);
+    }
+
+    @Test public void testReadDataItems() throws Exception {
+        InputStream ins = getClass().getClassLoader().getResourceAsStream("data/mdl/test.sdf");
+        ParallelIteratingSDFReader reader = new ParallelIteratingSDFReader(ins, DefaultChemObjectBuilder.getInstance(), 2);
+        IAtomContainer m = reader.next();
+        Assert.assertEquals("2-methylbenzo-1,4-quinone", m.getProperty(CDKConstants.TITLE));
+        Assert.assertEquals("553-97-9", m.getProperty("E_CAS"));
+        m = reader.next();
+        Assert.assertEquals("120-78-5", m.getProperty("E_CAS"));
+        reader.close();
+    }
+
+    @Test public void skipErrors() throws Exception {
+        ParallelIteratingSDFReader reader = new ParallelIteratingSDFReader(
+                new ByteArrayInputStream(sdf(METHANE, V3000, METHANE).getBytes("UTF-8")),
+                DefaultChemObjectBuilder.getInstance(), 2);
+        final List<String> errors = new ArrayList<String>();
+        reader.setErrorHandler(new IChemObjectReaderErrorHandler() {
+            public void handleError(String message) {
+                errors.add(message);
+            }
+            public void handleError(String message, Exception exception) {
+                errors.add(message);
+            }
+            public void handleError(String message, int row, int colStart, int colEnd) {
+                errors.add(message);
+            }
+            public void handleError(String message, int row, int colStart, int colEnd, Exception exception) {
+                errors.add(message);
+            }
+        });
+        reader.setSkip(true);
+        int count = 0;
+        while (reader.hasNext()) {
+            reader.next();
+            count++;
+        }
+        reader.close();
+        Assert.assertEquals(2, count);
+        Assert.assertEquals(1, errors.size());
+        Assert.assertTrue(errors.get(0).startsWith("Could not read record 1"));
+    }
+
+    @Test public void stopAtError() throws Exception {
+        ParallelIteratingSDFReader reader = new ParallelIteratingSDFReader(
+                new ByteArrayInputStream(sdf(METHANE, V3000, METHANE).getBytes("UTF-8")),
+                DefaultChemObjectBuilder.getInstance(), 2);
+        int count = 0;
+        while (reader.hasNext()) {
+            reader.next();
+            count++;
+        }
+        reader.close();
+        Assert.assertEquals(1, count);
+    }
+
+    /**
+     * A failing input is reported, not treated as the end of the records.
+     */
+    @Test public void readError() throws Exception {
+        final byte[] bytes = sdf(METHANE, METHANE).getBytes("UTF-8");
+        InputStream ins = new InputStream() {
+            int i = 0;
+            @Override public int read() throws IOException {
+                if (i == bytes.length) throw new IOException("truncated");
+                return bytes[i++];
+            }
+        };
+        ParallelIteratingSDFReader reader = new ParallelIteratingSDFReader(ins, DefaultChemObjectBuilder.getInstance(), 2);
+        final List<String> errors = new ArrayList<String>();
+        reader.setErrorHandler(new IChemObjectReaderErrorHandler() {
+            public void handleError(String message) {
+                errors.add(message);
+            }
+            public void handleError(String message, Exception exception) {
+                errors.add(message);
+            }
+            public void handleError(String message, int row, int colStart, int colEnd) {
+                errors.add(message);
+            }
+            public void handleError(String message, int row, int colStart, int colEnd, Exception exception) {
+                errors.add(message);
+            }
+        });
+        int count = 0;
+        while (reader.hasNext()) {
+            reader.next();
+            count++;
+        }
+        reader.close();
+        Assert.assertEquals(2, count);
+        Assert.assertEquals(1, errors.size());
+        Assert.assertEquals("Error while reading record 2: truncated", errors.get(0));
+    }
+
+    /**
+     * Stopping at an error in strict mode does not change the skip setting.
+     */
+    @Test public void strictModeKeepsSkip() throws Exception {
+        ParallelIteratingSDFReader reader = new ParallelIteratingSDFReader(
+                new ByteArrayInputStream(sdf(METHANE, V3000, METHANE).getBytes("UTF-8")),
+                DefaultChemObjectBuilder.getInstance(), 2);
+        reader.setSkip(true);
+        reader.setReaderMode(IChemObjectReader.Mode.STRICT);
+        int count = 0;
+        while (reader.hasNext()) {
+            reader.next();
+            count++;
+        }
+        Assert.assertEquals(1, count);
+
+        reader.setReaderMode(IChemObjectReader.Mode.RELAXED);
+        reader.setReader(new ByteArrayInputStream(sdf(METHANE, V3000, METHANE).getBytes("UTF-8")));
+        count = 0;
+        while (reader.hasNext()) {
+            reader.next();
+            count++;
+        }
+        reader.close();
+        Assert.assertEquals(2, count);
+    }
+
+    @Test(expected = IllegalArgumentException.class) public void invalidCapacity() throws Exception {
+        new ParallelIteratingSDFReader(Channels.newChannel(new ByteArrayInputStream(new byte[0])),
+                                       DefaultChemObjectBuilder.getInstance(), 1, 0, true);
+    }
+
+    private static final String METHANE = "methane\n"
+            + "  CDK\n"
+            + "\n"
+            + "  1  0  0  0  0  0  0  0  0  0999 V2000\n"
+            + "    0.0000    0.0000    0.0000 C   0  0  0  0  0  0  0  0  0  0  0  0\n"
+            + "M  END\n";
+
+    private static final String V3000 = "v3000\n"
+            + "  CDK\n"
+            + "\n"
+            + "  0  0  0     0  0            999 V3000\n"
+            + "M  END\n";
+
+    static String sdf(String... records) {
+        StringBuilder sb = new StringBuilder();
+        for (String record : records)
+            sb.append(record).append("$$$$\n");
+        return sb.toString();
+    }
+
+    static String signature(IAtomContainer m) {
+        return m.getProperty(CDKConstants.TITLE) + " " + m.getAtomCount() + " " + m.getBondCount();
+    }
+}
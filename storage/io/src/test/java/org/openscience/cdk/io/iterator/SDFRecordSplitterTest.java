@@ -0,0 +1,98 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.io.iterator;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @cdk.module test-io
+ */
+public class SDFRecordSplitterTest {
+
+    @Test public void split() throws Exception {
+        Assert.assertEquals(Arrays.asList("a\nb\n", "c\n"),
+                            records("a\nb\n$$$$\nc\n$$$$\n"));
+    }
+
+    @Test public void noTrailingSeparator() throws Exception {
+        Assert.assertEquals(Arrays.asList("a\n", "c"),
+                            records("a\n$$$$\nc"));
+    }
+
+    @Test public void separatorWithWhitespace() throws Exception {
+        Assert.assertEquals(Arrays.asList("a\n", "c\n"),
+                            records("a\n $$$$ \r\nc\n"));
+    }
+
+    @Test public void notASeparator() throws Exception {
+        Assert.assertEquals(Arrays.asList("a\n$$$$$\n$$$ $\n"),
+                            records("a\n$$$$$\n$$$ $\n"));
+    }
+
+    @Test public void emptyRecords() throws Exception {
+        Assert.assertEquals(Arrays.asList("", ""),
+                            records("$$$$\n$$$$"));
+    }
+
+    @Test public void trailingWhitespaceIsNotARecord() throws Exception {
+        Assert.assertEquals(Arrays.asList("a\n"),
+                            records("a\n$$$$\n  \n\n"));
+        Assert.assertEquals(new ArrayList<String>(),
+                            records(""));
+    }
+
+    @Test public void largeRecords() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++)
+            sb.append("line ").append(i).append('\n');
+        String record = sb.toString();
+        Assert.assertEquals(Arrays.asList(record, record, record),
+                            records(record + "$$$$\n" + record + "$$$$\n" + record + "$$$$\n"));
+    }
+
+    @Test public void stream() throws Exception {
+        SDFRecordSplitter splitter = new SDFRecordSplitter(new ByteArrayInputStream("abc\n$$$$\n".getBytes("UTF-8")));
+        Assert.assertTrue(splitter.next());
+        InputStream in = splitter.stream();
+        Assert.assertEquals('a', in.read());
+        Assert.assertEquals(4, splitter.length());
+        Assert.assertFalse(splitter.next());
+        splitter.close();
+    }
+
+    static List<String> records(String input) throws Exception {
+        SDFRecordSplitter splitter = new SDFRecordSplitter(new ByteArrayInputStream(input.getBytes("UTF-8")));
+        List<String> records = new ArrayList<String>();
+        while (splitter.next())
+            records.add(new String(splitter.buffer(), splitter.offset(), splitter.length(), "UTF-8"));
+        splitter.close();
+        return records;
+    }
+}
@@ -59,6 +59,8 @@ import org.openscience.cdk.io.XYZReaderTest;
 import org.openscience.cdk.io.XYZWriterTest;
 import org.openscience.cdk.io.cml.CMLIOTests;
 import org.openscience.cdk.io.iterator.IteratingSDFReaderTest;
+import org.openscience.cdk.io.iterator.SDFRecordSplitterTest;
+import org.openscience.cdk.io.iterator.ParallelIteratingSDFReaderTest;
 import org.openscience.cdk.io.iterator.IteratingPCCompoundASNReaderTest;
 import org.openscience.cdk.io.iterator.IteratingPCCompoundXMLReaderTest;
 import org.openscience.cdk.io.iterator.IteratingPCSubstancesXMLReaderTest;
@@ -108,6 +110,8 @@ import org.openscience.cdk.io.program.Mopac7WriterTest;
 
         // cdk.io.iterator package
     IteratingSDFReaderTest.class,
+    SDFRecordSplitterTest.class,
+    ParallelIteratingSDFReaderTest.class,
     IteratingPCCompoundASNReaderTest.class,
     IteratingPCCompoundXMLReaderTest.class,
     IteratingPCSubstancesXMLReaderTest.class        
@@ -0,0 +1,184 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.io.iterator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.concurrent.ExecutorService;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.io.formats.IResourceFormat;
+import org.openscience.cdk.io.formats.SMILESFormat;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ * Iterating SMILES reader which parses the lines on multiple threads with a
+ * per-thread {@link SmilesParser}. As with the {@link IteratingSMILESReader},
+ * the text after the first space or tab is stored as the title and a SMILES
+ * which could not be parsed gives an empty container with the input stored
+ * as the {@link IteratingSMILESReader#BAD_SMILES_INPUT} property.
+ *
+ * <pre>
+ * ParallelIteratingSMILESReader reader = new ParallelIteratingSMILESReader(
+ *   new FileReader(smiFile), builder, 4
+ * );
+ * while (reader.hasNext()) {
+ *   IAtomContainer molecule = reader.next();
+ * }
+ * reader.close();
+ * </pre>
+ *
+ * See {@link ParallelIteratingReader} for ordering, memory and error handling.
+ *
+ * @cdk.module smiles
+ * @cdk.githash
+ * @cdk.keyword file format, SMILES
+ * @see IteratingSMILESReader
+ */
+public class ParallelIteratingSMILESReader extends ParallelIteratingReader<String> {
+
+    private BufferedReader input;
+
+    private final IChemObjectBuilder builder;
+
+    /** A parser for each worker thread. */
+    private final ThreadLocal<SmilesParser> parsers = new ThreadLocal<SmilesParser>() {
+
+        @Override
+        protected SmilesParser initialValue() {
+            return new SmilesParser(builder);
+        }
+    };
+
+    /**
+     * Read molecules parsing on {@code nThreads} worker threads, the
+     * molecules are returned in input order.
+     *
+     * @param in       the reader to read from
+     * @param builder  builder to use
+     * @param nThreads number of worker threads
+     */
+    public ParallelIteratingSMILESReader(Reader in, IChemObjectBuilder builder, int nThreads) {
+        this(in, builder, nThreads, nThreads * RECORDS_PER_THREAD, true);
+    }
+
+    /**
+     * Read molecules parsing on {@code nThreads} worker threads.
+     *
+     * @param in       the reader to read from
+     * @param builder  builder to use
+     * @param nThreads number of worker threads
+     * @param capacity maximum number of lines in memory
+     * @param ordered  whether molecules are returned in input order
+     */
+    public ParallelIteratingSMILESReader(Reader in, IChemObjectBuilder builder, int nThreads,
+                                         int capacity, boolean ordered) {
+        super(nThreads, capacity, ordered);
+        this.builder = builder;
+        setReader(in);
+    }
+
+    /**
+     * Read molecules parsing on the provided executor, the executor is not
+     * shut down when the reader is closed.
+     *
+     * @param in       the reader to read from
+     * @param builder  builder to use
+     * @param executor executor to parse lines on
+     * @param capacity maximum number of lines in memory
+     * @param ordered  whether molecules are returned in input order
+     */
+    public ParallelIteratingSMILESReader(Reader in, IChemObjectBuilder builder, ExecutorService executor,
+                                         int capacity, boolean ordered) {
+        super(executor, capacity, ordered);
+        this.builder = builder;
+        setReader(in);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public IResourceFormat getFormat() {
+        return SMILESFormat.getInstance();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected String readRecord() throws IOException {
+        return input.readLine();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected IAtomContainer parseRecord(String line) throws Exception {
+        IAtomContainer container;
+        try {
+            container = parsers.get().parseSmiles(line);
+        } catch (CDKException e) {
+            container = builder.newInstance(IAtomContainer.class, 0, 0, 0, 0);
+            container.setProperty(IteratingSMILESReader.BAD_SMILES_INPUT, line);
+        }
+        container.setProperty(CDKConstants.TITLE, suffix(line));
+        return container;
+    }
+
+    /**
+     * Obtain the suffix after a line containing SMILES. The suffix follows
+     * any ' ' or '\t' termination characters.
+     *
+     * @param line input line
+     * @return the suffix - or an empty line
+     */
+    private static String suffix(final String line) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == ' ' || c == '\t')
+                return line.substring(i + 1);
+        }
+        return "";
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void closeInput() throws IOException {
+        input.close();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setReader(Reader reader) {
+        reset();
+        input = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setReader(InputStream in) {
+        setReader(new InputStreamReader(in));
+    }
+}
@@ -0,0 +1,94 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.io.iterator;
+
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+
+/**
+ * @cdk.module test-smiles
+ */
+public class ParallelIteratingSMILESReaderTest {
+
+    @Test public void testSMILESFileWithNames() throws Exception {
+        ParallelIteratingSMILESReader reader = new ParallelIteratingSMILESReader(
+                new InputStreamReader(getClass().getClassLoader().getResourceAsStream("data/smiles/test.smi")),
+                SilentChemObjectBuilder.getInstance(), 2);
+        int molCount = 0;
+        while (reader.hasNext()) {
+            Assert.assertNotNull(reader.next());
+            molCount++;
+        }
+        reader.close();
+        Assert.assertEquals(5, molCount);
+    }
+
+    @Test public void sameOrderAsIteratingReader() throws Exception {
+        List<String> expected = new ArrayList<String>();
+        IteratingSMILESReader sequential = new IteratingSMILESReader(
+                getClass().getClassLoader().getResourceAsStream("data/smiles/test.smi"),
+                SilentChemObjectBuilder.getInstance());
+        while (sequential.hasNext()) {
+            IAtomContainer m = sequential.next();
+            expected.add(m.getProperty(CDKConstants.TITLE) + " " + m.getAtomCount());
+        }
+        sequential.close();
+
+        // capacity of 1 forces the splitting to wait on the parsing
+        ParallelIteratingSMILESReader reader = new ParallelIteratingSMILESReader(
+                new InputStreamReader(getClass().getClassLoader().getResourceAsStream("data/smiles/test.smi")),
+                SilentChemObjectBuilder.getInstance(), 3, 1, true);
+        List<String> actual = new ArrayList<String>();
+        while (reader.hasNext()) {
+            IAtomContainer m = reader.next();
+            actual.add(m.getProperty(CDKConstants.TITLE) + " " + m.getAtomCount());
+        }
+        reader.close();
+
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test public void badSmilesInput() throws Exception {
+        ParallelIteratingSMILESReader reader = new ParallelIteratingSMILESReader(
+                new StringReader("C\nC1CCC\nCC ethane\n"), SilentChemObjectBuilder.getInstance(), 2);
+        Assert.assertTrue(reader.hasNext());
+        Assert.assertEquals(1, reader.next().getAtomCount());
+        Assert.assertTrue(reader.hasNext());
+        IAtomContainer m = reader.next();
+        Assert.assertEquals(0, m.getAtomCount());
+        Assert.assertEquals("C1CCC", m.getProperty(IteratingSMILESReader.BAD_SMILES_INPUT));
+        Assert.assertTrue(reader.hasNext());
+        m = reader.next();
+        Assert.assertEquals("ethane", m.getProperty(CDKConstants.TITLE));
+        Assert.assertFalse(reader.hasNext());
+        reader.close();
+    }
+}
@@ -23,31 +23,37 @@
  */
 package org.openscience.cdk.modeling.builder3d;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.zip.GZIPInputStream;
 
 import javax.vecmath.Point3d;
 
 import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.exception.CDKException;
-import org.openscience.cdk.fingerprint.FingerprinterTool;
 import org.openscience.cdk.fingerprint.HybridizationFingerprinter;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
-import org.openscience.cdk.interfaces.IAtomContainerSet;
 import org.openscience.cdk.interfaces.IChemObjectBuilder;
 import org.openscience.cdk.interfaces.IRingSet;
-import org.openscience.cdk.io.iterator.IteratingSDFReader;
-import org.openscience.cdk.isomorphism.UniversalIsomorphismTester;
-import org.openscience.cdk.isomorphism.mcss.RMap;
+import org.openscience.cdk.io.IChemObjectReader.Mode;
+import org.openscience.cdk.io.MDLV2000Reader;
+import org.openscience.cdk.isomorphism.AtomMatcher;
+import org.openscience.cdk.isomorphism.BondMatcher;
+import org.openscience.cdk.isomorphism.Pattern;
+import org.openscience.cdk.isomorphism.PreparedTarget;
+import org.openscience.cdk.isomorphism.VentoFoggia;
 import org.openscience.cdk.silent.SilentChemObjectBuilder;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
@@ -58,6 +64,12 @@ import org.openscience.cdk.tools.manipulator.RingSetManipulator;
  * Helper class for ModelBuilder3D. Handles templates. This is
  * our layout solution for 3D ring systems
  *
+ * The template store keeps the decompressed template SD file as a single
+ * buffer with the offsets of each record. The templates are indexed by their
+ * atom count and their fingerprints are held as words, a template is only
+ * read (and its patterns compiled) the first time it is a candidate for a
+ * ring system.
+ *
  * @author      cho
  * @author      steinbeck
  * @cdk.created 2004-09-21
@@ -70,23 +82,36 @@ public class TemplateHandler3D {
 	    SilentChemObjectBuilder.getInstance();
 	private static final ILoggingTool logger =
         LoggingToolFactory.createLoggingTool(TemplateHandler3D.class);
-	
-	IAtomContainer molecule;
-    IRingSet sssr;
-    IAtomContainerSet templates = null;
-    List<BitSet> fingerprintData = null;
-    private boolean templatesLoaded = false;
+
+    /** Location of the template structures and fingerprints. */
+    private static final String TEMPLATE_PATH = "org/openscience/cdk/modeling/builder3d/data/";
+
+    /** Number of words of a template fingerprint. */
+    private static final int FINGERPRINT_WORDS = 1024 / 64;
+
+    /** The decompressed template SD file. */
+    private byte[] data;
+
+    /** Start and end of each template record in the data. */
+    private int[] begins, ends;
+
+    /** Fingerprint of each (anonymised) template. */
+    private long[][] fingerprints;
+
+    /** Indices of the templates with a given atom count, in file order. */
+    private Map<Integer, int[]> atomCountIndex;
+
+    /** Templates which have been read, the others are null. */
+    private AtomicReferenceArray<Template> templates;
+
+    private volatile boolean templatesLoaded = false;
 
     private static TemplateHandler3D self = null;
 
-    private UniversalIsomorphismTester universalIsomorphismTester = new UniversalIsomorphismTester();
-    
     private TemplateHandler3D() {
-        templates = builder.newInstance(IAtomContainerSet.class);
-        fingerprintData = new ArrayList<BitSet>();
     }
 
-    public static TemplateHandler3D getInstance() throws CDKException {
+    public static synchronized TemplateHandler3D getInstance() throws CDKException {
     	if (self == null) {
     		self = new TemplateHandler3D();
     	}
@@ -94,61 +119,228 @@ public class TemplateHandler3D {
     }
 
     /**
-     * Loads all existing templates into memory. 
-     * Template file is a mdl file. Creates a Object Set of Molecules
+     * Loads the template store into memory. The template SD file is
+     * decompressed and split into records, the atom count of each record is
+     * read from its counts line. The records are read as molecules when they
+     * are first used.
+     *
      * @throws CDKException The template file cannot be loaded
      */
-    private void loadTemplates() throws CDKException{
+    private synchronized void loadTemplates() throws CDKException {
+        if (templatesLoaded)
+            return;
         logger.debug("Loading templates...");
-        IteratingSDFReader imdl;
-        InputStream ins;
-        BufferedReader fin;
 
-        try {
-            ins = this.getClass().getClassLoader().getResourceAsStream("org/openscience/cdk/modeling/builder3d/data/ringTemplateStructures.sdf.gz");
-            fin = new BufferedReader(new InputStreamReader(new GZIPInputStream(ins)));
-            imdl = new IteratingSDFReader(fin, builder);
-        } catch (IOException exc1) {
-            throw new CDKException("Problems loading file ringTemplateStructures.sdf.gz", exc1);
+        byte[] data = readResource("ringTemplateStructures.sdf.gz");
+        int[] begins = new int[1024], ends = new int[1024], atomCounts = new int[1024];
+        int count = 0;
+        int begin = 0, line = 0;
+        for (int pos = 0; pos < data.length; ) {
+            int end = pos;
+            while (end < data.length && data[end] != '\n')
+                end++;
+            if (count == begins.length) {
+                begins = Arrays.copyOf(begins, 2 * count);
+                ends = Arrays.copyOf(ends, 2 * count);
+                atomCounts = Arrays.copyOf(atomCounts, 2 * count);
+            }
+            if (isRecordSeparator(data, pos, end)) {
+                begins[count] = begin;
+                ends[count++] = pos;
+                begin = end + 1;
+                line = 0;
+            } else if (line++ == 3) {
+                // the counts line, "aaabbb..."
+                atomCounts[count] = parseInt(data, pos, Math.min(pos + 3, end));
+            }
+            pos = end + 1;
         }
-        IAtomContainer molecule;
-        while (imdl.hasNext()) {
-            molecule = (IAtomContainer) imdl.next();
-            templates.addAtomContainer(molecule);
+        // the last record may not be terminated
+        if (line > 3) {
+            begins[count] = begin;
+            ends[count++] = data.length;
         }
-        molecule = null;
-        try {
-            imdl.close();
-        } catch (Exception exc2) {
-            System.out.println("Could not close Reader due to: " + exc2.getMessage());
+
+        long[][] fingerprints = readFingerprints(readResource("ringTemplateFingerprints.txt.gz"));
+        if (fingerprints.length != count)
+            throw new CDKException("Template structures (" + count + ") and fingerprints (" + fingerprints.length
+                    + ") do not match");
+
+        Map<Integer, List<Integer>> buckets = new HashMap<Integer, List<Integer>>();
+        for (int i = 0; i < count; i++) {
+            List<Integer> bucket = buckets.get(atomCounts[i]);
+            if (bucket == null)
+                buckets.put(atomCounts[i], bucket = new ArrayList<Integer>());
+            bucket.add(i);
         }
-        //logger.debug("TEMPLATE Finger");
-        try {
+        Map<Integer, int[]> atomCountIndex = new HashMap<Integer, int[]>();
+        for (Map.Entry<Integer, List<Integer>> e : buckets.entrySet()) {
+            int[] indices = new int[e.getValue().size()];
+            for (int i = 0; i < indices.length; i++)
+                indices[i] = e.getValue().get(i);
+            atomCountIndex.put(e.getKey(), indices);
+        }
+
+        this.data = data;
+        this.begins = Arrays.copyOf(begins, count);
+        this.ends = Arrays.copyOf(ends, count);
+        this.fingerprints = fingerprints;
+        this.atomCountIndex = atomCountIndex;
+        this.templates = new AtomicReferenceArray<Template>(count);
+        templatesLoaded = true;
+    }
 
-            ins = this.getClass().getClassLoader().getResourceAsStream("org/openscience/cdk/modeling/builder3d/data/ringTemplateFingerprints.txt.gz");
-            fin = new BufferedReader(new InputStreamReader(new GZIPInputStream(ins)));
-        } catch (Exception exc3) {
-            throw new CDKException("Could not read Fingerprints from FingerprintFile due to: " + exc3.getMessage(), exc3);
+    /**
+     * Read a gzipped resource of the template directory.
+     *
+     * @param name file name of the resource
+     * @return the decompressed content
+     * @throws CDKException the resource could not be read
+     */
+    private byte[] readResource(String name) throws CDKException {
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream(TEMPLATE_PATH + name);
+        if (ins == null)
+            throw new CDKException("Problems loading file " + name + ": resource not found");
+        try {
+            InputStream in = new GZIPInputStream(ins);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+            byte[] buffer = new byte[1 << 16];
+            int len;
+            while ((len = in.read(buffer)) > 0)
+                out.write(buffer, 0, len);
+            in.close();
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new CDKException("Problems loading file " + name, e);
         }
-        String s = null;
-        while (true) {
-            try {
-                s = fin.readLine();
-            } catch (Exception exc4) {
-                throw new CDKException("Error while reading the fingerprints: " + exc4.getMessage(), exc4);
-            }
+    }
 
-            if (s == null) {
-                break;
+    /**
+     * Read the fingerprints, one per line, as sets of bit indices
+     * ("{4, 10, 162}").
+     *
+     * @param data the fingerprint file
+     * @return the fingerprints as words
+     */
+    private static long[][] readFingerprints(byte[] data) {
+        List<long[]> fingerprints = new ArrayList<long[]>();
+        long[] fingerprint = new long[FINGERPRINT_WORDS];
+        int value = -1;
+        for (int pos = 0; pos < data.length; pos++) {
+            byte c = data[pos];
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : 10 * value) + (c - '0');
+                continue;
+            }
+            if (value >= 0) {
+                fingerprint = set(fingerprint, value);
+                value = -1;
             }
+            if (c == '\n') {
+                fingerprints.add(fingerprint);
+                fingerprint = new long[FINGERPRINT_WORDS];
+            }
+        }
+        if (value >= 0)
+            fingerprint = set(fingerprint, value);
+        // the last line may not be terminated
+        if (data.length > 0 && data[data.length - 1] != '\n')
+            fingerprints.add(fingerprint);
+        return fingerprints.toArray(new long[fingerprints.size()][]);
+    }
+
+    /**
+     * Set a bit of a fingerprint, the words grow if needed.
+     *
+     * @param fingerprint the words of the fingerprint
+     * @param bit         the bit to set
+     * @return the words of the fingerprint
+     */
+    private static long[] set(long[] fingerprint, int bit) {
+        if ((bit >>> 6) >= fingerprint.length)
+            fingerprint = Arrays.copyOf(fingerprint, (bit >>> 6) + 1);
+        fingerprint[bit >>> 6] |= 1L << bit;
+        return fingerprint;
+    }
+
+    /**
+     * The words of a fingerprint.
+     *
+     * @param bitSet fingerprint
+     * @return the words (at least {@link #FINGERPRINT_WORDS})
+     */
+    private static long[] words(BitSet bitSet) {
+        long[] words = new long[Math.max(FINGERPRINT_WORDS, (bitSet.length() + 63) / 64)];
+        for (int i = bitSet.nextSetBit(0); i >= 0; i = bitSet.nextSetBit(i + 1))
+            words[i >>> 6] |= 1L << i;
+        return words;
+    }
+
+    /**
+     * Is every bit of the second fingerprint set in the first, as {@link
+     * org.openscience.cdk.fingerprint.FingerprinterTool#isSubset(BitSet, BitSet)}.
+     *
+     * @param fp1 the reference fingerprint
+     * @param fp2 the fingerprint compared with fp1
+     * @return fp2 is a subset of fp1
+     */
+    private static boolean isSubset(long[] fp1, long[] fp2) {
+        for (int i = 0; i < fp2.length; i++) {
+            long word = i < fp1.length ? fp1[i] : 0;
+            if ((fp2[i] & ~word) != 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Is the line between the positions the SD record separator.
+     */
+    private static boolean isRecordSeparator(byte[] data, int begin, int end) {
+        if (end > begin && data[end - 1] == '\r')
+            end--;
+        return end - begin == 4 && data[begin] == '$' && data[begin + 1] == '$' && data[begin + 2] == '$'
+                && data[begin + 3] == '$';
+    }
+
+    /**
+     * Parse a (space padded) integer between the positions.
+     */
+    private static int parseInt(byte[] data, int begin, int end) {
+        int value = 0;
+        for (int i = begin; i < end; i++) {
+            if (data[i] >= '0' && data[i] <= '9')
+                value = 10 * value + (data[i] - '0');
+        }
+        return value;
+    }
+
+    /**
+     * The template at the given index, the template is read from its record
+     * the first time it is requested.
+     *
+     * @param i index of the template
+     * @return the template
+     * @throws CDKException the template could not be read
+     */
+    private Template template(int i) throws CDKException {
+        Template template = templates.get(i);
+        if (template != null)
+            return template;
+        MDLV2000Reader reader = new MDLV2000Reader(new ByteArrayInputStream(data, begins[i], ends[i] - begins[i]),
+                                                   Mode.RELAXED);
+        try {
+            template = new Template(reader.read(builder.newInstance(IAtomContainer.class)));
+        } finally {
             try {
-	            fingerprintData.add((BitSet) getBitSetFromFile(new StringTokenizer(s, "\t ;{, }")));
-            } catch (Exception exception) {
-            	throw new CDKException("Error while reading the fingerprints: " + exception.getMessage(), exception);
+                reader.close();
+            } catch (IOException e) {
+                logger.debug(e);
             }
         }
-        //logger.debug("Fingerprints are read in:"+fingerprintData.size());
-        templatesLoaded = true;
+        // another thread may have read the template at the same time
+        templates.compareAndSet(i, null, template);
+        return templates.get(i);
     }
 
     public static BitSet getBitSetFromFile(StringTokenizer st) throws Exception {
@@ -190,65 +382,67 @@ public class TemplateHandler3D {
     /**
      * Checks if one of the loaded templates is a substructure in the given
      * Molecule. If so, it assigns the coordinates from the template to the
-     * respective atoms in the Molecule.
+     * respective atoms in the Molecule. Only the templates with the same
+     * atom count and a fingerprint containing that of the ring system are
+     * matched.
      *
      * @param ringSystems       AtomContainer from the ring systems.
      * @param NumberOfRingAtoms double
      * @throws CloneNotSupportedException The atomcontainer cannot be cloned.
      */
     public void mapTemplates(IAtomContainer ringSystems, double NumberOfRingAtoms) throws CDKException, CloneNotSupportedException{
-		if (!templatesLoaded) self.loadTemplates();
+		if (!templatesLoaded) loadTemplates();
 
         //logger.debug("Map Template...START---Number of Ring Atoms:"+NumberOfRingAtoms);
         IAtomContainer ringSystemAnyBondAnyAtom = AtomContainerManipulator.anonymise(ringSystems);
-        BitSet ringSystemFingerprint = new HybridizationFingerprinter().getBitFingerprint(ringSystemAnyBondAnyAtom).asBitSet();
+        long[] ringSystemFingerprint = words(new HybridizationFingerprinter().getBitFingerprint(ringSystemAnyBondAnyAtom).asBitSet());
+        PreparedTarget target = new PreparedTarget(ringSystems);
+        //if the atom count is different, it can't be right anyway
+        int[] candidates = atomCountIndex.get(ringSystems.getAtomCount());
         boolean flagMaxSubstructure = false;
         boolean flagSecondbest=false;
-        for (int i = 0; i < fingerprintData.size(); i++) {
-            IAtomContainer template = templates.getAtomContainer(i);
-            //if the atom count is different, it can't be right anyway
-            if (template.getAtomCount() != ringSystems.getAtomCount()) {
+        for (int k = 0; candidates != null && k < candidates.length; k++) {
+            int i = candidates[k];
+            //we compare the fingerprint with any atom and any bond
+            if (!isSubset(fingerprints[i], ringSystemFingerprint)) {
                 continue;
             }
-            //we compare the fingerprint with any atom and any bond
-            if (FingerprinterTool.isSubset(fingerprintData.get(i),ringSystemFingerprint)) {
-                IAtomContainer templateAnyBondAnyAtom = AtomContainerManipulator.anonymise(template);
-                //we do the exact match with any atom and any bond
-                if (universalIsomorphismTester.isSubgraph(ringSystemAnyBondAnyAtom, templateAnyBondAnyAtom)) {
-                	//if this is the case, we keep it as a guess, but look if we can do better
-                    List<RMap> list = universalIsomorphismTester.getSubgraphAtomsMap(ringSystemAnyBondAnyAtom, templateAnyBondAnyAtom);
-                    boolean flagwritefromsecondbest=false;
-                    if ((NumberOfRingAtoms) / list.size() == 1 && templateAnyBondAnyAtom.getBondCount()==ringSystems.getBondCount()) {
-                    	//so atom and bond count match, could be it's even an exact match,
-                    	//we check this with the original ring system
-                    	if(universalIsomorphismTester.isSubgraph(ringSystems, template)){
-                    		flagMaxSubstructure = true;
-                    		list = universalIsomorphismTester.getSubgraphAtomsMap(ringSystems, template);
-                    	}else{
-                    		//if it isn't we still now it's better than just the isomorphism
-                    		flagSecondbest = true;
-                    		flagwritefromsecondbest=true;
-                    	}
-                    }
-                    
-                    if(!flagSecondbest || flagMaxSubstructure || flagwritefromsecondbest){
-	                    for (int j = 0; j < list.size(); j++) {
-	                        RMap map = (RMap) list.get(j);
-	                        IAtom atom1 = ringSystems.getAtom(map.getId1());
-	                        IAtom atom2 = template.getAtom(map.getId2());
-	                        if (atom1.getFlag(CDKConstants.ISINRING)) {
-	                        	atom1.setPoint3d(new Point3d(atom2.getPoint3d()));
-	                        }
-	                    }//for j
-                    }
+            Template template = template(i);
+            //we do the exact match with any atom and any bond
+            int[] mapping = template.anonymous.match(target);
+            if (mapping.length == 0) {
+                continue;
+            }
+            //if this is the case, we keep it as a guess, but look if we can do better
+            boolean flagwritefromsecondbest=false;
+            if ((NumberOfRingAtoms) / mapping.length == 1 && template.container.getBondCount()==ringSystems.getBondCount()) {
+                //so atom and bond count match, could be it's even an exact match,
+                //we check this with the original ring system
+                int[] exact = template.substructure.match(target);
+                if (exact.length > 0) {
+                    flagMaxSubstructure = true;
+                    mapping = exact;
+                } else {
+                    //if it isn't we still now it's better than just the isomorphism
+                    flagSecondbest = true;
+                    flagwritefromsecondbest=true;
+                }
+            }
 
-                    if (flagMaxSubstructure) {
-                        break;
+            if(!flagSecondbest || flagMaxSubstructure || flagwritefromsecondbest){
+                for (int j = 0; j < mapping.length; j++) {
+                    IAtom atom1 = ringSystems.getAtom(mapping[j]);
+                    IAtom atom2 = template.container.getAtom(j);
+                    if (atom1.getFlag(CDKConstants.ISINRING)) {
+                        atom1.setPoint3d(new Point3d(atom2.getPoint3d()));
                     }
+                }
+            }
 
-                }//if subgraph
-            }//if fingerprint
-        }//for i
+            if (flagMaxSubstructure) {
+                break;
+            }
+        }
         if (!flagMaxSubstructure) {
             System.out.println("WARNING: Maybe RingTemplateError!");
         }
@@ -260,7 +454,7 @@ public class TemplateHandler3D {
      * @return The templateCount value
      */
     public int getTemplateCount() {
-        return templates.getAtomContainerCount();
+        return templatesLoaded ? begins.length : 0;
     }
 
 
@@ -271,7 +465,36 @@ public class TemplateHandler3D {
      *@return The templateAt value
      */
     public IAtomContainer getTemplateAt(int position) {
-        return templates.getAtomContainer(position);
+        if (!templatesLoaded)
+            throw new IndexOutOfBoundsException("templates have not been loaded");
+        try {
+            return template(position).container;
+        } catch (CDKException e) {
+            throw new IllegalStateException("Could not read template " + position, e);
+        }
 	}
-}
 
+    /**
+     * A ring system template with 3D coordinates, read from the template file
+     * when first needed. The anonymous pattern maps the template onto a ring
+     * system with the same connectivity, the symbol pattern is preferred as
+     * it also maps the elements and bond orders.
+     */
+    private static final class Template {
+
+        /** The template with 3D coordinates. */
+        private final IAtomContainer container;
+
+        /** The template connectivity as a substructure (any atom, any bond). */
+        private final Pattern anonymous;
+
+        /** The template as a substructure matching symbols and bond orders. */
+        private final Pattern substructure;
+
+        private Template(IAtomContainer container) {
+            this.container = container;
+            this.anonymous = VentoFoggia.findSubstructure(container, AtomMatcher.forAny(), BondMatcher.forAny());
+            this.substructure = VentoFoggia.findSubstructure(container, AtomMatcher.forSymbol(), BondMatcher.forStrictOrder());
+        }
+    }
+}
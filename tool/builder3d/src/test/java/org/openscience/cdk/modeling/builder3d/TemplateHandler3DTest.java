@@ -29,9 +29,11 @@ import java.util.StringTokenizer;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.CDKTestCase;
 import org.openscience.cdk.DefaultChemObjectBuilder;
 import org.openscience.cdk.fingerprint.IBitFingerprint;
+import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IRingSet;
 import org.openscience.cdk.isomorphism.matchers.QueryChemObject;
@@ -108,4 +110,22 @@ public class TemplateHandler3DTest extends CDKTestCase {
 		ModelBuilder3DTest.checkAverageBondLength(ac);
 	}
 
+    /** A template without coordinates is laid out by an exact template match. */
+    @Test
+    public void testMapTemplates_template() throws Exception {
+        TemplateHandler3D th3d = TemplateHandler3D.getInstance();
+        th3d.mapTemplates(new AtomContainer(), 0);
+        for (int i : new int[]{0, 100, th3d.getTemplateCount() - 1}) {
+            IAtomContainer ringSystem = (IAtomContainer) th3d.getTemplateAt(i).clone();
+            for (IAtom atom : ringSystem.atoms()) {
+                atom.setPoint3d(null);
+                atom.setFlag(CDKConstants.ISINRING, true);
+            }
+            th3d.mapTemplates(ringSystem, ringSystem.getAtomCount());
+            for (IAtom atom : ringSystem.atoms())
+                Assert.assertNotNull(atom.getPoint3d());
+            Assert.assertNotNull(th3d.getTemplateAt(i).getAtom(0).getPoint3d());
+        }
+    }
+
 }
@@ -0,0 +1,367 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.formula;
+
+import org.openscience.cdk.config.IsotopeFactory;
+import org.openscience.cdk.config.Isotopes;
+import org.openscience.cdk.interfaces.IIsotope;
+import org.openscience.cdk.interfaces.IMolecularFormula;
+import org.openscience.cdk.interfaces.IMolecularFormulaSet;
+import org.openscience.cdk.tools.Parallel;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Generates the isotope pattern of a molecular formula by convolution of the
+ * isotope distributions of its elements. The distributions are kept as
+ * arrays of masses and abundances, after each convolution peaks closer than
+ * the resolution are merged (to their abundance weighted mass) and peaks
+ * below a small fraction of the most abundant are pruned. The distribution
+ * of n atoms of an element is computed by repeated squaring and cached, a
+ * generator can therefore be reused for many formulas, and from several
+ * threads.
+ *
+ * <blockquote><pre>
+ * BinnedIsotopePatternGenerator generator = new BinnedIsotopePatternGenerator(0.01);
+ * IsotopePattern                pattern   = generator.getIsotopes(formula);
+ *
+ * // the patterns of all candidate formulas of a mass
+ * IMolecularFormulaSet  formulas = new MassToFormulaTool(builder).generate(mass);
+ * List&lt;IsotopePattern&gt; patterns = generator.getIsotopes(formulas, executor);
+ * </pre></blockquote>
+ *
+ * As with the {@link IsotopePatternGenerator} the pattern is sorted by mass,
+ * the intensities are normalized to the most abundant peak and the peaks
+ * below the minimal intensity are removed. The isotopes of an element are
+ * those of its natural distribution, the isotopes of the formula only give
+ * the element and elements without isotope data are ignored.
+ *
+ * @cdk.module formula
+ * @cdk.githash
+ * @cdk.keyword isotope pattern
+ * @see IsotopePatternGenerator
+ * @see IsotopePatternSimilarity
+ */
+public final class BinnedIsotopePatternGenerator {
+
+    /** Peaks below this fraction of the most abundant are pruned after each convolution. */
+    private static final double PRUNE = 1e-6;
+
+    /** Minimum number of formulas in a part of a parallel generation. */
+    private static final int MIN_PART = 16;
+
+    /** Minimal intensity (relative to the most abundant) of a peak in the pattern. */
+    private final double minIntensity;
+
+    /** Peaks closer than the resolution are merged. */
+    private final double resolution;
+
+    private final IsotopeFactory isotopes;
+
+    /** Distributions of n atoms of an element, keyed by symbol and n. */
+    private final ConcurrentMap<String, Distribution> cache = new ConcurrentHashMap<String, Distribution>();
+
+    /**
+     * Create a generator with a minimal intensity of 0.1, the default of the
+     * {@link IsotopePatternGenerator}.
+     */
+    public BinnedIsotopePatternGenerator() {
+        this(0.1);
+    }
+
+    /**
+     * Create a generator with the minimal intensity and peaks merged within
+     * 0.00005 amu, the resolution of the {@link IsotopePatternGenerator}.
+     *
+     * @param minIntensity minimal intensity relative to the most abundant peak
+     */
+    public BinnedIsotopePatternGenerator(double minIntensity) {
+        this(minIntensity, 0.00005);
+    }
+
+    /**
+     * Create a generator with the minimal intensity and resolution.
+     *
+     * @param minIntensity minimal intensity relative to the most abundant peak
+     * @param resolution   peaks closer than this mass (amu) are merged
+     */
+    public BinnedIsotopePatternGenerator(double minIntensity, double resolution) {
+        this.minIntensity = minIntensity;
+        this.resolution = resolution;
+        try {
+            this.isotopes = Isotopes.getInstance();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not load the isotopes: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Generate the isotope pattern of a molecular formula.
+     *
+     * @param formula the molecular formula
+     * @return the isotope pattern, sorted by mass, empty if the formula has no
+     *         (known) elements
+     */
+    public IsotopePattern getIsotopes(IMolecularFormula formula) {
+        // atom count of each element, in a stable order
+        Map<String, Integer> counts = new TreeMap<String, Integer>();
+        for (IIsotope isotope : formula.isotopes()) {
+            Integer count = counts.get(isotope.getSymbol());
+            counts.put(isotope.getSymbol(), (count != null ? count : 0) + formula.getIsotopeCount(isotope));
+        }
+
+        Distribution distribution = null;
+        for (Map.Entry<String, Integer> e : counts.entrySet()) {
+            if (e.getValue() <= 0)
+                continue;
+            Distribution element = distribution(e.getKey(), e.getValue());
+            if (element == null)
+                continue;
+            distribution = distribution == null ? element : convolve(distribution, element);
+        }
+
+        IsotopePattern pattern = new IsotopePattern();
+        if (distribution == null)
+            return pattern;
+
+        double max = 0;
+        for (double abundance : distribution.abundances)
+            max = Math.max(max, abundance);
+        boolean first = true;
+        for (int i = 0; i < distribution.masses.length; i++) {
+            double intensity = distribution.abundances[i] / max;
+            if (intensity < minIntensity)
+                continue;
+            IsotopeContainer container = new IsotopeContainer(distribution.masses[i], intensity);
+            if (first)
+                pattern.setMonoIsotope(container);
+            else
+                pattern.addIsotope(container);
+            first = false;
+        }
+        return pattern;
+    }
+
+    /**
+     * Generate the isotope patterns of the molecular formulas, the formulas
+     * are split into parts which are generated on the executor. The
+     * patterns of the formulas proposed for a mass (e.g. by the {@link
+     * MassToFormulaTool}) can then be scored against a measured pattern with
+     * the {@link IsotopePatternSimilarity}.
+     *
+     * @param formulas the molecular formulas
+     * @param executor runs the parts of the generation
+     * @return the isotope pattern of each formula
+     * @throws InterruptedException the generation was interrupted
+     * @see #getIsotopes(IMolecularFormula)
+     */
+    public List<IsotopePattern> getIsotopes(IMolecularFormulaSet formulas, ExecutorService executor)
+            throws InterruptedException {
+        final IMolecularFormula[] input = new IMolecularFormula[formulas.size()];
+        for (int i = 0; i < input.length; i++)
+            input[i] = formulas.getMolecularFormula(i);
+        final IsotopePattern[] patterns = new IsotopePattern[input.length];
+        Parallel.forRanges(executor, input.length, MIN_PART, new Parallel.Range<Void, RuntimeException>() {
+
+            @Override
+            public Void run(int from, int to) {
+                for (int j = from; j < to; j++)
+                    patterns[j] = getIsotopes(input[j]);
+                return null;
+            }
+        });
+        return Arrays.asList(patterns);
+    }
+
+    /**
+     * The isotope distribution of n atoms of an element, computed by
+     * repeated squaring of the single atom distribution.
+     *
+     * @param symbol element symbol
+     * @param n      number of atoms
+     * @return the distribution, null if there is no isotope data for the
+     *         element
+     */
+    private Distribution distribution(String symbol, int n) {
+        String key = symbol + ':' + n;
+        Distribution distribution = cache.get(key);
+        if (distribution != null)
+            return distribution;
+        if (n == 1) {
+            distribution = natural(symbol);
+            if (distribution == null)
+                return null;
+        } else {
+            Distribution half = distribution(symbol, n / 2);
+            if (half == null)
+                return null;
+            distribution = convolve(half, half);
+            if (n % 2 != 0)
+                distribution = convolve(distribution, distribution(symbol, 1));
+        }
+        Distribution existing = cache.putIfAbsent(key, distribution);
+        return existing != null ? existing : distribution;
+    }
+
+    /**
+     * The natural isotope distribution of an element.
+     *
+     * @param symbol element symbol
+     * @return the distribution, null if there is no isotope data
+     */
+    private Distribution natural(String symbol) {
+        IIsotope[] elementIsotopes = isotopes.getIsotopes(symbol);
+        if (elementIsotopes == null)
+            return null;
+        double[] masses = new double[elementIsotopes.length];
+        double[] abundances = new double[elementIsotopes.length];
+        int n = 0;
+        for (IIsotope isotope : elementIsotopes) {
+            if (isotope.getExactMass() == null || isotope.getNaturalAbundance() == null
+                    || isotope.getNaturalAbundance() <= 0)
+                continue;
+            masses[n] = isotope.getExactMass();
+            abundances[n] = isotope.getNaturalAbundance() / 100;
+            n++;
+        }
+        if (n == 0)
+            return null;
+        return merge(masses, abundances, n);
+    }
+
+    /**
+     * Convolve two distributions, the distribution of the combined atoms.
+     *
+     * @param a a distribution
+     * @param b another distribution
+     * @return the merged and pruned convolution
+     */
+    private Distribution convolve(Distribution a, Distribution b) {
+        int n = a.masses.length * b.masses.length;
+        double[] masses = new double[n];
+        double[] abundances = new double[n];
+        int k = 0;
+        for (int i = 0; i < a.masses.length; i++) {
+            for (int j = 0; j < b.masses.length; j++) {
+                masses[k] = a.masses[i] + b.masses[j];
+                abundances[k] = a.abundances[i] * b.abundances[j];
+                k++;
+            }
+        }
+        return merge(masses, abundances, n);
+    }
+
+    /**
+     * Sort the peaks by mass, merge those within the resolution and prune
+     * those below a fraction of the most abundant.
+     *
+     * @param masses     peak masses
+     * @param abundances peak abundances
+     * @param n          number of peaks
+     * @return the distribution
+     */
+    private Distribution merge(double[] masses, double[] abundances, int n) {
+        sort(masses, abundances, 0, n - 1);
+        double max = 0;
+        int k = 0;
+        for (int i = 0; i < n;) {
+            double first = masses[i];
+            double abundance = 0, weighted = 0;
+            for (; i < n && masses[i] - first < resolution; i++) {
+                abundance += abundances[i];
+                weighted += masses[i] * abundances[i];
+            }
+            masses[k] = weighted / abundance;
+            abundances[k] = abundance;
+            max = Math.max(max, abundance);
+            k++;
+        }
+        int m = 0;
+        for (int i = 0; i < k; i++) {
+            if (abundances[i] >= PRUNE * max) {
+                masses[m] = masses[i];
+                abundances[m] = abundances[i];
+                m++;
+            }
+        }
+        return new Distribution(Arrays.copyOf(masses, m), Arrays.copyOf(abundances, m));
+    }
+
+    /**
+     * Sort the peaks [lo, hi] by mass, a quick sort of the parallel arrays.
+     */
+    private static void sort(double[] masses, double[] abundances, int lo, int hi) {
+        while (hi - lo > 8) {
+            double pivot = masses[(lo + hi) >>> 1];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (masses[i] < pivot)
+                    i++;
+                while (masses[j] > pivot)
+                    j--;
+                if (i <= j)
+                    swap(masses, abundances, i++, j--);
+            }
+            // recurse on the smaller part
+            if (j - lo < hi - i) {
+                sort(masses, abundances, lo, j);
+                lo = i;
+            } else {
+                sort(masses, abundances, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && masses[j - 1] > masses[j]; j--)
+                swap(masses, abundances, j - 1, j);
+        }
+    }
+
+    private static void swap(double[] masses, double[] abundances, int i, int j) {
+        double tmp = masses[i];
+        masses[i] = masses[j];
+        masses[j] = tmp;
+        tmp = abundances[i];
+        abundances[i] = abundances[j];
+        abundances[j] = tmp;
+    }
+
+    /** An isotope distribution, the peaks ordered by mass. */
+    private static final class Distribution {
+
+        private final double[] masses;
+        private final double[] abundances;
+
+        private Distribution(double[] masses, double[] abundances) {
+            this.masses = masses;
+            this.abundances = abundances;
+        }
+    }
+}
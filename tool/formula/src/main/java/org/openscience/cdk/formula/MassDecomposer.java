@@ -0,0 +1,495 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.formula;
+
+import org.openscience.cdk.config.IsotopeFactory;
+import org.openscience.cdk.config.Isotopes;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.formula.rules.ChargeRule;
+import org.openscience.cdk.formula.rules.ElementRule;
+import org.openscience.cdk.formula.rules.IRule;
+import org.openscience.cdk.formula.rules.NitrogenRule;
+import org.openscience.cdk.formula.rules.RDBERule;
+import org.openscience.cdk.formula.rules.ToleranceRangeRule;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.interfaces.IIsotope;
+import org.openscience.cdk.interfaces.IMolecularFormula;
+import org.openscience.cdk.interfaces.IMolecularFormulaSet;
+import org.openscience.cdk.tools.Parallel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Decompose accurate masses into the molecular formulas of a {@link
+ * MolecularFormulaRange}. The isotope masses are scaled to integers and an
+ * extended residue table of the range is computed once on construction, each
+ * mass is then decomposed by the round-robin backtracking of Böcker and
+ * Lipták, the work done is proportional to the number of formulas found
+ * rather than the size of the range. The {@link ElementRule}, {@link
+ * NitrogenRule} and {@link RDBERule} restrictions are tested on the element
+ * counts, only formulas passing them are created. Other rules are validated
+ * on the created formulas, as is the RDBE rule when an element of the range
+ * has several oxidation states.
+ *
+ * <blockquote><pre>
+ * List&lt;IRule&gt;   rules      = ...; // ElementRule, ToleranceRangeRule, RDBERule...
+ * MassDecomposer decomposer = new MassDecomposer(builder, rules);
+ *
+ * IMolecularFormulaSet       formulas = decomposer.decompose(133.004242);
+ * List&lt;IMolecularFormulaSet&gt; peaks    = decomposer.decompose(masses, executor);
+ * </pre></blockquote>
+ *
+ * The restrictions not provided are the defaults of {@link MassToFormulaTool},
+ * C, H, N and O between 0 and 15 atoms, a neutral charge and a tolerance of
+ * 0.05 amu. The formulas of a mass are ordered by the difference to the mass.
+ * An instance is immutable and may decompose masses from several threads.
+ *
+ * @cdk.module formula
+ * @cdk.githash
+ * @see MassToFormulaTool
+ */
+public final class MassDecomposer {
+
+    /**
+     * Factor to scale the exact masses to integers, the precision (1/5963)
+     * has a small relative rounding error for the masses of C, H, N, O, P
+     * and S.
+     */
+    private static final double BLOWUP = 5963.337687;
+
+    /** Elements counted as nitrogen by the nitrogen rule. */
+    private static final List<String> NITROGEN_LIKE = Arrays.asList("N", "Co", "Hg", "Pt", "As");
+
+    /** Largest RDBE accepted by RDBERule.validate, its maximum is not tested. */
+    private static final int MAX_RDBE = 30;
+
+    /** Minimum number of masses in a part of a parallel decomposition. */
+    private static final int MIN_PART = 16;
+
+    private final IChemObjectBuilder builder;
+
+    /** The isotopes of the range ordered by their integer weight. */
+    private final IIsotope[] isotopes;
+    private final double[]   masses;
+    private final long[]     weights;
+
+    /** Minimum count and the maximum count above the minimum of each isotope. */
+    private final int[] min, free;
+
+    /** Exact mass of the minimal formula. */
+    private final double minMass;
+
+    /** Smallest and largest relative rounding error of the integer weights. */
+    private final double minError, maxError;
+
+    /**
+     * Extended residue table, ert[i][r] is the smallest integer mass with
+     * residue r (modulo the first weight) decomposable by the first i+1
+     * isotopes, or Long.MAX_VALUE.
+     */
+    private final long[][] ert;
+
+    private final double tolerance;
+    private final double charge;
+
+    /** Parity of the mass number plus nitrogen count, null if not tested. */
+    private final int[] nitrogen;
+
+    /** Valence minus 2 of each isotope, null if the RDBE is not tested. */
+    private final int[] valence;
+    private final double rdbeMin;
+
+    /** Rules validated on the created formulas. */
+    private final List<IRule> rules;
+
+    /**
+     * Create a decomposer for the restrictions. The {@link ElementRule},
+     * {@link ChargeRule}, {@link ToleranceRangeRule}, {@link NitrogenRule}
+     * and {@link RDBERule} are tested on the element counts, any other rule
+     * is validated on the created formulas.
+     *
+     * @param builder used to create the formulas
+     * @param rules   the restrictions
+     * @throws CDKException an isotope of the range did not have an exact mass
+     */
+    public MassDecomposer(IChemObjectBuilder builder, List<IRule> rules) throws CDKException {
+        this.builder = builder;
+
+        MolecularFormulaRange range = null;
+        double charge = 0.0, tolerance = 0.05;
+        NitrogenRule nitrogenRule = null;
+        RDBERule rdbeRule = null;
+        List<IRule> others = new ArrayList<IRule>();
+        for (IRule rule : rules) {
+            if (rule instanceof ElementRule)
+                range = (MolecularFormulaRange) rule.getParameters()[0];
+            else if (rule instanceof ChargeRule)
+                charge = (Double) rule.getParameters()[0];
+            else if (rule instanceof ToleranceRangeRule)
+                tolerance = (Double) rule.getParameters()[1];
+            else if (rule instanceof NitrogenRule)
+                nitrogenRule = (NitrogenRule) rule;
+            else if (rule instanceof RDBERule)
+                rdbeRule = (RDBERule) rule;
+            else
+                others.add(rule);
+        }
+        if (range == null)
+            range = defaultRange();
+        this.charge = charge;
+        this.tolerance = tolerance;
+
+        // order the isotopes by weight, the lightest is the modulus of the
+        // residue table
+        List<IIsotope> ordered = new ArrayList<IIsotope>();
+        for (IIsotope isotope : range.isotopes()) {
+            if (isotope.getExactMass() == null || isotope.getExactMass() <= 0)
+                throw new CDKException("Isotope " + isotope.getSymbol() + " has no exact mass");
+            ordered.add(isotope);
+        }
+        Collections.sort(ordered, new Comparator<IIsotope>() {
+
+            @Override
+            public int compare(IIsotope a, IIsotope b) {
+                return Double.compare(a.getExactMass(), b.getExactMass());
+            }
+        });
+
+        int k = ordered.size();
+        this.isotopes = ordered.toArray(new IIsotope[k]);
+        this.masses = new double[k];
+        this.weights = new long[k];
+        this.min = new int[k];
+        this.free = new int[k];
+        double minMass = 0, minError = 0, maxError = 0;
+        for (int i = 0; i < k; i++) {
+            masses[i] = isotopes[i].getExactMass();
+            weights[i] = Math.max(1, Math.round(masses[i] * BLOWUP));
+            min[i] = range.getIsotopeCountMin(isotopes[i]);
+            free[i] = range.getIsotopeCountMax(isotopes[i]) - min[i];
+            minMass += min[i] * masses[i];
+            double error = (masses[i] * BLOWUP - weights[i]) / (masses[i] * BLOWUP);
+            minError = Math.min(minError, error);
+            maxError = Math.max(maxError, error);
+        }
+        this.minMass = minMass;
+        this.minError = minError;
+        this.maxError = maxError;
+        this.ert = k > 0 ? residueTable(weights) : new long[0][];
+
+        // nitrogen and RDBE rules are only tested on the counts when all the
+        // isotopes have a mass number and valence respectively
+        int[] nitrogen = nitrogenRule != null ? new int[k] : null;
+        for (int i = 0; nitrogen != null && i < k; i++) {
+            Integer massNumber = isotopes[i].getMassNumber();
+            if (massNumber == null)
+                nitrogen = null;
+            else
+                nitrogen[i] = (massNumber + (NITROGEN_LIKE.contains(isotopes[i].getSymbol()) ? 1 : 0)) & 0x1;
+        }
+        if (nitrogenRule != null && nitrogen == null)
+            others.add(nitrogenRule);
+        this.nitrogen = nitrogen;
+
+        // RDBERule combines the states of elements with several oxidation
+        // states (P, S...) on the whole formula, these are left to the rule
+        int[] valence = rdbeRule != null ? new int[k] : null;
+        for (int i = 0; valence != null && i < k; i++) {
+            int[] states = rdbeRule.getOxidationStates(isotopes[i].getSymbol());
+            if (states == null || states.length != 1)
+                valence = null;
+            else
+                valence[i] = states[0] - 2;
+        }
+        if (rdbeRule != null && valence == null)
+            others.add(rdbeRule);
+        this.valence = valence;
+        this.rdbeMin = rdbeRule != null ? (Double) rdbeRule.getParameters()[0] : 0;
+
+        this.rules = others;
+    }
+
+    /**
+     * The default range of {@link MassToFormulaTool}, C, H, N and O between 0
+     * and 15 atoms.
+     */
+    private static MolecularFormulaRange defaultRange() throws CDKException {
+        MolecularFormulaRange range = new MolecularFormulaRange();
+        try {
+            IsotopeFactory ifac = Isotopes.getInstance();
+            for (String symbol : new String[]{"C", "H", "N", "O"})
+                range.addIsotope(ifac.getMajorIsotope(symbol), 0, 15);
+        } catch (IOException e) {
+            throw new CDKException("Could not load the isotopes: " + e.getMessage(), e);
+        }
+        return range;
+    }
+
+    /**
+     * Compute the extended residue table of the weights, the round-robin
+     * algorithm of Böcker and Lipták.
+     *
+     * @param weights integer weights, the first is the smallest
+     * @return the residue table
+     */
+    private static long[][] residueTable(long[] weights) {
+        int a = (int) weights[0];
+        long[][] ert = new long[weights.length][a];
+        Arrays.fill(ert[0], Long.MAX_VALUE);
+        ert[0][0] = 0;
+        for (int i = 1; i < weights.length; i++) {
+            long[] prev = ert[i - 1], curr = ert[i];
+            long w = weights[i];
+            int d = (int) gcd(a, w);
+            Arrays.fill(curr, Long.MAX_VALUE);
+            for (int p = 0; p < d; p++) {
+                // smallest of the residue class p (modulo d)
+                long n = Long.MAX_VALUE;
+                for (int q = p; q < a; q += d)
+                    n = Math.min(n, prev[q]);
+                if (n == Long.MAX_VALUE)
+                    continue;
+                for (int j = 0; j < a / d; j++) {
+                    n += w;
+                    int r = (int) (n % a);
+                    n = Math.min(n, prev[r]);
+                    curr[r] = n;
+                }
+            }
+        }
+        return ert;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * The molecular formulas with an exact mass within the tolerance of the
+     * mass that pass the restrictions, ordered by the difference to the mass.
+     *
+     * @param mass the mass to decompose
+     * @return the molecular formulas, empty if there are none
+     * @throws CDKException a rule could not be validated
+     */
+    public IMolecularFormulaSet decompose(double mass) throws CDKException {
+        IMolecularFormulaSet formulas = builder.newInstance(IMolecularFormulaSet.class);
+        if (isotopes.length == 0 || mass <= 0)
+            return formulas;
+
+        // the integer masses which may be the remainder (above the minimal
+        // formula) of a formula within the tolerance
+        double lo = (mass - tolerance - minMass) * BLOWUP;
+        double hi = (mass + tolerance - minMass) * BLOWUP;
+        if (hi < 0)
+            return formulas;
+        long from = Math.max(0, (long) Math.ceil(lo * (1 - maxError)) - 1);
+        long to = (long) Math.floor(hi * (1 - minError)) + 1;
+
+        Search search = new Search(mass);
+        int last = isotopes.length - 1;
+        for (long m = from; m <= to; m++) {
+            if (m >= ert[last][(int) (m % weights[0])])
+                decompose(search, m, last);
+        }
+
+        Collections.sort(search.found, new Comparator<Candidate>() {
+
+            @Override
+            public int compare(Candidate a, Candidate b) {
+                return Double.compare(a.difference, b.difference);
+            }
+        });
+        for (Candidate candidate : search.found) {
+            IMolecularFormula formula = builder.newInstance(IMolecularFormula.class);
+            for (int i = 0; i < isotopes.length; i++) {
+                if (candidate.counts[i] > 0)
+                    formula.addIsotope(isotopes[i], candidate.counts[i]);
+            }
+            formula.setCharge((int) Math.round(charge));
+            if (valid(formula))
+                formulas.addMolecularFormula(formula);
+        }
+        return formulas;
+    }
+
+    /**
+     * Decompose each of the masses, the masses are split into parts which are
+     * decomposed on the executor against the same residue table.
+     *
+     * @param masses   the masses to decompose
+     * @param executor runs the parts of the decomposition
+     * @return the molecular formulas of each mass
+     * @throws CDKException         a rule could not be validated
+     * @throws InterruptedException the decomposition was interrupted
+     * @see #decompose(double)
+     */
+    public List<IMolecularFormulaSet> decompose(final double[] masses, ExecutorService executor) throws CDKException,
+            InterruptedException {
+        final IMolecularFormulaSet[] formulas = new IMolecularFormulaSet[masses.length];
+        Parallel.forRanges(executor, masses.length, MIN_PART, new Parallel.Range<Void, CDKException>() {
+
+            @Override
+            public Void run(int from, int to) throws CDKException {
+                for (int j = from; j < to; j++)
+                    formulas[j] = decompose(masses[j]);
+                return null;
+            }
+        });
+        return Arrays.asList(formulas);
+    }
+
+    /**
+     * Find the decompositions of the integer mass by the first i+1 isotopes,
+     * the counts of the isotopes above i are set in the search.
+     *
+     * @param search the current search
+     * @param m      integer mass to decompose
+     * @param i      index of the isotope to count
+     */
+    private void decompose(Search search, long m, int i) {
+        int[] counts = search.counts;
+        if (i == 0) {
+            long n = m / weights[0];
+            if (n <= free[0]) {
+                counts[0] = (int) n;
+                accept(search);
+            }
+            return;
+        }
+        long a = weights[0], w = weights[i];
+        long lcm = a / gcd(a, w) * w;
+        int step = (int) (lcm / w);
+        long[] residues = ert[i - 1];
+        for (int j = 0; j < step && j <= free[i]; j++) {
+            counts[i] = j;
+            long rem = m - j * w;
+            if (rem < 0)
+                break;
+            long lbound = residues[(int) (rem % a)];
+            while (rem >= lbound && counts[i] <= free[i]) {
+                decompose(search, rem, i - 1);
+                rem -= lcm;
+                counts[i] += step;
+            }
+        }
+        counts[i] = 0;
+    }
+
+    /**
+     * Test a decomposition (counts above the minimal formula) against the
+     * tolerance, nitrogen and RDBE restrictions and keep it if it passes.
+     *
+     * @param search the current search
+     */
+    private void accept(Search search) {
+        int[] counts = search.counts;
+        double exact = minMass;
+        for (int i = 0; i < counts.length; i++)
+            exact += counts[i] * masses[i];
+        double difference = Math.abs(search.mass - exact);
+        if (difference >= tolerance)
+            return;
+
+        int total = 0;
+        for (int i = 0; i < counts.length; i++)
+            total += min[i] + counts[i];
+        if (total == 0)
+            return;
+
+        if (nitrogen != null) {
+            int parity = Math.abs(charge) % 2 != 0 ? 1 : 0;
+            for (int i = 0; i < counts.length; i++)
+                parity += nitrogen[i] * (min[i] + counts[i]);
+            if ((parity & 0x1) != 0)
+                return;
+        }
+
+        if (valence != null) {
+            // twice the RDBE, RDBERule.validate accepts min <= RDBE <= 30
+            long rdbe = 2;
+            for (int i = 0; i < counts.length; i++)
+                rdbe += valence[i] * (min[i] + counts[i]);
+            if (rdbe < 2 * rdbeMin || rdbe > 2 * MAX_RDBE)
+                return;
+            // neutral compounds have an integer RDBE, ions a fraction
+            if (((rdbe & 0x1) == 0) != (Math.round(charge) == 0))
+                return;
+        }
+
+        int[] found = new int[counts.length];
+        for (int i = 0; i < counts.length; i++)
+            found[i] = min[i] + counts[i];
+        search.found.add(new Candidate(found, difference));
+    }
+
+    /**
+     * Validate the rules not tested on the counts.
+     *
+     * @param formula a formula
+     * @return the formula passes the rules
+     * @throws CDKException a rule could not be validated
+     */
+    private boolean valid(IMolecularFormula formula) throws CDKException {
+        for (IRule rule : rules) {
+            if (rule.validate(formula) != 1.0)
+                return false;
+        }
+        return true;
+    }
+
+    /** The state of a decomposition. */
+    private final class Search {
+
+        private final double          mass;
+        private final int[]           counts = new int[isotopes.length];
+        private final List<Candidate> found  = new ArrayList<Candidate>();
+
+        private Search(double mass) {
+            this.mass = mass;
+        }
+    }
+
+    /** A formula (isotope counts) and the difference to the mass. */
+    private static final class Candidate {
+
+        private final int[]  counts;
+        private final double difference;
+
+        private Candidate(int[] counts, double difference) {
+            this.counts = counts;
+            this.difference = difference;
+        }
+    }
+}
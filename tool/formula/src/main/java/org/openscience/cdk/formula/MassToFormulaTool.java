@@ -63,6 +63,8 @@ import org.openscience.cdk.tools.manipulator.MolecularFormulaRangeManipulator;
  * 
  * <p>The elements are listed according on difference with the proposed mass.
  * 
+ * <p>To decompose many masses, or masses with a wide element range, the
+ * {@link MassDecomposer} can be used with the same restrictions.
  * 
  * @cdk.module  formula
  * @author      miguelrojasch
@@ -243,6 +243,18 @@ public class RDBERule implements IRule{
 	private int[] getOxidationState(IAtom newAtom) {
 		return oxidationStateTable.get(newAtom.getSymbol());
 	}
+
+	/**
+	 * Get the common oxidation states of an element, as used to calculate
+	 * the RDBE value.
+	 * 
+	 * @param symbol The element symbol
+	 * @return       The oxidation states, null if the element is not known
+	 */
+	public int[] getOxidationStates(String symbol) {
+		int[] states = oxidationStateTable.get(symbol);
+		return states != null ? states.clone() : null;
+	}
 	/**
      * Create the table with the common oxidation states
      */
@@ -0,0 +1,125 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.formula;
+
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.interfaces.IIsotope;
+import org.openscience.cdk.interfaces.IMolecularFormula;
+import org.openscience.cdk.interfaces.IMolecularFormulaSet;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.tools.manipulator.MolecularFormulaManipulator;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @cdk.module test-formula
+ */
+public class BinnedIsotopePatternGeneratorTest {
+
+    private static final IChemObjectBuilder builder = SilentChemObjectBuilder.getInstance();
+
+    @Test public void bromine() throws Exception {
+        IMolecularFormula formula = builder.newInstance(IMolecularFormula.class);
+        formula.addIsotope(builder.newInstance(IIsotope.class, "Br"), 2);
+        IsotopePattern pattern = new BinnedIsotopePatternGenerator(0.1).getIsotopes(formula);
+        assertPattern(pattern, new double[]{157.836669, 159.834630, 161.832580}, new double[]{.512, 1.00, .487});
+        assertThat(pattern.getMonoIsotope(), is(pattern.getIsotope(0)));
+    }
+
+    @Test public void orthinine() throws Exception {
+        IMolecularFormula formula = MolecularFormulaManipulator.getMajorIsotopeMolecularFormula("C5H13N2O2", builder);
+        IsotopePattern pattern = new BinnedIsotopePatternGenerator(0.001).getIsotopes(formula);
+        assertPattern(pattern, new double[]{133.097720, 134.094750, 134.101079, 134.103990, 135.101959, 135.104430},
+                      new double[]{1.00, .006, .054, 0.002, 0.004, 0.001});
+    }
+
+    @Test public void sameAsIsotopePatternGenerator() throws Exception {
+        BinnedIsotopePatternGenerator generator = new BinnedIsotopePatternGenerator(0.01);
+        for (String mf : new String[]{"C41H79N8O3P", "C10", "C20H30Cl2O3", "C6H12O6", "C2H4Br2S"}) {
+            IMolecularFormula formula = MolecularFormulaManipulator.getMajorIsotopeMolecularFormula(mf, builder);
+            IsotopePattern expected = new IsotopePatternGenerator(0.01).getIsotopes(formula);
+            IsotopePattern actual = generator.getIsotopes(formula);
+            assertThat(mf, actual.getNumberOfIsotopes(), is(expected.getNumberOfIsotopes()));
+            for (int i = 0; i < expected.getNumberOfIsotopes(); i++) {
+                assertEquals(expected.getIsotope(i).getMass(), actual.getIsotope(i).getMass(), 0.0001);
+                assertEquals(expected.getIsotope(i).getIntensity(), actual.getIsotope(i).getIntensity(), 0.001);
+            }
+        }
+    }
+
+    /** Large formulas are handled by the cached distributions of each element. */
+    @Test public void largeFormula() throws Exception {
+        IMolecularFormula formula = MolecularFormulaManipulator.getMajorIsotopeMolecularFormula("C254H377N65O75S6",
+                                                                                                  builder);
+        BinnedIsotopePatternGenerator generator = new BinnedIsotopePatternGenerator(0.01, 0.01);
+        IsotopePattern pattern = generator.getIsotopes(formula);
+        double max = 0;
+        for (IsotopeContainer container : pattern.getIsotopes())
+            max = Math.max(max, container.getIntensity());
+        assertEquals(1.0, max, 0.0001);
+        // the monoisotopic peak is not the most abundant
+        assertThat(pattern.getMonoIsotope().getIntensity() < 1.0, is(true));
+        assertEquals(MolecularFormulaManipulator.getTotalExactMass(formula), pattern.getMonoIsotope().getMass(), 0.001);
+    }
+
+    @Test public void batch() throws Exception {
+        MassToFormulaTool tool = new MassToFormulaTool(builder);
+        IMolecularFormulaSet formulas = tool.generate(133.0968);
+        BinnedIsotopePatternGenerator generator = new BinnedIsotopePatternGenerator(0.01);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<IsotopePattern> patterns = generator.getIsotopes(formulas, executor);
+            assertThat(patterns.size(), is(formulas.size()));
+            for (int i = 0; i < formulas.size(); i++) {
+                IsotopePattern expected = generator.getIsotopes(formulas.getMolecularFormula(i));
+                assertThat(patterns.get(i).getNumberOfIsotopes(), is(expected.getNumberOfIsotopes()));
+                for (int j = 0; j < expected.getNumberOfIsotopes(); j++) {
+                    assertThat(patterns.get(i).getIsotope(j).getMass(), is(expected.getIsotope(j).getMass()));
+                    assertThat(patterns.get(i).getIsotope(j).getIntensity(), is(expected.getIsotope(j).getIntensity()));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test public void empty() throws Exception {
+        IMolecularFormula formula = builder.newInstance(IMolecularFormula.class);
+        assertThat(new BinnedIsotopePatternGenerator().getIsotopes(formula).getNumberOfIsotopes(), is(0));
+    }
+
+    private static void assertPattern(IsotopePattern pattern, double[] masses, double[] intensities) {
+        assertThat(pattern.getNumberOfIsotopes(), is(masses.length));
+        for (int i = 0; i < masses.length; i++) {
+            assertEquals(masses[i], pattern.getIsotope(i).getMass(), 0.01);
+            assertEquals(intensities[i], pattern.getIsotope(i).getIntensity(), 0.01);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.formula;
+
+import org.junit.Test;
+import org.openscience.cdk.config.IsotopeFactory;
+import org.openscience.cdk.config.Isotopes;
+import org.openscience.cdk.formula.rules.ElementRule;
+import org.openscience.cdk.formula.rules.IRule;
+import org.openscience.cdk.formula.rules.NitrogenRule;
+import org.openscience.cdk.formula.rules.RDBERule;
+import org.openscience.cdk.formula.rules.ToleranceRangeRule;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.interfaces.IIsotope;
+import org.openscience.cdk.interfaces.IMolecularFormula;
+import org.openscience.cdk.interfaces.IMolecularFormulaSet;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.tools.manipulator.MolecularFormulaManipulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @cdk.module test-formula
+ */
+public class MassDecomposerTest {
+
+    private static final IChemObjectBuilder builder = SilentChemObjectBuilder.getInstance();
+
+    @Test public void defaultRestrictions() throws Exception {
+        MassDecomposer decomposer = new MassDecomposer(builder, Collections.<IRule>emptyList());
+        IMolecularFormulaSet formulas = decomposer.decompose(133.0968);
+        assertThat(strings(formulas), hasItem("C5H13N2O2"));
+        assertThat(strings(formulas), hasItem("C3H11N5O"));
+        assertThat(strings(formulas), is(strings(new MassToFormulaTool(builder).generate(133.0968))));
+    }
+
+    @Test public void orderedByDifference() throws Exception {
+        MassDecomposer decomposer = new MassDecomposer(builder, Collections.<IRule>emptyList());
+        IMolecularFormulaSet formulas = decomposer.decompose(133.0968);
+        double last = 0;
+        for (IMolecularFormula formula : formulas.molecularFormulas()) {
+            double difference = Math.abs(133.0968 - MolecularFormulaManipulator.getTotalExactMass(formula));
+            assertTrue(difference < 0.05);
+            assertTrue(difference >= last);
+            last = difference;
+        }
+    }
+
+    @Test public void minimumCounts() throws Exception {
+        MolecularFormulaRange range = range(new String[]{"C", "H", "N", "O"}, new int[]{5, 10, 1, 2}, new int[]{10, 20, 3, 5});
+        MassDecomposer decomposer = new MassDecomposer(builder, rules(range, 0.01));
+        IMolecularFormulaSet formulas = decomposer.decompose(191.10318196);
+        assertThat(strings(formulas), hasItem("C7H15N2O4"));
+        for (IMolecularFormula formula : formulas.molecularFormulas()) {
+            for (IIsotope isotope : range.isotopes()) {
+                assertTrue(formula.getIsotopeCount(isotope) >= range.getIsotopeCountMin(isotope));
+                assertTrue(formula.getIsotopeCount(isotope) <= range.getIsotopeCountMax(isotope));
+            }
+        }
+    }
+
+    @Test public void fixedRange() throws Exception {
+        List<IRule> rules = rules(range(new String[]{"C", "H", "N", "O"}, new int[]{7, 15, 2, 4}, new int[]{7, 15, 2, 4}), 0.05);
+        MassDecomposer decomposer = new MassDecomposer(builder, rules);
+        assertThat(strings(decomposer.decompose(191.10318196)), is(Collections.singleton("C7H15N2O4")));
+        assertThat(decomposer.decompose(195.0).size(), is(0));
+    }
+
+    /** Rules tested on the counts give the same result as validating the formulas. */
+    @Test public void nitrogenAndRDBE() throws Exception {
+        MolecularFormulaRange range = range(new String[]{"C", "H", "N", "O"}, new int[4], new int[]{30, 50, 5, 8});
+        assertPruned(range, new double[]{137.03807, 188.0711, 250.1423, 301.0876});
+    }
+
+    /** P and S have several oxidation states, the RDBE is combined by the rule. */
+    @Test public void nitrogenAndRDBEWithPAndS() throws Exception {
+        MolecularFormulaRange range = range(new String[]{"C", "H", "N", "O", "P", "S"}, new int[6], new int[]{20, 40, 4, 8, 2, 2});
+        assertPruned(range, new double[]{97.9769, 153.9952, 200.0174, 244.0283, 310.0236});
+    }
+
+    private static void assertPruned(MolecularFormulaRange range, double[] masses) throws Exception {
+        List<IRule> rules = rules(range, 0.01);
+        MassDecomposer all = new MassDecomposer(builder, rules);
+        rules.add(new NitrogenRule());
+        rules.add(new RDBERule());
+        MassDecomposer pruned = new MassDecomposer(builder, rules);
+        NitrogenRule nitrogenRule = new NitrogenRule();
+        RDBERule rdbeRule = new RDBERule();
+        for (double mass : masses) {
+            Set<String> expected = new TreeSet<String>();
+            for (IMolecularFormula formula : all.decompose(mass).molecularFormulas()) {
+                if (nitrogenRule.validate(formula) == 1.0 && rdbeRule.validate(formula) == 1.0)
+                    expected.add(MolecularFormulaManipulator.getString(formula));
+            }
+            assertThat(strings(pruned.decompose(mass)), is(expected));
+        }
+    }
+
+    @Test public void batch() throws Exception {
+        MassDecomposer decomposer = new MassDecomposer(builder, Collections.<IRule>emptyList());
+        double[] masses = new double[100];
+        for (int i = 0; i < masses.length; i++)
+            masses[i] = 50 + 1.5 * i + 0.0123;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<IMolecularFormulaSet> formulas = decomposer.decompose(masses, executor);
+            assertThat(formulas.size(), is(masses.length));
+            for (int i = 0; i < masses.length; i++)
+                assertThat(strings(formulas.get(i)), is(strings(decomposer.decompose(masses[i]))));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test public void nonPositiveMass() throws Exception {
+        MassDecomposer decomposer = new MassDecomposer(builder, Collections.<IRule>emptyList());
+        assertThat(decomposer.decompose(0.0).size(), is(0));
+        assertThat(decomposer.decompose(-10.0).size(), is(0));
+    }
+
+    private static MolecularFormulaRange range(String[] symbols, int[] min, int[] max) throws Exception {
+        IsotopeFactory ifac = Isotopes.getInstance();
+        MolecularFormulaRange range = new MolecularFormulaRange();
+        for (int i = 0; i < symbols.length; i++)
+            range.addIsotope(ifac.getMajorIsotope(symbols[i]), min[i], max[i]);
+        return range;
+    }
+
+    private static List<IRule> rules(MolecularFormulaRange range, double tolerance) throws Exception {
+        List<IRule> rules = new ArrayList<IRule>();
+        IRule elementRule = new ElementRule();
+        elementRule.setParameters(new Object[]{range});
+        rules.add(elementRule);
+        IRule toleranceRule = new ToleranceRangeRule();
+        toleranceRule.setParameters(new Object[]{0.0, tolerance});
+        rules.add(toleranceRule);
+        return rules;
+    }
+
+    private static Set<String> strings(IMolecularFormulaSet formulas) {
+        Set<String> strings = new TreeSet<String>();
+        for (IMolecularFormula formula : formulas.molecularFormulas())
+            strings.add(MolecularFormulaManipulator.getString(formula));
+        return strings;
+    }
+}
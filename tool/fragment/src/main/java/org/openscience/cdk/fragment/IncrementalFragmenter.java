@@ -0,0 +1,648 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.fragment;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.aromaticity.Aromaticity;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.graph.GraphCache;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.ringsearch.RingSearch;
+import org.openscience.cdk.smiles.SmilesGenerator;
+import org.openscience.cdk.tools.CDKHydrogenAdder;
+import org.openscience.cdk.tools.Parallel;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import static org.openscience.cdk.graph.GraphUtil.EdgeToBondMap;
+
+/**
+ * Generate fragments exhaustively, the fragments are the same as those of
+ * the {@link ExhaustiveFragmenter}: the pieces obtained by breaking any
+ * combination of non-ring, non-terminal bonds.
+ *
+ * Rather than splitting containers and perceiving each piece before it is
+ * compared, the molecule is partitioned once into the parts which can not
+ * be split further. These parts form a tree and each fragment is a connected
+ * set of parts, the sets are enumerated incrementally and each set is
+ * hashed on the graph of the input molecule. Sets with the same hash are
+ * compared atom by atom and only one of each distinct set is built as a
+ * container, perceived (atom types, hydrogens and aromaticity) and given a
+ * SMILES. The molecule is not modified.
+ *
+ * <blockquote><pre>
+ * IncrementalFragmenter fragmenter = new IncrementalFragmenter();
+ * fragmenter.generateFragments(molecule);
+ * String[] smiles = fragmenter.getFragments();
+ * </pre></blockquote>
+ *
+ * The unique fragments may also be built in parallel, {@link
+ * #generateFragments(IAtomContainer, ExecutorService)}.
+ *
+ * @cdk.module  fragment
+ * @cdk.githash
+ * @cdk.keyword fragment
+ * @see ExhaustiveFragmenter
+ */
+public class IncrementalFragmenter implements IFragmenter {
+
+    private static final int DEFAULT_MIN_FRAG_SIZE = 6;
+
+    /** Minimum number of fragments built by a task. */
+    private static final int MIN_PART = 16;
+
+    private final Map<String, IAtomContainer> fragMap = new HashMap<String, IAtomContainer>();
+    private final SmilesGenerator             smilesGenerator = SmilesGenerator.unique().aromatic();
+    private int                               minFragSize;
+
+    /**
+     * Instantiate fragmenter with default minimum fragment size.
+     */
+    public IncrementalFragmenter() {
+        this(DEFAULT_MIN_FRAG_SIZE);
+    }
+
+    /**
+     * Instantiate fragmenter with user specified minimum fragment size.
+     *
+     * @param minFragSize the minimum fragment size desired
+     */
+    public IncrementalFragmenter(int minFragSize) {
+        this.minFragSize = minFragSize;
+    }
+
+    /**
+     * Set the minimum fragment size.
+     *
+     * @param minFragSize the smallest size fragment that will be returned
+     */
+    public void setMinimumFragmentSize(int minFragSize) {
+        this.minFragSize = minFragSize;
+    }
+
+    /**
+     * Generate fragments for the input molecule.
+     *
+     * @param atomContainer The input molecule.
+     */
+    @Override
+    public void generateFragments(IAtomContainer atomContainer) throws CDKException {
+        fragMap.clear();
+        Enumeration enumeration = new Enumeration(atomContainer, minFragSize);
+        for (int[] fragment : enumeration.unique())
+            add(build(atomContainer, enumeration, fragment));
+    }
+
+    /**
+     * Generate fragments for the input molecule, the unique fragments are
+     * built and perceived in parts run on the executor.
+     *
+     * @param atomContainer the input molecule
+     * @param executor      runs the parts
+     * @throws CDKException         a fragment could not be perceived
+     * @throws InterruptedException fragmentation was interrupted
+     */
+    public void generateFragments(final IAtomContainer atomContainer, ExecutorService executor) throws CDKException,
+                                                                                                      InterruptedException {
+        fragMap.clear();
+        final Enumeration enumeration = new Enumeration(atomContainer, minFragSize);
+        final List<int[]> fragments = enumeration.unique();
+
+        final Fragment[] results = new Fragment[fragments.size()];
+        Parallel.forRanges(executor, results.length, MIN_PART, new Parallel.Range<Void, CDKException>() {
+
+            @Override
+            public Void run(int from, int to) throws CDKException {
+                for (int i = from; i < to; i++)
+                    results[i] = build(atomContainer, enumeration, fragments.get(i));
+                return null;
+            }
+        });
+
+        // added in order of enumeration, the result does not depend on the parts
+        for (Fragment fragment : results)
+            add(fragment);
+    }
+
+    /**
+     * Get the fragments generated as SMILES strings.
+     *
+     * @return a String[] of the fragments.
+     */
+    @Override
+    public String[] getFragments() {
+        return (new ArrayList<String>(fragMap.keySet())).toArray(new String[0]);
+    }
+
+    /**
+     * Get the fragments generated as {@link IAtomContainer} objects..
+     *
+     * @return a IAtomContainer[] of the fragments.
+     */
+    @Override
+    public IAtomContainer[] getFragmentsAsContainers() {
+        return (new ArrayList<IAtomContainer>(fragMap.values())).toArray(new IAtomContainer[0]);
+    }
+
+    /**
+     * Keep a built fragment unless one with the same SMILES is known, the
+     * hash of the enumeration may give different values for one fragment.
+     */
+    private void add(Fragment fragment) {
+        if (!fragMap.containsKey(fragment.smiles))
+            fragMap.put(fragment.smiles, fragment.container);
+    }
+
+    /**
+     * Build a fragment from copies of the atoms and bonds of the molecule and
+     * perceive it as the {@link ExhaustiveFragmenter} does.
+     *
+     * @param container   the molecule
+     * @param enumeration the enumeration of the molecule's fragments
+     * @param atoms       indices of the atoms of the fragment, ascending
+     * @return the fragment and its SMILES
+     */
+    private Fragment build(IAtomContainer container, Enumeration enumeration, int[] atoms) throws CDKException {
+        IChemObjectBuilder builder = container.getBuilder();
+        EdgeToBondMap bondMap = enumeration.bondMap;
+        int[][] graph = enumeration.graph;
+
+        IAtomContainer fragment = builder.newInstance(IAtomContainer.class);
+        IAtom[] copies = new IAtom[container.getAtomCount()];
+        for (int v : atoms) {
+            try {
+                copies[v] = (IAtom) container.getAtom(v).clone();
+            } catch (CloneNotSupportedException e) {
+                throw new CDKException("could not copy atom", e);
+            }
+            fragment.addAtom(copies[v]);
+        }
+        for (int v : atoms) {
+            for (int w : graph[v]) {
+                if (w < v || copies[w] == null)
+                    continue;
+                IBond bond = bondMap.get(v, w);
+                IBond copy = builder.newInstance(IBond.class, copies[v], copies[w], bond.getOrder());
+                copy.setFlag(CDKConstants.ISAROMATIC, bond.getFlag(CDKConstants.ISAROMATIC));
+                fragment.addBond(copy);
+            }
+        }
+
+        AtomContainerManipulator.clearAtomConfigurations(fragment);
+        for (IAtom atom : fragment.atoms())
+            atom.setImplicitHydrogenCount(null);
+        AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(fragment);
+        CDKHydrogenAdder.getInstance(builder).addImplicitHydrogens(fragment);
+        Aromaticity.cdkLegacy().apply(fragment);
+        return new Fragment(smilesGenerator.create(fragment), fragment);
+    }
+
+    /** A built fragment and its SMILES. */
+    private static final class Fragment {
+
+        private final String         smiles;
+        private final IAtomContainer container;
+
+        private Fragment(String smiles, IAtomContainer container) {
+            this.smiles = smiles;
+            this.container = container;
+        }
+    }
+
+    /**
+     * Enumerates the fragments of a molecule as sets of atom indices.
+     *
+     * The molecule is partitioned into parts joined by the splittable bonds
+     * (non-ring bonds between two non-terminal atoms), each splittable bond is
+     * a bridge so the parts of a connected component form a tree. A fragment
+     * is a connected set of parts other than the whole component, such a set
+     * is the piece obtained by breaking the bonds leaving it, in any order.
+     * The sets are enumerated by extending from the lowest numbered part
+     * (Wernicke's ESU) so each is visited once.
+     */
+    static final class Enumeration {
+
+        private final int[][]       graph;
+        private final EdgeToBondMap bondMap;
+
+        /** The part of each atom, the atoms of each part and the adjacent parts. */
+        private final int[]   part;
+        private final int[][] partAtoms;
+        private final int[][] partAdj;
+
+        /** Number of parts in the component of each part. */
+        private final int[] componentSize;
+
+        /** Atom and bond labels, two sets are compared on these. */
+        private final int[]   atomLabels;
+        private final int[][] bondLabels;
+
+        /** Atom and bond invariants for the hash. */
+        private final long[]   atomSeeds;
+        private final long[][] bondSeeds;
+
+        /** Minimum number of atoms of a fragment. */
+        private final int minAtoms;
+
+        /** The current set of parts. */
+        private final boolean[] inSet;
+        private final int[]     stack;
+
+        /** Scratch space for the hash. */
+        private long[] current, next;
+
+        /** Scratch space for the comparison of two sets. */
+        private final boolean[] inOther, mapped;
+        private final long[]    otherHash;
+        private final int[]     mapping, order, parent;
+
+        /** The kept sets of each hash, a hash may be shared by different sets. */
+        private final Map<Long, List<Candidate>> buckets   = new HashMap<Long, List<Candidate>>();
+        private final List<int[]>                fragments = new ArrayList<int[]>();
+
+        /**
+         * Partition the molecule into parts.
+         *
+         * @param container   the molecule
+         * @param minFragSize minimum number of atoms of a fragment
+         */
+        Enumeration(IAtomContainer container, int minFragSize) {
+            GraphCache cache = GraphCache.of(container);
+            RingSearch ringSearch = cache.ringSearch();
+            this.bondMap = cache.bondMap();
+            this.graph = cache.graph();
+            int n = graph.length;
+
+            // parts are connected by the bonds which can not be split
+            this.part = new int[n];
+            Arrays.fill(part, -1);
+            int nParts = 0;
+            int[] queue = new int[n];
+            for (int v = 0; v < n; v++) {
+                if (part[v] >= 0)
+                    continue;
+                int head = 0, tail = 0;
+                queue[tail++] = v;
+                part[v] = nParts;
+                while (head < tail) {
+                    int u = queue[head++];
+                    for (int w : graph[u]) {
+                        if (part[w] < 0 && !splittable(ringSearch, u, w)) {
+                            part[w] = nParts;
+                            queue[tail++] = w;
+                        }
+                    }
+                }
+                nParts++;
+            }
+
+            int[] nAtoms = new int[nParts], nAdj = new int[nParts];
+            for (int v = 0; v < n; v++) {
+                nAtoms[part[v]]++;
+                for (int w : graph[v])
+                    if (part[w] != part[v]) nAdj[part[v]]++;
+            }
+            this.partAtoms = new int[nParts][];
+            this.partAdj = new int[nParts][];
+            for (int p = 0; p < nParts; p++) {
+                partAtoms[p] = new int[nAtoms[p]];
+                partAdj[p] = new int[nAdj[p]];
+                nAtoms[p] = nAdj[p] = 0;
+            }
+            for (int v = 0; v < n; v++) {
+                partAtoms[part[v]][nAtoms[part[v]]++] = v;
+                for (int w : graph[v])
+                    if (part[w] != part[v]) partAdj[part[v]][nAdj[part[v]]++] = part[w];
+            }
+
+            this.componentSize = new int[nParts];
+            int[] component = new int[nParts];
+            Arrays.fill(component, -1);
+            for (int p = 0; p < nParts; p++) {
+                if (component[p] >= 0)
+                    continue;
+                int head = 0, tail = 0;
+                queue[tail++] = p;
+                component[p] = p;
+                while (head < tail) {
+                    int q = queue[head++];
+                    for (int r : partAdj[q]) {
+                        if (component[r] < 0) {
+                            component[r] = p;
+                            queue[tail++] = r;
+                        }
+                    }
+                }
+                for (int i = 0; i < tail; i++)
+                    componentSize[queue[i]] = tail;
+            }
+
+            // atoms with the same symbol, charge, mass number and hydrogen
+            // count have the same label
+            Map<String, Integer> atomTypes = new HashMap<String, Integer>();
+            this.atomLabels = new int[n];
+            this.bondLabels = new int[n][];
+            this.atomSeeds = new long[n];
+            this.bondSeeds = new long[n][];
+            for (int v = 0; v < n; v++) {
+                IAtom atom = container.getAtom(v);
+                String key = atom.getSymbol() + "," + atom.getFormalCharge() + "," + atom.getMassNumber() + ","
+                        + atom.getImplicitHydrogenCount();
+                Integer label = atomTypes.get(key);
+                if (label == null) atomTypes.put(key, label = atomTypes.size());
+                atomLabels[v] = label;
+                atomSeeds[v] = mix(0xC2B2AE3D27D4EB4FL * (label + 1));
+                bondLabels[v] = new int[graph[v].length];
+                bondSeeds[v] = new long[graph[v].length];
+                for (int i = 0; i < graph[v].length; i++) {
+                    IBond bond = bondMap.get(v, graph[v][i]);
+                    IBond.Order order = bond.getOrder();
+                    bondLabels[v][i] = 2 * (order != null ? order.ordinal() + 1 : 0);
+                    if (bond.getFlag(CDKConstants.ISAROMATIC)) bondLabels[v][i]++;
+                    bondSeeds[v][i] = mix(0x9E3779B97F4A7C15L * (bondLabels[v][i] + 1));
+                }
+            }
+
+            this.minAtoms = Math.max(3, minFragSize);
+            this.inSet = new boolean[nParts];
+            this.stack = new int[nParts];
+            this.current = new long[n];
+            this.next = new long[n];
+            this.inOther = new boolean[n];
+            this.mapped = new boolean[n];
+            this.otherHash = new long[n];
+            this.mapping = new int[n];
+            this.order = new int[n];
+            this.parent = new int[n];
+            Arrays.fill(mapping, -1);
+
+            if (container.getBondCount() < 3)
+                return;
+            int[] extension = new int[n];
+            for (int p = 0; p < nParts; p++) {
+                int len = 0;
+                for (int q : partAdj[p])
+                    if (q > p) extension[len++] = q;
+                inSet[p] = true;
+                stack[0] = p;
+                extend(p, 1, partAtoms[p].length, extension, len);
+                inSet[p] = false;
+            }
+        }
+
+        /**
+         * The distinct fragments, the first set of parts visited of each is
+         * kept. Sets which are only the same fragment after perception (e.g.
+         * different hydrogen counts in the molecule) may both be kept.
+         *
+         * @return the atom indices of the fragments
+         */
+        List<int[]> unique() {
+            return fragments;
+        }
+
+        /**
+         * Visit the current set and extend it with the parts of the
+         * extension, only parts numbered higher than the root are added.
+         *
+         * @param root      the lowest numbered part of the set
+         * @param size      number of parts in the set
+         * @param atoms     number of atoms in the set
+         * @param extension parts which may be added
+         * @param len       number of parts in the extension
+         */
+        private void extend(int root, int size, int atoms, int[] extension, int len) {
+
+            if (atoms >= minAtoms && size < componentSize[root])
+                visit(size, atoms);
+
+            for (int i = 0; i < len; i++) {
+                int q = extension[i];
+                // a tree, so the neighbours of q can not already be adjacent to the set
+                int[] ext = Arrays.copyOfRange(extension, i + 1, len + partAdj[q].length);
+                int extLen = len - i - 1;
+                for (int r : partAdj[q])
+                    if (r > root && !inSet[r]) ext[extLen++] = r;
+                inSet[q] = true;
+                stack[size] = q;
+                extend(root, size + 1, atoms + partAtoms[q].length, ext, extLen);
+                inSet[q] = false;
+            }
+        }
+
+        /**
+         * Hash the atoms of the current set, the set is kept as a fragment
+         * unless a kept set with the same hash has the same atoms and bonds.
+         *
+         * @param size  number of parts in the set
+         * @param atoms number of atoms in the set
+         */
+        private void visit(int size, int atoms) {
+            int[] members = new int[atoms];
+            int k = 0;
+            for (int i = 0; i < size; i++)
+                for (int v : partAtoms[stack[i]])
+                    members[k++] = v;
+
+            for (int v : members)
+                current[v] = atomSeeds[v];
+            // iterate until every atom has seen the whole fragment
+            for (int d = 0; d < atoms; d++) {
+                for (int v : members) {
+                    long sum = 0;
+                    int[] ws = graph[v];
+                    for (int i = 0; i < ws.length; i++)
+                        if (inSet[part[ws[i]]]) sum += mix(current[ws[i]] ^ bondSeeds[v][i]);
+                    next[v] = mix(31 * current[v] + sum);
+                }
+                long[] tmp = current;
+                current = next;
+                next = tmp;
+            }
+            long hash = atoms;
+            int edges = 0;
+            for (int v : members) {
+                hash += mix(current[v]);
+                for (int w : graph[v])
+                    if (inSet[part[w]]) edges++;
+            }
+            edges /= 2;
+
+            // the hash only selects the sets to compare, different sets may
+            // have the same hash (e.g. decalin and bicyclopentyl)
+            List<Candidate> bucket = buckets.get(hash);
+            if (bucket == null) {
+                buckets.put(hash, bucket = new ArrayList<Candidate>(1));
+            } else {
+                for (Candidate candidate : bucket)
+                    if (sameAsCurrent(candidate, members, edges)) return;
+            }
+
+            Arrays.sort(members);
+            long[] hashes = new long[atoms];
+            for (int i = 0; i < atoms; i++)
+                hashes[i] = current[members[i]];
+            bucket.add(new Candidate(members, hashes, edges));
+            fragments.add(members);
+        }
+
+        /**
+         * Is the kept set the same fragment as the current set, there is a
+         * mapping of its atoms to the atoms of the current set which keeps the
+         * atom labels and the bonds. The atom hashes only limit the atoms
+         * which are tried.
+         *
+         * @param other a kept set
+         * @param set   atoms of the current set
+         * @param edges number of bonds in the current set
+         * @return the sets are the same fragment
+         */
+        private boolean sameAsCurrent(Candidate other, int[] set, int edges) {
+            int[] members = other.members;
+            if (other.edges != edges) return false;
+
+            for (int i = 0; i < members.length; i++) {
+                inOther[members[i]] = true;
+                otherHash[members[i]] = other.hashes[i];
+            }
+
+            // breadth first, each atom after the first has a parent before it
+            int head = 0, tail = 0;
+            order[tail++] = members[0];
+            parent[members[0]] = -1;
+            mapped[members[0]] = true;
+            while (head < tail) {
+                int u = order[head++];
+                for (int w : graph[u]) {
+                    if (inOther[w] && !mapped[w]) {
+                        mapped[w] = true;
+                        parent[w] = u;
+                        order[tail++] = w;
+                    }
+                }
+            }
+            for (int i = 0; i < tail; i++)
+                mapped[order[i]] = false;
+
+            boolean same = false;
+            for (int x : set) {
+                if (tryMap(members[0], x, 0, members.length)) {
+                    same = true;
+                    break;
+                }
+            }
+
+            for (int v : members) {
+                if (mapping[v] >= 0) mapped[mapping[v]] = false;
+                inOther[v] = false;
+                mapping[v] = -1;
+            }
+            return same;
+        }
+
+        /**
+         * Extend the mapping of the kept set to the current set with the atom
+         * order[i], it is mapped to a neighbour of the atom its parent is
+         * mapped to (backtracking).
+         *
+         * @param i     index of the next atom in the order
+         * @param atoms number of atoms
+         * @return the mapping could be completed
+         */
+        private boolean map(int i, int atoms) {
+            if (i == atoms) return true;
+            int u = order[i];
+            for (int x : graph[mapping[parent[u]]])
+                if (inSet[part[x]] && tryMap(u, x, i, atoms)) return true;
+            return false;
+        }
+
+        /**
+         * Map the atom u of the kept set to the atom x of the current set if
+         * their labels are the same and the bonds to the atoms mapped so far
+         * are kept, then continue with the next atom.
+         */
+        private boolean tryMap(int u, int x, int i, int atoms) {
+            if (mapped[x] || atomLabels[u] != atomLabels[x] || otherHash[u] != current[x]) return false;
+            int[] ws = graph[u];
+            for (int j = 0; j < ws.length; j++) {
+                int w = ws[j];
+                if (!inOther[w] || mapping[w] < 0) continue;
+                int k = indexOf(graph[x], mapping[w]);
+                if (k < 0 || bondLabels[x][k] != bondLabels[u][j]) return false;
+            }
+            mapping[u] = x;
+            mapped[x] = true;
+            if (map(i + 1, atoms)) return true;
+            mapping[u] = -1;
+            mapped[x] = false;
+            return false;
+        }
+
+        private static int indexOf(int[] vs, int v) {
+            for (int i = 0; i < vs.length; i++)
+                if (vs[i] == v) return i;
+            return -1;
+        }
+
+        /** A kept set, its atoms (ascending), their hashes and number of bonds. */
+        private static final class Candidate {
+
+            private final int[]  members;
+            private final long[] hashes;
+            private final int    edges;
+
+            private Candidate(int[] members, long[] hashes, int edges) {
+                this.members = members;
+                this.hashes = hashes;
+                this.edges = edges;
+            }
+        }
+
+        /**
+         * A bond may be split if it is not in a ring and neither atom is
+         * terminal.
+         */
+        private boolean splittable(RingSearch ringSearch, int u, int w) {
+            return graph[u].length > 1 && graph[w].length > 1 && !ringSearch.cyclic(u, w);
+        }
+
+        /**
+         * Mix the bits of a value (the finaliser of the SplitMix64 generator).
+         */
+        private static long mix(long x) {
+            x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+            x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+            return x ^ (x >>> 31);
+        }
+    }
+}
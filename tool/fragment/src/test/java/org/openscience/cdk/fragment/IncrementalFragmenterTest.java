@@ -0,0 +1,132 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.fragment;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @cdk.module test-fragment
+ */
+public class IncrementalFragmenterTest {
+
+    static SmilesParser smilesParser;
+
+    @BeforeClass
+    public static void setup() {
+        smilesParser = new SmilesParser(SilentChemObjectBuilder.getInstance());
+    }
+
+    @Test public void noSplittableBonds() throws Exception {
+        IncrementalFragmenter fragmenter = new IncrementalFragmenter();
+        fragmenter.generateFragments(smilesParser.parseSmiles("CCC"));
+        assertThat(fragmenter.getFragments().length, is(0));
+        fragmenter.generateFragments(smilesParser.parseSmiles("C1CCCC1"));
+        assertThat(fragmenter.getFragments().length, is(0));
+    }
+
+    @Test public void sideChain() throws Exception {
+        IncrementalFragmenter fragmenter = new IncrementalFragmenter();
+        fragmenter.generateFragments(smilesParser.parseSmiles("C1CCCCC1CC"));
+        assertThat(fragmenter.getFragments(), is(new String[]{"C1CCCCC1"}));
+        fragmenter.generateFragments(smilesParser.parseSmiles("c1ccccc1CC"));
+        assertThat(fragmenter.getFragments(), is(new String[]{"c1ccccc1"}));
+    }
+
+    @Test public void minSize() throws Exception {
+        IncrementalFragmenter fragmenter = new IncrementalFragmenter();
+        fragmenter.setMinimumFragmentSize(6);
+        fragmenter.generateFragments(smilesParser.parseSmiles("C1CCCC1C2CCCCC2"));
+        assertThat(fragmenter.getFragments(), is(new String[]{"C1CCCCC1"}));
+    }
+
+    @Test public void inputNotModified() throws Exception {
+        IAtomContainer mol = smilesParser.parseSmiles("c1ccccc1Cc1ccccc1");
+        IncrementalFragmenter fragmenter = new IncrementalFragmenter();
+        fragmenter.generateFragments(mol);
+        assertThat(fragmenter.getFragmentsAsContainers().length, is(2));
+        assertThat(mol.getAtomCount(), is(13));
+        assertThat(mol.getAtom(6).getImplicitHydrogenCount(), is(2));
+    }
+
+    /** The same fragments as the exhaustive fragmenter. */
+    @Test public void sameAsExhaustive() throws Exception {
+        String[] smis = {"c1ccccc1Cc1ccccc1", "c1ccccc1c1ccccc1", "C1(c2ccccc2)(CC(CC1)CCc1ccccc1)CC1C=CC=C1",
+                "CC(C)Cc1ccc(cc1)C(C)C(=O)O", "CN1C=NC2=C1C(=O)N(C(=O)N2C)C",
+                "COc1ccc2[nH]cc(CCNC(C)=O)c2c1", "O=C(Nc1ccc(OCC)cc1)C.OCC(N)CO"};
+        for (int min : new int[]{3, 6}) {
+            for (String smi : smis) {
+                ExhaustiveFragmenter exhaustive = new ExhaustiveFragmenter(min);
+                exhaustive.generateFragments(smilesParser.parseSmiles(smi));
+                IncrementalFragmenter incremental = new IncrementalFragmenter(min);
+                incremental.generateFragments(smilesParser.parseSmiles(smi));
+                assertThat(smi, set(incremental.getFragments()), is(set(exhaustive.getFragments())));
+                assertThat(incremental.getFragmentsAsContainers().length, is(incremental.getFragments().length));
+            }
+        }
+    }
+
+    /**
+     * Decalin and bicyclopentyl (both fragments) have the same hash, neither
+     * may be lost.
+     */
+    @Test public void sameHash() throws Exception {
+        String smi = "C1CCC2CC(CCC2C1)CC1CCC(C1)C1CCCC1";
+        ExhaustiveFragmenter exhaustive = new ExhaustiveFragmenter();
+        exhaustive.generateFragments(smilesParser.parseSmiles(smi));
+        IncrementalFragmenter incremental = new IncrementalFragmenter();
+        incremental.generateFragments(smilesParser.parseSmiles(smi));
+        assertThat(set(incremental.getFragments()), is(set(exhaustive.getFragments())));
+    }
+
+    @Test public void parallel() throws Exception {
+        IAtomContainer mol = smilesParser.parseSmiles("C1(c2ccccc2)(CC(CC1)CCc1ccccc1)CC1C=CC=C1");
+        IncrementalFragmenter serial = new IncrementalFragmenter();
+        serial.generateFragments(mol);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            IncrementalFragmenter parallel = new IncrementalFragmenter();
+            parallel.generateFragments(mol, executor);
+            assertThat(parallel.getFragments().length, is(25));
+            assertThat(set(parallel.getFragments()), is(set(serial.getFragments())));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Set<String> set(String[] smis) {
+        return new HashSet<String>(Arrays.asList(smis));
+    }
+}
@@ -35,6 +35,7 @@ import org.openscience.cdk.fragment.MurckoFragmenterTest;
 
     MurckoFragmenterTest.class,
     ExhaustiveFragmenterTest.class,
+    IncrementalFragmenterTest.class,
     FragmentUtilsTest.class
 })
 public class MfragmentTests {}
@@ -0,0 +1,480 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.pharmacophore;
+
+import org.openscience.cdk.ConformerContainer;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.geometry.GeometryTools;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.isomorphism.UniversalIsomorphismTester;
+import org.openscience.cdk.smiles.smarts.SmartsScreen;
+import org.openscience.cdk.tools.Parallel;
+
+import javax.vecmath.Point3d;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A pharmacophore query prepared for matching many targets. The SMARTS of
+ * the pharmacophore groups are parsed once (rather than for every target) and
+ * all groups are found with one {@link SmartsScreen}. Before the 3D
+ * isomorphism test, a target is checked against the distance constraints of
+ * the query: for each pair of group labels, the target must have at least as
+ * many pairs of groups at an allowed distance as the query has constraints
+ * between groups with those labels. Most conformers which do not match fail
+ * this check and the isomorphism test is skipped.
+ *
+ * <blockquote><pre>
+ * CompiledPharmacophoreQuery compiled = new CompiledPharmacophoreQuery(query);
+ * ExecutorService            executor = Executors.newFixedThreadPool(4);
+ * for (ConformerContainer conformers : library) {
+ *     BitSet hits = compiled.matches(conformers, executor);
+ * }
+ * </pre></blockquote>
+ *
+ * The compiled query is a snapshot, changes made to the query afterwards are
+ * not seen. It holds no state for a target and may be used from several
+ * threads provided each thread matches different targets. The {@link
+ * PharmacophoreMatcher} uses a compiled query internally.
+ *
+ * @cdk.module pcore
+ * @cdk.githash
+ * @cdk.keyword pharmacophore
+ * @cdk.keyword 3D isomorphism
+ * @see PharmacophoreMatcher
+ */
+public final class CompiledPharmacophoreQuery {
+
+    /** Minimum number of conformers matched by a task. */
+    private static final int MIN_PART = 16;
+
+    private static final String INVALID_QUERY = "A problem in the query. Make sure all pharmacophore groups of the same symbol have the same same SMARTS";
+
+    /** The query. */
+    private final PharmacophoreQuery query;
+
+    /** Symbol and SMARTS of each distinct group, in query order. */
+    private final String[] symbols;
+    private final String[] smarts;
+
+    /**
+     * Group of each pattern of the screen, a group SMARTS may be several
+     * patterns separated by '|'.
+     */
+    private final int[] groupOfPattern;
+
+    /** All group patterns, parsed once. */
+    private final SmartsScreen screen;
+
+    /** Distance constraints as pairs of group indices and the allowed range. */
+    private final int[][] constraintGroups;
+    private final double[] lower;
+    private final double[] upper;
+
+    private final boolean distanceConstraints;
+    private final boolean angleConstraints;
+
+    /**
+     * Compile a pharmacophore query.
+     *
+     * @param query the query
+     * @throws CDKException the query is invalid (groups with the same symbol
+     *                      must have the same SMARTS) or a group SMARTS could
+     *                      not be parsed
+     */
+    public CompiledPharmacophoreQuery(PharmacophoreQuery query) throws CDKException {
+        if (query == null) throw new CDKException("Must set the query pharmacophore before matching");
+        this.query = query;
+
+        Map<String, Integer> groups = new HashMap<String, Integer>();
+        List<String> symbols = new ArrayList<String>();
+        List<String> smarts = new ArrayList<String>();
+        List<String> patterns = new ArrayList<String>();
+        List<Integer> groupOfPattern = new ArrayList<Integer>();
+        for (IAtom atom : query.atoms()) {
+            if (!(atom instanceof PharmacophoreQueryAtom)) throw new CDKException(INVALID_QUERY);
+            PharmacophoreQueryAtom qatom = (PharmacophoreQueryAtom) atom;
+            Integer group = groups.get(qatom.getSymbol());
+            if (group != null) {
+                if (!smarts.get(group).equals(qatom.getSmarts())) throw new CDKException(INVALID_QUERY);
+                continue;
+            }
+            group = symbols.size();
+            groups.put(qatom.getSymbol(), group);
+            symbols.add(qatom.getSymbol());
+            smarts.add(qatom.getSmarts());
+            // the '|' extension, logical or of multi-atom groups
+            for (String subSmarts : qatom.getSmarts().split("\\|")) {
+                patterns.add(subSmarts);
+                groupOfPattern.add(group);
+            }
+        }
+        this.symbols = symbols.toArray(new String[symbols.size()]);
+        this.smarts = smarts.toArray(new String[smarts.size()]);
+        this.groupOfPattern = new int[groupOfPattern.size()];
+        for (int i = 0; i < this.groupOfPattern.length; i++)
+            this.groupOfPattern[i] = groupOfPattern.get(i);
+
+        try {
+            this.screen = SmartsScreen.create(patterns, query.getBuilder());
+        } catch (IOException e) {
+            throw new CDKException("Could not parse the SMARTS of a pharmacophore group: " + e.getMessage(), e);
+        }
+
+        List<int[]> constraintGroups = new ArrayList<int[]>();
+        List<double[]> ranges = new ArrayList<double[]>();
+        boolean angleConstraints = false;
+        for (IBond bond : query.bonds()) {
+            if (bond instanceof PharmacophoreQueryBond) {
+                PharmacophoreQueryBond qbond = (PharmacophoreQueryBond) bond;
+                constraintGroups.add(new int[]{groups.get(qbond.getAtom(0).getSymbol()),
+                                               groups.get(qbond.getAtom(1).getSymbol())});
+                ranges.add(new double[]{qbond.getLower(), qbond.getUpper()});
+            } else if (bond instanceof PharmacophoreQueryAngleBond) {
+                angleConstraints = true;
+            }
+        }
+        this.constraintGroups = constraintGroups.toArray(new int[constraintGroups.size()][]);
+        this.lower = new double[ranges.size()];
+        this.upper = new double[ranges.size()];
+        for (int i = 0; i < ranges.size(); i++) {
+            lower[i] = ranges.get(i)[0];
+            upper[i] = ranges.get(i)[1];
+        }
+        this.distanceConstraints = !constraintGroups.isEmpty();
+        this.angleConstraints = angleConstraints;
+    }
+
+    /**
+     * The query which was compiled.
+     *
+     * @return the query
+     */
+    public PharmacophoreQuery getQuery() {
+        return query;
+    }
+
+    /**
+     * Does the target contain the query pharmacophore.
+     *
+     * @param target the target molecule, must have 3D coordinates
+     * @return the query pharmacophore was found
+     * @throws CDKException the target does not have 3D coordinates
+     */
+    public boolean matches(IAtomContainer target) throws CDKException {
+        if (!GeometryTools.has3DCoordinates(target)) throw new CDKException("Molecule must have 3D coordinates");
+        return matchesGroups(pharmacophoreMolecule(target));
+    }
+
+    /**
+     * Match each conformer of a molecule against the query. The pharmacophore
+     * groups are found once, from the first conformer, and the conformers are
+     * then matched in parallel tasks submitted to the executor.
+     *
+     * @param conformers the conformers of a molecule
+     * @param executor   runs the matching
+     * @return indices of the conformers which contain the query pharmacophore
+     * @throws CDKException         the conformers do not have 3D coordinates
+     * @throws InterruptedException the thread was interrupted waiting for the
+     *                              tasks to complete
+     */
+    public BitSet matches(ConformerContainer conformers, ExecutorService executor) throws CDKException,
+            InterruptedException {
+
+        final BitSet hits = new BitSet();
+        final int n = conformers.size();
+        if (n == 0) return hits;
+
+        IAtomContainer first = conformers.get(0);
+        if (!GeometryTools.has3DCoordinates(first)) throw new CDKException("Molecule must have 3D coordinates");
+        final List<PharmacophoreAtom> groups = groups(first);
+        if (groups.size() < query.getAtomCount()) return hits;
+
+        // the conformers share atoms, their coordinates are read here rather than by the tasks
+        final Point3d[][] coordinates = new Point3d[n][groups.size()];
+        for (int i = 0; i < n; i++) {
+            IAtomContainer conformer = conformers.get(i);
+            for (int j = 0; j < groups.size(); j++)
+                coordinates[i][j] = centroid(conformer, groups.get(j).getMatchingAtoms());
+        }
+
+        final boolean[] matched = new boolean[n];
+        Parallel.forRanges(executor, n, MIN_PART, new Parallel.Range<Void, RuntimeException>() {
+
+            @Override
+            public Void run(int from, int to) {
+                List<PharmacophoreAtom> copies = new ArrayList<PharmacophoreAtom>(groups.size());
+                for (PharmacophoreAtom group : groups)
+                    copies.add(new PharmacophoreAtom(group));
+                IAtomContainer pharmacophoreMolecule = pharmacophoreMolecule(copies);
+                for (int i = from; i < to; i++) {
+                    for (int j = 0; j < copies.size(); j++)
+                        copies.get(j).setPoint3d(coordinates[i][j]);
+                    matched[i] = matchesGroups(pharmacophoreMolecule);
+                }
+                return null;
+            }
+        });
+
+        for (int i = 0; i < n; i++)
+            if (matched[i]) hits.set(i);
+        return hits;
+    }
+
+    /**
+     * Match a pharmacophore molecule (with current coordinates) against the
+     * query.
+     *
+     * @param pharmacophoreMolecule the pharmacophore groups of a target
+     * @return the query pharmacophore was found
+     */
+    private boolean matchesGroups(IAtomContainer pharmacophoreMolecule) {
+        if (pharmacophoreMolecule.getAtomCount() < query.getAtomCount()) return false;
+        if (!feasible(pharmacophoreMolecule)) return false;
+        try {
+            return !new UniversalIsomorphismTester().getSubgraphMaps(pharmacophoreMolecule, query).isEmpty();
+        } catch (CDKException e) {
+            // only thrown for a query which is not a query container
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Check the distance constraints can be satisfied by the pharmacophore
+     * groups of a target. For each pair of group labels the groups at a
+     * distance allowed by a constraint between those labels are counted, a
+     * match of the query needs a different pair of groups for each
+     * constraint. The check is necessary but not sufficient, the isomorphism
+     * test decides if the target actually matches.
+     *
+     * @param pharmacophoreMolecule the pharmacophore groups of a target, with
+     *                              current coordinates
+     * @return the target may match the query
+     */
+    boolean feasible(IAtomContainer pharmacophoreMolecule) {
+        if (!distanceConstraints) return true;
+
+        int natoms = pharmacophoreMolecule.getAtomCount();
+        int ngroups = symbols.length;
+        int[] group = new int[natoms];
+        Point3d[] points = new Point3d[natoms];
+        for (int i = 0; i < natoms; i++) {
+            IAtom atom = pharmacophoreMolecule.getAtom(i);
+            group[i] = groupOf(atom.getSymbol());
+            points[i] = atom.getPoint3d();
+        }
+
+        // number of constraints and of satisfying target pairs for each label pair
+        int[] required = new int[ngroups * ngroups];
+        int[] found = new int[ngroups * ngroups];
+        for (int[] pair : constraintGroups)
+            required[key(pair[0], pair[1], ngroups)]++;
+
+        for (int i = 0; i < natoms; i++) {
+            if (group[i] < 0) continue;
+            for (int j = i + 1; j < natoms; j++) {
+                if (group[j] < 0) continue;
+                int key = key(group[i], group[j], ngroups);
+                if (required[key] == 0 || found[key] >= required[key]) continue;
+                double distance = round(points[i].distance(points[j]));
+                for (int k = 0; k < constraintGroups.length; k++) {
+                    if (key(constraintGroups[k][0], constraintGroups[k][1], ngroups) == key
+                            && distance >= lower[k] && distance <= upper[k]) {
+                        found[key]++;
+                        break;
+                    }
+                }
+            }
+        }
+
+        for (int key = 0; key < required.length; key++)
+            if (found[key] < required[key]) return false;
+        return true;
+    }
+
+    /**
+     * Find the pharmacophore groups of a target and connect them with the
+     * distance and angle constraints, each match of a group SMARTS is a group.
+     *
+     * @param target the target molecule, must have 3D coordinates
+     * @return the pharmacophore molecule
+     * @throws CDKException the aromaticity of the target could not be perceived
+     */
+    IAtomContainer pharmacophoreMolecule(IAtomContainer target) throws CDKException {
+        return pharmacophoreMolecule(groups(target));
+    }
+
+    /**
+     * Find the pharmacophore groups of a target, ordered by group (in query
+     * order) and then by match.
+     *
+     * @param target the target molecule
+     * @return the groups, with the coordinates of the target
+     * @throws CDKException the aromaticity of the target could not be perceived
+     */
+    List<PharmacophoreAtom> groups(IAtomContainer target) throws CDKException {
+        int[][][] matches = screen.uniqueMatches(target);
+        List<PharmacophoreAtom> groups = new ArrayList<PharmacophoreAtom>();
+        for (int i = 0; i < matches.length; i++) {
+            int group = groupOfPattern[i];
+            for (int[] atomIndices : matches[i]) {
+                PharmacophoreAtom patom = new PharmacophoreAtom(smarts[group], symbols[group], centroid(target,
+                        atomIndices));
+                patom.setMatchingAtoms(atomIndices.clone());
+                groups.add(patom);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Connect the pharmacophore groups of a target with the distance and angle
+     * constraints.
+     *
+     * @param groups the pharmacophore groups
+     * @return the pharmacophore molecule
+     */
+    IAtomContainer pharmacophoreMolecule(List<PharmacophoreAtom> groups) {
+        IAtomContainer pharmacophoreMolecule = DefaultChemObjectBuilder.getInstance().newInstance(
+                IAtomContainer.class);
+        for (PharmacophoreAtom patom : groups)
+            pharmacophoreMolecule.addAtom(patom);
+
+        // join all atoms with pcore bonds (i.e. distance constraints)
+        if (distanceConstraints) {
+            int npatom = pharmacophoreMolecule.getAtomCount();
+            for (int i = 0; i < npatom - 1; i++) {
+                for (int j = i + 1; j < npatom; j++) {
+                    PharmacophoreAtom atom1 = (PharmacophoreAtom) pharmacophoreMolecule.getAtom(i);
+                    PharmacophoreAtom atom2 = (PharmacophoreAtom) pharmacophoreMolecule.getAtom(j);
+                    pharmacophoreMolecule.addBond(new PharmacophoreBond(atom1, atom2));
+                }
+            }
+        }
+
+        // if we have angle constraints, generate only the valid
+        // possible angle relationships, rather than all possible
+        if (angleConstraints) {
+            for (IBond bond : query.bonds()) {
+                if (!(bond instanceof PharmacophoreQueryAngleBond)) continue;
+
+                IAtom startQAtom = bond.getAtom(0);
+                IAtom middleQAtom = bond.getAtom(1);
+                IAtom endQAtom = bond.getAtom(2);
+
+                // make a list of the patoms in the target that match
+                // each type of angle atom
+                List<IAtom> startl = new ArrayList<IAtom>();
+                List<IAtom> middlel = new ArrayList<IAtom>();
+                List<IAtom> endl = new ArrayList<IAtom>();
+
+                for (IAtom tatom : pharmacophoreMolecule.atoms()) {
+                    if (tatom.getSymbol().equals(startQAtom.getSymbol())) startl.add(tatom);
+                    if (tatom.getSymbol().equals(middleQAtom.getSymbol())) middlel.add(tatom);
+                    if (tatom.getSymbol().equals(endQAtom.getSymbol())) endl.add(tatom);
+                }
+
+                // now we form the relevant angles, but we will
+                // have reversed repeats
+                List<IAtom[]> tmpl = new ArrayList<IAtom[]>();
+                for (IAtom middle : middlel) {
+                    for (IAtom start : startl) {
+                        if (middle.equals(start)) continue;
+                        for (IAtom end : endl) {
+                            if (start.equals(end) || middle.equals(end)) continue;
+                            tmpl.add(new IAtom[]{start, middle, end});
+                        }
+                    }
+                }
+
+                // now clean up reversed repeats
+                List<IAtom[]> unique = new ArrayList<IAtom[]>();
+                for (int i = 0; i < tmpl.size(); i++) {
+                    IAtom[] seq1 = tmpl.get(i);
+                    boolean isRepeat = false;
+                    for (int j = 0; j < unique.size(); j++) {
+                        if (i == j) continue;
+                        IAtom[] seq2 = unique.get(j);
+                        if (seq1[1] == seq2[1] && seq1[0] == seq2[2] && seq1[2] == seq2[0]) {
+                            isRepeat = true;
+                        }
+                    }
+                    if (!isRepeat) unique.add(seq1);
+                }
+
+                // finally we can add the unique angle to the target
+                for (IAtom[] seq : unique) {
+                    pharmacophoreMolecule.addBond(new PharmacophoreAngleBond((PharmacophoreAtom) seq[0],
+                            (PharmacophoreAtom) seq[1], (PharmacophoreAtom) seq[2]));
+                }
+            }
+        }
+
+        return pharmacophoreMolecule;
+    }
+
+    /**
+     * The effective coordinates of a group, the mean of the coordinates of its
+     * atoms.
+     *
+     * @param target      the target molecule
+     * @param atomIndices the atoms of the group
+     * @return the coordinates of the group
+     */
+    static Point3d centroid(IAtomContainer target, int[] atomIndices) {
+        Point3d ret = new Point3d(0, 0, 0);
+        for (int atomIndex : atomIndices) {
+            Point3d coord = target.getAtom(atomIndex).getPoint3d();
+            ret.x += coord.x;
+            ret.y += coord.y;
+            ret.z += coord.z;
+        }
+        ret.x /= atomIndices.length;
+        ret.y /= atomIndices.length;
+        ret.z /= atomIndices.length;
+        return ret;
+    }
+
+    private int groupOf(String symbol) {
+        for (int i = 0; i < symbols.length; i++)
+            if (symbols[i].equals(symbol)) return i;
+        return -1;
+    }
+
+    private static int key(int a, int b, int ngroups) {
+        return a < b ? a * ngroups + b : b * ngroups + a;
+    }
+
+    /** Distances are compared to the constraints to 2 decimal places. */
+    private static double round(double val) {
+        return (double) Math.round(val * 100) / 100;
+    }
+}
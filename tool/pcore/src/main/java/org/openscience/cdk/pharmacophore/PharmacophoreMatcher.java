@@ -28,10 +28,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
-import javax.vecmath.Point3d;
-
 import org.openscience.cdk.CDKConstants;
-import org.openscience.cdk.DefaultChemObjectBuilder;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.exception.CDKException;
@@ -43,7 +40,6 @@ import org.openscience.cdk.isomorphism.UniversalIsomorphismTester;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
 import org.openscience.cdk.isomorphism.mcss.RMap;
-import org.openscience.cdk.smiles.smarts.SMARTSQueryTool;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 
@@ -152,6 +148,9 @@ public class PharmacophoreMatcher {
 
     private List<HashMap<IBond, IBond>> bondMapHash = null;
 
+    /** The query with parsed group SMARTS, compiled on first use. */
+    private CompiledPharmacophoreQuery compiledQuery = null;
+
     /**
      * An empty constructor.
      * <p/>
@@ -214,17 +213,19 @@ public class PharmacophoreMatcher {
             throw new CDKException("A problem in the query. Make sure all pharmacophore groups of the same symbol have the same same SMARTS");
         String title = (String) atomContainer.getProperty(CDKConstants.TITLE);
 
-        if (initializeTarget) pharmacophoreMolecule = getPharmacophoreMolecule(atomContainer);
-        else {
+        if (compiledQuery == null || compiledQuery.getQuery() != pharmacophoreQuery)
+            compiledQuery = new CompiledPharmacophoreQuery(pharmacophoreQuery);
+
+        if (initializeTarget) {
+            logger.debug("Converting [" + title + "] to a pcore molecule");
+            pharmacophoreMolecule = compiledQuery.pharmacophoreMolecule(atomContainer);
+        } else {
             // even though the atoms comprising the pcore groups are
             // constant, their coords will differ, so we need to make
             // sure we get the latest set of effective coordinates
             for (IAtom iAtom : pharmacophoreMolecule.atoms()) {
                 PharmacophoreAtom patom = (PharmacophoreAtom) iAtom;
-                List<Integer> tmpList = new ArrayList<Integer>();
-                for (int idx : patom.getMatchingAtoms()) tmpList.add(idx);
-                Point3d coords = getEffectiveCoordinates(atomContainer, tmpList);
-                patom.setPoint3d(coords);
+                patom.setPoint3d(CompiledPharmacophoreQuery.centroid(atomContainer, patom.getMatchingAtoms()));
             }
         }
 
@@ -232,6 +233,11 @@ public class PharmacophoreMatcher {
             logger.debug("Target [" + title + "] did not match the query SMARTS. Skipping constraints");
             return false;
         }
+        if (!compiledQuery.feasible(pharmacophoreMolecule)) {
+            logger.debug("Target [" + title + "] can not satisfy the distance constraints");
+            bondMapping = new ArrayList<List<RMap>>();
+            return false;
+        }
         bondMapping = new UniversalIsomorphismTester().getSubgraphMaps(pharmacophoreMolecule, pharmacophoreQuery);
         logger.debug("  Got " + bondMapping.size() + " hits");
         return bondMapping.size() > 0;
@@ -375,173 +381,7 @@ public class PharmacophoreMatcher {
     @TestMethod("testGetterSetter")
     public void setPharmacophoreQuery(PharmacophoreQuery query) {
         pharmacophoreQuery = query;
-    }
-
-    private IAtomContainer getPharmacophoreMolecule(IAtomContainer atomContainer) throws CDKException {
-
-        SMARTSQueryTool sqt = new SMARTSQueryTool("C", atomContainer.getBuilder());
-        IAtomContainer pharmacophoreMolecule = DefaultChemObjectBuilder.getInstance().newInstance(IAtomContainer.class);
-
-        // lets loop over each pcore query atom
-        HashMap<String, String> map = new HashMap<String, String>();
-
-        logger.debug("Converting [" + atomContainer.getProperty(CDKConstants.TITLE) + "] to a pcore molecule");
-
-        for (IAtom atom : pharmacophoreQuery.atoms()) {
-            PharmacophoreQueryAtom qatom = (PharmacophoreQueryAtom) atom;
-            String smarts = qatom.getSmarts();
-
-            // a pcore query might have multiple instances of a given pcore atom (say
-            // 2 hydrophobic groups separated by X unit). In such a case we want to find
-            // the atoms matching the pgroup SMARTS just once, rather than redoing the
-            // matching for each instance of the pcore query atom.
-            if (!map.containsKey(qatom.getSymbol())) map.put(qatom.getSymbol(), smarts);
-            else if (map.get(qatom.getSymbol()).equals(smarts)) {
-                continue;
-            }
-
-            // see if the smarts for this pcore query atom gets any matches
-            // in our query molecule. If so, then cllect each set of
-            // matching atoms and for each set make a new pcore atom and
-            // add it to the pcore atom container object
-
-            // Note that we allow a special form of SMARTS where the | operator
-            // represents logical or of multi-atom groups (as opposed to ','
-            // which is for single atom matches)
-            String[] subSmarts = smarts.split("\\|");
-
-            for (String subSmart : subSmarts) {
-                sqt.setSmarts(subSmart);
-                if (sqt.matches(atomContainer)) {
-                    List<List<Integer>> mappings = sqt.getUniqueMatchingAtoms();
-                    for (List<Integer> atomIndices : mappings) {
-                        Point3d coords = getEffectiveCoordinates(atomContainer, atomIndices);
-                        PharmacophoreAtom patom = new PharmacophoreAtom(smarts, qatom.getSymbol(), coords);
-                        patom.setMatchingAtoms(intIndices(atomIndices));
-                        if (!pharmacophoreMolecule.contains(patom)) pharmacophoreMolecule.addAtom(patom);
-                    }
-                }
-            }
-            logger.debug("\tFound " + sqt.getUniqueMatchingAtoms().size() + " unique matches for " + smarts);
-        }
-
-        // now that we have added all the pcore atoms to the container
-        // we need to join all atoms with pcore bonds   (i.e. distance constraints)
-        if (hasDistanceConstraints(pharmacophoreQuery)) {
-            int npatom = pharmacophoreMolecule.getAtomCount();
-            for (int i = 0; i < npatom - 1; i++) {
-                for (int j = i + 1; j < npatom; j++) {
-                    PharmacophoreAtom atom1 = (PharmacophoreAtom) pharmacophoreMolecule.getAtom(i);
-                    PharmacophoreAtom atom2 = (PharmacophoreAtom) pharmacophoreMolecule.getAtom(j);
-                    PharmacophoreBond bond = new PharmacophoreBond(atom1, atom2);
-                    pharmacophoreMolecule.addBond(bond);
-                }
-            }
-        }
-
-        // if we have angle constraints, generate only the valid
-        // possible angle relationships, rather than all possible
-        if (hasAngleConstraints(pharmacophoreQuery)) {
-            int nangleDefs = 0;
-
-            for (IBond bond : pharmacophoreQuery.bonds()) {
-                if (!(bond instanceof PharmacophoreQueryAngleBond)) continue;
-
-                IAtom startQAtom = bond.getAtom(0);
-                IAtom middleQAtom = bond.getAtom(1);
-                IAtom endQAtom = bond.getAtom(2);
-
-                // make a list of the patoms in the target that match
-                // each type of angle atom
-                List<IAtom> startl = new ArrayList<IAtom>();
-                List<IAtom> middlel = new ArrayList<IAtom>();
-                List<IAtom> endl = new ArrayList<IAtom>();
-
-                for (IAtom tatom : pharmacophoreMolecule.atoms()) {
-                    if (tatom.getSymbol().equals(startQAtom.getSymbol())) startl.add(tatom);
-                    if (tatom.getSymbol().equals(middleQAtom.getSymbol())) middlel.add(tatom);
-                    if (tatom.getSymbol().equals(endQAtom.getSymbol())) endl.add(tatom);
-                }
-
-                // now we form the relevant angles, but we will
-                // have reversed repeats
-                List<IAtom[]> tmpl = new ArrayList<IAtom[]>();
-                for (IAtom middle : middlel) {
-                    for (IAtom start : startl) {
-                        if (middle.equals(start)) continue;
-                        for (IAtom end : endl) {
-                            if (start.equals(end) || middle.equals(end)) continue;
-                            tmpl.add(new IAtom[]{start, middle, end});
-                        }
-                    }
-                }
-
-                // now clean up reversed repeats
-                List<IAtom[]> unique = new ArrayList<IAtom[]>();
-                for (int i = 0; i < tmpl.size(); i++) {
-                    IAtom[] seq1 = tmpl.get(i);
-                    boolean isRepeat = false;
-                    for (int j = 0; j < unique.size(); j++) {
-                        if (i == j) continue;
-                        IAtom[] seq2 = unique.get(j);
-                        if (seq1[1] == seq2[1] && seq1[0] == seq2[2] && seq1[2] == seq2[0]) {
-                            isRepeat = true;
-                        }
-                    }
-                    if (!isRepeat) unique.add(seq1);
-                }
-
-                // finally we can add the unique angle to the target
-                for (IAtom[] seq : unique) {
-                    PharmacophoreAngleBond pbond = new PharmacophoreAngleBond(
-                            (PharmacophoreAtom) seq[0],
-                            (PharmacophoreAtom) seq[1],
-                            (PharmacophoreAtom) seq[2]);
-                    pharmacophoreMolecule.addBond(pbond);
-                    nangleDefs++;
-                }
-
-            }
-            logger.debug("Added " + nangleDefs + " defs to the target pcore molecule");
-        }
-
-
-        return pharmacophoreMolecule;
-    }
-
-    private boolean hasDistanceConstraints(IQueryAtomContainer query) {
-        for (IBond bond : query.bonds()) {
-            if (bond instanceof PharmacophoreQueryBond) return true;
-        }
-        return false;
-    }
-
-    private boolean hasAngleConstraints(IQueryAtomContainer query) {
-        for (IBond bond : query.bonds()) {
-            if (bond instanceof PharmacophoreQueryAngleBond) return true;
-        }
-        return false;
-    }
-
-    private int[] intIndices(List<Integer> atomIndices) {
-        int[] ret = new int[atomIndices.size()];
-        for (int i = 0; i < atomIndices.size(); i++) ret[i] = atomIndices.get(i);
-        return ret;
-    }
-
-    private Point3d getEffectiveCoordinates(IAtomContainer atomContainer, List<Integer> atomIndices) {
-        Point3d ret = new Point3d(0, 0, 0);
-        for (Object atomIndice : atomIndices) {
-            int atomIndex = (Integer) atomIndice;
-            Point3d coord = atomContainer.getAtom(atomIndex).getPoint3d();
-            ret.x += coord.x;
-            ret.y += coord.y;
-            ret.z += coord.z;
-        }
-        ret.x /= atomIndices.size();
-        ret.y /= atomIndices.size();
-        ret.z /= atomIndices.size();
-        return ret;
+        compiledQuery = null;
     }
 
     private List<List<PharmacophoreAtom>> getAtomMappings(List bondMapping, IAtomContainer atomContainer) {
@@ -15,6 +15,7 @@ import org.openscience.cdk.pharmacophore.*;
 @SuiteClasses(value = {
         PcoreCoverageTest.class,
         PharmacophoreMatcherTest.class,
+        CompiledPharmacophoreQueryTest.class,
         PharmacophoreUtilityTest.class,
         PharmacophoreQueryTest.class,
         PharmacophoreQueryBondTest.class,
@@ -0,0 +1,135 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.pharmacophore;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openscience.cdk.ConformerContainer;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.io.iterator.IteratingMDLConformerReader;
+
+import java.io.InputStream;
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @cdk.module test-pcore
+ */
+public class CompiledPharmacophoreQueryTest {
+
+    static ConformerContainer conformers = null;
+
+    @BeforeClass
+    public static void loadConformerData() {
+        String filename = "data/mdl/pcoretest1.sdf";
+        InputStream ins = CompiledPharmacophoreQueryTest.class.getClassLoader().getResourceAsStream(filename);
+        IteratingMDLConformerReader reader = new IteratingMDLConformerReader(ins,
+                DefaultChemObjectBuilder.getInstance());
+        if (reader.hasNext()) conformers = (ConformerContainer) reader.next();
+    }
+
+    @Test
+    public void matchConformers() throws Exception {
+        CompiledPharmacophoreQuery compiled = new CompiledPharmacophoreQuery(query1());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            BitSet expected = new BitSet();
+            for (int i : new int[]{0, 1, 2, 5, 6, 7, 8, 9, 10, 20, 23, 48, 62, 64, 66, 70, 76, 87})
+                expected.set(i);
+            assertThat(compiled.matches(conformers, executor), is(expected));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void sameAsMatcher() throws Exception {
+        PharmacophoreQuery query = query1();
+        CompiledPharmacophoreQuery compiled = new CompiledPharmacophoreQuery(query);
+        PharmacophoreMatcher matcher = new PharmacophoreMatcher(query);
+        for (IAtomContainer conformer : conformers)
+            assertThat(compiled.matches(conformer), is(matcher.matches(conformer)));
+    }
+
+    @Test
+    public void feasibleIfMatched() throws Exception {
+        CompiledPharmacophoreQuery compiled = new CompiledPharmacophoreQuery(query1());
+        int infeasible = 0;
+        for (IAtomContainer conformer : conformers) {
+            boolean feasible = compiled.feasible(compiled.pharmacophoreMolecule(conformer));
+            if (compiled.matches(conformer)) assertThat(feasible, is(true));
+            if (!feasible) infeasible++;
+        }
+        // most of the 100 conformers do not match and are rejected without an isomorphism test
+        assertThat(infeasible > 0, is(true));
+    }
+
+    @Test(expected = CDKException.class)
+    public void invalidQuery() throws Exception {
+        PharmacophoreQuery query = new PharmacophoreQuery();
+        query.addAtom(new PharmacophoreQueryAtom("D", "[OX1]"));
+        query.addAtom(new PharmacophoreQueryAtom("D", "[N]"));
+        new CompiledPharmacophoreQuery(query);
+    }
+
+    @Test(expected = CDKException.class)
+    public void invalidSmarts() throws Exception {
+        PharmacophoreQuery query = new PharmacophoreQuery();
+        query.addAtom(new PharmacophoreQueryAtom("D", "[OX1"));
+        new CompiledPharmacophoreQuery(query);
+    }
+
+    @Test
+    public void noConformers() throws Exception {
+        CompiledPharmacophoreQuery compiled = new CompiledPharmacophoreQuery(query1());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertThat(compiled.matches(new ConformerContainer(), executor).isEmpty(), is(true));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    static PharmacophoreQuery query1() {
+        PharmacophoreQuery query = new PharmacophoreQuery();
+
+        PharmacophoreQueryAtom o = new PharmacophoreQueryAtom("D", "[OX1]");
+        PharmacophoreQueryAtom n1 = new PharmacophoreQueryAtom("A", "[N]");
+        PharmacophoreQueryAtom n2 = new PharmacophoreQueryAtom("A", "[N]");
+
+        query.addAtom(o);
+        query.addAtom(n1);
+        query.addAtom(n2);
+
+        query.addBond(new PharmacophoreQueryBond(o, n1, 4.0, 4.5));
+        query.addBond(new PharmacophoreQueryBond(o, n2, 4.0, 5.0));
+        query.addBond(new PharmacophoreQueryBond(n1, n2, 5.4, 5.8));
+        return query;
+    }
+}
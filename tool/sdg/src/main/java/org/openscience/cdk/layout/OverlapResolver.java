@@ -30,6 +30,11 @@ package org.openscience.cdk.layout;
 
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
 
 import javax.vecmath.Point2d;
@@ -46,7 +51,9 @@ import org.openscience.cdk.tools.LoggingToolFactory;
 
 /**
  * Helper class for Structure Diagram Generation. Resolves atom or bond
- * overlaps after the actual SDG was done
+ * overlaps after the actual SDG was done. Atoms and bonds are indexed on a
+ * {@link SpatialGrid} so that only nearby pairs are compared, when resolving
+ * an overlap the neighbours of the displaced atom are updated incrementally.
  *
  * @author      steinbeck
  * @cdk.created 2003-09-4
@@ -104,6 +111,7 @@ public class OverlapResolver
 	public double displace(IAtomContainer ac, Vector overlappingAtoms, Vector overlappingBonds)
 	{
         double bondLength = GeometryTools.getBondLengthAverage(ac);
+        AtomOverlaps overlaps = new AtomOverlaps(ac);
 
 		OverlapPair op = null;
 		IAtom a1 = null, a2 = null;
@@ -146,15 +154,16 @@ public class OverlapResolver
 			if (choice > 0.5)
 			{
 				a2.getPoint2d().add(v2);
+				overlaps.moved(a2);
 				logger.debug("Random variable: " + choice + ", displacing first atom");
 			}
 			else
 			{
 				a1.getPoint2d().sub(v2);
+				overlaps.moved(a1);
 				logger.debug("Random variable: " + choice + ", displacing second atom");
 			}
-			overlapScore = getOverlapScore(ac, overlappingAtoms
-			, overlappingBonds);
+			overlapScore = overlaps.score(overlappingAtoms);
 			steps ++;
 		}while(overlapScore > 0 && !(steps > maxSteps));
 
@@ -206,25 +215,35 @@ public class OverlapResolver
 	public double getAtomOverlapScore(IAtomContainer ac, Vector overlappingAtoms)
 	{
 		overlappingAtoms.removeAllElements();
-		IAtom atom1 = null;
-		IAtom atom2 = null;
-		Point2d p1 = null;
-		Point2d p2 = null;
-		double distance = 0;
 		double overlapScore = 0;
         double bondLength = GeometryTools.getBondLengthAverage(ac);
 		double overlapCutoff = bondLength / 4;
 		logger.debug("Bond length is set to " + bondLength);
-		logger.debug("Now cyling through all pairs of atoms");
-		for (int f = 0; f < ac.getAtomCount(); f++)
+		if (!(overlapCutoff > 0))
+			return overlapScore;
+		logger.debug("Now cyling through all pairs of nearby atoms");
+		int n = ac.getAtomCount();
+		SpatialGrid grid = new SpatialGrid(overlapCutoff, n);
+		for (int f = 0; f < n; f++)
 		{
-			atom1 = ac.getAtom(f);
-			p1 = atom1.getPoint2d();
-			for (int g = f + 1; g < ac.getAtomCount(); g++)
+			Point2d p = ac.getAtom(f).getPoint2d();
+			grid.add(f, p.x, p.y, p.x, p.y);
+		}
+		int[] nearby = new int[n];
+		for (int f = 0; f < n; f++)
+		{
+			IAtom atom1 = ac.getAtom(f);
+			Point2d p1 = atom1.getPoint2d();
+			int len = grid.query(p1.x - overlapCutoff, p1.y - overlapCutoff,
+			                     p1.x + overlapCutoff, p1.y + overlapCutoff, nearby);
+			Arrays.sort(nearby, 0, len);
+			for (int k = 0; k < len; k++)
 			{
-				atom2 = ac.getAtom(g);
-				p2 = atom2.getPoint2d();
-				distance = p1.distance(p2);
+				int g = nearby[k];
+				if (g <= f)
+					continue;
+				IAtom atom2 = ac.getAtom(g);
+				double distance = p1.distance(atom2.getPoint2d());
 				if (distance < overlapCutoff)
 				{
 					logger.debug("Detected atom clash with distance: " + distance + ", which is smaller than overlapCutoff " + overlapCutoff);
@@ -248,16 +267,31 @@ public class OverlapResolver
 	{
 		overlappingBonds.removeAllElements();
 		double overlapScore = 0;
-		IBond bond1 = null;
-		IBond bond2 = null;
-        double bondLength = GeometryTools.getBondLengthAverage(ac);;
+        double bondLength = GeometryTools.getBondLengthAverage(ac);
 		double overlapCutoff = bondLength / 2;
-		for (int f = 0; f < ac.getBondCount(); f++)
+		int m = ac.getBondCount();
+		// intersecting bonds have overlapping bounding boxes which share a cell
+		SpatialGrid grid = new SpatialGrid(bondLength > 0 ? bondLength : 1, m);
+		for (int f = 0; f < m; f++)
 		{
-			bond1 = ac.getBond(f);
-			for (int g = f; g < ac.getBondCount(); g++)
+			Point2d p1 = ac.getBond(f).getAtom(0).getPoint2d();
+			Point2d p2 = ac.getBond(f).getAtom(1).getPoint2d();
+			grid.add(f, Math.min(p1.x, p2.x), Math.min(p1.y, p2.y), Math.max(p1.x, p2.x), Math.max(p1.y, p2.y));
+		}
+		int[] nearby = new int[m];
+		for (int f = 0; f < m; f++)
+		{
+			IBond bond1 = ac.getBond(f);
+			Point2d p1 = bond1.getAtom(0).getPoint2d();
+			Point2d p2 = bond1.getAtom(1).getPoint2d();
+			int len = grid.query(Math.min(p1.x, p2.x), Math.min(p1.y, p2.y),
+			                     Math.max(p1.x, p2.x), Math.max(p1.y, p2.y), nearby);
+			Arrays.sort(nearby, 0, len);
+			for (int k = 0; k < len; k++)
 			{
-				bond2 = ac.getBond(g);
+				if (nearby[k] <= f)
+					continue;
+				IBond bond2 = ac.getBond(nearby[k]);
 				/* bonds must not be connected */
 				if (!bond1.isConnectedTo(bond2))
 				{
@@ -333,5 +367,234 @@ public class OverlapResolver
 			chemObject2 = co2;
 		}
 	}
+
+	/**
+	 * Overlapping atoms of a container which is modified by moving one atom
+	 * at a time. The pairs of atoms closer than a margin (twice the overlap
+	 * cutoff) are kept and only the pairs of a moved atom are updated. The
+	 * average bond length, and hence the cutoff, is also updated from the
+	 * bonds of the moved atom.
+	 */
+	private final class AtomOverlaps
+	{
+		private final IAtomContainer ac;
+		private final Map<IAtom, Integer> atomIndex = new HashMap<IAtom, Integer>();
+
+		/** Coordinates of each atom when last indexed. */
+		private final double[] x, y;
+
+		/** Bonds of each atom and the atoms and length of each bond. */
+		private final int[][] atomBonds;
+		private final int[] begin, end;
+		private final double[] length;
+		private final boolean[] measured;
+		private double lengthSum;
+		private int lengthCount;
+
+		/** Pairs of atoms closer than the margin. */
+		private SpatialGrid grid;
+		private double margin;
+		private int[][] near;
+		private int[] nearCount;
+		private final Set<Long> nearPairs = new LinkedHashSet<Long>();
+		private final int[] nearby;
+
+		AtomOverlaps(IAtomContainer ac)
+		{
+			this.ac = ac;
+			int n = ac.getAtomCount(), m = ac.getBondCount();
+			x = new double[n];
+			y = new double[n];
+			nearby = new int[n];
+			for (int i = 0; i < n; i++)
+			{
+				IAtom atom = ac.getAtom(i);
+				atomIndex.put(atom, i);
+				x[i] = atom.getPoint2d().x;
+				y[i] = atom.getPoint2d().y;
+			}
+			begin = new int[m];
+			end = new int[m];
+			length = new double[m];
+			measured = new boolean[m];
+			int[] degree = new int[n];
+			for (int j = 0; j < m; j++)
+			{
+				IBond bond = ac.getBond(j);
+				begin[j] = atomIndex.get(bond.getAtom(0));
+				end[j] = atomIndex.get(bond.getAtom(1));
+				degree[begin[j]]++;
+				degree[end[j]]++;
+				// as GeometryTools.getBondLengthAverage
+				if (bond.getAtom(0).getPoint2d() != null && bond.getAtom(1).getPoint2d() != null)
+				{
+					measured[j] = true;
+					length[j] = distance(begin[j], end[j]);
+					lengthSum += length[j];
+					lengthCount++;
+				}
+			}
+			atomBonds = new int[n][];
+			for (int i = 0; i < n; i++)
+				atomBonds[i] = new int[degree[i]];
+			Arrays.fill(degree, 0);
+			for (int j = 0; j < m; j++)
+			{
+				atomBonds[begin[j]][degree[begin[j]]++] = j;
+				atomBonds[end[j]][degree[end[j]]++] = j;
+			}
+			double cutoff = cutoff();
+			if (cutoff > 0)
+				index(2 * cutoff);
+		}
+
+		/**
+		 * Update the coordinates, bond lengths and nearby pairs of an atom
+		 * which was moved.
+		 *
+		 * @param atom the moved atom
+		 */
+		void moved(IAtom atom)
+		{
+			int i = atomIndex.get(atom);
+			double newX = atom.getPoint2d().x, newY = atom.getPoint2d().y;
+			if (grid != null)
+				grid.move(i, x[i], y[i], newX, newY);
+			x[i] = newX;
+			y[i] = newY;
+			for (int j : atomBonds[i])
+			{
+				if (measured[j])
+				{
+					double newLength = distance(begin[j], end[j]);
+					lengthSum += newLength - length[j];
+					length[j] = newLength;
+				}
+			}
+			if (grid == null)
+				return;
+			for (int k = 0; k < nearCount[i]; k++)
+			{
+				int j = near[i][k];
+				removeNear(j, i);
+				nearPairs.remove(key(i, j));
+			}
+			nearCount[i] = 0;
+			findNear(i);
+		}
+
+		/**
+		 * Score the current overlaps as {@link #getAtomOverlapScore} does and
+		 * store the overlapping pairs.
+		 *
+		 * @param overlappingAtoms the overlapping pairs of atoms
+		 * @return the overlap score
+		 */
+		double score(Vector overlappingAtoms)
+		{
+			overlappingAtoms.removeAllElements();
+			double overlapCutoff = cutoff();
+			double overlapScore = 0;
+			if (!(overlapCutoff > 0))
+				return overlapScore;
+			if (grid == null || overlapCutoff >= margin)
+				index(2 * overlapCutoff);
+			long[] keys = new long[nearPairs.size()];
+			int len = 0;
+			for (Long key : nearPairs)
+				keys[len++] = key;
+			Arrays.sort(keys);
+			int n = x.length;
+			for (long key : keys)
+			{
+				int i = (int) (key / n), j = (int) (key % n);
+				if (distance(i, j) < overlapCutoff)
+				{
+					overlapScore += overlapCutoff;
+					overlappingAtoms.addElement(new OverlapPair(ac.getAtom(i), ac.getAtom(j)));
+				}
+			}
+			return overlapScore;
+		}
+
+		/**
+		 * The overlap cutoff, a quarter of the average bond length.
+		 */
+		private double cutoff()
+		{
+			return lengthSum / lengthCount / 4;
+		}
+
+		/**
+		 * Index all atoms and find the pairs closer than a new margin.
+		 *
+		 * @param margin the margin
+		 */
+		private void index(double margin)
+		{
+			int n = x.length;
+			this.margin = margin;
+			this.grid = new SpatialGrid(margin, n);
+			this.near = new int[n][2];
+			this.nearCount = new int[n];
+			this.nearPairs.clear();
+			for (int i = 0; i < n; i++)
+			{
+				findNear(i);
+				grid.add(i, x[i], y[i], x[i], y[i]);
+			}
+		}
+
+		/**
+		 * Find the atoms within the margin of an atom. When indexing, each
+		 * atom is added to the grid after its query so a pair is found once.
+		 *
+		 * @param i the atom index
+		 */
+		private void findNear(int i)
+		{
+			int len = grid.query(x[i] - margin, y[i] - margin, x[i] + margin, y[i] + margin, nearby);
+			for (int k = 0; k < len; k++)
+			{
+				int j = nearby[k];
+				if (j != i && distance(i, j) < margin)
+				{
+					addNear(i, j);
+					addNear(j, i);
+					nearPairs.add(key(i, j));
+				}
+			}
+		}
+
+		private void addNear(int i, int j)
+		{
+			if (nearCount[i] == near[i].length)
+				near[i] = Arrays.copyOf(near[i], 2 * nearCount[i]);
+			near[i][nearCount[i]++] = j;
+		}
+
+		private void removeNear(int i, int j)
+		{
+			for (int k = 0; k < nearCount[i]; k++)
+			{
+				if (near[i][k] == j)
+				{
+					near[i][k] = near[i][--nearCount[i]];
+					return;
+				}
+			}
+		}
+
+		private Long key(int i, int j)
+		{
+			return i < j ? (long) i * x.length + j : (long) j * x.length + i;
+		}
+
+		private double distance(int i, int j)
+		{
+			double dx = x[i] - x[j], dy = y[i] - y[j];
+			return Math.sqrt(dx * dx + dy * dy);
+		}
+	}
 }
 
@@ -0,0 +1,224 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.layout;
+
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.geometry.GeometryTools;
+import org.openscience.cdk.graph.ConnectivityChecker;
+import org.openscience.cdk.graph.GraphCache;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomContainerSet;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.tools.Parallel;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Generates 2D coordinates for many molecules on a worker pool. A {@link
+ * StructureDiagramGenerator} holds the molecule being laid out and so can
+ * only be used by one thread; this class keeps a generator for each running
+ * part of a batch and all generators share one {@link TemplateHandler}, the
+ * templates are loaded once and only read during layout.
+ *
+ * Molecules with several disconnected components (e.g. salts and mixtures)
+ * do not need to be partitioned first: each component is laid out as a
+ * separate task and the components are then placed from left to right.
+ *
+ * <blockquote><pre>
+ * ParallelStructureDiagramGenerator sdg      = new ParallelStructureDiagramGenerator(builder);
+ * ExecutorService                   executor = Executors.newFixedThreadPool(4);
+ * sdg.generateCoordinates(molecules, executor);
+ * </pre></blockquote>
+ *
+ * The coordinates are assigned to the atoms of the provided molecules.
+ *
+ * @cdk.module sdg
+ * @cdk.githash
+ * @see StructureDiagramGenerator
+ */
+public final class ParallelStructureDiagramGenerator {
+
+    /** Minimum number of components in a part of a batch. */
+    private static final int MIN_PART = 16;
+
+    /** Templates shared by all generators. */
+    private final TemplateHandler templateHandler;
+
+    /** Layout options for the generators. */
+    private final boolean useTemplates;
+    private final double  bondLength;
+
+    /** Generators not in use by a part. */
+    private final Queue<StructureDiagramGenerator> idle = new ConcurrentLinkedQueue<StructureDiagramGenerator>();
+
+    /**
+     * Create a generator which uses the default templates and bond length.
+     *
+     * @param builder builder for the templates
+     */
+    public ParallelStructureDiagramGenerator(IChemObjectBuilder builder) {
+        this(new TemplateHandler(builder), true, 1.5);
+    }
+
+    /**
+     * Create a generator with the given options.
+     *
+     * @param templateHandler the templates (may be null if templates are not used)
+     * @param useTemplates    whether ring systems are matched to templates
+     * @param bondLength      the bond length of the layouts
+     */
+    public ParallelStructureDiagramGenerator(TemplateHandler templateHandler, boolean useTemplates, double bondLength) {
+        if (useTemplates && templateHandler == null)
+            throw new IllegalArgumentException("a template handler is required to use templates");
+        this.templateHandler = templateHandler;
+        this.useTemplates = useTemplates;
+        this.bondLength = bondLength;
+    }
+
+    /**
+     * Generate coordinates for a molecule, which may be disconnected. The
+     * components are laid out one after another on the calling thread.
+     *
+     * @param molecule the molecule
+     * @throws CDKException a component could not be laid out
+     */
+    public void generateCoordinates(IAtomContainer molecule) throws CDKException {
+        IAtomContainer[] components = components(molecule);
+        StructureDiagramGenerator sdg = acquire();
+        try {
+            for (IAtomContainer component : components)
+                layout(sdg, component);
+        } finally {
+            idle.add(sdg);
+        }
+        arrange(components);
+    }
+
+    /**
+     * Generate coordinates for a batch of molecules. The molecules are
+     * iterated once, in chunks, and the components of each chunk are laid
+     * out in parts run on the executor.
+     *
+     * @param molecules the molecules, only iterated once
+     * @param executor  runs the parts of the batch
+     * @throws CDKException         a component could not be laid out
+     * @throws InterruptedException the layout was interrupted
+     */
+    public void generateCoordinates(Iterable<IAtomContainer> molecules, ExecutorService executor) throws CDKException,
+                                                                                                        InterruptedException {
+        final int chunkSize = Parallel.maxParts() * MIN_PART;
+        List<IAtomContainer[]> chunk = new ArrayList<IAtomContainer[]>(chunkSize);
+        final List<IAtomContainer> tasks = new ArrayList<IAtomContainer>(chunkSize);
+
+        Iterator<IAtomContainer> it = molecules.iterator();
+        while (it.hasNext()) {
+            chunk.clear();
+            tasks.clear();
+            while (it.hasNext() && tasks.size() < chunkSize) {
+                IAtomContainer[] components = components(it.next());
+                chunk.add(components);
+                for (IAtomContainer component : components)
+                    tasks.add(component);
+            }
+
+            Parallel.forRanges(executor, tasks.size(), MIN_PART, new Parallel.Range<Void, CDKException>() {
+
+                @Override
+                public Void run(int from, int to) throws CDKException {
+                    StructureDiagramGenerator sdg = acquire();
+                    try {
+                        for (int i = from; i < to; i++)
+                            layout(sdg, tasks.get(i));
+                    } finally {
+                        idle.add(sdg);
+                        // the executor's thread does not keep the components
+                        GraphCache.clear();
+                    }
+                    return null;
+                }
+            });
+
+            for (IAtomContainer[] components : chunk)
+                arrange(components);
+        }
+    }
+
+    /**
+     * An idle generator or a new one if all are in use.
+     */
+    private StructureDiagramGenerator acquire() {
+        StructureDiagramGenerator sdg = idle.poll();
+        if (sdg == null) {
+            sdg = new StructureDiagramGenerator();
+            sdg.setTemplateHandler(templateHandler);
+            sdg.setUseTemplates(useTemplates);
+            sdg.setBondLength(bondLength);
+        }
+        return sdg;
+    }
+
+    /**
+     * Lay out a connected component, the coordinates are assigned to the
+     * atoms of the component.
+     */
+    private static void layout(StructureDiagramGenerator sdg, IAtomContainer component) throws CDKException {
+        sdg.setMolecule(component, false);
+        sdg.generateCoordinates();
+    }
+
+    /**
+     * The connected components of a molecule, a connected molecule is its only
+     * component. The components share the atoms and bonds of the molecule.
+     */
+    private static IAtomContainer[] components(IAtomContainer molecule) {
+        if (molecule.getAtomCount() == 0)
+            return new IAtomContainer[0];
+        if (GraphCache.of(molecule).components().nComponents() == 1)
+            return new IAtomContainer[]{molecule};
+        IAtomContainerSet set = ConnectivityChecker.partitionIntoMolecules(molecule);
+        IAtomContainer[] components = new IAtomContainer[set.getAtomContainerCount()];
+        for (int i = 0; i < components.length; i++)
+            components[i] = set.getAtomContainer(i);
+        return components;
+    }
+
+    /**
+     * Place the laid out components of a molecule from left to right with a
+     * gap of two bond lengths, the components are centred vertically.
+     */
+    private void arrange(IAtomContainer[] components) {
+        if (components.length < 2)
+            return;
+        double x = 0;
+        for (IAtomContainer component : components) {
+            double[] minmax = GeometryTools.getMinMax(component);
+            GeometryTools.translate2D(component, x - minmax[0], -(minmax[1] + minmax[3]) / 2);
+            x += minmax[2] - minmax[0] + 2 * bondLength;
+        }
+    }
+}
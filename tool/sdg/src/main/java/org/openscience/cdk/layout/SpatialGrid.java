@@ -0,0 +1,266 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.layout;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A uniform grid over the 2D plane which indexes objects (atoms or bonds) by
+ * their index. An object is stored in every cell its bounding box overlaps
+ * and a query returns the objects stored in the cells overlapping the query
+ * box, a superset of the objects whose boxes intersect the query. Only the
+ * occupied cells are kept and objects can be moved incrementally, the grid
+ * is therefore suited to repeated proximity checks of a layout where atoms
+ * are displaced one at a time. Objects which would span many cells (e.g. a
+ * very long bond) are not stored in the cells and are reported by every
+ * query.
+ *
+ * <blockquote><pre>
+ * SpatialGrid grid = new SpatialGrid(cutoff, n);
+ * for (int i = 0; i &lt; n; i++)
+ *     grid.add(i, x[i], y[i], x[i], y[i]);
+ * int[] buffer = new int[n];
+ * int   len    = grid.query(x0 - cutoff, y0 - cutoff, x0 + cutoff, y0 + cutoff, buffer);
+ * </pre></blockquote>
+ *
+ * @cdk.module sdg
+ * @cdk.githash
+ * @see OverlapResolver
+ */
+final class SpatialGrid {
+
+    /** Objects spanning more cells than this are reported by every query. */
+    private static final int MAX_CELLS = 64;
+
+    /** Width and height of a cell. */
+    private final double size;
+
+    /** The indices of the objects in each occupied cell, the first value is the count. */
+    private final Map<Long, int[]> cells = new HashMap<Long, int[]>();
+
+    /** Objects which span too many cells, the first value is the count. */
+    private int[] large = new int[4];
+
+    /** Marks the objects already reported by the current query. */
+    private final int[] marks;
+    private int         stamp;
+
+    /**
+     * Create an empty grid.
+     *
+     * @param size     width and height of the cells
+     * @param capacity objects are indexed from 0 to capacity - 1
+     * @throws IllegalArgumentException the size was not positive
+     */
+    SpatialGrid(double size, int capacity) {
+        if (!(size > 0) || Double.isInfinite(size))
+            throw new IllegalArgumentException("cell size must be positive: " + size);
+        this.size = size;
+        this.marks = new int[capacity];
+    }
+
+    /**
+     * The width and height of the cells.
+     *
+     * @return cell size
+     */
+    double size() {
+        return size;
+    }
+
+    /**
+     * Add an object to the cells overlapping its bounding box.
+     *
+     * @param id   index of the object
+     * @param minX minimum x of the box
+     * @param minY minimum y of the box
+     * @param maxX maximum x of the box
+     * @param maxY maximum y of the box
+     */
+    void add(int id, double minX, double minY, double maxX, double maxY) {
+        int x0 = cell(minX), x1 = cell(maxX), y0 = cell(minY), y1 = cell(maxY);
+        if (isLarge(x0, y0, x1, y1)) {
+            if (large[0] + 1 == large.length)
+                large = Arrays.copyOf(large, 2 * large.length);
+            large[++large[0]] = id;
+            return;
+        }
+        for (int x = x0; x <= x1; x++) {
+            for (int y = y0; y <= y1; y++) {
+                Long key = key(x, y);
+                int[] ids = cells.get(key);
+                if (ids == null)
+                    cells.put(key, ids = new int[4]);
+                else if (ids[0] + 1 == ids.length)
+                    cells.put(key, ids = Arrays.copyOf(ids, 2 * ids.length));
+                ids[++ids[0]] = id;
+            }
+        }
+    }
+
+    /**
+     * Remove an object from the cells overlapping its bounding box, the box
+     * must be the one the object was added with.
+     *
+     * @param id   index of the object
+     * @param minX minimum x of the box
+     * @param minY minimum y of the box
+     * @param maxX maximum x of the box
+     * @param maxY maximum y of the box
+     */
+    void remove(int id, double minX, double minY, double maxX, double maxY) {
+        int x0 = cell(minX), x1 = cell(maxX), y0 = cell(minY), y1 = cell(maxY);
+        if (isLarge(x0, y0, x1, y1)) {
+            remove(large, id);
+            return;
+        }
+        for (int x = x0; x <= x1; x++) {
+            for (int y = y0; y <= y1; y++) {
+                Long key = key(x, y);
+                int[] ids = cells.get(key);
+                if (ids == null)
+                    continue;
+                remove(ids, id);
+                if (ids[0] == 0)
+                    cells.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Move a point object, the cells are only updated if the point moved to
+     * another cell.
+     *
+     * @param id   index of the object
+     * @param x    previous x
+     * @param y    previous y
+     * @param newX new x
+     * @param newY new y
+     */
+    void move(int id, double x, double y, double newX, double newY) {
+        if (cell(x) == cell(newX) && cell(y) == cell(newY))
+            return;
+        remove(id, x, y, x, y);
+        add(id, newX, newY, newX, newY);
+    }
+
+    /**
+     * Find the objects in the cells overlapping the query box. Each object is
+     * reported once, in no particular order.
+     *
+     * @param minX minimum x of the query
+     * @param minY minimum y of the query
+     * @param maxX maximum x of the query
+     * @param maxY maximum y of the query
+     * @param dest destination for the object indices, must have space for
+     *             all objects
+     * @return the number of objects found
+     */
+    int query(double minX, double minY, double maxX, double maxY, int[] dest) {
+        if (++stamp == 0) {
+            Arrays.fill(marks, 0);
+            stamp = 1;
+        }
+        int x0 = cell(minX), x1 = cell(maxX), y0 = cell(minY), y1 = cell(maxY);
+        int len = collect(large, dest, 0);
+        if (isLarge(x0, y0, x1, y1)) {
+            for (int[] ids : cells.values())
+                len = collect(ids, dest, len);
+            return len;
+        }
+        for (int x = x0; x <= x1; x++) {
+            for (int y = y0; y <= y1; y++) {
+                int[] ids = cells.get(key(x, y));
+                if (ids != null)
+                    len = collect(ids, dest, len);
+            }
+        }
+        return len;
+    }
+
+    /**
+     * Copy the unmarked objects of a cell to the destination.
+     *
+     * @param ids  objects of a cell, the first value is the count
+     * @param dest destination
+     * @param len  number of objects already in the destination
+     * @return new number of objects in the destination
+     */
+    private int collect(int[] ids, int[] dest, int len) {
+        for (int i = 1; i <= ids[0]; i++) {
+            int id = ids[i];
+            if (marks[id] != stamp) {
+                marks[id] = stamp;
+                dest[len++] = id;
+            }
+        }
+        return len;
+    }
+
+    /**
+     * Remove an object from a cell.
+     *
+     * @param ids objects of a cell, the first value is the count
+     * @param id  the object to remove
+     */
+    private static void remove(int[] ids, int id) {
+        for (int i = 1; i <= ids[0]; i++) {
+            if (ids[i] == id) {
+                ids[i] = ids[ids[0]--];
+                return;
+            }
+        }
+    }
+
+    /**
+     * Does a box spanning the given cells cover too many cells to be stored
+     * (or scanned) cell by cell.
+     */
+    private static boolean isLarge(int x0, int y0, int x1, int y1) {
+        long width = (long) x1 - x0 + 1, height = (long) y1 - y0 + 1;
+        return width > MAX_CELLS || height > MAX_CELLS || width * height > MAX_CELLS;
+    }
+
+    /**
+     * The cell column or row of a coordinate.
+     *
+     * @param v x or y coordinate
+     * @return cell column or row
+     */
+    private int cell(double v) {
+        return (int) Math.floor(v / size);
+    }
+
+    /**
+     * Key of the cell at column x and row y.
+     *
+     * @param x column
+     * @param y row
+     * @return the key
+     */
+    private static Long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+}
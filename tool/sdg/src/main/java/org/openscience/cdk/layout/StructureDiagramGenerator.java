@@ -116,20 +116,19 @@ public class StructureDiagramGenerator
 	public StructureDiagramGenerator(IAtomContainer molecule) {
 		this();
 		setMolecule(molecule, false);
-		templateHandler = new TemplateHandler(molecule.getBuilder());
 	}
 
 
 
 	/**
 	 *  Assings a molecule to be layed out. Call generateCoordinates() to do the
-	 *  actual layout.
+	 *  actual layout. If templates are used they are loaded for the first
+	 *  molecule laid out and reused for the following ones.
 	 *
 	 *  @param  mol    the molecule for which coordinates are to be generated.
 	 *  @param  clone  Should the whole process be performed with a cloned copy?
 	 */
 	public void setMolecule(IAtomContainer mol, boolean clone) {
-		templateHandler = new TemplateHandler(mol.getBuilder());
 		IAtom atom = null;
 		if (clone)
 		{
@@ -183,7 +182,9 @@ public class StructureDiagramGenerator
 
 
 	/**
-	 *  Sets the templateHandler attribute of the StructureDiagramGenerator object
+	 *  Sets the templateHandler attribute of the StructureDiagramGenerator object.
+	 *  A single handler may be shared by several generators, the templates
+	 *  are then only loaded once.
 	 *
 	 *  @param  templateHandler  The new templateHandler value
 	 */
@@ -194,12 +195,18 @@ public class StructureDiagramGenerator
 
 
 	/**
-	 *  Gets the templateHandler attribute of the StructureDiagramGenerator object
+	 *  Gets the templateHandler attribute of the StructureDiagramGenerator object.
+	 *  If none has been set, a handler is created for the builder of the
+	 *  current molecule the first time it is needed.
 	 *
 	 *  @return    The templateHandler value
 	 */
 	public TemplateHandler getTemplateHandler()
 	{
+		if (templateHandler == null && molecule != null)
+		{
+			templateHandler = new TemplateHandler(molecule.getBuilder());
+		}
 		if (templateHandler == null)
 		{
 			return DEFAULT_TEMPLATE_HANDLER;
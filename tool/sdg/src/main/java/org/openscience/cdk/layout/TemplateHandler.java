@@ -29,9 +29,10 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.vecmath.Point2d;
 
@@ -39,15 +40,19 @@ import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.graph.GraphUtil.EdgeToBondMap;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IAtomContainerSet;
-import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.interfaces.IChemFile;
 import org.openscience.cdk.interfaces.IChemObjectBuilder;
 import org.openscience.cdk.io.CMLReader;
-import org.openscience.cdk.isomorphism.UniversalIsomorphismTester;
-import org.openscience.cdk.isomorphism.mcss.RMap;
+import org.openscience.cdk.isomorphism.AtomMatcher;
+import org.openscience.cdk.isomorphism.BondMatcher;
+import org.openscience.cdk.isomorphism.Pattern;
+import org.openscience.cdk.isomorphism.PreparedTarget;
+import org.openscience.cdk.isomorphism.VentoFoggia;
+import org.openscience.cdk.ringsearch.RingSearch;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
@@ -58,6 +63,15 @@ import org.openscience.cdk.tools.manipulator.ChemFileManipulator;
  * our layout solution for ring systems which are notoriously difficult to
  * layout, like cubane, adamantane, porphyrin, etc.
  *
+ * <p>The matching patterns of each template are compiled when the template is
+ * added. A molecule is described once per call by its atom and bond counts
+ * and a ring-system fingerprint (cyclic bond count, largest ring system and
+ * the number of atoms with at least a given (ring) degree) and only the
+ * templates which could be contained in the molecule are matched. The
+ * templates are not modified by the mapping methods and a handler can be
+ * shared between several {@link StructureDiagramGenerator}s, including
+ * generators running on different threads.
+ *
  * @author       steinbeck
  * @cdk.created  2003-09-04
  * @cdk.keyword  layout
@@ -74,9 +88,7 @@ public class TemplateHandler
 	private static ILoggingTool logger =
 	    LoggingToolFactory.createLoggingTool(TemplateHandler.class);
 
-	private List<IAtomContainer> templates = null;
-
-	private UniversalIsomorphismTester universalIsomorphismTester = new UniversalIsomorphismTester();
+	private final List<Template> templates = new CopyOnWriteArrayList<Template>();
 
 
 	/**
@@ -85,7 +97,6 @@ public class TemplateHandler
 	@TestMethod("testInit")
 	public TemplateHandler(IChemObjectBuilder builder)
 	{
-		templates = new ArrayList<IAtomContainer>();
 		loadTemplates(builder);
 	}
 
@@ -114,7 +125,7 @@ public class TemplateHandler
 					IChemFile file = (IChemFile) structureReader.read(builder.newInstance(IChemFile.class));
 					List<IAtomContainer> files = ChemFileManipulator.getAllAtomContainers(file);
 					for (int i = 0; i < files.size(); i++)
-						templates.add(anonymousTemplate(files.get(i)));
+						templates.add(new Template(anonymousTemplate(files.get(i))));
 					logger.debug("Successfully read template ", line);
 				} catch (CDKException cdke) {
 				    logger.warn("Could not read template ", line, ", reason: ", cdke.getMessage());
@@ -153,126 +164,100 @@ public class TemplateHandler
 	 */
 	@TestMethod("testAddMolecule")
 	public void addMolecule(IAtomContainer molecule) {
-		templates.add(anonymousTemplate(molecule));
+		templates.add(new Template(anonymousTemplate(molecule)));
 	}
 
-	@TestMethod("testRemoveMolecule")
-	public IAtomContainer removeMolecule(IAtomContainer molecule) throws CDKException {
-		IAtomContainer ac1 = molecule.getBuilder().newInstance(IAtomContainer.class,molecule);
-		IAtomContainer ac2 = null;
-		IAtomContainer mol2 = null;
-		for (int f = 0; f < templates.size(); f++)
-		{
-			mol2 = templates.get(f);
-			ac2 = molecule.getBuilder().newInstance(IAtomContainer.class,mol2);
-			if (new UniversalIsomorphismTester().isIsomorph(anonymousTemplate(ac1), ac2)) {
-				templates.remove(f);
-				return mol2;
-			}
-		}
-		return null;
-	}
+    /**
+     * Removes the first template with the same connectivity as the given
+     * molecule.
+     *
+     * @param molecule the molecule to remove
+     * @return the removed template, null if no template matched
+     * @throws CDKException not thrown
+     */
+    @TestMethod("testRemoveMolecule")
+    public IAtomContainer removeMolecule(IAtomContainer molecule) throws CDKException {
+        PreparedTarget target = new PreparedTarget(molecule);
+        Features features = new Features(target);
+        for (Template template : templates) {
+            if (template.features.sameAs(features) && template.identical.matchAll(target).atLeast(1)) {
+                templates.remove(template);
+                return template.container;
+            }
+        }
+        return null;
+    }
 
-	
-	/**
-	 * Checks if one of the loaded templates is isomorph to the given
-	 * Molecule. If so, it assigns the coordinates from the template to the
-	 * respective atoms in the Molecule, and marks the atoms as ISPLACED.
-	 *
-	 * @param  molecule  The molecule to be check for potential templates
-	 * @return           True if there was a possible mapping
-	 */
-	public boolean mapTemplateExact(IAtomContainer molecule) throws CDKException {
-				logger.debug("Trying to map a molecule...");
-		boolean mapped = false;
-		IAtomContainer template = null;
-		RMap map = null;
-		IAtom atom1 = null;
-		IAtom atom2 = null;
-        
-        // We could also use any atom/bond query container but would required
-        // depending on 'cdk-isomorphism'. Instead we can anonymise the
-        // container to all singly bonded carbons.
-        IAtomContainer anonymised = AtomContainerManipulator.anonymise(molecule);
-
-		for (int f = 0; f < templates.size(); f++)
-		{
-			template = templates.get(f);
-            if (new UniversalIsomorphismTester().isIsomorph(anonymised, template))
-			{
-				List<RMap> list = universalIsomorphismTester.getIsomorphAtomsMap(
-					molecule.getBuilder().newInstance(IAtomContainer.class,anonymised),
-					molecule.getBuilder().newInstance(IAtomContainer.class,template)
-				);
-				logger.debug("Found a subgraph mapping of size " + list.size() + ", template: " + template.getID());
-				for (int i = 0; i < list.size(); i++)
-				{
-					map = list.get(i);
-					atom1 = molecule.getAtom(anonymised.getAtomNumber(anonymised.getAtom(map.getId1())));
-					atom2 = template.getAtom(map.getId2());
-					atom1.setPoint2d(new Point2d(atom2.getPoint2d()));
-					atom1.setFlag(CDKConstants.ISPLACED, true);
-				}
-				mapped = true;
-			} else {
-				logger.debug("Structure does not match template: ", template.getID());
-			}
-		}
-		return mapped;
-	}
+    /**
+     * Checks if one of the loaded templates is isomorph to the given
+     * Molecule. If so, it assigns the coordinates from the template to the
+     * respective atoms in the Molecule, and marks the atoms as ISPLACED.
+     *
+     * @param  molecule  The molecule to be check for potential templates
+     * @return           True if there was a possible mapping
+     */
+    public boolean mapTemplateExact(IAtomContainer molecule) throws CDKException {
+        logger.debug("Trying to map a molecule...");
+        boolean mapped = false;
+        PreparedTarget target = new PreparedTarget(molecule);
+        Features features = new Features(target);
+        for (Template template : templates) {
+            int[] mapping = template.features.sameAs(features) ? template.identical.matchAll(target).first()
+                                                               : new int[0];
+            if (mapping.length > 0) {
+                logger.debug("Found a subgraph mapping of size " + mapping.length + ", template: " + template.container.getID());
+                place(template.container, molecule, mapping);
+                mapped = true;
+            } else {
+                logger.debug("Structure does not match template: ", template.container.getID());
+            }
+        }
+        return mapped;
+    }
 
+    /**
+     * Checks if one of the loaded templates is a substructure in the given
+     * Molecule. If so, it assigns the coordinates from the template to the
+     * respective atoms in the Molecule, and marks the atoms as ISPLACED.
+     *
+     * @param  molecule  The molecule to be check for potential templates
+     * @return           True if there was a possible mapping
+     */
+    @TestMethod("testRemoveMolecule")
+    public boolean mapTemplates(IAtomContainer molecule) throws CDKException {
+        logger.debug("Trying to map a molecule...");
+        boolean mapped = false;
+        PreparedTarget target = new PreparedTarget(molecule);
+        Features features = new Features(target);
+        for (Template template : templates) {
+            if (!template.features.containedIn(features)) {
+                logger.debug("Structure does not match template: ", template.container.getID());
+                continue;
+            }
+            for (int[] mapping : template.anonymous.matchAll(target).uniqueAtoms()) {
+                logger.debug("Found a subgraph mapping of size " + mapping.length + ", template: " + template.container.getID());
+                place(template.container, molecule, mapping);
+                mapped = true;
+            }
+        }
+        return mapped;
+    }
 
-	/**
-	 * Checks if one of the loaded templates is a substructure in the given
-	 * Molecule. If so, it assigns the coordinates from the template to the
-	 * respective atoms in the Molecule, and marks the atoms as ISPLACED.
-	 *
-	 * @param  molecule  The molecule to be check for potential templates
-	 * @return           True if there was a possible mapping
-	 */
-	@TestMethod("testRemoveMolecule")
-	public boolean mapTemplates(IAtomContainer molecule) throws CDKException {
-				logger.debug("Trying to map a molecule...");
-		boolean mapped = false;
-		IAtomContainer template = null;
-		RMap map = null;
-		IAtom atom1 = null;
-		IAtom atom2 = null;
-
-        // We could also use any atom/bond query container but would required
-        // depending on 'cdk-isomorphism'. Instead we can anonymise the
-        // container to all singly bonded carbons.
-        IAtomContainer anonymised = AtomContainerManipulator.anonymise(molecule);
-
-		for (int f = 0; f < templates.size(); f++)
-		{
-			template = templates.get(f);
-			if (universalIsomorphismTester.isSubgraph(anonymised, template))
-			{
-				List listOfLists = universalIsomorphismTester.getSubgraphAtomsMaps(
-						molecule.getBuilder().newInstance(IAtomContainer.class,anonymised),
-						molecule.getBuilder().newInstance(IAtomContainer.class,template)
-				);
-				logger.debug("Found " + listOfLists.size() + " subgraphs matching template: " + template.getID());
-				for (Iterator listOfListsIterator = listOfLists.iterator(); listOfListsIterator.hasNext(); ) {
-					List list = (List) listOfListsIterator.next();
-					logger.debug("Found a subgraph mapping of size " + list.size() + ", template: " + template.getID());
-					for (int i = 0; i < list.size(); i++)
-					{
-						map = (RMap) list.get(i);
-						atom1 = molecule.getAtom(anonymised.getAtomNumber(anonymised.getAtom(map.getId1())));
-						atom2 = template.getAtom(map.getId2());
-						atom1.setPoint2d(new Point2d(atom2.getPoint2d()));
-						atom1.setFlag(CDKConstants.ISPLACED, true);
-					}
-					mapped = true;
-				}
-			} else {
-				logger.debug("Structure does not match template: ", template.getID());
-			}
-		}
-		return mapped;
-	}
+    /**
+     * Assign the coordinates of the template atoms to the mapped atoms of the
+     * molecule and mark them as placed.
+     *
+     * @param template the template
+     * @param molecule the molecule
+     * @param mapping  index of the molecule atom for each template atom
+     */
+    private static void place(IAtomContainer template, IAtomContainer molecule, int[] mapping) {
+        for (int i = 0; i < mapping.length; i++) {
+            IAtom atom = molecule.getAtom(mapping[i]);
+            atom.setPoint2d(new Point2d(template.getAtom(i).getPoint2d()));
+            atom.setFlag(CDKConstants.ISPLACED, true);
+        }
+    }
 
 
 	/**
@@ -295,81 +280,69 @@ public class TemplateHandler
 	 */
 	public IAtomContainer getTemplateAt(int position)
 	{
-		return templates.get(position);
+		return templates.get(position).container;
 	}
 	
 
-	/**
-	 * Checks if one of the loaded templates is a substructure in the given
-	 * Molecule and returns all matched substructures in a IAtomContainerSet.
-	 * This method does not assign any coordinates.
-	 *
-	 * @param  molecule  The molecule to be check for potential templates
-	 * @return           an IAtomContainerSet of all matched substructures of
-	 *                   the molecule
-	 * @throws CDKException if an error occurs
-	 */
-	@TestMethod("getMappedSubstructures_IAtomContainer")
-	public IAtomContainerSet getMappedSubstructures(IAtomContainer molecule) throws CDKException {
-		logger.debug("Trying get mapped substructures...");
-		IAtomContainerSet matchedSubstructures =
-		    molecule.getBuilder().newInstance(IAtomContainerSet.class);
-		for (int f = 0; f < templates.size(); f++)
-		{
-			IAtomContainer template = templates.get(f);
-			if (universalIsomorphismTester.isSubgraph(molecule, template))
-			{
-				List listOfLists = universalIsomorphismTester.getSubgraphAtomsMaps(
-						molecule.getBuilder().newInstance(IAtomContainer.class,molecule), 
-						molecule.getBuilder().newInstance(IAtomContainer.class,template)
-				);
-				logger.debug("Found " + listOfLists.size() + " subgraphs matching template: " + template.getID());
-				for (Iterator listOfListsIterator = listOfLists.iterator(); listOfListsIterator.hasNext(); ) {
-					List list = (List) listOfListsIterator.next();
-					logger.debug("Found a subgraph mapping of size " + list.size() + ", template: " + template.getID());
-					IAtomContainer matchedSubstructure = molecule.getBuilder().newInstance(IAtomContainer.class);
-					for (Iterator listIterator = list.iterator(); listIterator.hasNext(); )
-					{
-						RMap map = (RMap) listIterator.next();
-						IAtom atom = molecule.getAtom(map.getId1());
-						matchedSubstructure.addAtom(atom);
-					}
-					for (Iterator<IAtom> atomIterator = matchedSubstructure.atoms().iterator(); atomIterator.hasNext(); ) {
-						IAtom atom = atomIterator.next();
-						for (Iterator<IBond> connectedBondsIterator = molecule.getConnectedBondsList(atom).iterator(); connectedBondsIterator.hasNext(); ) {
-							IBond bond = connectedBondsIterator.next();
-							boolean addBond = true;
-							for (Iterator<IAtom> bondIterator = bond.atoms().iterator(); bondIterator.hasNext(); ) {
-								IAtom connectedAtom = bondIterator.next();
-								if (!matchedSubstructure.contains(connectedAtom) || matchedSubstructure.contains(bond))
-									addBond = false;
-							}
-							if (addBond)
-								matchedSubstructure.addBond(bond);
-						}
-					}
-					matchedSubstructures.addAtomContainer(matchedSubstructure);
-				}
-				
-			} else {
-				logger.debug("Structure does not match template: ", template.getID());
-			}
-		}
-		
-		/*
-		 * Uniquify matchedSubstructures
-		 */
-		for (int i = 0; i < matchedSubstructures.getAtomContainerCount(); i++) {
-			for (int j = i + 1; j < matchedSubstructures.getAtomContainerCount(); j++) {
-				if (haveSameAtoms(matchedSubstructures.getAtomContainer(i), matchedSubstructures.getAtomContainer(j)))
-					matchedSubstructures.removeAtomContainer(j--);
-			}
-		}
-		
-		logger.debug("Found " + matchedSubstructures.getAtomContainerCount() + " unique matched subgraphs");
-		
-		return matchedSubstructures;
-	}
+    /**
+     * Checks if one of the loaded templates is a substructure in the given
+     * Molecule and returns all matched substructures in a IAtomContainerSet.
+     * This method does not assign any coordinates.
+     *
+     * @param  molecule  The molecule to be check for potential templates
+     * @return           an IAtomContainerSet of all matched substructures of
+     *                   the molecule
+     * @throws CDKException if an error occurs
+     */
+    @TestMethod("getMappedSubstructures_IAtomContainer")
+    public IAtomContainerSet getMappedSubstructures(IAtomContainer molecule) throws CDKException {
+        logger.debug("Trying get mapped substructures...");
+        IAtomContainerSet matchedSubstructures =
+            molecule.getBuilder().newInstance(IAtomContainerSet.class);
+        PreparedTarget target = new PreparedTarget(molecule);
+        Features features = new Features(target);
+        int[][] g = target.graph();
+        EdgeToBondMap bonds = target.bondMap();
+        for (Template template : templates) {
+            if (!template.features.containedIn(features)) {
+                logger.debug("Structure does not match template: ", template.container.getID());
+                continue;
+            }
+            for (int[] mapping : template.substructure.matchAll(target).uniqueAtoms()) {
+                logger.debug("Found a subgraph mapping of size " + mapping.length + ", template: " + template.container.getID());
+                IAtomContainer matchedSubstructure = molecule.getBuilder().newInstance(IAtomContainer.class);
+                boolean[] matched = new boolean[g.length];
+                for (int v : mapping) {
+                    matchedSubstructure.addAtom(molecule.getAtom(v));
+                    matched[v] = true;
+                }
+                // the bonds between the matched atoms, each is added from the
+                // first of its atoms in the mapping
+                for (int v : mapping) {
+                    matched[v] = false;
+                    for (int w : g[v]) {
+                        if (matched[w])
+                            matchedSubstructure.addBond(bonds.get(v, w));
+                    }
+                }
+                matchedSubstructures.addAtomContainer(matchedSubstructure);
+            }
+        }
+
+        /*
+         * Uniquify matchedSubstructures
+         */
+        for (int i = 0; i < matchedSubstructures.getAtomContainerCount(); i++) {
+            for (int j = i + 1; j < matchedSubstructures.getAtomContainerCount(); j++) {
+                if (haveSameAtoms(matchedSubstructures.getAtomContainer(i), matchedSubstructures.getAtomContainer(j)))
+                    matchedSubstructures.removeAtomContainer(j--);
+            }
+        }
+
+        logger.debug("Found " + matchedSubstructures.getAtomContainerCount() + " unique matched subgraphs");
+
+        return matchedSubstructures;
+    }
 
 	/**
 	 * Returns true if both IAtomContainers have the same number of atoms and all atoms
@@ -387,6 +360,133 @@ public class TemplateHandler
 				return false;
 		return true;
 	}
-	
-}
 
+    /**
+     * A 2D layout template with the patterns used to find it in a molecule:
+     * an exact match of a whole ring system, or a substructure match
+     * (anonymous or by symbol and bond order) of part of it. Templates are
+     * built once and shared by all generators using the handler.
+     */
+    private static final class Template {
+
+        /** The anonymised template with 2D coordinates. */
+        private final IAtomContainer container;
+
+        /** Features of the template for prefiltering. */
+        private final Features features;
+
+        /** The template connectivity, for exact layouts of ring systems. */
+        private final Pattern identical;
+
+        /** The template connectivity as a substructure. */
+        private final Pattern anonymous;
+
+        /**
+         * The template as a substructure matching symbols and bond orders
+         * (all singly bonded carbons), as the previous UIT matching.
+         */
+        private final Pattern substructure;
+
+        private Template(IAtomContainer container) {
+            this.container = container;
+            this.features = new Features(new PreparedTarget(container));
+            this.identical = VentoFoggia.findIdentical(container, AtomMatcher.forAny(), BondMatcher.forAny());
+            this.anonymous = VentoFoggia.findSubstructure(container, AtomMatcher.forAny(), BondMatcher.forAny());
+            this.substructure = VentoFoggia.findSubstructure(container, AtomMatcher.forSymbol(), BondMatcher.forStrictOrder());
+        }
+    }
+
+    /**
+     * Graph invariants of a structure which no substructure can exceed: the
+     * atom and bond counts, the number of cyclic bonds, the number of atoms
+     * in the largest ring system (connected cyclic bonds) and, for each
+     * degree d, the number of atoms with at least d neighbours and with at
+     * least d cyclic bonds.
+     */
+    private static final class Features {
+
+        /** Degrees above this value are counted together. */
+        private static final int MAX_DEGREE = 6;
+
+        private final int   atoms, bonds, cyclicBonds, largestRingSystem;
+        private final int[] degrees       = new int[MAX_DEGREE + 1];
+        private final int[] cyclicDegrees = new int[MAX_DEGREE + 1];
+
+        private Features(PreparedTarget target) {
+            int[][] g = target.graph();
+            RingSearch ringSearch = target.ringSearch();
+            int[] cyclic = new int[g.length];
+            int nCyclic = 0;
+            for (int v = 0; v < g.length; v++) {
+                for (int w : g[v]) {
+                    if (ringSearch.cyclic(v, w))
+                        cyclic[v]++;
+                }
+                degrees[Math.min(g[v].length, MAX_DEGREE)]++;
+                cyclicDegrees[Math.min(cyclic[v], MAX_DEGREE)]++;
+                nCyclic += cyclic[v];
+            }
+            for (int d = MAX_DEGREE - 1; d >= 0; d--) {
+                degrees[d] += degrees[d + 1];
+                cyclicDegrees[d] += cyclicDegrees[d + 1];
+            }
+            this.atoms = g.length;
+            this.bonds = target.container().getBondCount();
+            this.cyclicBonds = nCyclic / 2;
+            this.largestRingSystem = largestRingSystem(g, ringSearch, cyclic);
+        }
+
+        /**
+         * Size of the largest set of atoms connected by cyclic bonds.
+         */
+        private static int largestRingSystem(int[][] g, RingSearch ringSearch, int[] cyclic) {
+            boolean[] visited = new boolean[g.length];
+            int[] stack = new int[g.length];
+            int largest = 0;
+            for (int s = 0; s < g.length; s++) {
+                if (visited[s] || cyclic[s] == 0)
+                    continue;
+                int size = 0, n = 0;
+                stack[n++] = s;
+                visited[s] = true;
+                while (n > 0) {
+                    int v = stack[--n];
+                    size++;
+                    for (int w : g[v]) {
+                        if (!visited[w] && ringSearch.cyclic(v, w)) {
+                            visited[w] = true;
+                            stack[n++] = w;
+                        }
+                    }
+                }
+                largest = Math.max(largest, size);
+            }
+            return largest;
+        }
+
+        /**
+         * Could a structure with these features be a substructure of one with
+         * {@code that} features.
+         */
+        private boolean containedIn(Features that) {
+            if (atoms > that.atoms || bonds > that.bonds || cyclicBonds > that.cyclicBonds
+                    || largestRingSystem > that.largestRingSystem)
+                return false;
+            for (int d = 1; d <= MAX_DEGREE; d++) {
+                if (degrees[d] > that.degrees[d] || cyclicDegrees[d] > that.cyclicDegrees[d])
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * Could a structure with these features be isomorphic to one with
+         * {@code that} features.
+         */
+        private boolean sameAs(Features that) {
+            return atoms == that.atoms && bonds == that.bonds && cyclicBonds == that.cyclicBonds
+                    && largestRingSystem == that.largestRingSystem && Arrays.equals(degrees, that.degrees)
+                    && Arrays.equals(cyclicDegrees, that.cyclicDegrees);
+        }
+    }
+}
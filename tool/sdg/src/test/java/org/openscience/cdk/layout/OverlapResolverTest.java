@@ -25,18 +25,25 @@
 package org.openscience.cdk.layout;
 
 import java.io.InputStream;
+import java.util.Random;
 import java.util.Vector;
 
+import javax.vecmath.Point2d;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.openscience.cdk.AtomContainer;
 import org.openscience.cdk.CDKTestCase;
 import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.geometry.GeometryTools;
+import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.interfaces.IChemFile;
 import org.openscience.cdk.io.CMLReader;
 import org.openscience.cdk.silent.ChemFile;
 import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.cdk.templates.TestMoleculeFactory;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 import org.openscience.cdk.tools.manipulator.ChemFileManipulator;
@@ -173,5 +180,103 @@ public class OverlapResolverTest extends CDKTestCase {
 	}
 
 	
+	/**
+	 * The overlapping atoms and bonds found with the spatial grid are those
+	 * found by comparing all pairs.
+	 */
+	@Test public void overlapScoreSameAsAllPairs() throws Exception
+	{
+		Random rand = new Random(31);
+		IAtomContainer container = TestMoleculeFactory.makeSteran();
+		for (int trial = 0; trial < 20; trial++)
+		{
+			for (IAtom atom : container.atoms())
+				atom.setPoint2d(new Point2d(rand.nextDouble() * 4, rand.nextDouble() * 4));
+			assertOverlapsSameAsAllPairs(container);
+		}
+	}
+
+	/**
+	 * A peptide laid out by the structure diagram generator, the overlaps
+	 * found with the spatial grid are those found by comparing all pairs,
+	 * before and after they are resolved.
+	 */
+	@Test public void resolveOverlapInPeptide() throws Exception
+	{
+		// Tyr-Gly-Gly-Phe-Leu-Arg-Lys-Tyr-Pro-Trp
+		String smi = "N[C@@H](Cc1ccc(O)cc1)C(=O)NCC(=O)NCC(=O)N[C@@H](Cc1ccccc1)C(=O)N[C@@H](CC(C)C)C(=O)"
+		           + "N[C@@H](CCCNC(N)=N)C(=O)N[C@@H](CCCCN)C(=O)N[C@@H](Cc1ccc(O)cc1)C(=O)N1CCC[C@H]1C(=O)"
+		           + "N[C@@H](Cc1c[nH]c2ccccc12)C(O)=O";
+		IAtomContainer peptide = new SmilesParser(DefaultChemObjectBuilder.getInstance()).parseSmiles(smi);
+		StructureDiagramGenerator sdg = new StructureDiagramGenerator();
+		sdg.setMolecule(peptide, false);
+		sdg.generateCoordinates();
+		OverlapResolver or = new OverlapResolver();
+		assertOverlapsSameAsAllPairs(peptide);
+		double before = or.getOverlapScore(peptide, new Vector(), new Vector());
+		double after = or.resolveOverlap(peptide, null);
+		Assert.assertTrue(after <= before);
+		assertOverlapsSameAsAllPairs(peptide);
+	}
+
+	/**
+	 * Assert the overlapping atoms and bonds reported by the resolver are
+	 * those, in the same order, found by comparing all pairs.
+	 */
+	private static void assertOverlapsSameAsAllPairs(IAtomContainer container)
+	{
+		OverlapResolver or = new OverlapResolver();
+		double cutoff = GeometryTools.getBondLengthAverage(container) / 4;
+		Vector atoms = new Vector();
+		Vector bonds = new Vector();
+		or.getAtomOverlapScore(container, atoms);
+		or.getBondOverlapScore(container, bonds);
+		int nAtoms = 0, nBonds = 0;
+		for (int i = 0; i < container.getAtomCount(); i++)
+		{
+			for (int j = i + 1; j < container.getAtomCount(); j++)
+			{
+				IAtom a = container.getAtom(i), b = container.getAtom(j);
+				if (a.getPoint2d().distance(b.getPoint2d()) < cutoff)
+				{
+					OverlapResolver.OverlapPair pair = (OverlapResolver.OverlapPair) atoms.get(nAtoms++);
+					Assert.assertSame(a, pair.chemObject1);
+					Assert.assertSame(b, pair.chemObject2);
+				}
+			}
+		}
+		for (int i = 0; i < container.getBondCount(); i++)
+		{
+			for (int j = i + 1; j < container.getBondCount(); j++)
+			{
+				IBond a = container.getBond(i), b = container.getBond(j);
+				if (!a.isConnectedTo(b) && or.areIntersected(a, b))
+				{
+					OverlapResolver.OverlapPair pair = (OverlapResolver.OverlapPair) bonds.get(nBonds++);
+					Assert.assertSame(a, pair.chemObject1);
+					Assert.assertSame(b, pair.chemObject2);
+				}
+			}
+		}
+		Assert.assertEquals(nAtoms, atoms.size());
+		Assert.assertEquals(nBonds, bonds.size());
+	}
+
+	/**
+	 * A long chain where two atoms are placed on top of others.
+	 */
+	@Test public void resolveOverlapInLongChain() throws Exception
+	{
+		IAtomContainer container = TestMoleculeFactory.makeAlkane(400);
+		for (int i = 0; i < container.getAtomCount(); i++)
+			container.getAtom(i).setPoint2d(new Point2d(1.3 * (i % 40), 2.5 * (i / 40) + 0.75 * (i % 2)));
+		container.getAtom(5).setPoint2d(new Point2d(container.getAtom(200).getPoint2d()));
+		container.getAtom(321).setPoint2d(new Point2d(container.getAtom(42).getPoint2d()));
+		OverlapResolver or = new OverlapResolver();
+		Assert.assertEquals(2, new OverlapResolver().getAtomOverlapScore(container, new Vector()) /
+		                       (GeometryTools.getBondLengthAverage(container) / 4), 0.0001);
+		Assert.assertEquals(0.0, or.resolveOverlap(container, null), 0.0001);
+		Assert.assertEquals(0.0, or.getAtomOverlapScore(container, new Vector()), 0.0001);
+	}
 }
 
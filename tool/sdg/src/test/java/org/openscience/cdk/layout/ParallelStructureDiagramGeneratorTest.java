@@ -0,0 +1,111 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.layout;
+
+import org.junit.Test;
+import org.openscience.cdk.geometry.GeometryTools;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.templates.TestMoleculeFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @cdk.module test-sdg
+ */
+public class ParallelStructureDiagramGeneratorTest {
+
+    @Test public void connected() throws Exception {
+        IAtomContainer m = TestMoleculeFactory.makeAlphaPinene();
+        new ParallelStructureDiagramGenerator(null, false, 1.5).generateCoordinates(m);
+        assertTrue(GeometryTools.has2DCoordinates(m));
+    }
+
+    /** Components are laid out separately and placed from left to right. */
+    @Test public void disconnected() throws Exception {
+        IAtomContainer m = disconnected(TestMoleculeFactory.makeBiphenyl(), TestMoleculeFactory.makeAlphaPinene());
+        new ParallelStructureDiagramGenerator(null, false, 1.5).generateCoordinates(m);
+        assertTrue(GeometryTools.has2DCoordinates(m));
+        double maxX = Double.NEGATIVE_INFINITY, minX = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < 12; i++)
+            maxX = Math.max(maxX, m.getAtom(i).getPoint2d().x);
+        for (int i = 12; i < m.getAtomCount(); i++)
+            minX = Math.min(minX, m.getAtom(i).getPoint2d().x);
+        assertEquals(3.0, minX - maxX, 0.001);
+    }
+
+    /** A counter ion is a component with a single atom. */
+    @Test public void singleAtomComponent() throws Exception {
+        IAtomContainer m = TestMoleculeFactory.makeBenzene();
+        m.addAtom(m.getBuilder().newInstance(IAtom.class, "Na"));
+        new ParallelStructureDiagramGenerator(null, false, 1.5).generateCoordinates(m);
+        assertTrue(GeometryTools.has2DCoordinates(m));
+    }
+
+    @Test public void batch() throws Exception {
+        List<IAtomContainer> molecules = new ArrayList<IAtomContainer>();
+        List<IAtomContainer> expected = new ArrayList<IAtomContainer>();
+        for (int i = 0; i < 50; i++) {
+            molecules.add(disconnected(TestMoleculeFactory.makePhenylEthylBenzene(), TestMoleculeFactory.makeSpiroRings()));
+            expected.add(disconnected(TestMoleculeFactory.makePhenylEthylBenzene(), TestMoleculeFactory.makeSpiroRings()));
+        }
+        ParallelStructureDiagramGenerator sdg = new ParallelStructureDiagramGenerator(null, false, 1.5);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            sdg.generateCoordinates(molecules, executor);
+        } finally {
+            executor.shutdown();
+        }
+        for (int i = 0; i < molecules.size(); i++) {
+            sdg.generateCoordinates(expected.get(i));
+            for (int j = 0; j < expected.get(i).getAtomCount(); j++) {
+                assertEquals(expected.get(i).getAtom(j).getPoint2d().x, molecules.get(i).getAtom(j).getPoint2d().x, 0.0001);
+                assertEquals(expected.get(i).getAtom(j).getPoint2d().y, molecules.get(i).getAtom(j).getPoint2d().y, 0.0001);
+            }
+        }
+    }
+
+    @Test public void empty() throws Exception {
+        IAtomContainer m = TestMoleculeFactory.makeBenzene();
+        m.removeAllElements();
+        new ParallelStructureDiagramGenerator(null, false, 1.5).generateCoordinates(m);
+        assertThat(m.getAtomCount(), is(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class) public void templatesRequireHandler() throws Exception {
+        new ParallelStructureDiagramGenerator(null, true, 1.5);
+    }
+
+    private static IAtomContainer disconnected(IAtomContainer a, IAtomContainer b) {
+        a.add(b);
+        return a;
+    }
+}
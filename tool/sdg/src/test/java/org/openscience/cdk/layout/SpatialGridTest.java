@@ -0,0 +1,110 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.layout;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @cdk.module test-sdg
+ */
+public class SpatialGridTest {
+
+    @Test public void pointsWithinCutoff() throws Exception {
+        Random rand = new Random(7);
+        int n = 500;
+        double[] x = new double[n], y = new double[n];
+        SpatialGrid grid = new SpatialGrid(0.5, n);
+        for (int i = 0; i < n; i++) {
+            x[i] = rand.nextDouble() * 20 - 10;
+            y[i] = rand.nextDouble() * 20 - 10;
+            grid.add(i, x[i], y[i], x[i], y[i]);
+        }
+        int[] found = new int[n];
+        for (int i = 0; i < n; i++) {
+            int len = grid.query(x[i] - 0.5, y[i] - 0.5, x[i] + 0.5, y[i] + 0.5, found);
+            boolean[] candidate = new boolean[n];
+            for (int k = 0; k < len; k++) {
+                assertThat("reported twice", candidate[found[k]], is(false));
+                candidate[found[k]] = true;
+            }
+            for (int j = 0; j < n; j++) {
+                if (Math.hypot(x[i] - x[j], y[i] - y[j]) < 0.5)
+                    assertTrue(candidate[j]);
+            }
+        }
+    }
+
+    @Test public void move() throws Exception {
+        SpatialGrid grid = new SpatialGrid(1, 3);
+        grid.add(0, 0.5, 0.5, 0.5, 0.5);
+        grid.add(1, 5.5, 5.5, 5.5, 5.5);
+        grid.add(2, 0.2, 0.7, 0.2, 0.7);
+        int[] found = new int[3];
+        assertThat(sorted(found, grid.query(0, 0, 0.9, 0.9, found)), is(new int[]{0, 2}));
+        grid.move(2, 0.2, 0.7, 5.1, 5.2);
+        assertThat(sorted(found, grid.query(0, 0, 0.9, 0.9, found)), is(new int[]{0}));
+        assertThat(sorted(found, grid.query(5, 5, 5.9, 5.9, found)), is(new int[]{1, 2}));
+        grid.remove(1, 5.5, 5.5, 5.5, 5.5);
+        assertThat(sorted(found, grid.query(5, 5, 5.9, 5.9, found)), is(new int[]{2}));
+    }
+
+    @Test public void boxes() throws Exception {
+        SpatialGrid grid = new SpatialGrid(1, 3);
+        grid.add(0, 0, 0, 3.5, 0.5);
+        grid.add(1, 2.2, -2, 2.4, 2);
+        grid.add(2, 8, 8, 9, 9);
+        int[] found = new int[3];
+        assertThat(sorted(found, grid.query(2.2, -2, 2.4, 2, found)), is(new int[]{0, 1}));
+        assertThat(sorted(found, grid.query(8.5, 8.5, 8.5, 8.5, found)), is(new int[]{2}));
+    }
+
+    /** Very large boxes are reported by every query. */
+    @Test public void largeBox() throws Exception {
+        SpatialGrid grid = new SpatialGrid(1, 2);
+        grid.add(0, -1e9, -1e9, 1e9, 1e9);
+        grid.add(1, 50, 50, 50, 50);
+        int[] found = new int[2];
+        assertThat(sorted(found, grid.query(0, 0, 0, 0, found)), is(new int[]{0}));
+        assertThat(sorted(found, grid.query(-1e12, -1e12, 1e12, 1e12, found)), is(new int[]{0, 1}));
+        grid.remove(0, -1e9, -1e9, 1e9, 1e9);
+        assertThat(sorted(found, grid.query(0, 0, 0, 0, found)), is(new int[0]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroSize() throws Exception {
+        new SpatialGrid(0, 10);
+    }
+
+    private static int[] sorted(int[] found, int len) {
+        int[] ids = Arrays.copyOf(found, len);
+        Arrays.sort(ids);
+        return ids;
+    }
+}
@@ -984,5 +984,21 @@ public class StructureDiagramGeneratorTest extends CDKTestCase
       sdg.generateCoordinates(new Vector2d(0, 1));
   }
 
+    /**
+     * Templates enabled after the molecule was set are loaded when the
+     * layout needs them.
+     */
+    @Test(timeout = 5000)
+    public void useTemplatesAfterSetMolecule() throws Exception {
+        IAtomContainer mol = TestMoleculeFactory.makeSteran();
+        StructureDiagramGenerator sdg = new StructureDiagramGenerator();
+        sdg.setUseTemplates(false);
+        sdg.setMolecule(mol);
+        sdg.setUseTemplates(true);
+        sdg.generateCoordinates();
+        assertTrue(GeometryTools.has2DCoordinates(sdg.getMolecule()));
+        Assert.assertNotNull(sdg.getTemplateHandler());
+    }
+
 }
 
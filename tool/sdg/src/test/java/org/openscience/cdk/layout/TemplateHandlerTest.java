@@ -21,12 +21,20 @@
 package org.openscience.cdk.layout;
 
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.CDKTestCase;
 import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IAtomContainerSet;
 import org.openscience.cdk.interfaces.IBond;
@@ -110,6 +118,47 @@ public class TemplateHandlerTest extends CDKTestCase {
         Assert.assertTrue(itIsInThere);
     }
 
+    @Test public void mapTemplateExact() throws Exception {
+        TemplateHandler th = new TemplateHandler(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer mol = TestMoleculeFactory.makeSteran();
+        Assert.assertTrue(th.mapTemplateExact(mol));
+        for (IAtom atom : mol.atoms()) {
+            Assert.assertTrue(atom.getFlag(CDKConstants.ISPLACED));
+            Assert.assertNotNull(atom.getPoint2d());
+        }
+        // sterane is a substructure but not the same
+        IAtomContainer methylSteran = TestMoleculeFactory.makeSteran();
+        methylSteran.addAtom(methylSteran.getBuilder().newInstance(IAtom.class, "C"));
+        methylSteran.addBond(0, 17, IBond.Order.SINGLE);
+        Assert.assertFalse(th.mapTemplateExact(methylSteran));
+        Assert.assertTrue(th.mapTemplates(methylSteran));
+        Assert.assertFalse(th.mapTemplates(TestMoleculeFactory.makeAlkane(20)));
+    }
+
+    /**
+     * Templates are matched by several threads with a single handler.
+     */
+    @Test public void sharedHandler() throws Exception {
+        final TemplateHandler th = new TemplateHandler(DefaultChemObjectBuilder.getInstance());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < 40; i++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+
+                    @Override
+                    public Boolean call() throws Exception {
+                        return th.mapTemplates(TestMoleculeFactory.makeSteran());
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results)
+                Assert.assertTrue(result.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
 	@Test public void testAddMolecule() throws Exception
 	{
 		logger.debug("***TestAddMolecule***");
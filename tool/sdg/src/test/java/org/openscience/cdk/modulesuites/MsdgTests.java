@@ -29,6 +29,8 @@ import org.openscience.cdk.layout.CorrectGeometricConfigurationTest;
 import org.openscience.cdk.layout.HydrogenPlacerTest;
 import org.openscience.cdk.layout.NonPlanarBondsTest;
 import org.openscience.cdk.layout.OverlapResolverTest;
+import org.openscience.cdk.layout.ParallelStructureDiagramGeneratorTest;
+import org.openscience.cdk.layout.SpatialGridTest;
 import org.openscience.cdk.layout.StructureDiagramGeneratorTest;
 import org.openscience.cdk.layout.TemplateHandlerTest;
 
@@ -43,6 +45,8 @@ import org.openscience.cdk.layout.TemplateHandlerTest;
     StructureDiagramGeneratorTest.class,
     HydrogenPlacerTest.class,
     OverlapResolverTest.class,
+    SpatialGridTest.class,
+    ParallelStructureDiagramGeneratorTest.class,
     TemplateHandlerTest.class,
     AtomPlacerTest.class,
     NonPlanarBondsTest.class,
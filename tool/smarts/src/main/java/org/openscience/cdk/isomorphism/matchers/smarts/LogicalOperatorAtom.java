@@ -19,6 +19,7 @@
  */
 package org.openscience.cdk.isomorphism.matchers.smarts;
 
+import org.openscience.cdk.config.Elements;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IChemObjectBuilder;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
@@ -171,6 +172,32 @@ public final class LogicalOperatorAtom extends SMARTSAtom {
         return new Negation(expr.getBuilder(), expr);
     }
 
+    /**
+     * Determine the element (atomic number) an atom must be to match the
+     * query expression. The expression is only inspected for element symbols
+     * and atomic numbers, a conjunction requires the element of either side
+     * and a disjunction requires an element only if both sides require the
+     * same one.
+     *
+     * @param expr a query atom expression
+     * @return the required atomic number, or -1 if any element may match
+     */
+    static int element(IQueryAtom expr) {
+        if (expr instanceof AtomicNumberAtom) {
+            return expr.getAtomicNumber();
+        } else if (expr instanceof AliphaticSymbolAtom || expr instanceof AromaticSymbolAtom) {
+            int elem = Elements.ofString(expr.getSymbol()).number();
+            return elem > 0 ? elem : -1;
+        } else if (expr instanceof Conjunction) {
+            int elem = element(((Conjunction) expr).left);
+            return elem >= 0 ? elem : element(((Conjunction) expr).right);
+        } else if (expr instanceof Disjunction) {
+            int elem = element(((Disjunction) expr).left);
+            return elem == element(((Disjunction) expr).right) ? elem : -1;
+        }
+        return -1;
+    }
+
     /** Defines a conjunction (AND) between two query atoms. */
     private static class Conjunction extends SMARTSAtom {
 
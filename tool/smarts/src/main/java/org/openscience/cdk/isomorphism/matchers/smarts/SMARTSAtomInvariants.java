@@ -268,10 +268,10 @@ final class SMARTSAtomInvariants {
      * @param ringInfo  logical condition as whether ring info should be
      *                  included
      */
-    private static void configureDaylight(IAtomContainer container,
-                                          int[][] graph,
-                                          EdgeToBondMap bondMap,
-                                          boolean ringInfo) {
+    static void configureDaylight(IAtomContainer container,
+                                  int[][] graph,
+                                  EdgeToBondMap bondMap,
+                                  boolean ringInfo) {
 
         int nAtoms = container.getAtomCount();
 
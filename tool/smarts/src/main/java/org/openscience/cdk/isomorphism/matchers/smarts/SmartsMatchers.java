@@ -24,7 +24,11 @@
 
 package org.openscience.cdk.isomorphism.matchers.smarts;
 
+import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
+
+import static org.openscience.cdk.graph.GraphUtil.EdgeToBondMap;
 
 /**
  * Bridging class between the SMARTS matcher and the parser/query tool. The
@@ -53,5 +57,42 @@ public final class SmartsMatchers {
             SMARTSAtomInvariants.configureDaylightWithoutRingInfo(container);
         }
     }
-    
+
+    /**
+     * Do not use - temporary method until the SMARTS packages are cleaned up.
+     *
+     * Prepares a target molecule for matching with SMARTS reusing an existing
+     * adjacency list and bond map of the container.
+     *
+     * @param container the container to initialise
+     * @param graph     adjacency list of the container
+     * @param bondMap   bond lookup for the adjacency list
+     * @param ringQuery whether the smarts will check ring size queries
+     */
+    public static void prepare(IAtomContainer container, int[][] graph, EdgeToBondMap bondMap, boolean ringQuery) {
+        SMARTSAtomInvariants.configureDaylight(container, graph, bondMap, ringQuery);
+    }
+
+    /**
+     * Do not use - temporary method until the SMARTS packages are cleaned up.
+     *
+     * Count the atoms of each element a target must have to match the query.
+     * Only query atoms that require a single element (e.g. {@code C},
+     * {@code [#7X3]}, {@code [O,o]}) are counted, hydrogens are not counted.
+     *
+     * @param query      a parsed SMARTS query
+     * @param maxElement length of the counts array
+     * @return the required number of atoms of each element
+     */
+    public static int[] requiredElementCounts(IAtomContainer query, int maxElement) {
+        int[] counts = new int[maxElement];
+        for (IAtom atom : query.atoms()) {
+            if (!(atom instanceof IQueryAtom))
+                continue;
+            int elem = LogicalOperatorAtom.element((IQueryAtom) atom);
+            if (elem > 1 && elem < maxElement)
+                counts[elem]++;
+        }
+        return counts;
+    }
 }
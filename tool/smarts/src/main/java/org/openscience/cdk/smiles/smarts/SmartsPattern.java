@@ -32,6 +32,7 @@ import org.openscience.cdk.interfaces.IChemObjectBuilder;
 import org.openscience.cdk.isomorphism.ComponentGrouping;
 import org.openscience.cdk.isomorphism.Mappings;
 import org.openscience.cdk.isomorphism.Pattern;
+import org.openscience.cdk.isomorphism.PreparedTarget;
 import org.openscience.cdk.isomorphism.SmartsStereoMatch;
 import org.openscience.cdk.isomorphism.matchers.smarts.SmartsMatchers;
 import org.openscience.cdk.smiles.smarts.parser.SMARTSParser;
@@ -43,8 +44,8 @@ import java.io.IOException;
  * A {@link Pattern} for matching a single SMARTS query against multiple target
  * compounds. The class should <b>not</b> be used for matching many queries
  * against a single target as in substructure keyed fingerprints. The {@link
- * SMARTSQueryTool} is currently a better option as less target initialistion is
- * performed.
+ * SmartsScreen} is a better option as the target initialisation is only
+ * performed once.
  *
  * Simple usage:
  *
@@ -83,6 +84,10 @@ public final class SmartsPattern extends Pattern {
     /** Include invariants about ring size / number. */
     private final boolean ringInfo;
 
+    /** Preparations of a target, the invariants with/without ring info and aromaticity. */
+    private static final String DAYLIGHT       = "SmartsPattern.Daylight";
+    private static final String DAYLIGHT_RINGS = "SmartsPattern.DaylightRingInfo";
+
     /** Aromaticity model. */
     private final Aromaticity arom = new Aromaticity(ElectronDonation.daylight(),
                                                      Cycles.or(Cycles.all(), Cycles.relevant()));
@@ -138,30 +143,85 @@ public final class SmartsPattern extends Pattern {
      * @return mappings of the query to the target compound
      */
     @Override public Mappings matchAll(final IAtomContainer target) {
+        return matchAll(new PreparedTarget(target));
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override public int[] match(PreparedTarget target) {
+        return matchAll(target).first();
+    }
+
+    /**
+     * Obtain the mappings of the query pattern against a prepared target. The
+     * SMARTS initialisation (see {@link #matchAll(IAtomContainer)}) is
+     * performed on the first match against the prepared target, later
+     * matches reuse the invariants and aromaticity.
+     *
+     * @param target the prepared target in which we want to match the pattern
+     * @return mappings of the query to the target compound
+     */
+    @Override public Mappings matchAll(final PreparedTarget target) {
 
         // TODO: prescreen target for element frequency before intialising
         // invariants and applying aromaticity, requires pattern enumeration -
         // see http://www.daylight.com/meetings/emug00/Sayle/substruct.html. 
 
-        // assign additional atom invariants for SMARTS queries, a CDK quirk
-        // as each atom knows not which molecule from wence it came
-        SmartsMatchers.prepare(target, ringInfo);
-
-        // apply the daylight aromaticity model
         try {
-            arom.apply(target);
+            prepare(target, ringInfo, arom);
         } catch (CDKException e) {
             LoggingToolFactory.createLoggingTool(getClass()).error(e);
         }
 
+        return matchPrepared(target);
+    }
+
+    /**
+     * Assign the SMARTS invariants and apply the aromaticity model to a
+     * prepared target, unless this has already been done for the target. The
+     * invariants with ring information also serve queries which do not need
+     * it.
+     *
+     * @param target   the prepared target
+     * @param ringInfo ring size and number invariants are needed
+     * @param arom     the (Daylight) aromaticity model
+     * @throws CDKException the aromaticity could not be perceived
+     */
+    static void prepare(PreparedTarget target, boolean ringInfo, Aromaticity arom) throws CDKException {
+        if (target.hasPreparation(DAYLIGHT_RINGS) || (!ringInfo && target.hasPreparation(DAYLIGHT)))
+            return;
+
+        IAtomContainer container = target.container();
+
+        // assign additional atom invariants for SMARTS queries, a CDK quirk
+        // as each atom knows not which molecule from wence it came
+        SmartsMatchers.prepare(container, target.graph(), target.bondMap(), ringInfo);
+
+        // apply the daylight aromaticity model
+        arom.apply(container);
+
+        target.addPreparation(ringInfo ? DAYLIGHT_RINGS : DAYLIGHT);
+    }
+
+    /**
+     * Obtain the mappings of the query pattern against a prepared target on
+     * which the SMARTS invariants and aromaticity have already been assigned.
+     *
+     * @param target the prepared and initialised target
+     * @return mappings of the query to the target compound
+     */
+    Mappings matchPrepared(final PreparedTarget target) {
+
+        IAtomContainer container = target.container();
         Mappings mappings = pattern.matchAll(target);
 
         // stereochemistry and component grouping filters are skipped if the 
         // query does not contain them
         if (query.stereoElements().iterator().hasNext())
-            mappings = mappings.filter(new SmartsStereoMatch(query, target));
+            mappings = mappings.filter(new SmartsStereoMatch(query, container));
         if (query.getProperty(ComponentGrouping.KEY) != null)
-            mappings = mappings.filter(new ComponentGrouping(query, target));
+            mappings = mappings.filter(new ComponentGrouping(query, container));
 
         // Note: Mappings is lazy, we can't reset aromaticity etc as the 
         // substructure match may not have finished
@@ -169,6 +229,25 @@ public final class SmartsPattern extends Pattern {
         return mappings;
     }
 
+    /**
+     * The parsed query.
+     *
+     * @return the query
+     */
+    IAtomContainer query() {
+        return query;
+    }
+
+    /**
+     * Whether the query has ring size or number queries that require the
+     * additional ring invariants to be assigned.
+     *
+     * @return ring info is needed
+     */
+    boolean ringInfo() {
+        return ringInfo;
+    }
+
     /**
      * Create a {@link Pattern} that will match the given {@code smarts} query.
      *
@@ -0,0 +1,268 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.smiles.smarts;
+
+import org.openscience.cdk.aromaticity.Aromaticity;
+import org.openscience.cdk.aromaticity.ElectronDonation;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.graph.Cycles;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.isomorphism.PreparedTarget;
+import org.openscience.cdk.isomorphism.matchers.smarts.SmartsMatchers;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Screen a target compound against many SMARTS queries at once, as in
+ * substructure keyed fingerprints or functional group filters. The result is a
+ * {@link BitSet} with a bit set for each query that was found in the target.
+ *
+ * <blockquote><pre>
+ * SmartsScreen screen = SmartsScreen.create(smarts, builder);
+ * for (IAtomContainer ac : acs) {
+ *     BitSet hits = screen.matches(ac);
+ * }
+ * </pre></blockquote>
+ *
+ * Work common to all queries is only done once per target: the SMARTS
+ * invariants and Daylight aromaticity are assigned and the adjacency of the
+ * target is built once ({@link PreparedTarget}). Queries which are the same
+ * SMARTS string are only matched once and queries which require more atoms of
+ * an element than the target has are skipped without a substructure search.
+ *
+ * The screen holds no state for a target and may be used from multiple threads
+ * provided each thread screens different target instances.
+ *
+ * @cdk.module smarts
+ * @cdk.githash
+ * @cdk.keyword SMARTS
+ * @cdk.keyword substructure search
+ * @see SmartsPattern
+ */
+public final class SmartsScreen {
+
+    /** Length of the element counts. */
+    private static final int MAX_ELEMENT = 128;
+
+    /** Number of queries in the screen. */
+    private final int size;
+
+    /** Distinct patterns of the screen. */
+    private final SmartsPattern[] patterns;
+
+    /** Elements required by each distinct pattern. */
+    private final int[][] elementCounts;
+
+    /** Query indices of each distinct pattern. */
+    private final int[][] indices;
+
+    /** At least one query needs ring size / number invariants. */
+    private final boolean ringInfo;
+
+    /** Aromaticity model. */
+    private final Aromaticity arom = new Aromaticity(ElectronDonation.daylight(),
+                                                     Cycles.or(Cycles.all(), Cycles.relevant()));
+
+    /**
+     * Internal constructor.
+     *
+     * @param smarts  the queries
+     * @param builder the builder
+     * @throws IOException a query could not be parsed
+     */
+    private SmartsScreen(String[] smarts, IChemObjectBuilder builder) throws IOException {
+
+        // group the query indices by SMARTS string
+        Map<String, int[]> distinct = new HashMap<String, int[]>();
+        String[] order = new String[smarts.length];
+        int n = 0;
+        for (int i = 0; i < smarts.length; i++) {
+            int[] idxs = distinct.get(smarts[i]);
+            if (idxs == null) {
+                idxs = new int[0];
+                order[n++] = smarts[i];
+            }
+            idxs = Arrays.copyOf(idxs, idxs.length + 1);
+            idxs[idxs.length - 1] = i;
+            distinct.put(smarts[i], idxs);
+        }
+
+        this.size = smarts.length;
+        this.patterns = new SmartsPattern[n];
+        this.elementCounts = new int[n][];
+        this.indices = new int[n][];
+
+        boolean ringInfo = false;
+        for (int i = 0; i < n; i++) {
+            patterns[i] = SmartsPattern.create(order[i], builder);
+            elementCounts[i] = SmartsMatchers.requiredElementCounts(patterns[i].query(), MAX_ELEMENT);
+            indices[i] = distinct.get(order[i]);
+            ringInfo = ringInfo || patterns[i].ringInfo();
+        }
+        this.ringInfo = ringInfo;
+    }
+
+    /**
+     * The number of queries in the screen.
+     *
+     * @return number of queries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Determine which of the queries are found in the target. The SMARTS
+     * invariants and the Daylight aromaticity model are applied to the target
+     * (clearing existing aromaticity).
+     *
+     * @param target the target compound
+     * @return the indices of the queries that were found
+     * @throws CDKException the aromaticity could not be perceived
+     */
+    public BitSet matches(IAtomContainer target) throws CDKException {
+
+        PreparedTarget prepared = prepare(target);
+        int[] counts = elementCounts(prepared, target.getAtomCount());
+
+        BitSet hits = new BitSet(size);
+        for (int i = 0; i < patterns.length; i++) {
+            if (counts != null && !feasible(elementCounts[i], counts))
+                continue;
+            if (patterns[i].matchPrepared(prepared).atLeast(1)) {
+                for (int idx : indices[i])
+                    hits.set(idx);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Find the unique matches of each query in the target, a match is unique
+     * if no previous match of the query covers the same atoms. The SMARTS
+     * invariants and the Daylight aromaticity model are applied to the target
+     * (clearing existing aromaticity).
+     *
+     * @param target the target compound
+     * @return the unique mappings of each query (indexed as the queries), a
+     *         query which was not found has no mappings
+     * @throws CDKException the aromaticity could not be perceived
+     */
+    public int[][][] uniqueMatches(IAtomContainer target) throws CDKException {
+
+        PreparedTarget prepared = prepare(target);
+        int[] counts = elementCounts(prepared, target.getAtomCount());
+
+        int[][][] matches = new int[size][][];
+        for (int i = 0; i < patterns.length; i++) {
+            int[][] mappings = new int[0][];
+            if (counts == null || feasible(elementCounts[i], counts))
+                mappings = patterns[i].matchPrepared(prepared).uniqueAtoms().toArray();
+            for (int idx : indices[i])
+                matches[idx] = mappings;
+        }
+        return matches;
+    }
+
+    /**
+     * Build the adjacency of the target and assign the SMARTS invariants and
+     * aromaticity.
+     *
+     * @param target the target compound
+     * @return the prepared target
+     * @throws CDKException the aromaticity could not be perceived
+     */
+    private PreparedTarget prepare(IAtomContainer target) throws CDKException {
+        PreparedTarget prepared = new PreparedTarget(target);
+        SmartsPattern.prepare(prepared, ringInfo, arom);
+        return prepared;
+    }
+
+    /**
+     * Check whether the target has at least as many atoms of each element as
+     * required by the query.
+     *
+     * @param required element counts required by the query
+     * @param counts   element counts of the target
+     * @return a match may be possible
+     */
+    private static boolean feasible(int[] required, int[] counts) {
+        for (int i = 0; i < MAX_ELEMENT; i++) {
+            if (required[i] > counts[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Count the number of atoms of each element in the prepared target.
+     *
+     * @param target a prepared target
+     * @param n      number of atoms
+     * @return the element counts, or null if an element was unset
+     */
+    private static int[] elementCounts(PreparedTarget target, int n) {
+        int[] counts = new int[MAX_ELEMENT];
+        for (int v = 0; v < n; v++) {
+            int elem = target.atomicNumber(v);
+            if (elem < 0 || elem >= MAX_ELEMENT)
+                return null;
+            counts[elem]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Create a screen for the given SMARTS queries, the index of each query in
+     * the list is the index of its bit in the result of {@link
+     * #matches(IAtomContainer)}.
+     *
+     * @param smarts  SMARTS pattern strings
+     * @param builder chem object builder used to create objects
+     * @return a new screen
+     * @throws IOException a query could not be parsed
+     */
+    public static SmartsScreen create(List<String> smarts, IChemObjectBuilder builder) throws IOException {
+        return new SmartsScreen(smarts.toArray(new String[smarts.size()]), builder);
+    }
+
+    /**
+     * Create a screen for the given SMARTS queries, the index of each query in
+     * the array is the index of its bit in the result of {@link
+     * #matches(IAtomContainer)}.
+     *
+     * @param smarts  SMARTS pattern strings
+     * @param builder chem object builder used to create objects
+     * @return a new screen
+     * @throws IOException a query could not be parsed
+     */
+    public static SmartsScreen create(String[] smarts, IChemObjectBuilder builder) throws IOException {
+        return new SmartsScreen(smarts.clone(), builder);
+    }
+}
@@ -39,6 +39,7 @@ import org.openscience.cdk.isomorphism.UllmannSubstructureTest;
 import org.openscience.cdk.isomorphism.VFSubstructureTest;
 
 import org.openscience.cdk.smiles.smarts.SMARTSQueryToolTest;
+import org.openscience.cdk.smiles.smarts.SmartsScreenTest;
 import org.openscience.cdk.smiles.smarts.parser.ParserTest;
 import org.openscience.cdk.smiles.smarts.parser.RecursiveTest;
 import org.openscience.cdk.smiles.smarts.parser.SMARTSSearchTest;
@@ -60,6 +61,7 @@ import org.openscience.cdk.smiles.smarts.parser.SmartsQueryVisitorTest;
     SmartsDumpVisitorTest.class,
     SmartsQueryVisitorTest.class,
     SMARTSQueryToolTest.class,
+    SmartsScreenTest.class,
     AnyOrderQueryBondTest.class,
     DaylightSMARTSAtomInvariantsTest.class,
     SmallestRingAtomTest.class,
@@ -25,8 +25,11 @@
 package org.openscience.cdk.smiles.smarts;
 
 import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.isomorphism.PreparedTarget;
 import org.openscience.cdk.silent.SilentChemObjectBuilder;
 import org.openscience.cdk.smiles.SmilesParser;
 
@@ -88,6 +91,24 @@ public class SmartsPatternTest {
                                  .matches(smi("CC(O)CC")));
     }
     
+    @Test public void preparedTargetIsInitialisedOnce() throws Exception {
+        IAtomContainer benzene = smi("C1=CC=CC=C1");
+        PreparedTarget target = new PreparedTarget(benzene);
+        assertTrue(SmartsPattern.create("c", bldr).matches(target));
+        // aromaticity is not perceived again for the prepared target
+        for (IAtom atom : benzene.atoms())
+            atom.setFlag(CDKConstants.ISAROMATIC, false);
+        assertTrue(SmartsPattern.create("c", bldr).matches(target));
+        assertFalse(SmartsPattern.create("C", bldr).matches(target));
+    }
+
+    @Test public void preparedTargetAddsRingInfo() throws Exception {
+        PreparedTarget target = new PreparedTarget(smi("C1CCCCC1"));
+        assertTrue(SmartsPattern.create("C", bldr).matches(target));
+        assertTrue(SmartsPattern.create("[r6]", bldr).matches(target));
+        assertFalse(SmartsPattern.create("[r5]", bldr).matches(target));
+    }
+
     IAtomContainer smi(String smi) throws Exception {
         return new SmilesParser(bldr).parseSmiles(smi);
     }
@@ -0,0 +1,117 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.smiles.smarts;
+
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @cdk.module test-smarts
+ */
+public class SmartsScreenTest {
+
+    IChemObjectBuilder bldr = SilentChemObjectBuilder.getInstance();
+
+    @Test public void size() throws Exception {
+        SmartsScreen screen = SmartsScreen.create(new String[]{"O", "N", "O"}, bldr);
+        assertThat(screen.size(), is(3));
+    }
+
+    @Test public void hits() throws Exception {
+        SmartsScreen screen = SmartsScreen.create(Arrays.asList("[OX2H]", "c1ccccc1", "N", "C=O"), bldr);
+        assertThat(screen.matches(smi("Oc1ccccc1")), is(bits(0, 1)));
+        assertThat(screen.matches(smi("CC(=O)N")), is(bits(2, 3)));
+        assertThat(screen.matches(smi("CCCC")), is(bits()));
+    }
+
+    @Test public void duplicateQueries() throws Exception {
+        SmartsScreen screen = SmartsScreen.create(new String[]{"CO", "CN", "CO"}, bldr);
+        assertThat(screen.matches(smi("CCO")), is(bits(0, 2)));
+    }
+
+    @Test public void elementCountPrescreen() throws Exception {
+        SmartsScreen screen = SmartsScreen.create(new String[]{"[O,o]~*~[O,o]", "[#8;X2]", "[!#6]", "O.O"}, bldr);
+        assertThat(screen.matches(smi("CCO")), is(bits(1, 2)));
+        assertThat(screen.matches(smi("OCO")), is(bits(0, 1, 2, 3)));
+    }
+
+    @Test public void aromaticityIsApplied() throws Exception {
+        SmartsScreen screen = SmartsScreen.create(new String[]{"c", "C"}, bldr);
+        assertThat(screen.matches(smi("C1=CC=CC=C1")), is(bits(0)));
+    }
+
+    @Test public void ringInfo() throws Exception {
+        SmartsScreen screen = SmartsScreen.create(new String[]{"[r5]", "[r6]", "[R0]"}, bldr);
+        assertThat(screen.matches(smi("C1CCCC1C")), is(bits(0, 2)));
+    }
+
+    @Test public void sameAsPattern() throws Exception {
+        String[] smarts = new String[]{"[CX3](=O)[OX2H1]", "[NX3;H2,H1;!$(NC=O)]", "[#6][CX3](=O)[#6]",
+                                       "C[C@H](O)CC", "(O).(O)", "[$(C=O)]N"};
+        SmartsScreen screen = SmartsScreen.create(smarts, bldr);
+        for (String smi : new String[]{"CC(=O)O", "NCC(=O)N", "CC(=O)C", "C[C@H](O)CC", "C[C@@H](O)CC", "O.O"}) {
+            BitSet expected = new BitSet();
+            for (int i = 0; i < smarts.length; i++) {
+                if (SmartsPattern.create(smarts[i], bldr).matches(smi(smi)))
+                    expected.set(i);
+            }
+            assertThat(smi, screen.matches(smi(smi)), is(expected));
+        }
+    }
+
+    @Test public void uniqueMatches() throws Exception {
+        SmartsScreen screen = SmartsScreen.create(new String[]{"CO", "N", "CO", "c1ccccc1"}, bldr);
+        int[][][] matches = screen.uniqueMatches(smi("OCC(O)c1ccccc1"));
+        assertThat(matches.length, is(4));
+        assertThat(matches[0].length, is(2));
+        assertThat(matches[1].length, is(0));
+        assertThat(matches[2], is(matches[0]));
+        assertThat(matches[3].length, is(1));
+        assertThat(matches[3][0].length, is(6));
+    }
+
+    @Test(expected = IOException.class) public void invalidSmarts() throws Exception {
+        SmartsScreen.create(new String[]{"C", "C)"}, bldr);
+    }
+
+    static BitSet bits(int... idxs) {
+        BitSet bits = new BitSet();
+        for (int idx : idxs)
+            bits.set(idx);
+        return bits;
+    }
+
+    IAtomContainer smi(String smi) throws Exception {
+        return new SmilesParser(bldr).parseSmiles(smi);
+    }
+}
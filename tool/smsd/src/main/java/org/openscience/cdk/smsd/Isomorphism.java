@@ -32,6 +32,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 
 import org.openscience.cdk.annotations.TestClass;
@@ -49,9 +55,11 @@ import org.openscience.cdk.smsd.algorithm.vflib.VFlibMCSHandler;
 import org.openscience.cdk.smsd.algorithm.vflib.VFlibSubStructureHandler;
 import org.openscience.cdk.smsd.algorithm.vflib.VFlibTurboHandler;
 import org.openscience.cdk.smsd.filters.ChemicalFilters;
-import org.openscience.cdk.smsd.global.TimeOut;
+import org.openscience.cdk.smsd.global.TimeBudget;
 import org.openscience.cdk.smsd.interfaces.AbstractMCS;
+import org.openscience.cdk.smsd.interfaces.AbstractMCSAlgorithm;
 import org.openscience.cdk.smsd.interfaces.Algorithm;
+import org.openscience.cdk.smsd.interfaces.IMCSBase;
 import org.openscience.cdk.smsd.tools.MolHandler;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
@@ -182,6 +190,9 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
     private double bondInSensitiveTimeOut = 1.00;//mins
     private boolean subGraph = false;
     private boolean matchBonds = false;
+    private boolean timeOut = false;
+    private transient TimeBudget timeBudget = null;
+    private transient ExecutorService executor = null;
 
     /**
      * This is the algorithm factory and entry port for all the MCS algorithm in the Isomorphism
@@ -191,7 +202,9 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
      * <lI>1: MCSPlus,
      * <lI>2: VFLibMCS,
      * <lI>3: CDKMCS,
-     * <lI>4: SubStructure
+     * <lI>4: SubStructure,
+     * <lI>5: TurboSubStructure,
+     * <lI>6: Portfolio
      * </OL>
      * @param algorithmType {@link org.openscience.cdk.smsd.interfaces.Algorithm}
      * @param bondTypeFlag
@@ -206,7 +219,6 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
         allBondMCS = new ArrayList<Map<IBond, IBond>>();
         firstBondMCS = new HashMap<IBond, IBond>();
 
-        setTime(bondTypeFlag);
         setMatchBonds(bondTypeFlag);
     }
 
@@ -326,6 +338,9 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
                 break;
             case TurboSubStructure:
                 turboSubStructureAlgorithm(rBondCount, pBondCount);
+                break;
+            case Portfolio:
+                portfolioAlgorithm();
         }
     }
 
@@ -338,7 +353,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
         } else {
             mcs.set(queryMol, pAC);
         }
-        mcs.searchMCS(isMatchBonds());
+        timeOut = search(mcs, stage());
 
         clearMaps();
 
@@ -362,7 +377,17 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
 
         clearMaps();
 
-        if (mcs.isSubgraph(isMatchBonds())) {
+        TimeBudget stage = stage();
+        TimeBudget previous = TimeBudget.bind(stage);
+        boolean found;
+        try {
+            found = mcs.isSubgraph(isMatchBonds());
+        } finally {
+            TimeBudget.restore(previous);
+        }
+        timeOut = stage.hasExpired();
+
+        if (found) {
             firstSolution.putAll(mcs.getFirstMapping());
             allMCS.addAll(mcs.getAllMapping());
 
@@ -381,7 +406,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
         } else {
             mcs.set(queryMol, pAC);
         }
-        mcs.searchMCS(isMatchBonds());
+        timeOut = search(mcs, stage());
 
         clearMaps();
 
@@ -400,7 +425,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
         } else {
             mcs.set(queryMol, pAC);
         }
-        mcs.searchMCS(isMatchBonds());
+        timeOut = search(mcs, stage());
 
         clearMaps();
         firstSolution.putAll(mcs.getFirstMapping());
@@ -455,7 +480,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
         } else {
             mcs.set(queryMol, pAC);
         }
-        mcs.searchMCS(isMatchBonds());
+        timeOut = search(mcs, stage());
 
         clearMaps();
         firstSolution.putAll(mcs.getFirstMapping());
@@ -552,22 +577,161 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
         vfLibMCS();
     }
 
-    private void setTime(boolean bondTypeFlag) {
-        if (bondTypeFlag) {
-            TimeOut tmo = TimeOut.getInstance();
-            tmo.setTimeOut(getBondSensitiveTimeOut());
-        } else {
-            TimeOut tmo = TimeOut.getInstance();
-            tmo.setTimeOut(getBondInSensitiveTimeOut());
+    /**
+     * Run the algorithms of the MCS search in parallel on the executor, the
+     * first algorithm to complete within its time out provides the answer
+     * and the others are cancelled. If all algorithms time out the largest
+     * mapping found is used. Without an executor the default algorithm is
+     * used.
+     */
+    private void portfolioAlgorithm() {
+        if (executor == null) {
+            defaultMCSAlgorithm();
+            return;
+        }
+
+        final AbstractMCSAlgorithm[] handlers = {new MCSPlusHandler(), new VFlibMCSHandler(), new CDKMCSHandler()};
+        final TimeBudget[] stages = new TimeBudget[handlers.length];
+        TimeBudget race = stage();
+
+        CompletionService<Integer> service = new ExecutorCompletionService<Integer>(executor);
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>(handlers.length);
+        for (int i = 0; i < handlers.length; i++) {
+            final int index = i;
+            stages[i] = race.stage(-1);
+            futures.add(service.submit(new Callable<Integer>() {
+
+                @Override
+                public Integer call() throws CDKException {
+                    IMCSBase mcs = (IMCSBase) handlers[index];
+                    if (queryMol == null) {
+                        mcs.set(rMol, pMol);
+                    } else {
+                        mcs.set(queryMol, pAC);
+                    }
+                    search(handlers[index], stages[index]);
+                    return index;
+                }
+            }));
+        }
+
+        int best = -1;
+        try {
+            for (int i = 0; i < handlers.length; i++) {
+                int index;
+                try {
+                    index = service.take().get();
+                } catch (ExecutionException e) {
+                    Logger.debug("Portfolio algorithm failed: ", e.getCause());
+                    continue;
+                }
+                if (!stages[index].hasExpired()) {
+                    best = index;
+                    break;
+                }
+                if (best < 0 || mappingSize(handlers[index]) > mappingSize(handlers[best])) {
+                    best = index;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (int i = 0; i < handlers.length; i++) {
+                stages[i].cancel();
+                futures.get(i).cancel(true);
+            }
+        }
+
+        clearMaps();
+        if (best < 0) {
+            timeOut = race.isExpired();
+            return;
+        }
+        IMCSBase mcs = (IMCSBase) handlers[best];
+        timeOut = stages[best].hasExpired();
+        firstSolution.putAll(mcs.getFirstMapping());
+        allMCS.addAll(mcs.getAllMapping());
+
+        firstAtomMCS.putAll(mcs.getFirstAtomMapping());
+        allAtomMCS.addAll(mcs.getAllAtomMapping());
+    }
+
+    private static int mappingSize(AbstractMCSAlgorithm mcs) {
+        Map<Integer, Integer> mapping = ((IMCSBase) mcs).getFirstMapping();
+        return mapping == null ? 0 : mapping.size();
+    }
+
+    /**
+     * A stage of the time budget for one algorithm, the stage is limited to
+     * the bond sensitive or insensitive time out.
+     *
+     * @return the stage
+     */
+    private TimeBudget stage() {
+        TimeBudget budget = timeBudget != null ? timeBudget : TimeBudget.unlimited();
+        return budget.stage(isMatchBonds() ? getBondSensitiveTimeOut() : getBondInSensitiveTimeOut());
+    }
+
+    /**
+     * Run the MCS search of an algorithm with the given budget bound to the
+     * current thread.
+     *
+     * @param mcs   the algorithm
+     * @param stage the budget
+     * @return the search was stopped by the budget
+     */
+    private boolean search(AbstractMCSAlgorithm mcs, TimeBudget stage) {
+        TimeBudget previous = TimeBudget.bind(stage);
+        try {
+            mcs.searchMCS(isMatchBonds());
+        } finally {
+            TimeBudget.restore(previous);
         }
+        return stage.hasExpired();
     }
 
+    /**
+     * Whether the last algorithm run was stopped by its time out, the
+     * mappings may then not be maximal.
+     *
+     * @return the search timed out
+     */
     public boolean isTimeOut() {
-        return TimeOut.getInstance().isTimeOutFlag();
+        return timeOut;
     }
 
     public void resetTimeOut() {
-        TimeOut.getInstance().setTimeOutFlag(false);
+        timeOut = false;
+    }
+
+    /**
+     * Set the overall time budget of the searches. Each algorithm is further
+     * limited to the bond sensitive or insensitive time out. The budget may
+     * be cancelled from another thread to stop the search.
+     *
+     * @param timeBudget the budget, null for no limit other than the time outs
+     */
+    public void setTimeBudget(TimeBudget timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * The overall time budget of the searches.
+     *
+     * @return the budget, null if not set
+     */
+    public TimeBudget getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**
+     * Set the executor used to run the algorithms of the {@link
+     * Algorithm#Portfolio} in parallel.
+     *
+     * @param executor the executor, null to run the default algorithm
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
     }
 
     private void clearMaps() {
@@ -34,6 +34,7 @@ import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
+import org.openscience.cdk.smsd.global.TimeBudget;
 import org.openscience.cdk.smsd.helper.BinaryTree;
 
 /**
@@ -434,7 +435,8 @@ public final class McGregor {
 //        //check possible mappings:
         boolean furtherMappingFlag = McGregorChecks.isFurtherMappingPossible(source, target, mcGregorHelper, isBondMatch());
 
-        if (neighborBondNumA == 0 || neighborBondNumB == 0 || mappingCheckFlag || !furtherMappingFlag) {
+        if (neighborBondNumA == 0 || neighborBondNumB == 0 || mappingCheckFlag || !furtherMappingFlag
+                || isTimeOut()) {
             setFinalMappings(mappedAtoms, mappedAtomCount);
             return 0;
         }
@@ -478,7 +480,7 @@ public final class McGregor {
         List<String> c_bond_setA = mcGregorHelper.getCBondSetA();
         List<String> c_bond_setB = mcGregorHelper.getCBondSetB();
 
-        while (!BESTARCS_copy.empty()) {
+        while (!BESTARCS_copy.empty() && !isTimeOut()) {
 
             List<Integer> MARCS_vector = new ArrayList<Integer>(BESTARCS_copy.peek());
             List<Integer> new_Mapping = findMcGregorMapping(MARCS_vector, mcGregorHelper);
@@ -973,6 +975,15 @@ public final class McGregor {
         }
     }
 
+    /**
+     * The extension stops when the budget of the current thread has expired,
+     * without a budget the iteration runs to completion.
+     */
+    private static boolean isTimeOut() {
+        TimeBudget budget = TimeBudget.current();
+        return budget != null && budget.isExpired();
+    }
+
     private boolean matchGAtoms(String G1A, String G2A, String G1B, String G2B) {
         return (G1A.compareToIgnoreCase(G1B) == 0
                 && G2A.compareToIgnoreCase(G2B) == 0)
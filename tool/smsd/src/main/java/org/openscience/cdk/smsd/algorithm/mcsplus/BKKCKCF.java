@@ -211,7 +211,7 @@ public class BKKCKCF {
         int index = 0;
         List<Integer> neighbourVertex = new ArrayList<Integer>(); ////Initialization ArrayList neighbourVertex
 
-        while (potentialVertex.get(index) != 0) {
+        while (potentialVertex.get(index) != 0 && !MCSPlus.isTimeOut()) {
             int potentialVertexIndex = potentialVertex.get(index);
 
             potentialCVertex.removeElement(potentialVertexIndex);
@@ -419,7 +419,7 @@ public class BKKCKCF {
         List<Integer> neighbourVertex = new ArrayList<Integer>();
 
         int index = 0;
-        while (vertex.get(index) != 0) {
+        while (vertex.get(index) != 0 && !MCSPlus.isTimeOut()) {
             int central_node = vertex.get(index);
             potentialCVertex.clear();
             potentialDVertex.clear();
@@ -0,0 +1,291 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.smsd.algorithm.mcsplus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+
+/**
+ * Finds the maximum c-cliques of a compatibility graph, the same problem as
+ * {@link BKKCKCF} solves. A c-clique is a clique whose c-edges (edges of
+ * bonds matched in both molecules) connect all its vertices, these are the
+ * connected common substructures.
+ *
+ * The graph is stored as one {@code long[]} bit set of c-neighbours and one
+ * of d-neighbours per vertex and all vertex sets of the search are bit sets,
+ * a step of the search is therefore a few word wise and/or operations rather
+ * than copies of lists. The Cazals-Karande enumeration is used with two
+ * additions: a pivot which is adjacent to all not yet connected candidates
+ * limits the branching, and a greedy colouring of the candidates bounds the
+ * size of any clique that can be reached so branches which can not reach the
+ * best size are pruned. All maximum c-cliques are reported.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @see MCSPlus
+ */
+final class BitsetCliqueFinder {
+
+    /** The vertex ids of the compatibility graph nodes, by index. */
+    private final Integer[] ids;
+
+    /** C-neighbours, and c- or d-neighbours, of each vertex. */
+    private final long[][] cAdj;
+    private final long[][] adj;
+
+    /** Number of words of the bit sets. */
+    private final int words;
+
+    /** The current clique and the maximum cliques found. */
+    private final int[] clique;
+    private final List<List<Integer>> maxCliquesSet = new ArrayList<List<Integer>>();
+    private int bestCliqueSize = 0;
+
+    /**
+     * Search the maximum c-cliques of a compatibility graph.
+     *
+     * @param compGraphNodes the nodes, triples of the source atom, target atom
+     *                       and vertex id (numbered from 1)
+     * @param cEdges         pairs of vertex ids joined by a c-edge
+     * @param dEdges         pairs of vertex ids joined by a d-edge
+     */
+    BitsetCliqueFinder(List<Integer> compGraphNodes, List<Integer> cEdges, List<Integer> dEdges) {
+        int n = compGraphNodes.size() / 3;
+        this.ids = new Integer[n];
+        for (int i = 0; i < n; i++)
+            ids[i] = compGraphNodes.get(3 * i + 2);
+        this.words = (n + 63) >>> 6;
+        this.cAdj = new long[n][words];
+        this.adj = new long[n][words];
+        this.clique = new int[n];
+        for (int i = 0; i + 1 < cEdges.size(); i += 2) {
+            int u = cEdges.get(i) - 1, v = cEdges.get(i + 1) - 1;
+            set(cAdj[u], v);
+            set(cAdj[v], u);
+            set(adj[u], v);
+            set(adj[v], u);
+        }
+        for (int i = 0; i + 1 < dEdges.size(); i += 2) {
+            int u = dEdges.get(i) - 1, v = dEdges.get(i + 1) - 1;
+            set(adj[u], v);
+            set(adj[v], u);
+        }
+        search();
+    }
+
+    /**
+     * The size of the maximum c-cliques.
+     *
+     * @return number of vertices of a maximum clique
+     */
+    int getBestCliqueSize() {
+        return bestCliqueSize;
+    }
+
+    /**
+     * The maximum c-cliques as lists of vertex ids.
+     *
+     * @return the maximum cliques
+     */
+    Stack<List<Integer>> getMaxCliqueSet() {
+        Stack<List<Integer>> solution = new Stack<List<Integer>>();
+        solution.addAll(maxCliquesSet);
+        return solution;
+    }
+
+    /**
+     * Start a clique from each vertex, the vertices already used as a start
+     * are excluded from the later cliques.
+     */
+    private void search() {
+        long[] processed = new long[words];
+        for (int v = 0; v < ids.length && !MCSPlus.isTimeOut(); v++) {
+            long[] p = new long[words], d = new long[words], s = new long[words], t = new long[words];
+            for (int w = 0; w < words; w++) {
+                long c = cAdj[v][w], dOnly = adj[v][w] & ~c;
+                p[w] = c & ~processed[w];
+                s[w] = c & processed[w];
+                d[w] = dOnly & ~processed[w];
+                t[w] = dOnly & processed[w];
+            }
+            clique[0] = v;
+            expand(1, p, d, s, t);
+            set(processed, v);
+        }
+    }
+
+    /**
+     * Extend the current clique.
+     *
+     * @param size number of vertices in the current clique
+     * @param p    candidates c-adjacent to a clique vertex
+     * @param d    candidates only d-adjacent to the clique vertices
+     * @param s    excluded vertices c-adjacent to a clique vertex
+     * @param t    excluded vertices only d-adjacent to the clique vertices
+     */
+    private void expand(int size, long[] p, long[] d, long[] s, long[] t) {
+
+        if (isEmpty(p)) {
+            if (isEmpty(s))
+                report(size);
+            return;
+        }
+
+        if (MCSPlus.isTimeOut())
+            return;
+
+        // the candidates are p and d, the d vertices can join once connected
+        long[] candidates = new long[words];
+        for (int w = 0; w < words; w++)
+            candidates[w] = p[w] | d[w];
+        if (size + colourBound(candidates, bestCliqueSize - size) < bestCliqueSize)
+            return;
+
+        long[] branch = pivot(p, d);
+
+        for (int w = 0; w < words; w++) {
+            while (branch[w] != 0) {
+                long bit = branch[w] & -branch[w];
+                branch[w] ^= bit;
+                int u = (w << 6) + Long.numberOfTrailingZeros(bit);
+
+                long[] nu = adj[u], cu = cAdj[u];
+                long[] p2 = new long[words], d2 = new long[words], s2 = new long[words], t2 = new long[words];
+                for (int x = 0; x < words; x++) {
+                    long dx = d[x] & nu[x], tx = t[x] & nu[x];
+                    p2[x] = (p[x] & nu[x]) | (dx & cu[x]);
+                    d2[x] = dx & ~cu[x];
+                    s2[x] = (s[x] & nu[x]) | (tx & cu[x]);
+                    t2[x] = tx & ~cu[x];
+                }
+                clique[size] = u;
+                expand(size + 1, p2, d2, s2, t2);
+
+                p[w] &= ~bit;
+                s[w] |= bit;
+            }
+        }
+    }
+
+    /**
+     * The candidates to branch on. A pivot in p which is adjacent to all of
+     * d can be added to any clique built from its neighbours, only the
+     * candidates not adjacent to the pivot need to be tried. Without such a
+     * pivot all candidates are tried.
+     *
+     * @param p candidates c-adjacent to a clique vertex
+     * @param d candidates only d-adjacent to the clique vertices
+     * @return the candidates to branch on
+     */
+    private long[] pivot(long[] p, long[] d) {
+        int pivot = -1, best = -1;
+        for (int w = 0; w < words; w++) {
+            long bits = p[w];
+            while (bits != 0) {
+                long bit = bits & -bits;
+                bits ^= bit;
+                int v = (w << 6) + Long.numberOfTrailingZeros(bit);
+                long[] nv = adj[v];
+                int count = 0;
+                boolean coversD = true;
+                for (int x = 0; x < words && coversD; x++) {
+                    coversD = (d[x] & ~nv[x]) == 0;
+                    count += Long.bitCount(p[x] & nv[x]);
+                }
+                if (coversD && count > best) {
+                    best = count;
+                    pivot = v;
+                }
+            }
+        }
+        long[] branch = p.clone();
+        if (pivot >= 0) {
+            long[] np = adj[pivot];
+            for (int x = 0; x < words; x++)
+                branch[x] &= ~np[x];
+        }
+        return branch;
+    }
+
+    /**
+     * Greedy colouring of the candidates, no two vertices of a colour are
+     * adjacent so the number of colours bounds the size of a clique of the
+     * candidates. The colouring stops once the limit is exceeded.
+     *
+     * @param candidates the vertices to colour (modified)
+     * @param limit      stop once more than this many colours are used
+     * @return number of colours used
+     */
+    private int colourBound(long[] candidates, int limit) {
+        int colours = 0;
+        long[] uncoloured = candidates;
+        long[] colourable = new long[words];
+        while (!isEmpty(uncoloured)) {
+            if (++colours > limit)
+                return colours;
+            System.arraycopy(uncoloured, 0, colourable, 0, words);
+            for (int w = 0; w < words; w++) {
+                while (colourable[w] != 0) {
+                    long bit = colourable[w] & -colourable[w];
+                    int v = (w << 6) + Long.numberOfTrailingZeros(bit);
+                    uncoloured[w] &= ~bit;
+                    long[] nv = adj[v];
+                    for (int x = w; x < words; x++)
+                        colourable[x] &= ~nv[x];
+                    colourable[w] &= ~bit;
+                }
+            }
+        }
+        return colours;
+    }
+
+    /**
+     * Store the current clique if it is at least as large as the best.
+     *
+     * @param size number of vertices in the current clique
+     */
+    private void report(int size) {
+        if (size < bestCliqueSize)
+            return;
+        if (size > bestCliqueSize) {
+            maxCliquesSet.clear();
+            bestCliqueSize = size;
+        }
+        List<Integer> vertices = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++)
+            vertices.add(ids[clique[i]]);
+        maxCliquesSet.add(vertices);
+    }
+
+    private static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    private static boolean isEmpty(long[] bits) {
+        for (long word : bits)
+            if (word != 0)
+                return false;
+        return true;
+    }
+}
@@ -32,6 +32,7 @@ import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.smsd.algorithm.mcgregor.McGregor;
+import org.openscience.cdk.smsd.global.TimeBudget;
 import org.openscience.cdk.smsd.global.TimeOut;
 import org.openscience.cdk.smsd.tools.TimeManager;
 
@@ -45,11 +46,25 @@ import org.openscience.cdk.smsd.tools.TimeManager;
 @TestClass("org.openscience.cdk.smsd.SMSDBondSensitiveTest")
 public class MCSPlus {
 
+    /** Whether the cliques are found with the {@link BitsetCliqueFinder}. */
+    private final boolean bitsetCliques;
+
     /**
     * Default constructor added 
     */
     public MCSPlus(){
-        
+        this(false);
+    }
+
+    /**
+     * Create the algorithm with a choice of clique search, {@link BKKCKCF}
+     * (the default) or the bit parallel {@link BitsetCliqueFinder} which
+     * finds the same clique size and is faster on larger molecules.
+     *
+     * @param bitsetCliques use the bit parallel clique search
+     */
+    public MCSPlus(boolean bitsetCliques) {
+        this.bitsetCliques = bitsetCliques;
     }
 
     private static TimeManager timeManager = null;
@@ -98,8 +113,12 @@ public class MCSPlus {
 //            System.err.println("C_edges: " + C_edges.size());
 //            System.out.println("D_edges: " + D_edges.size());
 
-            BKKCKCF init = new BKKCKCF(comp_graph_nodes, C_edges, D_edges);
-            maxCliqueSet = init.getMaxCliqueSet();
+            if (bitsetCliques) {
+                maxCliqueSet = new BitsetCliqueFinder(comp_graph_nodes, C_edges, D_edges).getMaxCliqueSet();
+            } else {
+                BKKCKCF init = new BKKCKCF(comp_graph_nodes, C_edges, D_edges);
+                maxCliqueSet = init.getMaxCliqueSet();
+            }
 
 //            System.err.println("**************************************************");
 //            System.err.println("Max_Cliques_Set: " + maxCliqueSet.size());
@@ -129,7 +148,21 @@ public class MCSPlus {
         return mappings;
     }
 
-    public synchronized static boolean isTimeOut() {
+    /**
+     * Check whether the search should stop. The budget bound to the current
+     * thread is used if there is one, otherwise the global {@link TimeOut}.
+     *
+     * @return the time is up
+     */
+    public static boolean isTimeOut() {
+        TimeBudget budget = TimeBudget.current();
+        if (budget != null) {
+            return budget.isExpired();
+        }
+        return isGlobalTimeOut();
+    }
+
+    private synchronized static boolean isGlobalTimeOut() {
         if (getTimeout() > -1 && getTimeManager().getElapsedTimeInMinutes() > getTimeout()) {
             TimeOut.getInstance().setTimeOutFlag(true);
             return true;
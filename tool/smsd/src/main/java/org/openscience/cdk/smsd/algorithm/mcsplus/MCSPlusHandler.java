@@ -50,13 +50,14 @@ import org.openscience.cdk.smsd.tools.MolHandler;
 @TestClass("org.openscience.cdk.smsd.SMSDBondSensitiveTest")
 public class MCSPlusHandler extends AbstractMCSAlgorithm implements IMCSBase {
 
-    private static List<Map<IAtom, IAtom>> allAtomMCS = null;
-    private static Map<IAtom, IAtom> atomsMCS = null;
-    private static Map<Integer, Integer> firstMCS = null;
-    private static List<Map<Integer, Integer>> allMCS = null;
+    private List<Map<IAtom, IAtom>> allAtomMCS = null;
+    private Map<IAtom, IAtom> atomsMCS = null;
+    private Map<Integer, Integer> firstMCS = null;
+    private List<Map<Integer, Integer>> allMCS = null;
     private IAtomContainer source = null;
     private IAtomContainer target = null;
     private boolean flagExchange = false;
+    private boolean bitsetCliques = false;
 
     /**
      * Constructor for the MCS Plus algorithm class
@@ -90,6 +91,16 @@ public class MCSPlusHandler extends AbstractMCSAlgorithm implements IMCSBase {
         this.target = target;
     }
 
+    /**
+     * Choose the clique search of the {@link MCSPlus} algorithm, the bit
+     * parallel {@link BitsetCliqueFinder} or {@link BKKCKCF} (the default).
+     *
+     * @param bitsetCliques use the bit parallel clique search
+     */
+    public synchronized void setBitsetCliques(boolean bitsetCliques) {
+        this.bitsetCliques = bitsetCliques;
+    }
+
     /** {@inheritDoc}
      * Function is called by the main program and serves as a starting point for the comparison procedure.
      *
@@ -101,10 +112,10 @@ public class MCSPlusHandler extends AbstractMCSAlgorithm implements IMCSBase {
         List<List<Integer>> mappings = null;
         try {
             if (source.getAtomCount() >= target.getAtomCount()) {
-                mappings = new MCSPlus().getOverlaps(source, target, shouldMatchBonds);
+                mappings = new MCSPlus(bitsetCliques).getOverlaps(source, target, shouldMatchBonds);
             } else {
                 flagExchange = true;
-                mappings = new MCSPlus().getOverlaps(target, source, shouldMatchBonds);
+                mappings = new MCSPlus(bitsetCliques).getOverlaps(target, source, shouldMatchBonds);
             }
             PostFilter.filter(mappings);
             setAllMapping();
@@ -70,6 +70,7 @@ import org.openscience.cdk.smsd.algorithm.matchers.BondMatcher;
 import org.openscience.cdk.smsd.algorithm.matchers.DefaultBondMatcher;
 import org.openscience.cdk.smsd.algorithm.matchers.DefaultMatcher;
 import org.openscience.cdk.smsd.algorithm.matchers.DefaultRGraphAtomMatcher;
+import org.openscience.cdk.smsd.global.TimeBudget;
 import org.openscience.cdk.smsd.global.TimeOut;
 import org.openscience.cdk.smsd.tools.TimeManager;
 import org.openscience.cdk.tools.manipulator.BondManipulator;
@@ -1176,7 +1177,21 @@ public class CDKMCS {
         timeManager = aTimeManager;
     }
 
-    public synchronized static boolean isTimeOut() {
+    /**
+     * Check whether the search should stop. The budget bound to the current
+     * thread is used if there is one, otherwise the global {@link TimeOut}.
+     *
+     * @return the time is up
+     */
+    public static boolean isTimeOut() {
+        TimeBudget budget = TimeBudget.current();
+        if (budget != null) {
+            return budget.isExpired();
+        }
+        return isGlobalTimeOut();
+    }
+
+    private synchronized static boolean isGlobalTimeOut() {
         if (getTimeout() > -1 && getTimeManager().getElapsedTimeInMinutes() > getTimeout()) {
             TimeOut.getInstance().setTimeOutFlag(true);
             return true;
@@ -57,39 +57,40 @@ public class CDKRMapHandler {
         
     }
     /**
-     * Returns source molecule
+     * Returns source molecule of the current thread
      * @return the source
      */
     public static IAtomContainer getSource() {
-        return source;
+        return source.get();
     }
 
     /**
-     * Set source molecule
+     * Set source molecule of the current thread
      * @param aSource the source to set
      */
     public static void setSource(IAtomContainer aSource) {
-        source = aSource;
+        source.set(aSource);
     }
 
     /**
-     * Returns target molecule
+     * Returns target molecule of the current thread
      * @return the target
      */
     public static IAtomContainer getTarget() {
-        return target;
+        return target.get();
     }
 
     /**
-     * Set target molecule
+     * Set target molecule of the current thread
      * @param aTarget the target to set
      */
     public static void setTarget(IAtomContainer aTarget) {
-        target = aTarget;
+        target.set(aTarget);
     }
     private List<Map<Integer, Integer>> mappings;
-    private static IAtomContainer source;
-    private static IAtomContainer target;
+    /** The molecules are held per thread so concurrent searches do not mix. */
+    private static final ThreadLocal<IAtomContainer> source = new ThreadLocal<IAtomContainer>();
+    private static final ThreadLocal<IAtomContainer> target = new ThreadLocal<IAtomContainer>();
     private boolean timeoutFlag = false;
 
     /**
@@ -477,7 +478,7 @@ public class CDKRMapHandler {
      */
     protected Stack<List<CDKRMap>> getAllMaximum(List<List<CDKRMap>> overlaps) {
 
-        Stack<List<CDKRMap>> allMaximumMappings = null;
+        Stack<List<CDKRMap>> allMaximumMappings = new Stack<List<CDKRMap>>();
 
         int count = -1;
 
@@ -62,6 +62,7 @@ import org.openscience.cdk.smsd.algorithm.vflib.interfaces.INode;
 import org.openscience.cdk.smsd.algorithm.vflib.interfaces.IQuery;
 import org.openscience.cdk.smsd.algorithm.vflib.interfaces.IState;
 import org.openscience.cdk.smsd.algorithm.vflib.query.QueryCompiler;
+import org.openscience.cdk.smsd.global.TimeBudget;
 import org.openscience.cdk.smsd.global.TimeOut;
 import org.openscience.cdk.smsd.tools.TimeManager;
 
@@ -213,7 +214,7 @@ public class VFMCSMapper implements IMapper {
     }
 
     private void mapAll(IState state) {
-        if (state.isDead()) {
+        if (state.isDead() || isTimeOut()) {
             return;
         }
 
@@ -239,7 +240,7 @@ public class VFMCSMapper implements IMapper {
     }
 
     private boolean mapFirst(IState state) {
-        if (state.isDead()) {
+        if (state.isDead() || isTimeOut()) {
             return false;
         }
 
@@ -269,7 +270,21 @@ public class VFMCSMapper implements IMapper {
         return false;
     }
 
-    public synchronized static boolean isTimeOut() {
+    /**
+     * Check whether the search should stop. The budget bound to the current
+     * thread is used if there is one, otherwise the global {@link TimeOut}.
+     *
+     * @return the time is up
+     */
+    public static boolean isTimeOut() {
+        TimeBudget budget = TimeBudget.current();
+        if (budget != null) {
+            return budget.isExpired();
+        }
+        return isGlobalTimeOut();
+    }
+
+    private synchronized static boolean isGlobalTimeOut() {
         if (getTimeout() > -1 && getTimeManager().getElapsedTimeInMinutes() > getTimeout()) {
             TimeOut.getInstance().setTimeOutFlag(true);
             return true;
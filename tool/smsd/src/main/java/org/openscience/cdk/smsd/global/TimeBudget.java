@@ -0,0 +1,212 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.smsd.global;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A deadline and cancellation flag for one MCS search. Unlike the process
+ * wide {@link TimeOut}, a budget belongs to a single search and is bound to
+ * the thread running it, the algorithms ({@code MCSPlus}, {@code BKKCKCF},
+ * {@code McGregor}, {@code CDKMCS} and the VF lib mappers) poll the budget
+ * of the current thread and stop with the best solution found so far when it
+ * has expired. Concurrent searches therefore do not interfere with each
+ * other.
+ *
+ * <blockquote><pre>
+ * TimeBudget  budget     = new TimeBudget(50, TimeUnit.MILLISECONDS);
+ * Isomorphism comparison = new Isomorphism(Algorithm.DEFAULT, true);
+ * comparison.setTimeBudget(budget);
+ * comparison.init(query, target, true, true);
+ * </pre></blockquote>
+ *
+ * A budget may be cancelled from another thread, a stage (see {@link
+ * #stage(double)}) expires with its parent or when its own time is up.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ */
+public final class TimeBudget {
+
+    /** Longest time a budget can be given, about 30 years (avoids overflow). */
+    private static final long MAX_NANOS = 1000000000000000000L;
+
+    /** The budget of the search running on each thread. */
+    private static final ThreadLocal<TimeBudget> CURRENT = new ThreadLocal<TimeBudget>();
+
+    /** The enclosing budget, may be null. */
+    private final TimeBudget parent;
+
+    /** Deadline in {@link System#nanoTime()}, only used if bounded. */
+    private final long    deadline;
+    private final boolean bounded;
+
+    private volatile boolean cancelled = false;
+    private volatile boolean expired   = false;
+
+    /**
+     * Create a budget of the given time from now.
+     *
+     * @param time the time available
+     * @param unit unit of the time
+     */
+    public TimeBudget(long time, TimeUnit unit) {
+        this(null, true, System.nanoTime() + Math.min(Math.max(unit.toNanos(time), 0), MAX_NANOS));
+    }
+
+    /**
+     * Create a budget of the given number of minutes from now, a negative
+     * value (e.g. -1) is unlimited. The minutes match the time outs of
+     * {@link TimeOut}.
+     *
+     * @param minutes the time available in minutes
+     */
+    public TimeBudget(double minutes) {
+        this(null, minutes >= 0, System.nanoTime() + toNanos(minutes));
+    }
+
+    private TimeBudget(TimeBudget parent, boolean bounded, long deadline) {
+        this.parent = parent;
+        this.bounded = bounded;
+        this.deadline = deadline;
+    }
+
+    /**
+     * A budget without a time limit which only expires when cancelled.
+     *
+     * @return unlimited budget
+     */
+    public static TimeBudget unlimited() {
+        return new TimeBudget(-1);
+    }
+
+    /**
+     * A stage of this budget which has at most the given number of minutes
+     * from now. The stage expires when this budget expires, cancelling the
+     * stage does not affect this budget.
+     *
+     * @param minutes the time available to the stage in minutes, negative
+     *                for the remaining time of this budget
+     * @return the stage
+     */
+    public TimeBudget stage(double minutes) {
+        if (minutes < 0)
+            return new TimeBudget(this, bounded, deadline);
+        long stageDeadline = System.nanoTime() + toNanos(minutes);
+        if (bounded && deadline - stageDeadline < 0)
+            stageDeadline = deadline;
+        return new TimeBudget(this, true, stageDeadline);
+    }
+
+    /**
+     * Cancel the budget, searches using it (or one of its stages) stop at
+     * their next check.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Has the budget (or an enclosing budget) been cancelled.
+     *
+     * @return the budget was cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled || (parent != null && parent.isCancelled());
+    }
+
+    /**
+     * Check whether the time is up or the budget was cancelled. Once a budget
+     * has expired it stays expired.
+     *
+     * @return the budget has expired
+     */
+    public boolean isExpired() {
+        if (expired)
+            return true;
+        if (isCancelled() || (bounded && System.nanoTime() - deadline >= 0)) {
+            expired = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Whether a previous check found the budget expired, i.e. a search using
+     * the budget was stopped early. Unlike {@link #isExpired()} the clock is
+     * not read.
+     *
+     * @return a check found the budget expired
+     */
+    public boolean hasExpired() {
+        return expired;
+    }
+
+    /**
+     * The budget bound to the current thread.
+     *
+     * @return the budget or null if none is bound
+     */
+    public static TimeBudget current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Bind a budget to the current thread, the previous budget should be
+     * restored once the search has finished:
+     *
+     * <blockquote><pre>
+     * TimeBudget previous = TimeBudget.bind(budget);
+     * try {
+     *     handler.searchMCS(true);
+     * } finally {
+     *     TimeBudget.restore(previous);
+     * }
+     * </pre></blockquote>
+     *
+     * @param budget the budget
+     * @return the previous budget of the thread (may be null)
+     */
+    public static TimeBudget bind(TimeBudget budget) {
+        TimeBudget previous = CURRENT.get();
+        CURRENT.set(budget);
+        return previous;
+    }
+
+    /**
+     * Restore the budget which was bound to the current thread before
+     * {@link #bind(TimeBudget)}.
+     *
+     * @param previous the previous budget (may be null)
+     */
+    public static void restore(TimeBudget previous) {
+        if (previous == null)
+            CURRENT.remove();
+        else
+            CURRENT.set(previous);
+    }
+
+    private static long toNanos(double minutes) {
+        return minutes < 0 ? 0 : (long) Math.min(minutes * 60e9, MAX_NANOS);
+    }
+}
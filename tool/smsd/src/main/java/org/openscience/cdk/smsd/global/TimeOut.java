@@ -28,7 +28,8 @@ import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 
 /**
- * Class that manages MCS timeout.
+ * Class that manages MCS timeout. The timeout is shared by all threads and
+ * is only used by algorithms run without a {@link TimeBudget}.
  * @cdk.module smsd
  * @cdk.githash
  * @author Syed Asad Rahman <asad@ebi.ac.uk>
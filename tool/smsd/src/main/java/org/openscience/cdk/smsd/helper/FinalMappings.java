@@ -41,23 +41,27 @@ import org.openscience.cdk.smsd.interfaces.IFinalMapping;
 @TestClass("org.openscience.cdk.smsd.helper.FinalMappingsTest")
 public class FinalMappings implements IFinalMapping {
 
-    private static List<Map<Integer, Integer>> mappings = null;
-    private static FinalMappings instance = null;
+    private final List<Map<Integer, Integer>> mappings;
+    private static final ThreadLocal<FinalMappings> instance = new ThreadLocal<FinalMappings>() {
+
+        @Override
+        protected FinalMappings initialValue() {
+            return new FinalMappings();
+        }
+    };
 
     protected FinalMappings() {
         mappings = new ArrayList<Map<Integer, Integer>>();
     }
 
     /**
-     * Stores mapping solutions
-     * @return instance of this object
+     * Stores mapping solutions. Each thread has its own instance so that
+     * searches running concurrently do not overwrite each other's mappings.
+     * @return instance of this object for the current thread
      */
     @TestMethod("testGetInstance")
-    synchronized public static FinalMappings getInstance() {
-        if (instance == null) {
-            instance = new FinalMappings();
-        }
-        return instance;
+    public static FinalMappings getInstance() {
+        return instance.get();
     }
 
     /**
@@ -95,7 +99,7 @@ public class FinalMappings implements IFinalMapping {
      */
     @TestMethod("testClear")
     synchronized public void clear() {
-        FinalMappings.mappings.clear();
+        mappings.clear();
     }
 
     /**
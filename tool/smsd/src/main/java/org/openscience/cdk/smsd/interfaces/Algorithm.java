@@ -27,7 +27,7 @@ import org.openscience.cdk.annotations.TestClass;
 /**
  * 
  * This class represents various algorithm type supported by SMSD.
- * Presently SMSD supports 5 different kinds of algorithms:
+ * Presently SMSD supports 7 different kinds of algorithms:
  * 
  * <OL>
  * <lI>0: default,
@@ -36,6 +36,7 @@ import org.openscience.cdk.annotations.TestClass;
  * <lI>3: CDKMCS,
  * <lI>4: SubStructure
  * <lI>5: TurboSubStructure
+ * <lI>6: Portfolio
  * </OL>
  *
  * @cdk.module smsd
@@ -68,7 +69,12 @@ public enum Algorithm {
     /**
      * Substructure search will return first map.
      */
-    TurboSubStructure(5, "Turbo Mode- Substructure search");
+    TurboSubStructure(5, "Turbo Mode- Substructure search"),
+    /**
+     * MCS Plus, VF Lib and CDK MCS run in parallel, the first to finish
+     * within the time out is used.
+     */
+    Portfolio(6, "Parallel portfolio of the MCS algorithms");
     private final int type;
     private final String description;
 
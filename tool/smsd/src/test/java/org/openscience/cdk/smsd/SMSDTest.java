@@ -28,6 +28,12 @@ import static org.junit.Assert.assertNotNull;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -49,6 +55,7 @@ import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
 import org.openscience.cdk.isomorphism.matchers.QueryAtomContainerCreator;
 import org.openscience.cdk.smiles.SmilesParser;
 import org.openscience.cdk.smsd.algorithm.mcsplus.MCSPlusHandlerTest;
+import org.openscience.cdk.smsd.global.TimeBudget;
 import org.openscience.cdk.smsd.interfaces.Algorithm;
 import org.openscience.cdk.smsd.tools.ExtAtomContainerManipulator;
 import org.openscience.cdk.smsd.tools.MolHandler;
@@ -614,4 +621,66 @@ public class SMSDTest {
         boolean foundMatches = smsd.isSubgraph();
         Assert.assertFalse(foundMatches);
     }
+
+    @Test
+    public void testPortfolio() throws CDKException {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer query = sp.parseSmiles("Nc1ccccc1");
+        IAtomContainer target = sp.parseSmiles("C\\C=C/Nc1cccc(c1)N(O)\\C=C\\C\\C=C\\C=C/C");
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Isomorphism smsd = new Isomorphism(Algorithm.Portfolio, false);
+            smsd.setExecutor(executor);
+            smsd.init(query, target, true, true);
+            Assert.assertFalse(smsd.isTimeOut());
+            Assert.assertEquals(7, smsd.getFirstAtomMapping().size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testTimeBudget_cancelled() throws CDKException {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer query = sp.parseSmiles("c1ccc2ccccc2c1");
+        IAtomContainer target = sp.parseSmiles("c1ccc2cc3ccccc3cc2c1");
+        TimeBudget budget = TimeBudget.unlimited();
+        budget.cancel();
+        Isomorphism smsd = new Isomorphism(Algorithm.MCSPlus, false);
+        smsd.setTimeBudget(budget);
+        smsd.init(query, target, true, true);
+        Assert.assertTrue(smsd.isTimeOut());
+        smsd.resetTimeOut();
+        Assert.assertFalse(smsd.isTimeOut());
+    }
+
+    /**
+     * Searches on different threads have their own time outs and mappings.
+     */
+    @Test
+    public void testConcurrentSearches() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < 16; i++) {
+                final Algorithm algorithm = i % 2 == 0 ? Algorithm.MCSPlus : Algorithm.CDKMCS;
+                futures.add(executor.submit(new Callable<Integer>() {
+
+                    @Override
+                    public Integer call() throws Exception {
+                        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+                        IAtomContainer query = sp.parseSmiles("Nc1ccccc1");
+                        IAtomContainer target = sp.parseSmiles("C\\C=C/Nc1cccc(c1)N(O)\\C=C\\C\\C=C\\C=C/C");
+                        Isomorphism smsd = new Isomorphism(algorithm, false);
+                        smsd.init(query, target, true, true);
+                        return smsd.getFirstAtomMapping().size();
+                    }
+                }));
+            }
+            for (Future<Integer> future : futures)
+                Assert.assertEquals(7, (int) future.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
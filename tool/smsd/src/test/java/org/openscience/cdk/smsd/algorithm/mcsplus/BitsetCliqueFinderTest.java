@@ -0,0 +1,191 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.smsd.algorithm.mcsplus;
+
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @cdk.module test-smsd
+ */
+public class BitsetCliqueFinderTest {
+
+    @Test public void empty() {
+        BitsetCliqueFinder finder = new BitsetCliqueFinder(new ArrayList<Integer>(), new ArrayList<Integer>(),
+                new ArrayList<Integer>());
+        assertThat(finder.getBestCliqueSize(), is(0));
+        assertThat(finder.getMaxCliqueSet().isEmpty(), is(true));
+    }
+
+    /** A c-edge path 1-2-3 and a d-edge closing 1-3, the triangle is a c-clique. */
+    @Test public void dEdgeJoinsConnectedClique() {
+        BitsetCliqueFinder finder = new BitsetCliqueFinder(nodes(4), Arrays.asList(1, 2, 2, 3), Arrays.asList(1, 3,
+                3, 4));
+        assertThat(finder.getBestCliqueSize(), is(3));
+        assertThat(finder.getMaxCliqueSet().size(), is(1));
+        assertThat(new HashSet<Integer>(finder.getMaxCliqueSet().peek()),
+                is((Set<Integer>) new HashSet<Integer>(Arrays.asList(1, 2, 3))));
+    }
+
+    /** Only d-edges, the vertices are not connected so each is a clique. */
+    @Test public void dEdgesOnly() {
+        BitsetCliqueFinder finder = new BitsetCliqueFinder(nodes(3), new ArrayList<Integer>(), Arrays.asList(1, 2, 2,
+                3, 1, 3));
+        assertThat(finder.getBestCliqueSize(), is(1));
+        assertThat(finder.getMaxCliqueSet().size(), is(3));
+    }
+
+    /** The ids of the cliques are the instances of the compatibility graph nodes. */
+    @Test public void sameIdInstances() {
+        List<Integer> nodes = nodes(70);
+        List<Integer> cEdges = new ArrayList<Integer>();
+        for (int i = 1; i < 70; i++) {
+            cEdges.add(i);
+            cEdges.add(i + 1);
+        }
+        BitsetCliqueFinder finder = new BitsetCliqueFinder(nodes, cEdges, new ArrayList<Integer>());
+        assertThat(finder.getBestCliqueSize(), is(2));
+        assertThat(finder.getMaxCliqueSet().size(), is(69));
+        for (List<Integer> clique : finder.getMaxCliqueSet())
+            for (Integer id : clique)
+                assertThat(id == nodes.get(3 * (id - 1) + 2), is(true));
+    }
+
+    /** Compare with an exhaustive search on random graphs (more than one word). */
+    @Test public void randomGraphs() {
+        Random rand = new Random(42);
+        for (int trial = 0; trial < 200; trial++) {
+            int n = 2 + rand.nextInt(trial < 150 ? 12 : 80);
+            boolean[][] c = new boolean[n][n], d = new boolean[n][n];
+            List<Integer> cEdges = new ArrayList<Integer>(), dEdges = new ArrayList<Integer>();
+            double density = trial < 150 ? 0.6 : 0.25;
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    double r = rand.nextDouble();
+                    if (r < density / 2) {
+                        c[i][j] = c[j][i] = true;
+                        cEdges.add(i + 1);
+                        cEdges.add(j + 1);
+                    } else if (r < density) {
+                        d[i][j] = d[j][i] = true;
+                        dEdges.add(i + 1);
+                        dEdges.add(j + 1);
+                    }
+                }
+            }
+            BitsetCliqueFinder finder = new BitsetCliqueFinder(nodes(n), cEdges, dEdges);
+            if (n <= 13) {
+                assertThat(finder.getBestCliqueSize(), is(maxCClique(c, d)));
+            }
+            BKKCKCF bkkckcf = new BKKCKCF(nodes(n), cEdges, dEdges);
+            assertThat(finder.getBestCliqueSize() >= bkkckcf.getBestCliqueSize(), is(true));
+            for (List<Integer> clique : finder.getMaxCliqueSet()) {
+                assertThat(clique.size(), is(finder.getBestCliqueSize()));
+                assertThat(isCClique(clique, c, d), is(true));
+            }
+        }
+    }
+
+    /** The MCS of acenes is found with either clique search. */
+    @Test public void mcsOfAcenes() throws Exception {
+        for (int n = 1; n <= 3; n++) {
+            IAtomContainer source = acene(n + 1), target = acene(n);
+            List<List<Integer>> expected = new MCSPlus(false).getOverlaps(source, target, true);
+            List<List<Integer>> actual = new MCSPlus(true).getOverlaps(source, target, true);
+            assertThat(actual.isEmpty(), is(false));
+            assertThat(actual.get(0).size(), is(expected.get(0).size()));
+            assertThat(actual.get(0).size(), is(2 * target.getAtomCount()));
+        }
+    }
+
+    private static List<Integer> nodes(int n) {
+        List<Integer> nodes = new ArrayList<Integer>();
+        for (int i = 0; i < n; i++) {
+            nodes.add(i);
+            nodes.add(i);
+            nodes.add(new Integer(i + 1));
+        }
+        return nodes;
+    }
+
+    private static boolean isCClique(List<Integer> clique, boolean[][] c, boolean[][] d) {
+        int n = clique.size();
+        for (int i = 0; i < n; i++)
+            for (int j = i + 1; j < n; j++) {
+                int u = clique.get(i) - 1, v = clique.get(j) - 1;
+                if (!c[u][v] && !d[u][v]) return false;
+            }
+        // connected by c-edges
+        Set<Integer> reached = new HashSet<Integer>();
+        List<Integer> queue = new ArrayList<Integer>();
+        queue.add(clique.get(0) - 1);
+        reached.add(clique.get(0) - 1);
+        for (int k = 0; k < queue.size(); k++)
+            for (Integer v : clique)
+                if (c[queue.get(k)][v - 1] && reached.add(v - 1)) queue.add(v - 1);
+        return reached.size() == n;
+    }
+
+    private static int maxCClique(boolean[][] c, boolean[][] d) {
+        int n = c.length, best = 0;
+        for (int set = 1; set < (1 << n); set++) {
+            int size = Integer.bitCount(set);
+            if (size <= best) continue;
+            List<Integer> clique = new ArrayList<Integer>();
+            for (int i = 0; i < n; i++)
+                if ((set & (1 << i)) != 0) clique.add(i + 1);
+            if (isCClique(clique, c, d)) best = size;
+        }
+        return best;
+    }
+
+    /** A linear acene of n rings, all single bonds. */
+    private static IAtomContainer acene(int n) {
+        IChemObjectBuilder builder = SilentChemObjectBuilder.getInstance();
+        IAtomContainer container = builder.newInstance(IAtomContainer.class);
+        int atoms = 4 * n + 2, top = 2 * n + 1;
+        for (int i = 0; i < atoms; i++)
+            container.addAtom(builder.newInstance(IAtom.class, "C"));
+        for (int i = 0; i + 1 < top; i++)
+            container.addBond(i, i + 1, IBond.Order.SINGLE);
+        for (int i = top; i + 1 < atoms; i++)
+            container.addBond(i, i + 1, IBond.Order.SINGLE);
+        for (int r = 0; r <= n; r++)
+            container.addBond(2 * r, atoms - 1 - 2 * r, IBond.Order.SINGLE);
+        return container;
+    }
+}
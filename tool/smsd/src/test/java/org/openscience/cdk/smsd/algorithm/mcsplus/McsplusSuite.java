@@ -41,7 +41,8 @@ import org.junit.runners.Suite;
     org.openscience.cdk.smsd.algorithm.mcsplus.MCSPlusTest.class,
     org.openscience.cdk.smsd.algorithm.mcsplus.ExactMappingTest.class,
     org.openscience.cdk.smsd.algorithm.mcsplus.GenerateCompatibilityGraphTest.class,
-    org.openscience.cdk.smsd.algorithm.mcsplus.BKKCKCFTest.class})
+    org.openscience.cdk.smsd.algorithm.mcsplus.BKKCKCFTest.class,
+    org.openscience.cdk.smsd.algorithm.mcsplus.BitsetCliqueFinderTest.class})
 public class McsplusSuite {
 
     @BeforeClass
@@ -38,7 +38,7 @@ import org.junit.runners.Suite;
  * @cdk.require java1.6+
  */
 @RunWith(Suite.class)
-@Suite.SuiteClasses({org.openscience.cdk.smsd.global.TimeOutTest.class})
+@Suite.SuiteClasses({org.openscience.cdk.smsd.global.TimeOutTest.class,org.openscience.cdk.smsd.global.TimeBudgetTest.class})
 public class GlobalSuite {
 
     @BeforeClass
@@ -0,0 +1,123 @@
+/* Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.smsd.global;
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @cdk.module test-smsd
+ */
+public class TimeBudgetTest {
+
+    @Test public void unlimited() {
+        TimeBudget budget = TimeBudget.unlimited();
+        assertThat(budget.isExpired(), is(false));
+        assertThat(budget.hasExpired(), is(false));
+    }
+
+    @Test public void expires() throws Exception {
+        TimeBudget budget = new TimeBudget(1, TimeUnit.MILLISECONDS);
+        Thread.sleep(5);
+        assertThat(budget.hasExpired(), is(false));
+        assertThat(budget.isExpired(), is(true));
+        assertThat(budget.hasExpired(), is(true));
+    }
+
+    @Test public void negativeMinutesAreUnlimited() throws Exception {
+        TimeBudget budget = new TimeBudget(-1);
+        Thread.sleep(2);
+        assertThat(budget.isExpired(), is(false));
+        assertThat(new TimeBudget(0).isExpired(), is(true));
+    }
+
+    @Test public void cancel() {
+        TimeBudget budget = TimeBudget.unlimited();
+        budget.cancel();
+        assertThat(budget.isCancelled(), is(true));
+        assertThat(budget.isExpired(), is(true));
+    }
+
+    @Test public void stageExpiresWithParent() {
+        TimeBudget parent = TimeBudget.unlimited();
+        TimeBudget stage = parent.stage(1);
+        assertThat(stage.isExpired(), is(false));
+        parent.cancel();
+        assertThat(stage.isExpired(), is(true));
+    }
+
+    @Test public void stageDoesNotCancelParent() {
+        TimeBudget parent = TimeBudget.unlimited();
+        TimeBudget stage = parent.stage(-1);
+        stage.cancel();
+        assertThat(stage.isExpired(), is(true));
+        assertThat(parent.isExpired(), is(false));
+    }
+
+    @Test public void stageKeepsParentDeadline() throws Exception {
+        TimeBudget parent = new TimeBudget(1, TimeUnit.MILLISECONDS);
+        TimeBudget stage = parent.stage(10);
+        Thread.sleep(5);
+        assertThat(stage.isExpired(), is(true));
+    }
+
+    @Test public void bindAndRestore() {
+        TimeBudget outer = TimeBudget.unlimited();
+        TimeBudget inner = TimeBudget.unlimited();
+        assertThat(TimeBudget.bind(outer), is(nullValue()));
+        assertThat(TimeBudget.bind(inner), is(sameInstance(outer)));
+        assertThat(TimeBudget.current(), is(sameInstance(inner)));
+        TimeBudget.restore(outer);
+        assertThat(TimeBudget.current(), is(sameInstance(outer)));
+        TimeBudget.restore(null);
+        assertThat(TimeBudget.current(), is(nullValue()));
+    }
+
+    @Test public void boundPerThread() throws Exception {
+        TimeBudget budget = TimeBudget.unlimited();
+        TimeBudget previous = TimeBudget.bind(budget);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            TimeBudget other = executor.submit(new Callable<TimeBudget>() {
+
+                @Override
+                public TimeBudget call() {
+                    return TimeBudget.current();
+                }
+            }).get();
+            assertThat(other, is(nullValue()));
+        } finally {
+            executor.shutdown();
+            TimeBudget.restore(previous);
+        }
+    }
+}